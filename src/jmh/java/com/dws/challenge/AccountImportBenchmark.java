@@ -0,0 +1,103 @@
+package com.dws.challenge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per account to load {@value #ACCOUNTS} new accounts over HTTP: one streamed NDJSON
+ * {@code POST /v1/accounts/import}, against one {@code POST /v1/accounts} per account with 64
+ * requests in flight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AccountImportBenchmark {
+
+  static final int ACCOUNTS = 100_000;
+  private static final int IN_FLIGHT = 64;
+
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private String baseUri;
+  private int invocation;
+  private String prefix;
+  private byte[] ndjson;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.startWebServer();
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    baseUri = "http://localhost:" + BenchmarkApplication.port(context) + "/v1/accounts";
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Setup(Level.Invocation)
+  public void nextAccounts() {
+    prefix = "Id-" + invocation++ + "-";
+    StringBuilder body = new StringBuilder(ACCOUNTS * 40);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      body.append("{\"accountId\":\"").append(prefix).append(i).append("\",\"balance\":1000.00}\n");
+    }
+    ndjson = body.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ACCOUNTS)
+  public String importNdjson() throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + "/import"))
+      .header("Content-Type", "application/x-ndjson")
+      .POST(HttpRequest.BodyPublishers.ofByteArray(ndjson))
+      .build();
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    if (!response.body().startsWith("{\"imported\":" + ACCOUNTS + ",")) {
+      throw new IllegalStateException("Import failed: " + response.body());
+    }
+    return response.body();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ACCOUNTS)
+  public void createIndividually() throws Exception {
+    URI uri = URI.create(baseUri);
+    Semaphore inFlight = new Semaphore(IN_FLIGHT);
+    CompletableFuture<?>[] responses = new CompletableFuture<?>[ACCOUNTS];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      inFlight.acquire();
+      HttpRequest request = HttpRequest.newBuilder(uri)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"" + prefix + i + "\",\"balance\":1000.00}"))
+        .build();
+      responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .whenComplete((response, failure) -> inFlight.release());
+    }
+    CompletableFuture.allOf(responses).join();
+  }
+}
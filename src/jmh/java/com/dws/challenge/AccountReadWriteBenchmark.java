@@ -0,0 +1,124 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.service.AccountsService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountsService#getAccount} reads running alongside transfers, read-mostly (7:1) and
+ * balanced (4:4), on the heap and off-heap repositories and on an in-memory H2 database, through
+ * the write-behind cache ({@code jdbc}) and directly ({@code jdbc-direct}). JMH reports reads and
+ * writes separately.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class AccountReadWriteBenchmark {
+
+  @Param({"heap", "offheap", "jdbc", "jdbc-direct"})
+  String repository;
+
+  @Param({"100000"})
+  int accounts;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = switch (repository) {
+      case "offheap" -> BenchmarkApplication.start("spring.profiles.active=offheap");
+      case "jdbc", "jdbc-direct" -> BenchmarkApplication.start("spring.profiles.active=jdbc",
+        "spring.datasource.url=jdbc:h2:mem:accounts;DB_CLOSE_DELAY=-1",
+        "accounts.jdbc.write-behind=" + "jdbc".equals(repository));
+      default -> BenchmarkApplication.start();
+    };
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, accounts, BigDecimal.valueOf(1_000_000_000));
+    accountIds = BenchmarkApplication.accountIds(accounts);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    if ("jdbc".equals(repository)) {
+      MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+      double hits = meterRegistry.counter("accounts.cache.requests", "result", "hit").count();
+      double misses = meterRegistry.counter("accounts.cache.requests", "result", "miss").count();
+      DistributionSummary batchSize = meterRegistry.summary("accounts.write-behind.batch.size");
+      Timer flushLag = meterRegistry.timer("accounts.write-behind.flush.lag");
+      System.out.printf("%nCache hit rate %.4f, %d flushes of %.1f accounts on average, mean flush lag %.2f ms%n",
+        hits / (hits + misses), batchSize.count(), batchSize.mean(), flushLag.mean(TimeUnit.MILLISECONDS));
+    }
+    context.close();
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(7)
+  public Account readMostly_read() {
+    return read();
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public void readMostly_write() {
+    write();
+  }
+
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(4)
+  public Account balanced_read() {
+    return read();
+  }
+
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(4)
+  public void balanced_write() {
+    write();
+  }
+
+  private Account read() {
+    return accountsService.getAccount(accountIds[ThreadLocalRandom.current().nextInt(accounts)]);
+  }
+
+  private void write() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    try {
+      accountsService.transferMoney(accountIds[from], accountIds[to], 1.0, BenchmarkApplication.NO_NOTIFICATIONS);
+    } catch (InsufficientFundsException e) {
+      // Balances are large enough that this is not expected
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap footprint and GC cost of the heap and off-heap repositories with a large book. Retained
+ * heap after loading and the GC count/time spent during measurement are printed at tear-down;
+ * run with {@code -prof gc} for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g", "-XX:MaxDirectMemorySize=16g"})
+@Threads(4)
+public class AccountsRepositoryFootprintBenchmark {
+
+  @Param({"10000000", "50000000"})
+  int accounts;
+
+  @Param({"heap", "offheap"})
+  String repository;
+
+  private AccountsRepository accountsRepository;
+  private long gcCountAtStart;
+  private long gcMillisAtStart;
+
+  @Setup(Level.Trial)
+  public void load() {
+    accountsRepository = "offheap".equals(repository) ? new AccountsRepositoryOffHeap(2) : new AccountsRepositoryInMemory();
+    for (int i = 0; i < accounts; i++) {
+      accountsRepository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(10_000, 2)));
+    }
+    System.gc();
+    long usedHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    String offHeap = accountsRepository instanceof AccountsRepositoryOffHeap offHeapRepository
+      ? ", off-heap " + (offHeapRepository.offHeapBytes() >> 20) + " MiB" : "";
+    System.out.printf("%n[%s, %d accounts] retained heap %d MiB%s%n", repository, accounts, usedHeap >> 20, offHeap);
+    gcCountAtStart = gcCount();
+    gcMillisAtStart = gcMillis();
+  }
+
+  @TearDown(Level.Trial)
+  public void report() {
+    System.out.printf("%n[%s, %d accounts] %d GCs, %d ms total GC time during measurement%n",
+      repository, accounts, gcCount() - gcCountAtStart, gcMillis() - gcMillisAtStart);
+  }
+
+  @Benchmark
+  public Account readModifyWrite() {
+    Account account = accountsRepository.getAccount("Id-" + ThreadLocalRandom.current().nextInt(accounts));
+    accountsRepository.save(account);
+    return account;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
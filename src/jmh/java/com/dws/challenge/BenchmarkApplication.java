@@ -0,0 +1,100 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.NotificationService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application, without a web server unless HTTP is under test, so benchmarks exercise
+ * the same wiring production uses, with the engine, repository or profile under test selected
+ * through properties.
+ */
+final class BenchmarkApplication {
+
+  static final NotificationService NO_NOTIFICATIONS = (account, transferDescription) -> { };
+
+  private BenchmarkApplication() {
+  }
+
+  static ConfigurableApplicationContext start(String... properties) {
+    return new SpringApplicationBuilder(Challenge1Application.class)
+      .web(WebApplicationType.NONE)
+      .logStartupInfo(false)
+      .properties("logging.level.root=WARN")
+      .properties(properties)
+      .run();
+  }
+
+  /**
+   * Boots the application with its embedded web server on a random port, read back with
+   * {@link #port}.
+   */
+  static ConfigurableApplicationContext startWebServer(String... properties) {
+    return new SpringApplicationBuilder(Challenge1Application.class)
+      .web(WebApplicationType.SERVLET)
+      .logStartupInfo(false)
+      .properties("logging.level.root=WARN", "server.port=0")
+      .properties(properties)
+      .run();
+  }
+
+  /**
+   * Boots {@code nodes} cluster nodes with web servers on free ports, node {@code i} being element
+   * {@code i} of the returned list.
+   */
+  static List<ConfigurableApplicationContext> startCluster(int nodes, String... properties) throws IOException {
+    List<String> urls = new ArrayList<>();
+    for (int i = 0; i < nodes; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        urls.add("http://localhost:" + socket.getLocalPort());
+      }
+    }
+    List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    for (int i = 0; i < nodes; i++) {
+      contexts.add(new SpringApplicationBuilder(Challenge1Application.class)
+        .web(WebApplicationType.SERVLET)
+        .logStartupInfo(false)
+        .properties("logging.level.root=WARN",
+          "server.port=" + URI.create(urls.get(i)).getPort(),
+          "cluster.enabled=true",
+          "cluster.nodes=" + String.join(",", urls),
+          "cluster.node-index=" + i,
+          "internal.secret=benchmark")
+        .properties(properties)
+        .run());
+    }
+    return contexts;
+  }
+
+  static int port(ConfigurableApplicationContext context) {
+    return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+  }
+
+  static void createAccounts(AccountsService accountsService, int accounts, BigDecimal balance) {
+    for (int i = 0; i < accounts; i++) {
+      accountsService.createAccount(new Account(accountId(i), balance));
+    }
+  }
+
+  static String accountId(int index) {
+    return "Id-" + index;
+  }
+
+  static String[] accountIds(int accounts) {
+    String[] accountIds = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      accountIds[i] = accountId(i);
+    }
+    return accountIds;
+  }
+}
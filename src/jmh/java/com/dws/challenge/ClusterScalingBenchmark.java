@@ -0,0 +1,123 @@
+package com.dws.challenge;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate {@code POST /v1/accounts/transfer} throughput of a cluster of 1, 2 and 4 nodes, with
+ * 256 clients that send each transfer to the node owning its payer. {@code crossPercent} of the
+ * transfers pay an account on another node and run two-phase commit; the rest stay on one node.
+ * The nodes share this JVM and machine, so the gain from more nodes is bounded by its cores; run
+ * the nodes as separate processes on separate hosts to measure scaling across machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ClusterScalingBenchmark {
+
+  @Param({"1", "2", "4"})
+  int nodes;
+
+  @Param({"0", "10"})
+  int crossPercent;
+
+  @Param({"10000"})
+  int accounts;
+
+  private List<ConfigurableApplicationContext> contexts;
+  private HttpClient client;
+  private URI[] transferUris;
+  // Account IDs by owning node, and each account's owner
+  private List<List<String>> owned;
+  private String[] accountIds;
+  private int[] owners;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    contexts = BenchmarkApplication.startCluster(nodes, "accounts.transfer.admission.enabled=false");
+    ClusterRouter router = contexts.get(0).getBean(ClusterRouter.class);
+    owned = new ArrayList<>();
+    transferUris = new URI[nodes];
+    for (int node = 0; node < nodes; node++) {
+      owned.add(new ArrayList<>());
+      transferUris[node] = URI.create("http://localhost:" + BenchmarkApplication.port(contexts.get(node))
+        + "/v1/accounts/transfer");
+    }
+    accountIds = BenchmarkApplication.accountIds(accounts);
+    owners = new int[accounts];
+    for (int i = 0; i < accounts; i++) {
+      owners[i] = router.ownerOf(accountIds[i]);
+      owned.get(owners[i]).add(accountIds[i]);
+      contexts.get(owners[i]).getBean(AccountsService.class)
+        .createAccount(new Account(accountIds[i], BigDecimal.valueOf(1_000_000_000)));
+    }
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    double crossNode = 0;
+    for (ConfigurableApplicationContext context : contexts) {
+      crossNode += context.getBean(MeterRegistry.class).counter("cluster.transfers", "result", "committed").count();
+    }
+    System.out.printf("%n%d nodes: %.0f cross-node transfers committed%n", nodes, crossNode);
+    contexts.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Benchmark
+  @Threads(256)
+  public int transfer() throws IOException, InterruptedException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int node = owners[from];
+    String to;
+    if (nodes > 1 && random.nextInt(100) < crossPercent) {
+      int other = (node + 1 + random.nextInt(nodes - 1)) % nodes;
+      to = owned.get(other).get(random.nextInt(owned.get(other).size()));
+    } else {
+      List<String> local = owned.get(node);
+      to = local.get(random.nextInt(local.size()));
+    }
+    String body = "{\"accountFromId\":\"" + accountIds[from] + "\",\"accountToId\":\"" + to + "\",\"amount\":1.0}";
+    HttpRequest request = HttpRequest.newBuilder(transferUris[node])
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build();
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Transfer failed with status " + response.statusCode());
+    }
+    return response.statusCode();
+  }
+}
@@ -0,0 +1,88 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time for a burst of {@link AccountsService#createAccount} calls into an empty book, with four
+ * threads creating accounts at once, for each engine and the off-heap repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@Threads(4)
+public class CreateAccountBurstBenchmark {
+
+  // The off-heap repository only supports the locking engine
+  @Param({"locking", "cas", "sharded", "locking-offheap"})
+  String setup;
+
+  @Param({"100000"})
+  int burst;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+
+  @State(Scope.Thread)
+  public static class Burst {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final int thread = THREADS.getAndIncrement();
+    private String[] accountIds;
+
+    @Setup(Level.Trial)
+    public void prepare(CreateAccountBurstBenchmark benchmark) {
+      accountIds = new String[benchmark.burst];
+      for (int i = 0; i < benchmark.burst; i++) {
+        accountIds[i] = "Id-" + thread + "-" + i;
+      }
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = "locking-offheap".equals(setup) ? BenchmarkApplication.start("spring.profiles.active=offheap")
+      : BenchmarkApplication.start("accounts.engine=" + setup);
+    accountsService = context.getBean(AccountsService.class);
+  }
+
+  @Setup(Level.Iteration)
+  public void clear() {
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public void createBurst(Burst burst) {
+    BigDecimal balance = BigDecimal.valueOf(100);
+    for (String accountId : burst.accountIds) {
+      accountsService.createAccount(new Account(accountId, balance));
+    }
+  }
+}
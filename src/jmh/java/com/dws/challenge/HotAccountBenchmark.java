@@ -0,0 +1,87 @@
+package com.dws.challenge;
+
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locking-engine throughput of deposits into a single merchant account from many payers, with the
+ * account regular (every deposit takes its stripe lock) or flagged hot (deposits go to its
+ * sub-balances), at 1 to 16 threads. Deposits go through {@link AccountsService}, ledger and
+ * notifications included, as requests do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class HotAccountBenchmark {
+
+  private static final String MERCHANT = "Id-0";
+
+  @Param({"false", "true"})
+  boolean hot;
+
+  @Param({"10000"})
+  int payers;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start(
+      "accounts.hot.account-ids=" + (hot ? MERCHANT : ""),
+      "accounts.hot.detect-credits-per-second=0");
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, payers + 1, BigDecimal.valueOf(1_000_000_000));
+    accountIds = BenchmarkApplication.accountIds(payers + 1);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void deposit01Thread() {
+    deposit();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void deposit04Threads() {
+    deposit();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void deposit16Threads() {
+    deposit();
+  }
+
+  private void deposit() {
+    accountsService.transferMoney(accountIds[1 + ThreadLocalRandom.current().nextInt(payers)], MERCHANT, 1.0,
+      BenchmarkApplication.NO_NOTIFICATIONS);
+  }
+}
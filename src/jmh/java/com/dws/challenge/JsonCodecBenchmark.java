@@ -0,0 +1,92 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.web.AccountJsonCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the request and response bodies, with an {@link ObjectMapper}
+ * configured the way Spring MVC builds its own, against {@link AccountJsonCodec}. Run with
+ * {@code -PjmhProfilers=gc} and compare {@code gc.alloc.rate.norm} to see bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+  private ObjectMapper objectMapper;
+  private AccountJsonCodec codec;
+  private TransferRequest transferRequest;
+  private Account account;
+  private byte[] transferRequestJson;
+  private byte[] accountJson;
+
+  @Setup
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    codec = new AccountJsonCodec();
+    transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId("Id-123456");
+    transferRequest.setAccountToId("Id-654321");
+    transferRequest.setAmount(1234.56);
+    account = new Account("Id-123456", new BigDecimal("98765.43"));
+    transferRequestJson = "{\"accountFromId\":\"Id-123456\",\"accountToId\":\"Id-654321\",\"amount\":1234.56}"
+      .getBytes(StandardCharsets.UTF_8);
+    accountJson = "{\"accountId\":\"Id-123456\",\"balance\":98765.43}".getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public TransferRequest readTransferRequest() throws IOException {
+    return objectMapper.readValue(transferRequestJson, TransferRequest.class);
+  }
+
+  @Benchmark
+  public byte[] writeTransferRequest() throws IOException {
+    return objectMapper.writeValueAsBytes(transferRequest);
+  }
+
+  @Benchmark
+  public Account readAccount() throws IOException {
+    return objectMapper.readValue(accountJson, Account.class);
+  }
+
+  @Benchmark
+  public byte[] writeAccount() throws IOException {
+    return objectMapper.writeValueAsBytes(account);
+  }
+
+  @Benchmark
+  public TransferRequest readTransferRequestCodec() {
+    return codec.readTransferRequest(transferRequestJson, transferRequestJson.length);
+  }
+
+  @Benchmark
+  public Account readAccountCodec() {
+    return codec.readAccount(accountJson, accountJson.length);
+  }
+
+  @Benchmark
+  public int writeAccountCodec() {
+    return codec.writeAccount(account.getAccountId(), account.getBalance());
+  }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge;
+
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationLog;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code GET /v1/accounts/{accountId}} throughput with 128 clients spread evenly over a primary and
+ * 0, 1 or 3 replicas, while a background thread runs transfers on the primary. The nodes share this
+ * JVM and machine, so this shows the cost of applying the feed next to serving reads more than the
+ * gain of adding machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ReplicaReadBenchmark {
+
+  @Param({"0", "1", "3"})
+  int replicas;
+
+  @Param({"10000"})
+  int accounts;
+
+  private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+  private HttpClient client;
+  private String[] accountIds;
+  private String[] baseUris;
+  private volatile boolean writing;
+  private Thread writer;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    int primaryPort = freePort();
+    ConfigurableApplicationContext primary = BenchmarkApplication.startWebServer("replication.role=primary",
+      "replication.port=" + primaryPort, "accounts.transfer.admission.enabled=false");
+    contexts.add(primary);
+    for (int i = 0; i < replicas; i++) {
+      contexts.add(BenchmarkApplication.startWebServer("replication.role=replica",
+        "replication.port=" + freePort(), "replication.primary=localhost:" + primaryPort));
+    }
+    AccountsService accountsService = primary.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, accounts, BigDecimal.valueOf(1_000_000_000));
+    accountIds = BenchmarkApplication.accountIds(accounts);
+    String token = primary.getBean(ReplicationLog.class).token();
+    baseUris = new String[contexts.size()];
+    for (int node = 0; node < contexts.size(); node++) {
+      ConfigurableApplicationContext context = contexts.get(node);
+      if (node > 0 && !context.getBean(ReplicationFollower.class).awaitToken(token, 60_000)) {
+        throw new IllegalStateException("Replica " + node + " did not catch up");
+      }
+      baseUris[node] = "http://localhost:" + BenchmarkApplication.port(context) + "/v1/accounts/";
+    }
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    // About 10k transfers a second, so replicas apply the feed while they serve reads
+    writing = true;
+    writer = new Thread(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (writing) {
+        accountsService.transferMoney(accountIds[random.nextInt(accounts)], accountIds[random.nextInt(accounts)], 1,
+          BenchmarkApplication.NO_NOTIFICATIONS);
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+      }
+    }, "benchmark-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws InterruptedException {
+    writing = false;
+    writer.join();
+    System.out.printf("%n%d replicas, primary at sequence %d%n", replicas,
+      contexts.get(0).getBean(ReplicationLog.class).lastSequence());
+    for (int node = 1; node < contexts.size(); node++) {
+      ReplicationFollower follower = contexts.get(node).getBean(ReplicationFollower.class);
+      System.out.printf("replica %d: %d changes behind, lag %d ms%n", node, follower.lagSequences(),
+        follower.lagMillis());
+    }
+    contexts.forEach(ConfigurableApplicationContext::close);
+    contexts.clear();
+  }
+
+  @Benchmark
+  @Threads(128)
+  public int read() throws IOException, InterruptedException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    HttpRequest request = HttpRequest.newBuilder(
+        URI.create(baseUris[random.nextInt(baseUris.length)] + accountIds[random.nextInt(accounts)]))
+      .GET()
+      .build();
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Read failed with status " + response.statusCode());
+    }
+    return response.statusCode();
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
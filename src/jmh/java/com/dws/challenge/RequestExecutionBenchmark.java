@@ -0,0 +1,103 @@
+package com.dws.challenge;
+
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code POST /v1/accounts/transfer} over HTTP with 512 concurrent clients, serving requests on
+ * Tomcat's platform-thread pool or on virtual threads, with the journal off or in group-commit mode
+ * (where every request blocks until its transfer is forced). The fork traces pinned virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class RequestExecutionBenchmark {
+
+  @Param({"false", "true"})
+  boolean virtual;
+
+  @Param({"off", "group"})
+  String journal;
+
+  @Param({"10000"})
+  int accounts;
+
+  private Path directory;
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private URI transferUri;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    directory = Files.createTempDirectory("request-bench");
+    context = BenchmarkApplication.startWebServer(
+      "spring.threads.virtual.enabled=" + virtual,
+      "accounts.transfer.admission.enabled=false",
+      "journal.enabled=" + !"off".equals(journal),
+      "journal.mode=group",
+      "journal.directory=" + directory.resolve("journal"),
+      "journal.snapshot.directory=" + directory.resolve("snapshots"));
+    BenchmarkApplication.createAccounts(context.getBean(AccountsService.class), accounts,
+      BigDecimal.valueOf(1_000_000_000));
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    transferUri = URI.create("http://localhost:" + BenchmarkApplication.port(context) + "/v1/accounts/transfer");
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() throws IOException {
+    context.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @Threads(512)
+  public int transfer() throws IOException, InterruptedException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = random.nextInt(accounts - 1);
+    String body = "{\"accountFromId\":\"" + BenchmarkApplication.accountId(from)
+      + "\",\"accountToId\":\"" + BenchmarkApplication.accountId(to >= from ? to + 1 : to)
+      + "\",\"amount\":1.0}";
+    HttpRequest request = HttpRequest.newBuilder(transferUri)
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build();
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Transfer failed with status " + response.statusCode());
+    }
+    return response.statusCode();
+  }
+}
@@ -0,0 +1,79 @@
+package com.dws.challenge;
+
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the sharded engine scales with its shard count under a fixed set of 32 submitting threads.
+ * Run with {@code -p engine=locking} for a baseline; {@code shards} has no effect on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(32)
+public class ShardedScalingBenchmark {
+
+  @Param({"sharded"})
+  String engine;
+
+  @Param({"1", "2", "4", "8", "16"})
+  int shards;
+
+  @Param({"100000"})
+  int accounts;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start("accounts.engine=" + engine, "accounts.sharded.shards=" + shards);
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, accounts, BigDecimal.valueOf(1_000_000_000));
+    accountIds = BenchmarkApplication.accountIds(accounts);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  public void transferAsync() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    try {
+      accountsService.transferMoneyAsync(accountIds[from], accountIds[to], 1.0, BenchmarkApplication.NO_NOTIFICATIONS)
+        .join();
+    } catch (CompletionException e) {
+      if (!(e.getCause() instanceof InsufficientFundsException)) {
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.dws.challenge;
+
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountsService#transferMoney} throughput and latency distribution for each engine, with
+ * accounts picked uniformly or with Zipfian skew (a few hot accounts take most transfers), at 1 to
+ * 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+  @Param({"locking", "cas", "sharded"})
+  String engine;
+
+  @Param({"uniform", "zipfian"})
+  String skew;
+
+  @Param({"10000"})
+  int accounts;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private ZipfianGenerator zipfian;
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start("accounts.engine=" + engine);
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, accounts, BigDecimal.valueOf(1_000_000_000));
+    zipfian = new ZipfianGenerator(accounts, 0.99);
+    accountIds = BenchmarkApplication.accountIds(accounts);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transfer01Thread() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void transfer04Threads() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void transfer16Threads() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void transfer64Threads() {
+    transfer();
+  }
+
+  private void transfer() {
+    int from = nextAccount();
+    int to = nextAccount();
+    if (to == from) {
+      to = (to + 1) % accounts;
+    }
+    try {
+      accountsService.transferMoney(accountIds[from], accountIds[to], 1.0, BenchmarkApplication.NO_NOTIFICATIONS);
+    } catch (InsufficientFundsException e) {
+      // Balances are large enough that this is not expected; counted as an operation either way
+    }
+  }
+
+  private int nextAccount() {
+    return "zipfian".equals(skew) ? zipfian.next() : ThreadLocalRandom.current().nextInt(accounts);
+  }
+}
@@ -0,0 +1,72 @@
+package com.dws.challenge;
+
+import com.dws.challenge.journal.MappedTransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Durable transfer throughput of the journal in each mode: every operation appends a transfer
+ * record and waits until it is durable, the way the locking engine does. Compare {@code fsync}
+ * (one force per operation) with {@code group} (one force per commit window) and {@code async}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(16)
+public class TransferJournalBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("10.25");
+
+  @Param({"fsync", "group", "async"})
+  String mode;
+
+  @Param({"200"})
+  long commitWindowMicros;
+
+  private Path directory;
+  private MappedTransferJournal journal;
+
+  @Setup(Level.Trial)
+  public void open() throws IOException {
+    directory = Files.createTempDirectory("journal-bench");
+    journal = new MappedTransferJournal(directory, 256 << 20, MappedTransferJournal.Mode.valueOf(mode.toUpperCase(Locale.ROOT)),
+      TimeUnit.MICROSECONDS.toNanos(commitWindowMicros));
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws Exception {
+    journal.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public long durableTransfer() {
+    long sequence = journal.appendTransfer("Id-123", "Id-456", AMOUNT);
+    journal.awaitDurable(sequence);
+    return sequence;
+  }
+}
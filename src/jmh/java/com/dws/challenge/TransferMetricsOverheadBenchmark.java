@@ -0,0 +1,77 @@
+package com.dws.challenge;
+
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of transfer instrumentation: the same uncontended transfer with {@code accounts.metrics.enabled}
+ * on and off. The difference in average time per transfer is the per-transfer overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+public class TransferMetricsOverheadBenchmark {
+
+  @Param({"true", "false"})
+  boolean metrics;
+
+  @Param({"100000"})
+  int accounts;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start("accounts.metrics.enabled=" + metrics);
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkApplication.createAccounts(accountsService, accounts, BigDecimal.valueOf(1_000_000_000));
+    accountIds = BenchmarkApplication.accountIds(accounts);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transfer01Thread() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void transfer16Threads() {
+    transfer();
+  }
+
+  private void transfer() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    accountsService.transferMoney(accountIds[from], accountIds[to], 1.0, BenchmarkApplication.NO_NOTIFICATIONS);
+  }
+}
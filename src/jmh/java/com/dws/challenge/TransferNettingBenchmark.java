@@ -0,0 +1,119 @@
+package com.dws.challenge;
+
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.service.AccountsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountsService#transferMoney} throughput with and without netting, for back-and-forth
+ * transfers between a small set of account pairs picked with Zipfian skew, at 16 to 256 threads.
+ * Lock acquisitions per transfer are printed after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TransferNettingBenchmark {
+
+  @Param({"false", "true"})
+  boolean netting;
+
+  @Param({"16"})
+  int pairs;
+
+  private ConfigurableApplicationContext context;
+  private AccountsService accountsService;
+  private MeterRegistry meterRegistry;
+  private ZipfianGenerator zipfian;
+  private String[] accountIds;
+  private long lockAcquisitionsAtStart;
+  private double transfersAtStart;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = BenchmarkApplication.start(
+      "accounts.transfer.netting.enabled=" + netting,
+      "accounts.hot.detect-credits-per-second=0");
+    accountsService = context.getBean(AccountsService.class);
+    meterRegistry = context.getBean(MeterRegistry.class);
+    BenchmarkApplication.createAccounts(accountsService, 2 * pairs, BigDecimal.valueOf(1_000_000_000));
+    zipfian = new ZipfianGenerator(pairs, 0.99);
+    accountIds = BenchmarkApplication.accountIds(2 * pairs);
+  }
+
+  @Setup(Level.Iteration)
+  public void mark() {
+    lockAcquisitionsAtStart = lockAcquisitions();
+    transfersAtStart = transfers();
+  }
+
+  @TearDown(Level.Iteration)
+  public void report() {
+    System.out.printf("%n[netting=%s] %.3f lock acquisitions per transfer%n", netting,
+      (lockAcquisitions() - lockAcquisitionsAtStart) / Math.max(1, transfers() - transfersAtStart));
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void transfer016Threads() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void transfer064Threads() {
+    transfer();
+  }
+
+  @Benchmark
+  @Threads(256)
+  public void transfer256Threads() {
+    transfer();
+  }
+
+  private void transfer() {
+    int pair = zipfian.next();
+    boolean forward = ThreadLocalRandom.current().nextBoolean();
+    try {
+      accountsService.transferMoney(accountIds[2 * pair + (forward ? 0 : 1)], accountIds[2 * pair + (forward ? 1 : 0)],
+        1.0, BenchmarkApplication.NO_NOTIFICATIONS);
+    } catch (InsufficientFundsException e) {
+      // Balances are large enough that this is not expected; counted as an operation either way
+    }
+  }
+
+  private long lockAcquisitions() {
+    return meterRegistry.get("transfers.lock.wait").timer().count();
+  }
+
+  private double transfers() {
+    return meterRegistry.get("transfers.outcome").counters().stream().mapToDouble(Counter::count).sum();
+  }
+}
@@ -0,0 +1,30 @@
+package com.dws.challenge;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws indexes in {@code [0, n)} with Zipf-distributed popularity: index 0 is the hottest and the
+ * probability of index {@code i} is proportional to {@code 1 / (i + 1)^theta}.
+ */
+final class ZipfianGenerator {
+
+  private final double[] cumulative;
+
+  ZipfianGenerator(int n, double theta) {
+    cumulative = new double[n];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, theta);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < n; i++) {
+      cumulative[i] /= sum;
+    }
+  }
+
+  int next() {
+    int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+  }
+}
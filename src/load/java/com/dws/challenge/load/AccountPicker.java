@@ -0,0 +1,53 @@
+package com.dws.challenge.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks account indexes in {@code [0, n)}, uniformly or with Zipf-distributed popularity where
+ * index 0 is the hottest and index {@code i} is drawn in proportion to {@code 1 / (i + 1)^theta}.
+ */
+final class AccountPicker {
+
+  private final int accounts;
+  // Cumulative Zipf probabilities, or null for uniform picks
+  private final double[] cumulative;
+
+  AccountPicker(int accounts, LoadConfig.Skew skew, double theta) {
+    this.accounts = accounts;
+    if (skew == LoadConfig.Skew.UNIFORM) {
+      this.cumulative = null;
+      return;
+    }
+    this.cumulative = new double[accounts];
+    double sum = 0;
+    for (int i = 0; i < accounts; i++) {
+      sum += 1 / Math.pow(i + 1, theta);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < accounts; i++) {
+      cumulative[i] /= sum;
+    }
+  }
+
+  int next() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (cumulative == null) {
+      return random.nextInt(accounts);
+    }
+    int index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, accounts - 1);
+  }
+
+  /**
+   * A second account other than {@code first}, drawn the same way.
+   */
+  int nextOther(int first) {
+    while (true) {
+      int other = next();
+      if (other != first) {
+        return other;
+      }
+    }
+  }
+}
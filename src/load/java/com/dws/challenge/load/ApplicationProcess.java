@@ -0,0 +1,97 @@
+package com.dws.challenge.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application jar running in its own JVM, so the load generator's threads and garbage do not
+ * compete with the server's inside one heap. Its output goes to {@code application.log} next to
+ * the reports.
+ */
+final class ApplicationProcess implements AutoCloseable {
+
+  private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+  private final Process process;
+  private final String baseUrl;
+
+  private ApplicationProcess(Process process, int port) {
+    this.process = process;
+    this.baseUrl = "http://localhost:" + port;
+  }
+
+  static ApplicationProcess start(LoadConfig config, Path outputDirectory) throws IOException, InterruptedException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    List<String> command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    command.addAll(split(config.appJvmArgs));
+    command.add("-jar");
+    command.add(config.jar);
+    command.add("--server.port=" + port);
+    command.addAll(split(config.appArgs));
+
+    File log = outputDirectory.resolve("application.log").toFile();
+    Process process = new ProcessBuilder(command)
+      .redirectErrorStream(true)
+      .redirectOutput(log)
+      .start();
+    ApplicationProcess application = new ApplicationProcess(process, port);
+    try {
+      application.awaitHealthy(log);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      application.close();
+      throw e;
+    }
+    return application;
+  }
+
+  String baseUrl() {
+    return baseUrl;
+  }
+
+  private void awaitHealthy(File log) throws IOException, InterruptedException {
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health")).GET().build();
+    long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException("Application exited with status " + process.exitValue() + ", see " + log);
+      }
+      try {
+        if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return;
+        }
+      } catch (IOException e) {
+        // Not listening yet
+      }
+      Thread.sleep(200);
+    }
+    throw new IllegalStateException("Application did not become healthy within " + STARTUP_TIMEOUT + ", see " + log);
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    process.destroy();
+    if (!process.waitFor(30, TimeUnit.SECONDS)) {
+      process.destroyForcibly();
+    }
+  }
+
+  private static List<String> split(String arguments) {
+    return arguments.isBlank() ? List.of() : Arrays.asList(arguments.strip().split("\\s+"));
+  }
+}
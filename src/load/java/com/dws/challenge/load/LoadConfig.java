@@ -0,0 +1,97 @@
+package com.dws.challenge.load;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load run, read from {@code load.*} system properties; the {@code loadTest} task
+ * passes on every {@code -Pload.*} Gradle property.
+ */
+final class LoadConfig {
+
+  enum Mode { CLOSED, OPEN }
+
+  enum Skew { UNIFORM, ZIPF }
+
+  // Base URL of a running application; empty to boot the jar
+  final String target;
+  final String jar;
+  final String appJvmArgs;
+  final String appArgs;
+  final boolean seed;
+  final int accounts;
+  final int readPercent;
+  final int concurrency;
+  final Mode mode;
+  // Requests per second; in closed mode 0 sends each request as soon as the previous one returns
+  final int rate;
+  final Skew skew;
+  final double zipfTheta;
+  final int warmupSeconds;
+  final int durationSeconds;
+  final String outputDirectory;
+  final String baseline;
+  final int tolerancePercent;
+
+  private LoadConfig() {
+    this.target = property("target", "");
+    this.jar = property("jar", "");
+    this.appJvmArgs = property("app-jvm-args", "-Xms1g -Xmx1g");
+    this.appArgs = property("app-args", "");
+    this.seed = Boolean.parseBoolean(property("seed", "true"));
+    this.accounts = Integer.parseInt(property("accounts", "10000"));
+    this.readPercent = Integer.parseInt(property("read-percent", "50"));
+    this.concurrency = Integer.parseInt(property("concurrency", "64"));
+    this.mode = Mode.valueOf(property("mode", "closed").toUpperCase(Locale.ROOT));
+    this.rate = Integer.parseInt(property("rate", "0"));
+    this.skew = Skew.valueOf(property("skew", "uniform").toUpperCase(Locale.ROOT));
+    this.zipfTheta = Double.parseDouble(property("zipf-theta", "0.99"));
+    this.warmupSeconds = Integer.parseInt(property("warmup-seconds", "10"));
+    this.durationSeconds = Integer.parseInt(property("duration-seconds", "30"));
+    this.outputDirectory = property("output-directory", "build/reports/load");
+    this.baseline = property("baseline", "");
+    this.tolerancePercent = Integer.parseInt(property("tolerance-percent", "10"));
+
+    if (mode == Mode.OPEN && rate <= 0) {
+      throw new IllegalArgumentException("Open-loop runs need load.rate");
+    }
+    if (accounts < 2) {
+      throw new IllegalArgumentException("load.accounts must be at least 2");
+    }
+    if (readPercent < 0 || readPercent > 100) {
+      throw new IllegalArgumentException("load.read-percent must be between 0 and 100");
+    }
+    if (target.isEmpty() && jar.isEmpty()) {
+      throw new IllegalArgumentException("Either load.target or load.jar is required");
+    }
+  }
+
+  static LoadConfig fromSystemProperties() {
+    return new LoadConfig();
+  }
+
+  /**
+   * The settings that shape the load, as recorded in the report.
+   */
+  Map<String, Object> describe() {
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("target", target.isEmpty() ? "jar" : target);
+    settings.put("appJvmArgs", appJvmArgs);
+    settings.put("appArgs", appArgs);
+    settings.put("accounts", accounts);
+    settings.put("readPercent", readPercent);
+    settings.put("concurrency", concurrency);
+    settings.put("mode", mode.name().toLowerCase(Locale.ROOT));
+    settings.put("rate", rate);
+    settings.put("skew", skew.name().toLowerCase(Locale.ROOT));
+    settings.put("zipfTheta", zipfTheta);
+    settings.put("warmupSeconds", warmupSeconds);
+    settings.put("durationSeconds", durationSeconds);
+    return settings;
+  }
+
+  private static String property(String name, String defaultValue) {
+    return System.getProperty("load." + name, defaultValue).strip();
+  }
+}
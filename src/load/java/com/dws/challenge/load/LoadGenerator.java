@@ -0,0 +1,328 @@
+package com.dws.challenge.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Macro-benchmark of the whole stack: boots the application jar (or uses {@code load.target}),
+ * seeds {@code load.accounts} accounts through the import endpoint, then drives
+ * {@code POST /v1/accounts/transfer} and {@code GET /v1/accounts/{accountId}} over HTTP for a warmup
+ * and a measured period. In closed mode {@code load.concurrency} clients each send a request when
+ * their previous one returns, optionally paced to {@code load.rate} in total; in open mode requests
+ * are sent on a fixed schedule of {@code load.rate} per second whether or not earlier ones have
+ * returned, with at most {@code load.concurrency} in flight. Latencies are corrected for coordinated
+ * omission (see {@link OperationStats}).
+ * <p>
+ * Writes a JSON report and an HdrHistogram percentile distribution per request type to
+ * {@code build/reports/load}, and with {@code load.baseline} compares throughput of {@code 2xx}
+ * responses, p99 and error rate against an earlier report, exiting with status 1 if any is worse by
+ * more than {@code load.tolerance-percent}.
+ */
+public final class LoadGenerator {
+
+  private static final String ACCOUNT_PREFIX = "Load-";
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+  // Error rates this close to the baseline's are noise, whatever the tolerance
+  private static final double ERROR_RATE_FLOOR = 0.001;
+
+  private final LoadConfig config;
+  private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private final AccountPicker picker;
+  private final OperationStats transfers = new OperationStats("transfer");
+  private final OperationStats reads = new OperationStats("read");
+  private final String[] accountIds;
+  private URI transferUri;
+  private String accountsUri;
+
+  private volatile boolean running = true;
+  // Expected interval between requests of one unpaced client, known once the warmup is over
+  private volatile long transferIntervalNanos;
+  private volatile long readIntervalNanos;
+
+  private LoadGenerator(LoadConfig config) {
+    this.config = config;
+    this.picker = new AccountPicker(config.accounts, config.skew, config.zipfTheta);
+    this.accountIds = new String[config.accounts];
+    for (int i = 0; i < config.accounts; i++) {
+      accountIds[i] = ACCOUNT_PREFIX + i;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadConfig config = LoadConfig.fromSystemProperties();
+    Path outputDirectory = Files.createDirectories(Path.of(config.outputDirectory));
+    boolean regressed;
+    if (config.target.isEmpty()) {
+      System.out.println("Starting " + config.jar);
+      try (ApplicationProcess application = ApplicationProcess.start(config, outputDirectory)) {
+        regressed = new LoadGenerator(config).run(application.baseUrl(), outputDirectory);
+      }
+    } else {
+      regressed = new LoadGenerator(config).run(config.target, outputDirectory);
+    }
+    System.exit(regressed ? 1 : 0);
+  }
+
+  private boolean run(String baseUrl, Path outputDirectory) throws Exception {
+    transferUri = URI.create(baseUrl + "/v1/accounts/transfer");
+    accountsUri = baseUrl + "/v1/accounts/";
+    if (config.seed) {
+      seed(baseUrl);
+    }
+
+    System.out.printf("Driving %s for %d s warmup and %d s measurement%n", baseUrl, config.warmupSeconds,
+      config.durationSeconds);
+    long started = System.nanoTime();
+    long measureFrom = started + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+    long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+    Runnable drain = config.mode == LoadConfig.Mode.OPEN ? startOpenLoop(started) : startClosedLoop(started);
+
+    LockSupport.parkNanos(measureFrom - System.nanoTime());
+    transferIntervalNanos = transfers.endWarmup();
+    readIntervalNanos = reads.endWarmup();
+    LockSupport.parkNanos(measureUntil - System.nanoTime());
+    running = false;
+    drain.run();
+    transfers.finish();
+    reads.finish();
+
+    Map<String, Object> report = report(TimeUnit.NANOSECONDS.toMillis(measureUntil - measureFrom) / 1000.0);
+    String name = "load-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    ObjectMapper mapper = new ObjectMapper();
+    Path reportFile = outputDirectory.resolve(name + ".json");
+    mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+    for (OperationStats stats : List.of(transfers, reads)) {
+      try (PrintStream out = new PrintStream(outputDirectory.resolve(name + "-" + stats.name() + ".hgrm").toFile())) {
+        // Values in milliseconds
+        stats.corrected().outputPercentileDistribution(out, 1_000_000.0);
+      }
+    }
+    System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report.get("operations")));
+    System.out.println("Report written to " + reportFile);
+    return !config.baseline.isEmpty() && compareWithBaseline(report, mapper.readTree(Path.of(config.baseline).toFile()));
+  }
+
+  private void seed(String baseUrl) throws IOException, InterruptedException {
+    StringBuilder body = new StringBuilder(config.accounts * 48);
+    for (String accountId : accountIds) {
+      body.append("{\"accountId\":\"").append(accountId).append("\",\"balance\":1000000000}\n");
+    }
+    HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/v1/accounts/import"))
+        .header("Content-Type", "application/x-ndjson")
+        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+        .build(), HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+    }
+    String[] lines = response.body().split("\n");
+    System.out.println("Seeded accounts: " + lines[lines.length - 1]);
+  }
+
+  // Starts the clients and returns what waits for them to stop
+  private Runnable startClosedLoop(long started) {
+    // Each client keeps its share of the rate, staggered so they do not send in lockstep
+    long clientIntervalNanos = config.rate > 0 ? TimeUnit.SECONDS.toNanos(config.concurrency) / config.rate : 0;
+    List<Thread> clients = new ArrayList<>();
+    for (int i = 0; i < config.concurrency; i++) {
+      long offset = clientIntervalNanos * i / config.concurrency;
+      Thread thread = new Thread(() -> {
+        long intended = started + offset;
+        while (running) {
+          if (clientIntervalNanos > 0) {
+            LockSupport.parkNanos(intended - System.nanoTime());
+            sendNow(intended);
+            intended += clientIntervalNanos;
+          } else {
+            sendNow(0);
+          }
+        }
+      }, "load-client-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      clients.add(thread);
+    }
+    return () -> {
+      for (Thread client : clients) {
+        try {
+          client.join(REQUEST_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    };
+  }
+
+  private Runnable startOpenLoop(long started) {
+    Semaphore inFlight = new Semaphore(config.concurrency);
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+    Thread scheduler = new Thread(() -> {
+      for (long i = 0; running; i++) {
+        long intended = started + i * intervalNanos;
+        LockSupport.parkNanos(intended - System.nanoTime());
+        // Waiting for a free slot delays the send, never the schedule the latency is measured from
+        inFlight.acquireUninterruptibly();
+        boolean read = ThreadLocalRandom.current().nextInt(100) < config.readPercent;
+        OperationStats stats = read ? reads : transfers;
+        long sent = System.nanoTime();
+        client.sendAsync(request(read), HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, failure) -> {
+            if (failure != null) {
+              stats.recordFailure(intended, sent, System.nanoTime(), 0, REQUEST_TIMEOUT.toNanos());
+            } else {
+              stats.record(response.statusCode(), intended, sent, System.nanoTime(), 0);
+            }
+            inFlight.release();
+          });
+      }
+    }, "load-scheduler");
+    scheduler.setDaemon(true);
+    scheduler.start();
+    return () -> {
+      try {
+        scheduler.join();
+        inFlight.tryAcquire(config.concurrency, REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  // Sends one request and waits for it; intended is 0 for an unpaced client
+  private void sendNow(long intended) {
+    boolean read = ThreadLocalRandom.current().nextInt(100) < config.readPercent;
+    OperationStats stats = read ? reads : transfers;
+    long sent = System.nanoTime();
+    long scheduled = intended > 0 ? intended : sent;
+    long expectedInterval = intended > 0 ? 0 : read ? readIntervalNanos : transferIntervalNanos;
+    try {
+      int status = client.send(request(read), HttpResponse.BodyHandlers.discarding()).statusCode();
+      stats.record(status, scheduled, sent, System.nanoTime(), expectedInterval);
+    } catch (IOException e) {
+      stats.recordFailure(scheduled, sent, System.nanoTime(), expectedInterval, REQUEST_TIMEOUT.toNanos());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+
+  private HttpRequest request(boolean read) {
+    int from = picker.next();
+    if (read) {
+      return HttpRequest.newBuilder(URI.create(accountsUri + accountIds[from])).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+    String body = "{\"accountFromId\":\"" + accountIds[from] + "\",\"accountToId\":\""
+      + accountIds[picker.nextOther(from)] + "\",\"amount\":1}";
+    return HttpRequest.newBuilder(transferUri)
+      .timeout(REQUEST_TIMEOUT)
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build();
+  }
+
+  private Map<String, Object> report(double seconds) {
+    Histogram allCorrected = new Histogram(transfers.corrected());
+    allCorrected.add(reads.corrected());
+    Histogram allUncorrected = new Histogram(transfers.uncorrected());
+    allUncorrected.add(reads.uncorrected());
+
+    Map<String, Object> operations = new LinkedHashMap<>();
+    operations.put("all", summary(allCorrected, allUncorrected, null, transfers.succeeded() + reads.succeeded(),
+      transfers.failures() + reads.failures(), seconds));
+    for (OperationStats stats : List.of(transfers, reads)) {
+      operations.put(stats.name(), summary(stats.corrected(), stats.uncorrected(), stats.statuses(),
+        stats.succeeded(), stats.failures(), seconds));
+    }
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("startedAt", LocalDateTime.now().toString());
+    report.put("config", config.describe());
+    report.put("measuredSeconds", seconds);
+    report.put("operations", operations);
+    return report;
+  }
+
+  private static Map<String, Object> summary(Histogram corrected, Histogram uncorrected, Map<Integer, Long> statuses,
+    long succeeded, long failures, double seconds) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    // Uncorrected counts are the requests actually sent; corrected ones include back-filled samples
+    long requests = uncorrected.getTotalCount();
+    summary.put("requests", requests);
+    // Only successes count: a server answering errors quickly is not faster
+    summary.put("throughputPerSecond", Math.round(succeeded / seconds));
+    if (statuses != null) {
+      summary.put("statuses", statuses);
+    }
+    summary.put("failures", failures);
+    summary.put("errorRate", requests == 0 ? 0.0 : (double) (requests - succeeded) / requests);
+    summary.put("latencyMillis", percentiles(corrected));
+    summary.put("uncorrectedLatencyMillis", percentiles(uncorrected));
+    return summary;
+  }
+
+  private static Map<String, Double> percentiles(Histogram histogram) {
+    Map<String, Double> percentiles = new LinkedHashMap<>();
+    percentiles.put("mean", millis(histogram.getMean()));
+    for (double percentile : PERCENTILES) {
+      percentiles.put("p" + (percentile == Math.rint(percentile) ? Integer.toString((int) percentile)
+        : Double.toString(percentile)), millis(histogram.getValueAtPercentile(percentile)));
+    }
+    percentiles.put("max", millis(histogram.getMaxValue()));
+    return percentiles;
+  }
+
+  private static double millis(double nanos) {
+    return Math.round(nanos / 1_000) / 1_000.0;
+  }
+
+  // Returns true if, for any request type, throughput fell or p99 or the error rate rose beyond the tolerance
+  private boolean compareWithBaseline(Map<String, Object> report, JsonNode baseline) {
+    boolean regressed = false;
+    double tolerance = config.tolerancePercent / 100.0;
+    @SuppressWarnings("unchecked")
+    Map<String, Map<String, Object>> operations = (Map<String, Map<String, Object>>) report.get("operations");
+    for (Map.Entry<String, Map<String, Object>> operation : operations.entrySet()) {
+      JsonNode before = baseline.path("operations").path(operation.getKey());
+      if (before.isMissingNode() || before.path("requests").asLong() == 0) {
+        continue;
+      }
+      long throughput = (Long) operation.getValue().get("throughputPerSecond");
+      long throughputBefore = before.path("throughputPerSecond").asLong();
+      @SuppressWarnings("unchecked")
+      double p99 = ((Map<String, Double>) operation.getValue().get("latencyMillis")).get("p99");
+      double p99Before = before.path("latencyMillis").path("p99").asDouble();
+      double errorRate = (Double) operation.getValue().get("errorRate");
+      double errorRateBefore = before.path("errorRate").asDouble();
+      boolean slower = throughput < throughputBefore * (1 - tolerance);
+      boolean laggier = p99 > p99Before * (1 + tolerance);
+      boolean failing = errorRate > Math.max(errorRateBefore * (1 + tolerance), errorRateBefore + ERROR_RATE_FLOOR);
+      System.out.printf("%-8s throughput %d/s (baseline %d/s)%s, p99 %.3f ms (baseline %.3f ms)%s,"
+          + " errors %.2f%% (baseline %.2f%%)%s%n",
+        operation.getKey(), throughput, throughputBefore, slower ? " REGRESSED" : "", p99, p99Before,
+        laggier ? " REGRESSED" : "", errorRate * 100, errorRateBefore * 100, failing ? " REGRESSED" : "");
+      regressed |= slower || laggier || failing;
+    }
+    return regressed;
+  }
+}
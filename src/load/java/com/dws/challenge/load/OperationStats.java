@@ -0,0 +1,124 @@
+package com.dws.challenge.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and response statuses of one kind of request, recorded from many threads.
+ * <p>
+ * Two histograms are kept. The corrected one measures each request from when it should have been
+ * sent: the scheduled time when requests are paced, so a stall also counts against the requests
+ * queued behind it instead of hiding them, which is coordinated omission. Unpaced closed-loop
+ * clients have no schedule, so a stall is instead back-filled with the samples that would have been
+ * taken at the expected interval. The uncorrected one measures from the actual send, as most
+ * clients do; the gap between the two shows how much a stall would be understated.
+ * <p>
+ * A request that gets no response is recorded in both as taking at least the request timeout, so
+ * failing fast never makes the latencies look better. Only {@code 2xx} responses count as
+ * succeeded.
+ */
+final class OperationStats {
+
+  // One hour in nanoseconds, at three significant digits
+  private static final long HIGHEST_TRACKABLE = TimeUnit.HOURS.toNanos(1);
+
+  private final String name;
+  private final Recorder corrected = new Recorder(HIGHEST_TRACKABLE, 3);
+  private final Recorder uncorrected = new Recorder(HIGHEST_TRACKABLE, 3);
+  private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final LongAdder succeeded = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  private Histogram correctedTotal;
+  private Histogram uncorrectedTotal;
+
+  OperationStats(String name) {
+    this.name = name;
+  }
+
+  String name() {
+    return name;
+  }
+
+  /**
+   * Records a response to a request scheduled at {@code intendedNanos} and sent at
+   * {@code sentNanos}; unpaced requests pass their send time as the intended time together with the
+   * expected interval between requests of one client, or 0 for none.
+   */
+  void record(int status, long intendedNanos, long sentNanos, long completedNanos, long expectedIntervalNanos) {
+    recordLatency(intendedNanos, sentNanos, completedNanos, expectedIntervalNanos);
+    statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    if (status >= 200 && status < 300) {
+      succeeded.increment();
+    }
+  }
+
+  /**
+   * Records a request that got no response, such as a refused connection or a timeout, as taking
+   * at least {@code timeoutNanos}; the other arguments are as for {@link #record}.
+   */
+  void recordFailure(long intendedNanos, long sentNanos, long completedNanos, long expectedIntervalNanos,
+    long timeoutNanos) {
+    recordLatency(intendedNanos, sentNanos, Math.max(completedNanos, sentNanos + timeoutNanos),
+      expectedIntervalNanos);
+    failures.increment();
+  }
+
+  private void recordLatency(long intendedNanos, long sentNanos, long completedNanos, long expectedIntervalNanos) {
+    if (expectedIntervalNanos > 0) {
+      corrected.recordValueWithExpectedInterval(completedNanos - intendedNanos, expectedIntervalNanos);
+    } else {
+      corrected.recordValue(completedNanos - intendedNanos);
+    }
+    uncorrected.recordValue(completedNanos - sentNanos);
+  }
+
+  /**
+   * Drops everything recorded during the warmup and returns its mean uncorrected latency, the
+   * expected interval between requests of an unpaced client.
+   */
+  long endWarmup() {
+    corrected.getIntervalHistogram();
+    Histogram warmup = uncorrected.getIntervalHistogram();
+    statuses.clear();
+    succeeded.reset();
+    failures.reset();
+    return warmup.getTotalCount() == 0 ? 0 : (long) warmup.getMean();
+  }
+
+  /**
+   * Ends the measurement; anything recorded later is not reported.
+   */
+  void finish() {
+    correctedTotal = corrected.getIntervalHistogram();
+    uncorrectedTotal = uncorrected.getIntervalHistogram();
+  }
+
+  Histogram corrected() {
+    return correctedTotal;
+  }
+
+  Histogram uncorrected() {
+    return uncorrectedTotal;
+  }
+
+  Map<Integer, Long> statuses() {
+    Map<Integer, Long> counts = new TreeMap<>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return counts;
+  }
+
+  long succeeded() {
+    return succeeded.sum();
+  }
+
+  long failures() {
+    return failures.sum();
+  }
+}
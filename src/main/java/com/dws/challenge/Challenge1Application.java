@@ -1,7 +1,10 @@
 package com.dws.challenge;
 
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.NotificationService;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class Challenge1Application {
@@ -10,4 +13,9 @@ public class Challenge1Application {
 		SpringApplication.run(Challenge1Application.class, args);
 	}
 
+	@Bean
+	NotificationService notificationService() {
+		return new EmailNotificationService();
+	}
+
 }
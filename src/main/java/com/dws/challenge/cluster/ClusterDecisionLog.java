@@ -0,0 +1,116 @@
+package com.dws.challenge.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Commit decisions of the cross-node transfers this node coordinates, forced to disk before any
+ * participant can learn them, so a coordinator that restarts still answers commit for a transfer
+ * whose payee may already have been credited. Aborts are not logged: presumed abort gives the same
+ * answer for a transfer the log does not know. The file holds one line per event,
+ * {@code COMMIT <transferId> <payerNode> <payeeNode>} and {@code DONE <transferId>} once both
+ * participants have acknowledged, and is rewritten with only the open commits when it is opened.
+ */
+@Component
+public class ClusterDecisionLog {
+
+  private final Path file;
+  private FileChannel channel;
+
+  @Autowired
+  public ClusterDecisionLog(@Value("${cluster.decision-directory:data/cluster}") String directory,
+    @Value("${cluster.node-index:0}") int nodeIndex) {
+    this(Paths.get(directory).resolve("decisions-" + nodeIndex + ".log"));
+  }
+
+  public ClusterDecisionLog(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the log for appending and returns the commits not yet acknowledged by both participants,
+   * in the order they were decided, as {@code {payerNode, payeeNode}} by transfer ID.
+   */
+  public synchronized Map<String, int[]> open() throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Map<String, int[]> open = new LinkedHashMap<>();
+    if (Files.exists(file)) {
+      String content = Files.readString(file, StandardCharsets.UTF_8);
+      // A torn last line was never forced, so no participant learned what it records
+      for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\n")) {
+        String[] fields = line.split(" ");
+        if (fields.length == 4 && fields[0].equals("COMMIT")) {
+          open.put(fields[1], new int[] {Integer.parseInt(fields[2]), Integer.parseInt(fields[3])});
+        } else if (fields.length == 2 && fields[0].equals("DONE")) {
+          open.remove(fields[1]);
+        }
+      }
+    }
+    Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Map.Entry<String, int[]> commit : open.entrySet()) {
+        write(out, commitLine(commit.getKey(), commit.getValue()[0], commit.getValue()[1]));
+      }
+      out.force(true);
+    }
+    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    return open;
+  }
+
+  /**
+   * Records the decision to commit and returns once it is on disk.
+   */
+  public synchronized void commit(String transferId, int payerNode, int payeeNode) throws IOException {
+    if (channel == null) {
+      throw new IOException("Decision log " + file + " is not open");
+    }
+    write(channel, commitLine(transferId, payerNode, payeeNode));
+    channel.force(false);
+  }
+
+  /**
+   * Records that both participants have the outcome. Not forced: losing it only makes a restarted
+   * coordinator deliver the outcome again, which participants ignore.
+   */
+  public synchronized void done(String transferId) throws IOException {
+    if (channel == null) {
+      return;
+    }
+    write(channel, "DONE " + transferId + "\n");
+  }
+
+  @PreDestroy
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private static String commitLine(String transferId, int payerNode, int payeeNode) {
+    return "COMMIT " + transferId + " " + payerNode + " " + payeeNode + "\n";
+  }
+
+  private static void write(FileChannel channel, String line) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package com.dws.challenge.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Knows which node owns each account and talks to the other nodes. With {@code cluster.enabled}
+ * every node is started with the same {@code cluster.nodes} list of base URLs and its own position
+ * in it as {@code cluster.node-index}; accounts are assigned by {@link ConsistentHashRing}.
+ * Requests for another node's accounts are forwarded over HTTP with a {@value #FORWARDED} header,
+ * and the receiving node serves them locally, so a request is forwarded at most once. Every call to
+ * another node carries the shared {@code internal.secret}, which cluster mode requires, and a
+ * {@value #FORWARDED} header without it is ignored. Disabled, every account is local.
+ */
+@Slf4j
+@Component
+public class ClusterRouter {
+
+  public static final String FORWARDED = "X-Cluster-Forwarded";
+  public static final String SECRET = "X-Internal-Secret";
+
+  private final ObjectMapper objectMapper;
+  private final boolean enabled;
+  private final int nodeIndex;
+  private final List<URI> nodes;
+  private final ConsistentHashRing ring;
+  private final HttpClient client;
+  private final Duration requestTimeout;
+  private final String secret;
+  private final Counter forwardedCounter;
+  private final Counter unavailableCounter;
+
+  @Autowired
+  public ClusterRouter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+    @Value("${cluster.enabled:false}") boolean enabled,
+    @Value("${cluster.nodes:}") String nodes,
+    @Value("${cluster.node-index:0}") int nodeIndex,
+    @Value("${cluster.virtual-nodes:160}") int virtualNodes,
+    @Value("${cluster.request-timeout-ms:2000}") long requestTimeoutMillis,
+    @Value("${internal.secret:}") String secret) {
+    this.objectMapper = objectMapper;
+    this.enabled = enabled;
+    this.nodeIndex = nodeIndex;
+    this.nodes = new ArrayList<>();
+    for (String node : nodes.split(",")) {
+      if (!node.isBlank()) {
+        this.nodes.add(URI.create(node.strip()));
+      }
+    }
+    if (enabled && (nodeIndex < 0 || nodeIndex >= this.nodes.size())) {
+      throw new IllegalStateException("cluster.node-index " + nodeIndex + " is not a position in cluster.nodes");
+    }
+    if (enabled && secret.isBlank()) {
+      throw new IllegalStateException("Cluster mode requires internal.secret, shared by every node");
+    }
+    this.ring = enabled ? new ConsistentHashRing(this.nodes.size(), virtualNodes) : null;
+    this.client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofMillis(requestTimeoutMillis))
+      .build();
+    this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+    this.secret = secret;
+    this.forwardedCounter = meterRegistry.counter("cluster.requests.forwarded");
+    this.unavailableCounter = meterRegistry.counter("cluster.requests.unavailable");
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int nodeIndex() {
+    return nodeIndex;
+  }
+
+  public int nodeCount() {
+    return nodes.size();
+  }
+
+  public int ownerOf(String accountId) {
+    return enabled && accountId != null ? ring.ownerOf(accountId) : nodeIndex;
+  }
+
+  public boolean isLocal(String accountId) {
+    return ownerOf(accountId) == nodeIndex;
+  }
+
+  /**
+   * Whether a request was forwarded by another node, and so must be served here: it names the
+   * sender in {@value #FORWARDED} and carries the shared secret in {@value #SECRET}. A client that
+   * sends the first header alone is routed like any other request.
+   */
+  public boolean isForwarded(String forwardedBy, String presentedSecret) {
+    // Compared in constant time so the secret cannot be guessed byte by byte
+    return enabled && forwardedBy != null && presentedSecret != null
+      && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+        presentedSecret.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Sends a client request on to {@code node} with the given request {@code headers} and hands back
+   * its response: status, body and the headers clients rely on. A node that cannot be connected to
+   * gives {@code 503 Service Unavailable}, since the request never reached it; one that took the
+   * request but did not answer gives {@code 504 Gateway Timeout}, since it may have acted on it.
+   */
+  public CompletableFuture<ResponseEntity<Object>> forward(int node, String method, String pathAndQuery,
+    Object body, Map<String, String> headers) {
+    HttpRequest.BodyPublisher publisher;
+    try {
+      publisher = body == null ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    } catch (JsonProcessingException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    HttpRequest.Builder request = request(node, pathAndQuery).method(method, publisher);
+    if (body != null) {
+      request.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+    }
+    headers.forEach(request::header);
+    forwardedCounter.increment();
+    return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+      .handle((response, failure) -> {
+        if (failure != null) {
+          unavailableCounter.increment();
+          Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+            ? failure.getCause() : failure;
+          log.warn("Node {} is unavailable: {}", node, cause.toString());
+          if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+            return new ResponseEntity<>("Node " + node + " is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+          }
+          return new ResponseEntity<>("Node " + node + " did not answer; the outcome is unknown",
+            HttpStatus.GATEWAY_TIMEOUT);
+        }
+        HttpHeaders responseHeaders = new HttpHeaders();
+        for (String name : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER)) {
+          response.headers().firstValue(name).ifPresent(value -> responseHeaders.set(name, value));
+        }
+        byte[] responseBody = response.body();
+        return new ResponseEntity<>(responseBody.length == 0 ? null : responseBody, responseHeaders,
+          HttpStatus.valueOf(response.statusCode()));
+      });
+  }
+
+  /**
+   * Posts to another node's internal endpoint; completes with the plain-text response body, or
+   * exceptionally if the node cannot be reached or answers with an error status.
+   */
+  CompletableFuture<String> post(int node, String pathAndQuery) {
+    return send(request(node, pathAndQuery).POST(HttpRequest.BodyPublishers.noBody()).build(), node);
+  }
+
+  CompletableFuture<String> get(int node, String pathAndQuery) {
+    return send(request(node, pathAndQuery).GET().build(), node);
+  }
+
+  private CompletableFuture<String> send(HttpRequest request, int node) {
+    return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+      .thenApply(response -> {
+        if (response.statusCode() != HttpStatus.OK.value()) {
+          throw new IllegalStateException("Node " + node + " answered " + request.uri().getPath()
+            + " with status " + response.statusCode());
+        }
+        return response.body();
+      })
+      .whenComplete((ignored, failure) -> {
+        if (failure != null) {
+          unavailableCounter.increment();
+        }
+      });
+  }
+
+  private HttpRequest.Builder request(int node, String pathAndQuery) {
+    return HttpRequest.newBuilder(nodes.get(node).resolve(pathAndQuery))
+      .timeout(requestTimeout)
+      .header(FORWARDED, Integer.toString(nodeIndex))
+      .header(SECRET, secret);
+  }
+}
@@ -0,0 +1,459 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.model.TransferStatus;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferNotificationOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers between accounts owned by different cluster nodes, by two-phase commit. The node that
+ * receives the transfer coordinates it: it asks the payer's owner to reserve the amount, taking it
+ * out of the balance, and the payee's owner to prepare a credit, which is held back. Only when both
+ * have prepared does it record the decision to commit; then the credit is applied and the
+ * reservation kept. Otherwise the reservation is returned. Money is therefore never credited
+ * without having been debited, and a debit is undone unless its credit is certain.
+ * <p>
+ * A participant that has prepared but heard nothing for {@code cluster.prepare-timeout-ms}, because
+ * the coordinator failed or a message was lost, asks the coordinator for the decision. A
+ * coordinator that has not decided yet answers abort and remembers it, so it can no longer commit
+ * (presumed abort). A commit decision is therefore kept until every participant has acknowledged
+ * it, and redelivered until they have; it is forced to the {@link ClusterDecisionLog} before anyone
+ * can learn it, so a coordinator that restarts keeps answering commit. Only abort decisions, which
+ * presumed abort would repeat anyway, are forgotten unacknowledged after a while. Prepared
+ * transfers are held in memory and cross-partition transfers are not journaled, so cluster mode
+ * requires the locking engine without the journal.
+ */
+@Slf4j
+@Component
+public class ClusterTransfers {
+
+  private static final String PATH = "/internal/cluster/transfers/";
+  // How long an unacknowledged abort is remembered; forgetting it changes no answer, only the log
+  private static final long ABORT_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  private final ClusterRouter router;
+  private final AccountsRepository accountsRepository;
+  private final TransferEngine transferEngine;
+  private final TransferJournal journal;
+  private final TransferLedger ledger;
+  private final TransferNotificationOutbox notificationOutbox;
+  private final NotificationService notificationService;
+  private final TransferMetrics metrics;
+  private final ClusterDecisionLog decisionLog;
+  private final long prepareTimeoutMillis;
+
+  private final ConcurrentHashMap<String, Prepared> prepared = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Decided> decisions = new ConcurrentHashMap<>();
+  // Seeded from the clock so IDs are not reused after a restart
+  private final AtomicLong transferIds = new AtomicLong(System.currentTimeMillis() << 20);
+
+  private final Counter committedCounter;
+  private final Counter abortedCounter;
+
+  private ScheduledExecutorService resolver;
+
+  @Autowired
+  public ClusterTransfers(ClusterRouter router, AccountsRepository accountsRepository, TransferEngine transferEngine,
+    TransferJournal journal, TransferLedger ledger, TransferNotificationOutbox notificationOutbox,
+    NotificationService notificationService, TransferMetrics metrics, ClusterDecisionLog decisionLog,
+    MeterRegistry meterRegistry, @Value("${cluster.prepare-timeout-ms:5000}") long prepareTimeoutMillis) {
+    this.router = router;
+    this.accountsRepository = accountsRepository;
+    this.transferEngine = transferEngine;
+    this.journal = journal;
+    this.ledger = ledger;
+    this.notificationOutbox = notificationOutbox;
+    this.notificationService = notificationService;
+    this.metrics = metrics;
+    this.decisionLog = decisionLog;
+    this.prepareTimeoutMillis = prepareTimeoutMillis;
+
+    Gauge.builder("cluster.transfers.prepared", prepared, Map::size)
+      .description("Cross-partition transfers prepared on this node and waiting for a decision")
+      .register(meterRegistry);
+    this.committedCounter = Counter.builder("cluster.transfers")
+      .description("Cross-partition transfers coordinated by this node")
+      .tag("result", "committed")
+      .register(meterRegistry);
+    this.abortedCounter = Counter.builder("cluster.transfers")
+      .description("Cross-partition transfers coordinated by this node")
+      .tag("result", "aborted")
+      .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    if (!router.isEnabled()) {
+      return;
+    }
+    if (!(transferEngine instanceof LockingTransferEngine)) {
+      throw new IllegalStateException("Cluster mode requires the locking transfer engine");
+    }
+    if (journal.isEnabled()) {
+      throw new IllegalStateException("Cluster mode does not support the transfer journal");
+    }
+    // Commits decided before a restart are delivered again on the resolver's first run
+    decisionLog.open().forEach((transferId, nodes) -> {
+      Decided decided = new Decided(Decision.COMMITTED, System.currentTimeMillis());
+      decided.pending.add(nodes[0]);
+      decided.pending.add(nodes[1]);
+      decisions.put(transferId, decided);
+    });
+    resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "cluster-transfer-resolver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    resolver.scheduleWithFixedDelay(this::resolve, prepareTimeoutMillis, prepareTimeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (resolver != null) {
+      resolver.shutdownNow();
+    }
+  }
+
+  /**
+   * Coordinates a transfer between accounts on two different nodes. Fails with the same exceptions
+   * as a local transfer, or {@link RejectedExecutionException} if a node could not be reached and
+   * nothing was transferred.
+   */
+  public CompletableFuture<Void> transfer(String accountFromId, String accountToId, double amount) {
+    long started = metrics.start();
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    if (amount < 0) {
+      result.completeExceptionally(new IllegalArgumentException("Transfer amount must be positive"));
+    } else {
+      String transferId = router.nodeIndex() + "-" + transferIds.incrementAndGet();
+      BigDecimal value = BigDecimal.valueOf(amount);
+      int fromNode = router.ownerOf(accountFromId);
+      int toNode = router.ownerOf(accountToId);
+      prepare(fromNode, transferId, accountFromId, accountToId, value.negate()).whenComplete((debit, debitFailure) -> {
+        if (debit == TransferStatus.COMPLETED) {
+          prepareCredit(transferId, fromNode, toNode, accountToId, accountFromId, value, result);
+        } else if (debit != null) {
+          // Nothing was reserved
+          decisions.remove(transferId);
+          abortedCounter.increment();
+          result.completeExceptionally(failure(debit, accountFromId));
+        } else {
+          // The reservation may have been made before the connection failed
+          finish(transferId, decide(transferId, Decision.ABORTED), fromNode, -1);
+          result.completeExceptionally(unavailable(fromNode, debitFailure));
+        }
+      });
+    }
+    result.whenComplete((ignored, failure) -> {
+      if (failure == null) {
+        metrics.recordCompleted(started);
+      } else {
+        metrics.recordFailure(started, failure);
+      }
+    });
+    return result;
+  }
+
+  private void prepareCredit(String transferId, int fromNode, int toNode, String accountToId, String accountFromId,
+    BigDecimal value, CompletableFuture<Void> result) {
+    prepare(toNode, transferId, accountToId, accountFromId, value).whenComplete((credit, creditFailure) -> {
+      Decision decision = credit == TransferStatus.COMPLETED ? decide(transferId, Decision.COMMITTED, fromNode, toNode)
+        : decide(transferId, Decision.ABORTED);
+      // The transfer is done once decided; participants that miss the outcome ask for it later
+      finish(transferId, decision, fromNode, credit == null || credit == TransferStatus.COMPLETED ? toNode : -1);
+      if (decision == Decision.COMMITTED) {
+        result.complete(null);
+      } else if (credit == null) {
+        result.completeExceptionally(unavailable(toNode, creditFailure));
+      } else if (credit != TransferStatus.COMPLETED) {
+        result.completeExceptionally(failure(credit, accountToId));
+      } else {
+        result.completeExceptionally(new RejectedExecutionException("Transfer " + transferId
+          + " timed out and was rolled back"));
+      }
+    });
+  }
+
+  Decision decide(String transferId, Decision decision) {
+    return decide(transferId, decision, -1, -1);
+  }
+
+  /**
+   * Records the coordinator's decision unless one was recorded first, and returns the one that
+   * stands. An abort recorded on a participant's inquiry wins over a later commit. A commit is
+   * logged inside the mapping function, so no inquiry sees it before it is durable; if it cannot be
+   * logged the transfer is aborted instead.
+   */
+  Decision decide(String transferId, Decision decision, int payerNode, int payeeNode) {
+    boolean[] recorded = new boolean[1];
+    Decided outcome;
+    try {
+      outcome = decisions.computeIfAbsent(transferId, id -> {
+        if (decision == Decision.COMMITTED) {
+          try {
+            decisionLog.commit(id, payerNode, payeeNode);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        recorded[0] = true;
+        return new Decided(decision, System.currentTimeMillis());
+      });
+    } catch (UncheckedIOException e) {
+      log.error("Commit of transfer {} could not be logged, aborting it: {}", transferId, e.getCause().toString());
+      return decide(transferId, Decision.ABORTED);
+    }
+    if (recorded[0]) {
+      (decision == Decision.COMMITTED ? committedCounter : abortedCounter).increment();
+    }
+    return outcome.decision;
+  }
+
+  // Sends the outcome to the participants that may hold the transfer; the decision is kept until
+  // all have it
+  private void finish(String transferId, Decision decision, int fromNode, int toNode) {
+    Decided decided = decisions.get(transferId);
+    if (decided == null) {
+      return;
+    }
+    decided.pending.add(fromNode);
+    if (toNode >= 0) {
+      decided.pending.add(toNode);
+    }
+    deliver(transferId, decided);
+  }
+
+  // A participant acknowledges by answering the outcome, which it applies before answering
+  private void deliver(String transferId, Decided decided) {
+    decided.deliveredAt = System.currentTimeMillis();
+    for (Integer node : decided.pending) {
+      outcome(node, transferId, decided.decision).whenComplete((ignored, failure) -> {
+        if (failure != null) {
+          log.warn("Outcome of transfer {} not delivered to node {}, will retry: {}", transferId, node,
+            failure.toString());
+          return;
+        }
+        decided.pending.remove(node);
+        if (decided.pending.isEmpty() && decisions.remove(transferId, decided)
+          && decided.decision == Decision.COMMITTED) {
+          try {
+            decisionLog.done(transferId);
+          } catch (IOException e) {
+            log.warn("Could not log that transfer {} is done: {}", transferId, e.toString());
+          }
+        }
+      });
+    }
+  }
+
+  private CompletableFuture<TransferStatus> prepare(int node, String transferId, String accountId,
+    String counterpartyId, BigDecimal amount) {
+    if (node == router.nodeIndex()) {
+      try {
+        return CompletableFuture.completedFuture(prepare(transferId, accountId, counterpartyId, amount));
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    return router.post(node, PATH + transferId + "/prepare?accountId=" + encode(accountId)
+        + "&counterpartyId=" + encode(counterpartyId) + "&amount=" + amount.toPlainString())
+      .thenApply(status -> TransferStatus.valueOf(status.strip()));
+  }
+
+  private CompletableFuture<Void> outcome(int node, String transferId, Decision decision) {
+    if (node == router.nodeIndex()) {
+      try {
+        complete(transferId, decision);
+        return CompletableFuture.completedFuture(null);
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    String action = decision == Decision.COMMITTED ? "/commit" : "/abort";
+    return router.post(node, PATH + transferId + action).thenApply(ignored -> null);
+  }
+
+  /**
+   * Participant side of phase one: a negative amount reserves a debit by withdrawing it, a positive
+   * one checks the account and holds the credit back until commit. A repeated prepare of a transfer
+   * this node still holds succeeds without reserving again.
+   */
+  public TransferStatus prepare(String transferId, String accountId, String counterpartyId, BigDecimal amount) {
+    if (accountsRepository.getAccount(accountId) == null) {
+      return TransferStatus.ACCOUNT_NOT_FOUND;
+    }
+    TransferStatus[] status = {TransferStatus.COMPLETED};
+    // The reservation is made inside the mapping function, so concurrent duplicates make it once
+    prepared.computeIfAbsent(transferId, id -> {
+      if (amount.signum() < 0) {
+        try {
+          ((LockingTransferEngine) transferEngine).withdraw(accountId, amount.negate());
+        } catch (InsufficientFundsException e) {
+          status[0] = TransferStatus.INSUFFICIENT_FUNDS;
+          return null;
+        }
+      }
+      return new Prepared(accountId, counterpartyId, amount, System.currentTimeMillis());
+    });
+    return status[0];
+  }
+
+  /**
+   * Participant side of phase two. Outcomes for transfers this node no longer holds are ignored,
+   * so a repeated outcome does nothing.
+   */
+  public void complete(String transferId, Decision decision) {
+    Prepared transfer = prepared.remove(transferId);
+    if (transfer == null) {
+      return;
+    }
+    LockingTransferEngine engine = (LockingTransferEngine) transferEngine;
+    if (decision == Decision.ABORTED) {
+      if (transfer.amount.signum() < 0) {
+        engine.deposit(transfer.accountId, transfer.amount.negate());
+      }
+      return;
+    }
+    if (transfer.amount.signum() > 0) {
+      engine.deposit(transfer.accountId, transfer.amount);
+    }
+    ledger.recordSide(transfer.accountId, transfer.counterpartyId, transfer.amount.doubleValue());
+    Account account = accountsRepository.getAccount(transfer.accountId);
+    notificationOutbox.enqueue(notificationService, engine.readBalance(account), transfer.amount.abs().toString());
+  }
+
+  /**
+   * The node that started {@code transferId}, or -1 if the ID was not made by a node in
+   * {@code cluster.nodes}.
+   */
+  public int coordinatorOf(String transferId) {
+    int dash = transferId.indexOf('-');
+    if (dash <= 0) {
+      return -1;
+    }
+    try {
+      int node = Integer.parseInt(transferId.substring(0, dash));
+      Long.parseLong(transferId.substring(dash + 1));
+      return node < router.nodeCount() ? node : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Coordinator side of an inquiry from a participant that timed out waiting.
+   */
+  public Decision decision(String transferId) {
+    return decide(transferId, Decision.ABORTED);
+  }
+
+  // Asks coordinators about transfers prepared here for longer than the timeout
+  void resolve() {
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, Decided> entry : decisions.entrySet()) {
+      Decided decided = entry.getValue();
+      if (decided.decision == Decision.ABORTED && now - decided.decidedAt > ABORT_RETENTION_MILLIS) {
+        decisions.remove(entry.getKey(), decided);
+      } else if (!decided.pending.isEmpty() && now - decided.deliveredAt >= prepareTimeoutMillis) {
+        deliver(entry.getKey(), decided);
+      }
+    }
+    for (Map.Entry<String, Prepared> entry : prepared.entrySet()) {
+      if (now - entry.getValue().preparedAt < prepareTimeoutMillis) {
+        continue;
+      }
+      String transferId = entry.getKey();
+      int coordinator = coordinatorOf(transferId);
+      if (coordinator == router.nodeIndex()) {
+        complete(transferId, decision(transferId));
+        continue;
+      }
+      router.get(coordinator, PATH + transferId + "/decision").whenComplete((decision, failure) -> {
+        if (failure != null) {
+          log.warn("Transfer {} is in doubt, coordinator {} is unavailable", transferId, coordinator);
+        } else {
+          complete(transferId, Decision.valueOf(decision.strip()));
+        }
+      });
+    }
+  }
+
+  private static RuntimeException failure(TransferStatus status, String accountId) {
+    if (status == TransferStatus.INSUFFICIENT_FUNDS) {
+      return new InsufficientFundsException("Insufficient funds for transfer");
+    }
+    if (status == TransferStatus.INVALID_AMOUNT) {
+      return new IllegalArgumentException("Transfer amount must be positive");
+    }
+    return new IllegalStateException("Account " + accountId + " does not exist");
+  }
+
+  private static RejectedExecutionException unavailable(int node, Throwable failure) {
+    return new RejectedExecutionException("Node " + node + " is unavailable, nothing was transferred", failure);
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  public enum Decision { COMMITTED, ABORTED }
+
+  private static final class Prepared {
+    private final String accountId;
+    private final String counterpartyId;
+    // Negative for a reserved debit, positive for a held-back credit
+    private final BigDecimal amount;
+    private final long preparedAt;
+
+    private Prepared(String accountId, String counterpartyId, BigDecimal amount, long preparedAt) {
+      this.accountId = accountId;
+      this.counterpartyId = counterpartyId;
+      this.amount = amount;
+      this.preparedAt = preparedAt;
+    }
+  }
+
+  private static final class Decided {
+    private final Decision decision;
+    private final long decidedAt;
+    // Participants that have not acknowledged the outcome yet
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private volatile long deliveredAt;
+
+    private Decided(Decision decision, long decidedAt) {
+      this.decision = decision;
+      this.decidedAt = decidedAt;
+    }
+  }
+}
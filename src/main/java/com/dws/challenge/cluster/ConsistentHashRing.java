@@ -0,0 +1,69 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns account IDs to nodes {@code 0..nodes-1} by consistent hashing. Each node owns
+ * {@code virtualNodes} points on a 64-bit ring, and an account belongs to the first point at or
+ * after its own hash, so the accounts spread evenly and growing the cluster by one node moves only
+ * the accounts the new node takes over. Nodes are identified by index, so every node configured
+ * with the same node count computes the same owners. Immutable and thread-safe.
+ */
+public final class ConsistentHashRing {
+
+  private final int nodes;
+  private final long[] points;
+  private final int[] owners;
+
+  public ConsistentHashRing(int nodes, int virtualNodes) {
+    if (nodes < 1 || virtualNodes < 1) {
+      throw new IllegalArgumentException("A ring needs at least one node and one virtual node per node");
+    }
+    this.nodes = nodes;
+    long[] hashes = new long[nodes * virtualNodes];
+    for (int node = 0; node < nodes; node++) {
+      for (int virtualNode = 0; virtualNode < virtualNodes; virtualNode++) {
+        hashes[node * virtualNodes + virtualNode] = hash("node-" + node + "#" + virtualNode);
+      }
+    }
+    int[] order = IntStream.range(0, hashes.length).boxed()
+      .sorted(Comparator.comparingLong(index -> hashes[index]))
+      .mapToInt(Integer::intValue)
+      .toArray();
+    this.points = new long[order.length];
+    this.owners = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      points[i] = hashes[order[i]];
+      owners[i] = order[i] / virtualNodes;
+    }
+  }
+
+  public int nodes() {
+    return nodes;
+  }
+
+  public int ownerOf(String accountId) {
+    int index = Arrays.binarySearch(points, hash(accountId));
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return owners[index == points.length ? 0 : index];
+  }
+
+  // FNV-1a over the UTF-8 bytes, then a finalizer so similar IDs such as Id-1 and Id-2 land far apart
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -2,23 +2,44 @@ package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.jetbrains.annotations.NotNull;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import java.math.BigDecimal;
 
+/**
+ * Mutable account, changed only under its stripe lock. The balance is an immutable value behind a
+ * volatile field, so {@link #readBalance()} takes a consistent copy without any lock; a version
+ * counter that every balance change moves forward once gives that copy its entity tag.
+ */
 @Data
 public class Account {
 
+  /**
+   * Longest account ID accepted, in characters; the width of the database column.
+   */
+  public static final int MAX_ID_LENGTH = 255;
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
   @NotNull
   @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile BigDecimal balance;
+
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private volatile long version;
 
   public Account(String accountId) {
     this.accountId = accountId;
@@ -33,17 +54,31 @@ public class Account {
   }
   public void withdraw(@NotNull BigDecimal amount) {
     if (balance.compareTo(amount)>=0) {
-      balance =balance.subtract(amount);
+      setBalance(balance.subtract(amount));
     } else {
       throw new IllegalArgumentException("Insufficient funds");
     }
   }
 
   public void deposit(BigDecimal amount) {
-    balance = balance.add(amount);
+    setBalance(balance.add(amount));
   }
 
   public BigDecimal getBalance() {
     return balance;
   }
+
+  public void setBalance(BigDecimal balance) {
+    this.balance = balance;
+    version++;
+  }
+
+  /**
+   * Lock-free read that never blocks the writer. The version is read before the balance it is
+   * bumped after, so the copy's balance is never older than its version.
+   */
+  public AccountBalance readBalance() {
+    long current = version;
+    return new AccountBalance(accountId, balance, current);
+  }
 }
@@ -0,0 +1,43 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable copy of an account's balance as of one version, safe to serialize while transfers
+ * keep changing the account.
+ */
+public final class AccountBalance {
+  private final String accountId;
+  private final BigDecimal balance;
+  private final long version;
+
+  public AccountBalance(String accountId, BigDecimal balance, long version) {
+    this.accountId = accountId;
+    this.balance = balance;
+    this.version = version;
+  }
+
+  public String getAccountId() {
+    return accountId;
+  }
+
+  public BigDecimal getBalance() {
+    return balance;
+  }
+
+  @JsonIgnore
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Entity tag for the serialized balance. The balance is part of it because detached account
+   * views, such as the off-heap repository's, are rebuilt on every read and always carry version 0.
+   */
+  @JsonIgnore
+  public String getETag() {
+    return "\"" + version + "-" + (balance == null ? "none" : balance.toPlainString()) + "\"";
+  }
+}
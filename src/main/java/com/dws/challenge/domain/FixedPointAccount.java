@@ -0,0 +1,152 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Account whose balance is a {@code long} count of minor units (e.g. cents at scale 2), updated
+ * with compare-and-set so debits and credits need neither a lock nor an allocation. The balance
+ * never goes below zero through {@link #tryDebit(long)}.
+ */
+public class FixedPointAccount extends Account {
+
+  private static final VarHandle MINOR_UNITS;
+
+  static {
+    try {
+      MINOR_UNITS = MethodHandles.lookup().findVarHandle(FixedPointAccount.class, "minorUnits", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final int scale;
+
+  private volatile long minorUnits;
+
+  public FixedPointAccount(String accountId, BigDecimal balance, int scale) {
+    super(accountId);
+    this.scale = scale;
+    this.minorUnits = toMinorUnits(balance, scale);
+  }
+
+  public static long toMinorUnits(BigDecimal amount, int scale) {
+    if (amount == null) {
+      return 0;
+    }
+    try {
+      return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Amount " + amount + " cannot be represented with scale " + scale);
+    }
+  }
+
+  /**
+   * Whether {@code amount} has at most {@code scale} decimal places, not counting trailing zeros.
+   */
+  public static boolean fitsScale(BigDecimal amount, int scale) {
+    return amount == null || amount.stripTrailingZeros().scale() <= scale;
+  }
+
+  /**
+   * Converts a {@code double} amount without going through {@link BigDecimal}. Amounts with more
+   * decimal places than {@code scale} are rejected rather than rounded.
+   */
+  public static long toMinorUnits(double amount, int scale) {
+    double scaled = amount * POWERS_OF_TEN[scale];
+    long minorUnits = Math.round(scaled);
+    if (Math.abs(scaled - minorUnits) > 1e-6) {
+      throw new IllegalArgumentException("Amount " + amount + " has more than " + scale + " decimal places");
+    }
+    return minorUnits;
+  }
+
+  @JsonIgnore
+  public long getMinorUnits() {
+    return minorUnits;
+  }
+
+  @JsonIgnore
+  public int getScale() {
+    return scale;
+  }
+
+  public boolean tryDebit(long amount) {
+    long current;
+    do {
+      current = minorUnits;
+      if (current < amount) {
+        return false;
+      }
+    } while (!MINOR_UNITS.compareAndSet(this, current, current - amount));
+    return true;
+  }
+
+  public void credit(long amount) {
+    MINOR_UNITS.getAndAdd(this, amount);
+  }
+
+  /**
+   * {@link #tryDebit(long)} for an account that only the calling thread ever changes: a plain
+   * read and a release store, with no compare-and-set.
+   */
+  public boolean tryDebitExclusive(long amount) {
+    long current = minorUnits;
+    if (current < amount) {
+      return false;
+    }
+    MINOR_UNITS.setRelease(this, current - amount);
+    return true;
+  }
+
+  /**
+   * {@link #credit(long)} for an account that only the calling thread ever changes.
+   */
+  public void creditExclusive(long amount) {
+    MINOR_UNITS.setRelease(this, minorUnits + amount);
+  }
+
+  @Override
+  public BigDecimal getBalance() {
+    return BigDecimal.valueOf(minorUnits, scale);
+  }
+
+  /**
+   * The balance is a single word read atomically, so no version is kept; the copy carries version 0
+   * and its entity tag changes with the balance alone.
+   */
+  @Override
+  public AccountBalance readBalance() {
+    return new AccountBalance(getAccountId(), BigDecimal.valueOf(minorUnits, scale), 0);
+  }
+
+  @Override
+  public void setBalance(BigDecimal balance) {
+    minorUnits = toMinorUnits(balance, scale);
+  }
+
+  @Override
+  public void withdraw(BigDecimal amount) {
+    if (!tryDebit(toMinorUnits(amount, scale))) {
+      throw new IllegalArgumentException("Insufficient funds");
+    }
+  }
+
+  @Override
+  public void deposit(BigDecimal amount) {
+    credit(toMinorUnits(amount, scale));
+  }
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.journal;
+
+import java.math.BigDecimal;
+
+public interface JournalRecordHandler {
+
+  void onCreate(long sequence, String accountId, BigDecimal balance);
+
+  void onTransfer(long sequence, String accountFromId, String accountToId, BigDecimal amount);
+}
@@ -0,0 +1,453 @@
+package com.dws.challenge.journal;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal on fixed-size memory-mapped segment files. Each record is
+ * {@code [int length][int crc32c][long sequence][byte type][payload]}, where length and CRC cover
+ * everything after the CRC. A zero length marks the end of a segment; a record whose CRC does not
+ * match at the end of the last segment is a torn write from a crash and is discarded on open.
+ *
+ * <p>Durability modes: {@code fsync} forces the segment for every operation, {@code group} lets
+ * a flusher thread force once per commit window for all operations waiting in it, and
+ * {@code async} flushes on that window without making callers wait.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+public class MappedTransferJournal implements TransferJournal {
+
+  public enum Mode { FSYNC, GROUP, ASYNC }
+
+  static final byte CREATE = 1;
+  static final byte TRANSFER = 2;
+
+  private static final int FRAME_BYTES = 8;
+  private static final int MAX_RECORD_BYTES = 64 * 1024;
+  // Two IDs and an amount always fit a record
+  private static final int MAX_STRING_BYTES = 16 * 1024;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final Mode mode;
+  private final long commitWindowNanos;
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_BYTES);
+  private final CRC32C crc = new CRC32C();
+  private long lastSequence;
+  private int segmentIndex;
+  private FileChannel channel;
+  private volatile MappedByteBuffer segment;
+
+  // ReentrantLock rather than monitors so waiting callers never pin a virtual thread's carrier
+  private final ReentrantLock durableLock = new ReentrantLock();
+  private final Condition durableAdvanced = durableLock.newCondition();
+  private final Condition flushRequested = durableLock.newCondition();
+  private volatile long writtenSequence;
+  private volatile long durableSequence;
+
+  private volatile boolean running = true;
+  private final Thread flusher;
+
+  @Autowired
+  public MappedTransferJournal(@Value("${journal.directory:data/journal}") String directory,
+    @Value("${journal.segment-size-mb:64}") int segmentSizeMb,
+    @Value("${journal.mode:group}") String mode,
+    @Value("${journal.group-commit-window-micros:200}") long commitWindowMicros) {
+    this(Paths.get(directory), segmentSizeMb << 20, Mode.valueOf(mode.toUpperCase(Locale.ROOT)),
+      TimeUnit.MICROSECONDS.toNanos(commitWindowMicros));
+  }
+
+  public MappedTransferJournal(Path directory, int segmentSize, Mode mode, long commitWindowNanos) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.mode = mode;
+    this.commitWindowNanos = commitWindowNanos;
+    try {
+      Files.createDirectories(directory);
+      openTail();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open journal in " + directory, e);
+    }
+    this.writtenSequence = lastSequence;
+    this.durableSequence = lastSequence;
+    this.flusher = new Thread(this::flushLoop, "journal-flusher");
+    this.flusher.setDaemon(true);
+    if (mode != Mode.FSYNC) {
+      this.flusher.start();
+    }
+  }
+
+  @Override
+  public long appendCreate(String accountId, BigDecimal balance) {
+    BigDecimal value = balance == null ? BigDecimal.ZERO : balance;
+    appendLock.lock();
+    try {
+      startRecord(CREATE);
+      putString(accountId);
+      putDecimal(value);
+      return finishRecord();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public long appendTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    appendLock.lock();
+    try {
+      startRecord(TRANSFER);
+      putString(accountFromId);
+      putString(accountToId);
+      putDecimal(amount);
+      return finishRecord();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public void awaitDurable(long sequence) {
+    switch (mode) {
+      case FSYNC -> {
+        durableLock.lock();
+        try {
+          flush();
+        } finally {
+          durableLock.unlock();
+        }
+      }
+      case GROUP -> {
+        durableLock.lock();
+        try {
+          while (durableSequence < sequence) {
+            flushRequested.signal();
+            durableAdvanced.awaitUninterruptibly();
+          }
+        } finally {
+          durableLock.unlock();
+        }
+      }
+      case ASYNC -> {
+        // Flushed by the background flusher within one commit window
+      }
+    }
+  }
+
+  @Override
+  public void replay(JournalRecordHandler handler) {
+    try {
+      for (Path path : segmentFiles()) {
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+          ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+          scan(buffer, handler);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot replay journal in " + directory, e);
+    }
+  }
+
+  @Override
+  public long lastSequence() {
+    return writtenSequence;
+  }
+
+  /**
+   * Deletes whole segments that precede the active one. The newest segment holding records is
+   * always kept, so sequence numbers carry on from it after a restart.
+   */
+  @Override
+  public void discardThrough(long sequence) {
+    int activeIndex;
+    appendLock.lock();
+    try {
+      activeIndex = segmentIndex;
+    } finally {
+      appendLock.unlock();
+    }
+    try {
+      List<Path> segments = segmentFiles();
+      for (int i = 0; i + 1 < segments.size() && segmentIndexOf(segments.get(i)) < activeIndex; i++) {
+        long nextFirstSequence = firstSequence(segments.get(i + 1));
+        if (nextFirstSequence == 0 || nextFirstSequence - 1 > sequence) {
+          break;
+        }
+        Files.delete(segments.get(i));
+        log.info("Discarded journal segment {} covered by sequence {}", segments.get(i).getFileName(), sequence);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot discard journal segments in " + directory, e);
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  public long getDurableSequence() {
+    return durableSequence;
+  }
+
+  public long getWrittenSequence() {
+    return writtenSequence;
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (flusher.isAlive()) {
+      flusher.interrupt();
+      flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    appendLock.lock();
+    try {
+      segment.force();
+      channel.close();
+    } catch (IOException e) {
+      log.warn("Error closing journal: {}", e.getMessage());
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private void startRecord(byte type) {
+    record.clear();
+    record.putLong(lastSequence + 1);
+    record.put(type);
+  }
+
+  private void putString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException("Account ID of " + bytes.length + " bytes is too long for the journal");
+    }
+    record.putShort((short) bytes.length);
+    record.put(bytes);
+  }
+
+  // Scale and unscaled value, so amounts replay exactly as they were applied
+  private void putDecimal(BigDecimal value) {
+    record.putInt(value.scale());
+    byte[] unscaled = value.unscaledValue().toByteArray();
+    record.putShort((short) unscaled.length);
+    record.put(unscaled);
+  }
+
+  private long finishRecord() {
+    record.flip();
+    int length = record.remaining();
+    crc.reset();
+    crc.update(record.array(), 0, length);
+    if (segment.remaining() < FRAME_BYTES + length + 4) {
+      roll();
+    }
+    int position = segment.position();
+    segment.putInt(position + 4, (int) crc.getValue());
+    segment.put(position + FRAME_BYTES, record.array(), 0, length);
+    // Length goes last so a reader never sees a frame whose body is still being written
+    segment.putInt(position, length);
+    segment.position(position + FRAME_BYTES + length);
+    lastSequence++;
+    writtenSequence = lastSequence;
+    return lastSequence;
+  }
+
+  private void roll() {
+    try {
+      segment.force();
+      channel.close();
+      openSegment(segmentIndex + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot roll journal segment", e);
+    }
+  }
+
+  // Callers hold durableLock
+  private void flush() {
+    long target = writtenSequence;
+    if (target == durableSequence && mode != Mode.FSYNC) {
+      return;
+    }
+    segment.force();
+    if (target > durableSequence) {
+      durableSequence = target;
+    }
+    durableAdvanced.signalAll();
+  }
+
+  private void flushLoop() {
+    while (running) {
+      durableLock.lock();
+      try {
+        if (mode == Mode.GROUP) {
+          while (running && durableSequence >= writtenSequence) {
+            flushRequested.await(1, TimeUnit.SECONDS);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        durableLock.unlock();
+      }
+      // Let more operations join this commit
+      LockSupport.parkNanos(commitWindowNanos);
+      durableLock.lock();
+      try {
+        flush();
+      } finally {
+        durableLock.unlock();
+      }
+    }
+  }
+
+  private void openTail() throws IOException {
+    List<Path> segments = segmentFiles();
+    for (int i = 0; i < segments.size() - 1; i++) {
+      try (FileChannel readChannel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+        ScanResult result = scan(readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size()), null);
+        if (result.torn) {
+          throw new IllegalStateException("Journal segment " + segments.get(i) + " is corrupt at offset " + result.end);
+        }
+        lastSequence = Math.max(lastSequence, result.lastSequence);
+      }
+    }
+    if (segments.isEmpty()) {
+      openSegment(0);
+      return;
+    }
+    openSegment(segmentIndexOf(segments.get(segments.size() - 1)));
+    ScanResult tail = scan(segment.duplicate(), null);
+    lastSequence = Math.max(lastSequence, tail.lastSequence);
+    if (tail.torn) {
+      log.warn("Discarding torn journal tail at offset {} of segment {}", tail.end, segmentIndex);
+      for (int i = tail.end; i < segment.limit(); i++) {
+        segment.put(i, (byte) 0);
+      }
+      segment.force();
+    }
+    segment.position(tail.end);
+  }
+
+  private void openSegment(int index) throws IOException {
+    segmentIndex = index;
+    channel = FileChannel.open(directory.resolve(segmentName(index)),
+      StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+  }
+
+  private ScanResult scan(ByteBuffer buffer, JournalRecordHandler handler) {
+    CRC32C check = new CRC32C();
+    ScanResult result = new ScanResult();
+    int position = 0;
+    while (position + FRAME_BYTES <= buffer.limit()) {
+      int length = buffer.getInt(position);
+      if (length == 0) {
+        break;
+      }
+      if (length < 0 || length > MAX_RECORD_BYTES || position + FRAME_BYTES + length > buffer.limit()) {
+        result.torn = true;
+        break;
+      }
+      ByteBuffer body = buffer.slice(position + FRAME_BYTES, length);
+      check.reset();
+      check.update(body.duplicate());
+      if ((int) check.getValue() != buffer.getInt(position + 4)) {
+        result.torn = true;
+        break;
+      }
+      long sequence = body.getLong();
+      byte type = body.get();
+      if (handler != null) {
+        if (type == CREATE) {
+          handler.onCreate(sequence, getString(body), getDecimal(body));
+        } else if (type == TRANSFER) {
+          handler.onTransfer(sequence, getString(body), getString(body), getDecimal(body));
+        }
+      }
+      result.lastSequence = sequence;
+      position += FRAME_BYTES + length;
+    }
+    result.end = position;
+    return result;
+  }
+
+  // Sequence of the first record in a segment, or 0 if it has none yet
+  private static long firstSequence(Path path) throws IOException {
+    try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES + Long.BYTES);
+      if (readChannel.read(frame, 0) < frame.capacity()) {
+        return 0;
+      }
+      return frame.getInt(0) == 0 ? 0 : frame.getLong(FRAME_BYTES);
+    }
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static BigDecimal getDecimal(ByteBuffer buffer) {
+    int scale = buffer.getInt();
+    byte[] unscaled = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  private static String segmentName(int index) {
+    return String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+  }
+
+  private static int segmentIndexOf(Path path) {
+    String name = path.getFileName().toString();
+    return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static final class ScanResult {
+    private long lastSequence;
+    private int end;
+    private boolean torn;
+  }
+}
@@ -0,0 +1,32 @@
+package com.dws.challenge.journal;
+
+import java.math.BigDecimal;
+
+/**
+ * Write-ahead journal of account creations and validated transfers, appended with exact amounts
+ * before the balances change. Appends return a sequence number and are cheap;
+ * {@link #awaitDurable(long)} blocks until that record is on disk according to the configured
+ * durability mode, so callers append while holding account locks and wait after releasing them.
+ */
+public interface TransferJournal {
+
+  long appendCreate(String accountId, BigDecimal balance);
+
+  long appendTransfer(String accountFromId, String accountToId, BigDecimal amount);
+
+  void awaitDurable(long sequence);
+
+  void replay(JournalRecordHandler handler);
+
+  /**
+   * Sequence of the last appended record.
+   */
+  long lastSequence();
+
+  /**
+   * Deletes history whose records are all at or below {@code sequence}, once a snapshot covers it.
+   */
+  void discardThrough(long sequence);
+
+  boolean isEnabled();
+}
@@ -0,0 +1,238 @@
+package com.dws.challenge.ledger;
+
+import com.dws.challenge.model.LedgerEntry;
+import com.dws.challenge.model.LedgerPage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Immutable history of completed transfers, indexed by account. Every account has its own ring of
+ * primitive columns (timestamp, signed amount, counterparty) guarded by its own lock, so appends to
+ * different accounts never contend and an entry costs 20 bytes per side with no object per
+ * transfer. Counterparties are references to their own ledgers, which hold the only copy of each
+ * account ID. Entries older than the retention, or beyond the per-account cap, are dropped from
+ * the head on append and by a background sweep, which bounds memory.
+ */
+@Component
+public class TransferLedger {
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private final ConcurrentHashMap<String, AccountLedger> ledgers = new ConcurrentHashMap<>();
+  private final boolean enabled;
+  private final long retentionMillis;
+  private final int maxEntriesPerAccount;
+
+  private ScheduledExecutorService sweeper;
+
+  @Autowired
+  public TransferLedger(@Value("${ledger.enabled:true}") boolean enabled,
+    @Value("${ledger.retention-hours:24}") long retentionHours,
+    @Value("${ledger.max-entries-per-account:10000}") int maxEntriesPerAccount) {
+    this.enabled = enabled;
+    this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+    this.maxEntriesPerAccount = maxEntriesPerAccount;
+  }
+
+  @PostConstruct
+  void start() {
+    if (!enabled) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ledger-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Appends a completed transfer to the ledgers of both accounts.
+   */
+  public void record(String accountFromId, String accountToId, double amount) {
+    if (!enabled) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    AccountLedger from = ledgers.computeIfAbsent(accountFromId, AccountLedger::new);
+    AccountLedger to = ledgers.computeIfAbsent(accountToId, AccountLedger::new);
+    from.append(now, to, -amount);
+    to.append(now, from, amount);
+  }
+
+  /**
+   * Appends a completed transfer to the ledger of one account only, for transfers whose
+   * counterparty is kept by another node; {@code amount} is negative for a debit.
+   */
+  public void recordSide(String accountId, String counterpartyId, double amount) {
+    if (!enabled) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    AccountLedger ledger = ledgers.computeIfAbsent(accountId, AccountLedger::new);
+    ledger.append(now, ledgers.computeIfAbsent(counterpartyId, AccountLedger::new), amount);
+  }
+
+  /**
+   * Entries of the account newest first, with timestamps in {@code [from, to]} and positions below
+   * {@code cursor}; any bound may be null.
+   */
+  public LedgerPage history(String accountId, Instant from, Instant to, Long cursor, int limit) {
+    AccountLedger ledger = ledgers.get(accountId);
+    if (ledger == null) {
+      return new LedgerPage(Collections.emptyList(), null);
+    }
+    return ledger.page(from == null ? Long.MIN_VALUE : from.toEpochMilli(),
+      to == null ? Long.MAX_VALUE : to.toEpochMilli(), cursor == null ? Long.MAX_VALUE : cursor, limit);
+  }
+
+  void sweep() {
+    long oldest = System.currentTimeMillis() - retentionMillis;
+    for (AccountLedger ledger : ledgers.values()) {
+      ledger.trim(oldest);
+    }
+  }
+
+  private final class AccountLedger {
+    private final String accountId;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private AccountLedger[] counterparties = new AccountLedger[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    // Position of the entry at head; positions never repeat, so they serve as cursors
+    private long firstPosition;
+    private long lastTimestamp;
+
+    private AccountLedger(String accountId) {
+      this.accountId = accountId;
+    }
+
+    private void append(long now, AccountLedger counterparty, double amount) {
+      lock.lock();
+      try {
+        dropOlderThan(now - retentionMillis);
+        if (size == maxEntriesPerAccount) {
+          dropHead();
+        } else if (size == timestamps.length) {
+          grow();
+        }
+        int index = indexOf(size);
+        // Kept monotonic per account so time ranges can be binary searched
+        lastTimestamp = Math.max(now, lastTimestamp);
+        timestamps[index] = lastTimestamp;
+        amounts[index] = amount;
+        counterparties[index] = counterparty;
+        size++;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void trim(long oldest) {
+      lock.lock();
+      try {
+        dropOlderThan(oldest);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private LedgerPage page(long from, long to, long before, int limit) {
+      List<LedgerEntry> entries = new ArrayList<>(Math.min(limit, 64));
+      lock.lock();
+      try {
+        int end = (int) Math.min(size, Math.max(0, before - firstPosition));
+        int k = upperBound(end, to) - 1;
+        while (k >= 0 && timestamps[indexOf(k)] >= from && entries.size() < limit) {
+          int index = indexOf(k);
+          double amount = amounts[index];
+          entries.add(new LedgerEntry(firstPosition + k, Instant.ofEpochMilli(timestamps[index]),
+            amount < 0 ? LedgerEntry.Direction.DEBIT : LedgerEntry.Direction.CREDIT,
+            counterparties[index].accountId, Math.abs(amount)));
+          k--;
+        }
+        boolean more = k >= 0 && timestamps[indexOf(k)] >= from;
+        return new LedgerPage(entries, more ? firstPosition + k + 1 : null);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // Number of the first end entries with a timestamp at or before to
+    private int upperBound(int end, long to) {
+      int low = 0;
+      int high = end;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (timestamps[indexOf(mid)] <= to) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private void dropOlderThan(long oldest) {
+      while (size > 0 && timestamps[head] < oldest) {
+        dropHead();
+      }
+    }
+
+    private void dropHead() {
+      counterparties[head] = null;
+      head = head + 1 == timestamps.length ? 0 : head + 1;
+      size--;
+      firstPosition++;
+    }
+
+    private int indexOf(int offset) {
+      int index = head + offset;
+      return index >= timestamps.length ? index - timestamps.length : index;
+    }
+
+    private void grow() {
+      int capacity = (int) Math.min((long) timestamps.length * 2, maxEntriesPerAccount);
+      long[] newTimestamps = new long[capacity];
+      double[] newAmounts = new double[capacity];
+      AccountLedger[] newCounterparties = new AccountLedger[capacity];
+      for (int k = 0; k < size; k++) {
+        int index = indexOf(k);
+        newTimestamps[k] = timestamps[index];
+        newAmounts[k] = amounts[index];
+        newCounterparties[k] = counterparties[index];
+      }
+      timestamps = newTimestamps;
+      amounts = newAmounts;
+      counterparties = newCounterparties;
+      head = 0;
+    }
+  }
+}
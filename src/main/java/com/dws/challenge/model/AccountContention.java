@@ -0,0 +1,36 @@
+package com.dws.challenge.model;
+
+public class AccountContention {
+    private final String accountId;
+    private final double transfersPerSecond;
+    private final double lockWaitMillisPerSecond;
+    private final double meanLockWaitMicros;
+
+    public AccountContention(String accountId, double transfersPerSecond, double lockWaitMillisPerSecond,
+        double meanLockWaitMicros) {
+        this.accountId = accountId;
+        this.transfersPerSecond = transfersPerSecond;
+        this.lockWaitMillisPerSecond = lockWaitMillisPerSecond;
+        this.meanLockWaitMicros = meanLockWaitMicros;
+    }
+
+    // Getters
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public double getTransfersPerSecond() {
+        return transfersPerSecond;
+    }
+
+    // Time transfers spent waiting for the account's lock per second of the window, summed over threads
+    public double getLockWaitMillisPerSecond() {
+        return lockWaitMillisPerSecond;
+    }
+
+    public double getMeanLockWaitMicros() {
+        return meanLockWaitMicros;
+    }
+
+}
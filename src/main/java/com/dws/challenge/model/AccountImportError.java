@@ -0,0 +1,22 @@
+package com.dws.challenge.model;
+
+public class AccountImportError {
+    private final long line;
+    private final String error;
+
+    public AccountImportError(long line, String error) {
+        this.line = line;
+        this.error = error;
+    }
+
+    // Getters
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+}
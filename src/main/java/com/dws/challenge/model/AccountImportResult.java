@@ -0,0 +1,22 @@
+package com.dws.challenge.model;
+
+public class AccountImportResult {
+    private final long imported;
+    private final long failed;
+
+    public AccountImportResult(long imported, long failed) {
+        this.imported = imported;
+        this.failed = failed;
+    }
+
+    // Getters
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+}
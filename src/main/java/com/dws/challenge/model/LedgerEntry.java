@@ -0,0 +1,44 @@
+package com.dws.challenge.model;
+
+import java.time.Instant;
+
+public class LedgerEntry {
+    public enum Direction { DEBIT, CREDIT }
+
+    private final long position;
+    private final Instant timestamp;
+    private final Direction direction;
+    private final String counterpartyId;
+    private final double amount;
+
+    public LedgerEntry(long position, Instant timestamp, Direction direction, String counterpartyId, double amount) {
+        this.position = position;
+        this.timestamp = timestamp;
+        this.direction = direction;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+    }
+
+    // Getters
+
+    public long getPosition() {
+        return position;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+}
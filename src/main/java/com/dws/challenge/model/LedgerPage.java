@@ -0,0 +1,27 @@
+package com.dws.challenge.model;
+
+import java.util.List;
+
+public class LedgerPage {
+    private final List<LedgerEntry> entries;
+    private final Long nextCursor;
+
+    public LedgerPage(List<LedgerEntry> entries, Long nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters
+
+    public List<LedgerEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Position to pass as {@code cursor} for the next, older page; null on the last page.
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+}
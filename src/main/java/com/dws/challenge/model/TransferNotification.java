@@ -0,0 +1,67 @@
+package com.dws.challenge.model;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.service.NotificationService;
+
+import java.math.BigDecimal;
+
+/**
+ * A queued notification. The account is copied when the notification is queued, so later
+ * transfers cannot change what is sent and the notifier never sees an account the engine is
+ * mutating.
+ */
+public class TransferNotification {
+  private final NotificationService notificationService;
+  private final String accountId;
+  private final BigDecimal balance;
+  private final String transferDescription;
+  private final long enqueuedAtNanos;
+  // Only touched by the dispatcher thread
+  private int attempts;
+  private long retryAtNanos;
+
+  public TransferNotification(NotificationService notificationService, AccountBalance account,
+    String transferDescription) {
+    this.notificationService = notificationService;
+    this.accountId = account.getAccountId();
+    this.balance = account.getBalance();
+    this.transferDescription = transferDescription;
+    this.enqueuedAtNanos = System.nanoTime();
+  }
+
+  public NotificationService getNotificationService() {
+    return notificationService;
+  }
+
+  public String getAccountId() {
+    return accountId;
+  }
+
+  /**
+   * A fresh copy of the account as it was queued, for the notifier to keep or change as it likes.
+   */
+  public Account toAccount() {
+    return new Account(accountId, balance);
+  }
+
+  public String getTransferDescription() {
+    return transferDescription;
+  }
+
+  public long getEnqueuedAtNanos() {
+    return enqueuedAtNanos;
+  }
+
+  public int incrementAttempts() {
+    return ++attempts;
+  }
+
+  public long getRetryAtNanos() {
+    return retryAtNanos;
+  }
+
+  public void setRetryAtNanos(long retryAtNanos) {
+    this.retryAtNanos = retryAtNanos;
+  }
+}
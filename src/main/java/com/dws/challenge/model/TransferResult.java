@@ -0,0 +1,29 @@
+package com.dws.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public class TransferResult {
+    private final int index;
+    private final TransferStatus status;
+
+    public TransferResult(int index, TransferStatus status) {
+        this.index = index;
+        this.status = status;
+    }
+
+    // Getters
+
+    public int getIndex() {
+        return index;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    @JsonIgnore
+    public boolean isCompleted() {
+        return status == TransferStatus.COMPLETED;
+    }
+
+}
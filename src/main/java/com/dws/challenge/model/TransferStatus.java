@@ -0,0 +1,9 @@
+package com.dws.challenge.model;
+
+public enum TransferStatus {
+    COMPLETED,
+    INSUFFICIENT_FUNDS,
+    INVALID_AMOUNT,
+    ACCOUNT_NOT_FOUND,
+    ROLLED_BACK
+}
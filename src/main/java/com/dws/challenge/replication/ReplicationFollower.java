@@ -0,0 +1,309 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replica side of replication: follows the primary at {@code replication.primary} and applies its
+ * feed to the local repository on one thread, in sequence order, so reads on this node see the
+ * primary's book as of some recent sequence. {@code replication.primary} may list several
+ * {@code host:port} addresses; they are tried in turn until one accepts, so after a failover the
+ * replicas find whichever node was promoted. Transfers are applied as they arrive in the feed, one
+ * balance movement each, and recorded in this node's ledger; the history of transfers made before
+ * the replica last loaded a snapshot is only on the primary.
+ * <p>
+ * Lag is reported as {@code replication.lag.sequences}, the primary's changes not yet applied, and
+ * {@code replication.lag}, how long ago the primary made the last change applied here, zero when
+ * there is nothing to apply.
+ */
+@Slf4j
+@Component
+public class ReplicationFollower {
+
+  private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final ReplicationLog replicationLog;
+  private final ReplicationServer replicationServer;
+  private final AccountsRepository accountsRepository;
+  private final TransferLedger ledger;
+  private final List<InetSocketAddress> primaries = new ArrayList<>();
+  private final int timeoutMillis;
+  private final long reconnectMillis;
+  private final String secret;
+  private final Counter snapshotCounter;
+
+  // Position of this replica's book. The epoch is 0 while a snapshot is loading, so no token matches
+  // a partial book; it is written after the sequence and read on both sides of it
+  private volatile long epoch;
+  private volatile long applied;
+  private volatile long appliedMillis;
+  private volatile long primarySequence;
+
+  private volatile boolean running;
+  private volatile Socket socket;
+  private Thread follower;
+
+  @Autowired
+  public ReplicationFollower(ReplicationLog replicationLog, ReplicationServer replicationServer,
+    AccountsRepository accountsRepository, TransferLedger ledger, MeterRegistry meterRegistry,
+    @Value("${replication.primary:}") String primaries,
+    @Value("${replication.heartbeat-ms:100}") long heartbeatMillis,
+    @Value("${replication.reconnect-ms:200}") long reconnectMillis,
+    @Value("${internal.secret:}") String secret) {
+    this.replicationLog = replicationLog;
+    this.replicationServer = replicationServer;
+    this.accountsRepository = accountsRepository;
+    this.ledger = ledger;
+    for (String primary : primaries.split(",")) {
+      if (!primary.isBlank()) {
+        int colon = primary.lastIndexOf(':');
+        this.primaries.add(InetSocketAddress.createUnresolved(primary.substring(0, colon).strip(),
+          Integer.parseInt(primary.substring(colon + 1).strip())));
+      }
+    }
+    if (replicationLog.isReplica() && this.primaries.isEmpty()) {
+      throw new IllegalStateException("A replica needs replication.primary");
+    }
+    // A primary that sent nothing, not even a heartbeat, for this long is presumed gone
+    this.timeoutMillis = (int) Math.max(1000, heartbeatMillis * 10);
+    this.reconnectMillis = reconnectMillis;
+    this.secret = secret;
+
+    Gauge.builder("replication.applied.sequence", this, follower -> follower.applied)
+      .description("Last change of the primary applied on this replica")
+      .register(meterRegistry);
+    Gauge.builder("replication.lag.sequences", this, ReplicationFollower::lagSequences)
+      .description("Changes made on the primary and not yet applied on this replica")
+      .register(meterRegistry);
+    TimeGauge.builder("replication.lag", this, TimeUnit.MILLISECONDS, ReplicationFollower::lagMillis)
+      .description("Time since the primary made the last change applied on this replica, while behind")
+      .register(meterRegistry);
+    this.snapshotCounter = meterRegistry.counter("replication.snapshots.loaded");
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  void ready() {
+    if (!replicationLog.isReplica()) {
+      return;
+    }
+    running = true;
+    follower = new Thread(this::followLoop, "replication-follower");
+    follower.setDaemon(true);
+    follower.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (follower == null) {
+      return;
+    }
+    closeSocket();
+    follower.interrupt();
+    follower.join(TimeUnit.SECONDS.toMillis(5));
+    follower = null;
+  }
+
+  /**
+   * Stops following and makes this node a primary of a new epoch, serving writes and streaming
+   * them to the remaining replicas, which reload its book from a snapshot.
+   */
+  public synchronized void promote() throws IOException, InterruptedException {
+    if (!replicationLog.isReplica()) {
+      throw new IllegalStateException("Only a replica can be promoted");
+    }
+    stop();
+    replicationLog.promote();
+    replicationServer.listen();
+    log.info("Promoted to primary of epoch {} at sequence {} of the previous primary", replicationLog.epoch(), applied);
+  }
+
+  /**
+   * Waits up to {@code timeoutMillis} for this replica to apply the write behind a read-your-writes
+   * token. Returns false on timeout, and for a token this replica cannot judge: malformed, or of an
+   * epoch it is not following.
+   */
+  public boolean awaitToken(String token, long timeoutMillis) {
+    int dash = token.indexOf('-');
+    long tokenEpoch;
+    long tokenSequence;
+    try {
+      tokenEpoch = Long.parseLong(token.substring(0, dash));
+      tokenSequence = Long.parseLong(token.substring(dash + 1));
+    } catch (RuntimeException e) {
+      return false;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (true) {
+      long currentEpoch = epoch;
+      if (currentEpoch == tokenEpoch && applied >= tokenSequence && epoch == currentEpoch) {
+        return true;
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(POLL_NANOS);
+    }
+  }
+
+  /**
+   * Whether the replica is loading a snapshot, when its book is incomplete.
+   */
+  public boolean isLoading() {
+    return replicationLog.isReplica() && epoch == 0;
+  }
+
+  public long epoch() {
+    return epoch;
+  }
+
+  public long appliedSequence() {
+    return applied;
+  }
+
+  public long lagSequences() {
+    return Math.max(0, primarySequence - applied);
+  }
+
+  public long lagMillis() {
+    return lagSequences() == 0 ? 0 : Math.max(0, System.currentTimeMillis() - appliedMillis);
+  }
+
+  private void followLoop() {
+    for (int attempt = 0; running; attempt++) {
+      InetSocketAddress address = primaries.get(attempt % primaries.size());
+      String primary = address.getHostString() + ":" + address.getPort();
+      try (Socket connection = new Socket()) {
+        socket = connection;
+        connection.connect(new InetSocketAddress(address.getHostString(), address.getPort()), timeoutMillis);
+        connection.setSoTimeout(timeoutMillis);
+        connection.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        out.writeUTF(secret);
+        out.writeLong(epoch);
+        out.writeLong(applied);
+        out.flush();
+        log.info("Following primary {} from epoch {} sequence {}", primary, epoch, applied);
+        apply(new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16)));
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Lost primary {}: {}", primary, e.toString());
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(reconnectMillis));
+        }
+      } finally {
+        socket = null;
+      }
+    }
+  }
+
+  private void apply(DataInputStream in) throws IOException {
+    long snapshotEpoch = 0;
+    long snapshotSequence = 0;
+    while (running) {
+      byte type = in.readByte();
+      if (type == ReplicationProtocol.TRANSFER) {
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        String accountFromId = in.readUTF();
+        String accountToId = in.readUTF();
+        BigDecimal amount = ReplicationProtocol.readAmount(in);
+        move(accountFromId, amount.negate());
+        move(accountToId, amount);
+        ledger.record(accountFromId, accountToId, amount.doubleValue());
+        advance(sequence, timestamp);
+      } else if (type == ReplicationProtocol.CREATE) {
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        create(in.readUTF(), ReplicationProtocol.readDecimal(in));
+        advance(sequence, timestamp);
+      } else if (type == ReplicationProtocol.HEARTBEAT) {
+        primarySequence = in.readLong();
+        long timestamp = in.readLong();
+        if (applied >= primarySequence) {
+          appliedMillis = timestamp;
+        }
+      } else if (type == ReplicationProtocol.SNAPSHOT) {
+        snapshotEpoch = in.readLong();
+        snapshotSequence = in.readLong();
+        log.info("Loading a snapshot of epoch {} at sequence {}", snapshotEpoch, snapshotSequence);
+        epoch = 0;
+        accountsRepository.clearAccounts();
+      } else if (type == ReplicationProtocol.ACCOUNT) {
+        create(in.readUTF(), ReplicationProtocol.readDecimal(in));
+      } else if (type == ReplicationProtocol.SNAPSHOT_END) {
+        applied = snapshotSequence;
+        primarySequence = Math.max(primarySequence, snapshotSequence);
+        appliedMillis = System.currentTimeMillis();
+        epoch = snapshotEpoch;
+        snapshotCounter.increment();
+      } else {
+        throw new IOException("Unknown replication record " + type);
+      }
+    }
+  }
+
+  private void create(String accountId, BigDecimal balance) {
+    try {
+      accountsRepository.createAccount(new Account(accountId, balance));
+    } catch (DuplicateAccountIdException e) {
+      log.warn("Replicated account {} already exists", accountId);
+    }
+  }
+
+  private void move(String accountId, BigDecimal amount) throws IOException {
+    Account account = accountsRepository.getAccount(accountId);
+    if (account == null) {
+      // The book has diverged from the primary's; reconnecting as a new replica reloads it
+      epoch = 0;
+      throw new IOException("Replicated account " + accountId + " does not exist");
+    }
+    account.setBalance(account.getBalance().add(amount));
+    accountsRepository.save(account);
+  }
+
+  private void advance(long sequence, long timestampMillis) {
+    appliedMillis = timestampMillis;
+    applied = sequence;
+    if (sequence > primarySequence) {
+      primarySequence = sequence;
+    }
+  }
+
+  private void closeSocket() {
+    Socket current = socket;
+    if (current == null) {
+      return;
+    }
+    try {
+      current.close();
+    } catch (IOException e) {
+      log.debug("Failed to close the connection to the primary: {}", e.toString());
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.dws.challenge.replication;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This node's replication role and, on a primary, the ordered feed of account mutations streamed
+ * to replicas. The locking engine appends each creation and balance movement under the stripe
+ * locks that order it, so the feed's order matches the order balances changed in. The last
+ * {@code replication.backlog} changes are kept in a ring for replicas catching up; a replica that
+ * falls further behind is sent a snapshot instead.
+ * <p>
+ * Each primary run has its own epoch, and sequences start at 1 within it. A read-your-writes token
+ * is {@code epoch-sequence}: a replica that has applied the sequence in that epoch reflects every
+ * write the primary acknowledged before handing out the token.
+ */
+@Component
+public class ReplicationLog {
+
+  public static final String TOKEN = "Replication-Token";
+
+  public enum Role { NONE, PRIMARY, REPLICA }
+
+  private final int mask;
+  private final AtomicReferenceArray<Change> ring;
+  private final AtomicLong sequence = new AtomicLong();
+
+  private volatile Role role;
+  private volatile long epoch;
+
+  @Autowired
+  public ReplicationLog(MeterRegistry meterRegistry,
+    @Value("${replication.role:none}") String role,
+    @Value("${replication.backlog:262144}") int backlog) {
+    if (backlog < 2 || Integer.bitCount(backlog) != 1) {
+      throw new IllegalStateException("replication.backlog must be a power of two, not " + backlog);
+    }
+    this.mask = backlog - 1;
+    this.ring = new AtomicReferenceArray<>(backlog);
+    this.role = Role.valueOf(role.strip().toUpperCase(Locale.ROOT));
+    this.epoch = this.role == Role.PRIMARY ? newEpoch() : 0;
+    Gauge.builder("replication.sequence", sequence, AtomicLong::get)
+      .description("Last change appended to the replication feed")
+      .register(meterRegistry);
+  }
+
+  public Role role() {
+    return role;
+  }
+
+  public boolean isPrimary() {
+    return role == Role.PRIMARY;
+  }
+
+  public boolean isReplica() {
+    return role == Role.REPLICA;
+  }
+
+  public long epoch() {
+    return epoch;
+  }
+
+  public long lastSequence() {
+    return sequence.get();
+  }
+
+  /**
+   * Token for a write that has completed: every change up to it is in the feed.
+   */
+  public String token() {
+    return epoch + "-" + sequence.get();
+  }
+
+  /**
+   * Called under the account's stripe lock after the account is added.
+   */
+  public void appendCreate(String accountId, BigDecimal balance) {
+    if (role == Role.PRIMARY) {
+      long next = sequence.incrementAndGet();
+      ring.set((int) next & mask,
+        new Change(next, ReplicationProtocol.CREATE, accountId, null, balance, null));
+    }
+  }
+
+  /**
+   * Called under both accounts' stripe locks after the balances changed, or under the payer's and a
+   * hot payee's sub-balance lock once the payer is debited and before the sub-balance is credited.
+   */
+  public void appendTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    if (role == Role.PRIMARY) {
+      long next = sequence.incrementAndGet();
+      ring.set((int) next & mask,
+        new Change(next, ReplicationProtocol.TRANSFER, accountFromId, accountToId, null, amount));
+    }
+  }
+
+  /**
+   * The change with this sequence, or null if it is not in the ring yet.
+   *
+   * @throws IllegalStateException if it has already been overwritten
+   */
+  Change get(long sequence) {
+    Change change = ring.get((int) sequence & mask);
+    if (change == null || change.sequence < sequence) {
+      return null;
+    }
+    if (change.sequence > sequence) {
+      throw new IllegalStateException("Change " + sequence + " is no longer in the backlog");
+    }
+    return change;
+  }
+
+  /**
+   * Whether a replica that has applied {@code applied} can catch up from the ring.
+   */
+  boolean isRetained(long applied) {
+    return applied >= sequence.get() - mask;
+  }
+
+  /**
+   * Starts a new primary run with a new epoch: replicas of any earlier primary resynchronize.
+   */
+  void promote() {
+    for (int i = 0; i < ring.length(); i++) {
+      ring.set(i, null);
+    }
+    sequence.set(0);
+    epoch = newEpoch();
+    role = Role.PRIMARY;
+  }
+
+  private static long newEpoch() {
+    // Unique per run: a restarted primary must not reuse the sequences of the previous one
+    return System.currentTimeMillis();
+  }
+
+  static final class Change {
+    final long sequence;
+    final byte type;
+    final String accountId;
+    final String otherAccountId;
+    final BigDecimal balance;
+    final BigDecimal amount;
+    final long timestampMillis = System.currentTimeMillis();
+
+    private Change(long sequence, byte type, String accountId, String otherAccountId, BigDecimal balance,
+      BigDecimal amount) {
+      this.sequence = sequence;
+      this.type = type;
+      this.accountId = accountId;
+      this.otherAccountId = otherAccountId;
+      this.balance = balance;
+      this.amount = amount;
+    }
+  }
+}
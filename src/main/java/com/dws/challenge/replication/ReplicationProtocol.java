@@ -0,0 +1,74 @@
+package com.dws.challenge.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Wire format between a primary and its replicas, over one TCP connection per replica. The replica
+ * opens with the shared {@code internal.secret}, its epoch and its last applied sequence; the
+ * primary closes the connection on a wrong secret, and otherwise answers with an optional snapshot
+ * and then streams changes in sequence order, with a heartbeat whenever it has been idle:
+ * <pre>
+ * 'S' epoch sequence        snapshot of the book as of sequence follows
+ * 'A' accountId balance     one account of the snapshot
+ * 'E'                       end of snapshot
+ * 'C' sequence time accountId balance
+ * 'T' sequence time accountFromId accountToId amount
+ * 'H' sequence time         primary's last sequence, while idle
+ * </pre>
+ * Times are the primary's wall clock in milliseconds; balances are plain decimal strings, and
+ * transfer amounts a scale and unscaled value as the journal writes them, so both arrive exact.
+ */
+final class ReplicationProtocol {
+
+  static final byte SNAPSHOT = 'S';
+  static final byte ACCOUNT = 'A';
+  static final byte SNAPSHOT_END = 'E';
+  static final byte CREATE = 'C';
+  static final byte TRANSFER = 'T';
+  static final byte HEARTBEAT = 'H';
+
+  private ReplicationProtocol() {
+  }
+
+  static void writeChange(DataOutputStream out, ReplicationLog.Change change) throws IOException {
+    out.writeByte(change.type);
+    out.writeLong(change.sequence);
+    out.writeLong(change.timestampMillis);
+    out.writeUTF(change.accountId);
+    if (change.type == CREATE) {
+      writeDecimal(out, change.balance);
+    } else {
+      out.writeUTF(change.otherAccountId);
+      writeAmount(out, change.amount);
+    }
+  }
+
+  static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value.toPlainString());
+    }
+  }
+
+  static BigDecimal readDecimal(DataInputStream in) throws IOException {
+    return in.readBoolean() ? new BigDecimal(in.readUTF()) : null;
+  }
+
+  static void writeAmount(DataOutputStream out, BigDecimal amount) throws IOException {
+    byte[] unscaled = amount.unscaledValue().toByteArray();
+    out.writeInt(amount.scale());
+    out.writeShort(unscaled.length);
+    out.write(unscaled);
+  }
+
+  static BigDecimal readAmount(DataInputStream in) throws IOException {
+    int scale = in.readInt();
+    byte[] unscaled = new byte[in.readUnsignedShort()];
+    in.readFully(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+}
@@ -0,0 +1,245 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountCuts;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Primary side of replication: listens on {@code replication.bind-address} and
+ * {@code replication.port} and streams the {@link ReplicationLog} to each connected replica from
+ * its own sender thread. The feed carries every balance, so a replica must open with the shared
+ * {@code internal.secret}, which replication requires, and the address defaults to loopback. A
+ * replica of the current epoch whose next change is still in the backlog resumes from there; any
+ * other replica first gets a snapshot, taken through an {@link AccountCuts} cut so it matches one
+ * position of the feed exactly while transfers keep running. The backlog should hold the changes
+ * made while a snapshot is sent, or the replica is sent another one.
+ */
+@Slf4j
+@Component
+public class ReplicationServer {
+
+  private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  // The handshake is the only thing a replica sends
+  private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+  private final ReplicationLog replicationLog;
+  private final AccountsRepository accountsRepository;
+  private final AccountCuts accountCuts;
+  private final TransferEngine transferEngine;
+  private final ClusterRouter clusterRouter;
+  private final String bindAddress;
+  private final int port;
+  private final byte[] secret;
+  private final long heartbeatNanos;
+
+  private final Set<Socket> replicas = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger senders = new AtomicInteger();
+  private final Counter snapshotCounter;
+
+  private volatile boolean running;
+  private ServerSocket serverSocket;
+
+  @Autowired
+  public ReplicationServer(ReplicationLog replicationLog, AccountsRepository accountsRepository,
+    AccountCuts accountCuts, TransferEngine transferEngine, ClusterRouter clusterRouter, MeterRegistry meterRegistry,
+    @Value("${replication.bind-address:127.0.0.1}") String bindAddress,
+    @Value("${replication.port:7070}") int port,
+    @Value("${replication.heartbeat-ms:100}") long heartbeatMillis,
+    @Value("${internal.secret:}") String secret) {
+    this.replicationLog = replicationLog;
+    this.accountsRepository = accountsRepository;
+    this.accountCuts = accountCuts;
+    this.transferEngine = transferEngine;
+    this.clusterRouter = clusterRouter;
+    this.bindAddress = bindAddress;
+    this.port = port;
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+    Gauge.builder("replication.replicas", replicas, Set::size)
+      .description("Replicas connected to this primary")
+      .register(meterRegistry);
+    this.snapshotCounter = meterRegistry.counter("replication.snapshots");
+  }
+
+  @PostConstruct
+  void start() {
+    if (replicationLog.role() == ReplicationLog.Role.NONE) {
+      return;
+    }
+    if (!(transferEngine instanceof LockingTransferEngine)) {
+      throw new IllegalStateException("Replication requires the locking transfer engine");
+    }
+    if (clusterRouter.isEnabled()) {
+      throw new IllegalStateException("Replication does not support cluster mode");
+    }
+    if (secret.length == 0) {
+      throw new IllegalStateException("Replication requires internal.secret, shared by the primary and its replicas");
+    }
+  }
+
+  // Not before startup is over: accounts restored from a snapshot or journal bypass the feed
+  @EventListener(ApplicationReadyEvent.class)
+  void ready() throws IOException {
+    if (replicationLog.isPrimary()) {
+      listen();
+    }
+  }
+
+  /**
+   * Starts accepting replicas; called at startup on a primary and when a replica is promoted.
+   */
+  synchronized void listen() throws IOException {
+    running = true;
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(bindAddress, port));
+    Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Primary of epoch {} accepting replicas on {}:{}", replicationLog.epoch(), bindAddress, port);
+  }
+
+  @PreDestroy
+  synchronized void stop() throws IOException {
+    running = false;
+    if (serverSocket != null) {
+      serverSocket.close();
+    }
+    for (Socket replica : replicas) {
+      replica.close();
+    }
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      try {
+        Socket socket = serverSocket.accept();
+        replicas.add(socket);
+        Thread sender = new Thread(() -> serve(socket), "replication-sender-" + senders.incrementAndGet());
+        sender.setDaemon(true);
+        sender.start();
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Failed to accept a replica: {}", e.toString());
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket) {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+      // Compared in constant time so the secret cannot be guessed byte by byte
+      if (!MessageDigest.isEqual(secret, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+        log.warn("Refused replica {}: wrong internal secret", socket.getRemoteSocketAddress());
+        return;
+      }
+      long replicaEpoch = in.readLong();
+      long applied = in.readLong();
+      log.info("Replica {} connected at epoch {} sequence {}", socket.getRemoteSocketAddress(), replicaEpoch, applied);
+
+      long next = replicaEpoch == replicationLog.epoch() && replicationLog.isRetained(applied)
+        ? applied + 1 : sendSnapshot(out) + 1;
+      long heartbeatDue = System.nanoTime();
+      while (running) {
+        ReplicationLog.Change change;
+        try {
+          change = replicationLog.get(next);
+        } catch (IllegalStateException e) {
+          log.warn("Replica {} fell behind the backlog; sending a snapshot", socket.getRemoteSocketAddress());
+          next = sendSnapshot(out) + 1;
+          continue;
+        }
+        if (change != null) {
+          ReplicationProtocol.writeChange(out, change);
+          next++;
+        } else if (next <= replicationLog.lastSequence()) {
+          // Sequenced but not yet stored in the ring
+          Thread.onSpinWait();
+        } else {
+          long now = System.nanoTime();
+          if (now - heartbeatDue >= 0) {
+            out.writeByte(ReplicationProtocol.HEARTBEAT);
+            out.writeLong(next - 1);
+            out.writeLong(System.currentTimeMillis());
+            heartbeatDue = now + heartbeatNanos;
+          }
+          // Changes are flushed in batches: whatever accumulated while the feed had more
+          out.flush();
+          LockSupport.parkNanos(POLL_NANOS);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      if (running) {
+        log.info("Replica {} disconnected: {}", socket.getRemoteSocketAddress(), e.toString());
+      }
+    } finally {
+      replicas.remove(socket);
+    }
+  }
+
+  // Returns the sequence the snapshot reflects
+  private long sendSnapshot(DataOutputStream out) throws IOException {
+    long started = System.nanoTime();
+    long[] sequence = new long[1];
+    long[] accounts = new long[1];
+    try (AccountCuts.Cut cut = accountCuts.open(() -> sequence[0] = replicationLog.lastSequence())) {
+      out.writeByte(ReplicationProtocol.SNAPSHOT);
+      out.writeLong(replicationLog.epoch());
+      out.writeLong(sequence[0]);
+      accountsRepository.forEachAccount(account -> {
+        AccountBalance balance = cut.balanceOf(account);
+        if (balance == null) {
+          return;
+        }
+        try {
+          out.writeByte(ReplicationProtocol.ACCOUNT);
+          out.writeUTF(balance.getAccountId());
+          ReplicationProtocol.writeDecimal(out, balance.getBalance());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        accounts[0]++;
+      });
+      out.writeByte(ReplicationProtocol.SNAPSHOT_END);
+    }
+    snapshotCounter.increment();
+    log.info("Sent a snapshot of {} accounts at sequence {} in {} ms", accounts[0], sequence[0],
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    return sequence[0];
+  }
+}
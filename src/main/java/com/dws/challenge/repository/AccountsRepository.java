@@ -3,6 +3,8 @@ package com.dws.challenge.repository;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.util.function.Consumer;
+
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
@@ -12,4 +14,18 @@ public interface AccountsRepository {
   void clearAccounts();
 
   void save(Account accountFrom);
+
+  /**
+   * Visits every account without blocking writers. Each account present when the scan starts is
+   * visited once; accounts created during the scan may or may not be.
+   */
+  void forEachAccount(Consumer<Account> action);
+
+  /**
+   * Whether only the locking transfer engine can run on this repository, for instance because the
+   * accounts it returns are detached copies that reach the book only through {@link #save(Account)}.
+   */
+  default boolean requiresLockingEngine() {
+    return false;
+  }
 }
@@ -0,0 +1,141 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * Accounts in a relational database, one SQL round trip per call. Balances are stored as minor
+ * units ({@code accounts.balance-scale}) so every database returns them exactly as written, and
+ * {@link Account}s returned by {@link #getAccount(String)} are detached rows; changes reach the
+ * table through {@link #save(Account)}, which is how the locking transfer engine already works.
+ * Used directly with the {@code jdbc} profile and {@code accounts.jdbc.write-behind=false}, and
+ * as the backing store of {@link AccountsRepositoryWriteBehind} otherwise.
+ */
+@Repository
+@Profile("jdbc")
+@ConditionalOnProperty(name = "accounts.jdbc.write-behind", havingValue = "false")
+public class AccountsRepositoryJdbc implements AccountsRepository {
+
+  private static final int SCAN_BATCH = 1024;
+
+  private static final String CREATE_TABLE =
+    "CREATE TABLE IF NOT EXISTS accounts (account_id VARCHAR(255) PRIMARY KEY, balance BIGINT NOT NULL)";
+  private static final String INSERT = "INSERT INTO accounts (account_id, balance) VALUES (?, ?)";
+  private static final String UPDATE = "UPDATE accounts SET balance = ? WHERE account_id = ?";
+  private static final String SELECT = "SELECT account_id, balance FROM accounts WHERE account_id = ?";
+  private static final String SELECT_FIRST_PAGE =
+    "SELECT account_id, balance FROM accounts ORDER BY account_id FETCH FIRST " + SCAN_BATCH + " ROWS ONLY";
+  private static final String SELECT_NEXT_PAGE =
+    "SELECT account_id, balance FROM accounts WHERE account_id > ? ORDER BY account_id FETCH FIRST "
+      + SCAN_BATCH + " ROWS ONLY";
+  private static final String DELETE_ALL = "DELETE FROM accounts";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final int scale;
+  private final RowMapper<Account> rowMapper;
+
+  @Autowired
+  public AccountsRepositoryJdbc(DataSource dataSource, @Value("${accounts.balance-scale:2}") int scale) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    this.scale = scale;
+    this.rowMapper = (resultSet, row) -> new Account(resultSet.getString(1), BigDecimal.valueOf(resultSet.getLong(2), scale));
+    jdbcTemplate.execute(CREATE_TABLE);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    try {
+      jdbcTemplate.update(INSERT, account.getAccountId(), FixedPointAccount.toMinorUnits(account.getBalance(), scale));
+    } catch (DuplicateKeyException e) {
+      throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    List<Account> accounts = jdbcTemplate.query(SELECT, rowMapper, accountId);
+    return accounts.isEmpty() ? null : accounts.get(0);
+  }
+
+  @Override
+  public boolean requiresLockingEngine() {
+    return true;
+  }
+
+  @Override
+  public void clearAccounts() {
+    jdbcTemplate.update(DELETE_ALL);
+  }
+
+  @Override
+  public void save(Account accountFrom) {
+    long balance = FixedPointAccount.toMinorUnits(accountFrom.getBalance(), scale);
+    if (jdbcTemplate.update(UPDATE, balance, accountFrom.getAccountId()) == 0) {
+      jdbcTemplate.update(INSERT, accountFrom.getAccountId(), balance);
+    }
+  }
+
+  /**
+   * Upserts balances, in minor units by account ID, in one transaction with two JDBC batches:
+   * updates first, then inserts of the rows no update found. Rows are written in ID order, so
+   * concurrent writers lock them in the same order.
+   */
+  public void saveAll(SortedMap<String, Long> balances) {
+    List<Object[]> updates = new ArrayList<>(balances.size());
+    for (Map.Entry<String, Long> balance : balances.entrySet()) {
+      updates.add(new Object[] {balance.getValue(), balance.getKey()});
+    }
+    transactionTemplate.executeWithoutResult(status -> {
+      int[] counts = jdbcTemplate.batchUpdate(UPDATE, updates);
+      List<Object[]> inserts = new ArrayList<>();
+      for (int i = 0; i < counts.length; i++) {
+        // Drivers may report SUCCESS_NO_INFO instead of a count; only 0 means there was no row
+        if (counts[i] == 0) {
+          inserts.add(new Object[] {updates.get(i)[1], updates.get(i)[0]});
+        }
+      }
+      if (!inserts.isEmpty()) {
+        jdbcTemplate.batchUpdate(INSERT, inserts);
+      }
+    });
+  }
+
+  /**
+   * Pages through the table in ID order, one query per {@value #SCAN_BATCH} rows, so no statement
+   * stays open while the action runs.
+   */
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    String after = null;
+    while (true) {
+      List<Account> page = after == null ? jdbcTemplate.query(SELECT_FIRST_PAGE, rowMapper)
+        : jdbcTemplate.query(SELECT_NEXT_PAGE, rowMapper, after);
+      page.forEach(action);
+      if (page.size() < SCAN_BATCH) {
+        return;
+      }
+      after = page.get(page.size() - 1).getAccountId();
+    }
+  }
+}
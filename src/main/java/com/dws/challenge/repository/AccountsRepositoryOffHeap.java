@@ -0,0 +1,332 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Account book kept outside the Java heap, for books of tens of millions of accounts. Accounts
+ * live in an open-addressing table of 16-byte slots (ID reference, balance in minor units) and the
+ * IDs themselves are interned once into an append-only off-heap arena, so the heap holds no
+ * per-account objects. {@link Account}s returned by {@link #getAccount(String)} are detached views;
+ * changes reach the book through {@link #save(Account)}, which is how the locking transfer engine
+ * already works. Enable with the {@code offheap} Spring profile.
+ */
+@Repository
+@Profile("offheap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+  private static final int SLOT_BYTES = 16;
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final double MAX_LOAD = 0.6;
+
+  // Slot key: 24 bits of the ID hash above 40 bits of arena offset + 1 (0 marks an empty slot)
+  private static final int OFFSET_BITS = 40;
+  private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+  private static final int ARENA_CHUNK_SHIFT = 23;
+  private static final int ARENA_CHUNK_SIZE = 1 << ARENA_CHUNK_SHIFT;
+  // Top bit of an arena entry's length marks IDs stored one byte per char
+  private static final int LATIN1_FLAG = 0x8000;
+  private static final int SCAN_BATCH = 1024;
+
+  private final int scale;
+  private final StampedLock lock = new StampedLock();
+
+  private OffHeapSlab table;
+  private long capacity;
+  private long size;
+  private List<OffHeapSlab> arena;
+  private long arenaPosition;
+
+  public AccountsRepositoryOffHeap(@Value("${accounts.balance-scale:2}") int scale) {
+    this.scale = scale;
+    reset();
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    long balance = FixedPointAccount.toMinorUnits(account.getBalance(), scale);
+    long stamp = lock.writeLock();
+    try {
+      if (find(accountId) >= 0) {
+        throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+      }
+      insert(accountId, balance);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    long stamp = lock.readLock();
+    try {
+      long slot = find(accountId);
+      if (slot < 0) {
+        return null;
+      }
+      return new Account(accountId, BigDecimal.valueOf(table.getLongVolatile(slot * SLOT_BYTES + 8), scale));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public boolean requiresLockingEngine() {
+    return true;
+  }
+
+  @Override
+  public void clearAccounts() {
+    long stamp = lock.writeLock();
+    try {
+      reset();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void save(Account accountFrom) {
+    String accountId = accountFrom.getAccountId();
+    long balance = FixedPointAccount.toMinorUnits(accountFrom.getBalance(), scale);
+    long stamp = lock.readLock();
+    try {
+      long slot = find(accountId);
+      if (slot >= 0) {
+        table.putLongVolatile(slot * SLOT_BYTES + 8, balance);
+        return;
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+
+    stamp = lock.writeLock();
+    try {
+      long slot = find(accountId);
+      if (slot >= 0) {
+        table.putLongVolatile(slot * SLOT_BYTES + 8, balance);
+      } else {
+        insert(accountId, balance);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Walks the ID arena, which is append-only and unaffected by table resizes, in batches read under
+   * the read lock; the action runs without any lock held.
+   */
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    List<Account> batch = new ArrayList<>(SCAN_BATCH);
+    long cursor = 0;
+    while (true) {
+      long stamp = lock.readLock();
+      try {
+        cursor = readBatch(cursor, batch);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      batch.forEach(action);
+      batch.clear();
+    }
+  }
+
+  public long size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public long offHeapBytes() {
+    long stamp = lock.readLock();
+    try {
+      return table.size() + (long) arena.size() * ARENA_CHUNK_SIZE;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private void reset() {
+    capacity = INITIAL_CAPACITY;
+    table = new OffHeapSlab(capacity * SLOT_BYTES);
+    size = 0;
+    arena = new ArrayList<>();
+    arena.add(new OffHeapSlab(ARENA_CHUNK_SIZE));
+    arenaPosition = 0;
+  }
+
+  /**
+   * Returns the slot holding {@code accountId}, or {@code -(insertion slot) - 1} when absent.
+   */
+  private long find(String accountId) {
+    int hash = spread(accountId.hashCode());
+    long fragment = (hash >>> 8) & 0xFFFFFFL;
+    long mask = capacity - 1;
+    long slot = hash & mask;
+    while (true) {
+      long key = table.getLong(slot * SLOT_BYTES);
+      if (key == 0) {
+        return -slot - 1;
+      }
+      if ((key >>> OFFSET_BITS) == fragment && idEquals((key & OFFSET_MASK) - 1, accountId)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void insert(String accountId, long balance) {
+    if (size + 1 > capacity * MAX_LOAD) {
+      resize();
+    }
+    long slot = -find(accountId) - 1;
+    int hash = spread(accountId.hashCode());
+    long key = (((hash >>> 8) & 0xFFFFFFL) << OFFSET_BITS) | (intern(accountId) + 1);
+    table.putLongVolatile(slot * SLOT_BYTES + 8, balance);
+    table.putLong(slot * SLOT_BYTES, key);
+    size++;
+  }
+
+  private void resize() {
+    OffHeapSlab oldTable = table;
+    long oldCapacity = capacity;
+    capacity = oldCapacity << 1;
+    table = new OffHeapSlab(capacity * SLOT_BYTES);
+    long mask = capacity - 1;
+    for (long i = 0; i < oldCapacity; i++) {
+      long key = oldTable.getLong(i * SLOT_BYTES);
+      if (key == 0) {
+        continue;
+      }
+      long slot = spread(hashOfInterned((key & OFFSET_MASK) - 1)) & mask;
+      while (table.getLong(slot * SLOT_BYTES) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table.putLong(slot * SLOT_BYTES, key);
+      table.putLong(slot * SLOT_BYTES + 8, oldTable.getLongVolatile(i * SLOT_BYTES + 8));
+    }
+  }
+
+  private long intern(String accountId) {
+    int length = accountId.length();
+    if (length >= LATIN1_FLAG) {
+      throw new IllegalArgumentException("Account id is too long");
+    }
+    boolean latin1 = true;
+    for (int i = 0; i < length && latin1; i++) {
+      latin1 = accountId.charAt(i) < 256;
+    }
+    int entryBytes = 2 + (latin1 ? length : length * 2);
+    long offsetInChunk = arenaPosition & (ARENA_CHUNK_SIZE - 1);
+    if (offsetInChunk + entryBytes > ARENA_CHUNK_SIZE) {
+      arena.add(new OffHeapSlab(ARENA_CHUNK_SIZE));
+      arenaPosition = (long) (arena.size() - 1) << ARENA_CHUNK_SHIFT;
+      offsetInChunk = 0;
+    }
+    long entry = arenaPosition;
+    OffHeapSlab chunk = arena.get((int) (entry >>> ARENA_CHUNK_SHIFT));
+    chunk.putShort(offsetInChunk, (short) (latin1 ? length | LATIN1_FLAG : length));
+    for (int i = 0; i < length; i++) {
+      if (latin1) {
+        chunk.putByte(offsetInChunk + 2 + i, (byte) accountId.charAt(i));
+      } else {
+        chunk.putChar(offsetInChunk + 2 + 2L * i, accountId.charAt(i));
+      }
+    }
+    arenaPosition += entryBytes;
+    return entry;
+  }
+
+  // Reads up to SCAN_BATCH accounts interned at or after cursor and returns the cursor past them
+  private long readBatch(long cursor, List<Account> batch) {
+    while (batch.size() < SCAN_BATCH && cursor < arenaPosition) {
+      int chunkIndex = (int) (cursor >>> ARENA_CHUNK_SHIFT);
+      OffHeapSlab chunk = arena.get(chunkIndex);
+      long offset = cursor & (ARENA_CHUNK_SIZE - 1);
+      // The unused tail of a chunk is zero; even an empty ID has a non-zero header
+      int header = offset + 2 <= ARENA_CHUNK_SIZE ? chunk.getShort(offset) & 0xFFFF : 0;
+      if (header == 0) {
+        cursor = (long) (chunkIndex + 1) << ARENA_CHUNK_SHIFT;
+        continue;
+      }
+      String accountId = internedId(cursor);
+      long slot = find(accountId);
+      if (slot >= 0) {
+        batch.add(new Account(accountId, BigDecimal.valueOf(table.getLongVolatile(slot * SLOT_BYTES + 8), scale)));
+      }
+      int length = header & ~LATIN1_FLAG;
+      cursor += 2 + ((header & LATIN1_FLAG) != 0 ? length : length * 2L);
+    }
+    return cursor;
+  }
+
+  private String internedId(long entry) {
+    OffHeapSlab chunk = arena.get((int) (entry >>> ARENA_CHUNK_SHIFT));
+    long offset = entry & (ARENA_CHUNK_SIZE - 1);
+    int header = chunk.getShort(offset) & 0xFFFF;
+    int length = header & ~LATIN1_FLAG;
+    boolean latin1 = (header & LATIN1_FLAG) != 0;
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = latin1 ? (char) (chunk.getByte(offset + 2 + i) & 0xFF) : chunk.getChar(offset + 2 + 2L * i);
+    }
+    return new String(chars);
+  }
+
+  private boolean idEquals(long entry, String accountId) {
+    OffHeapSlab chunk = arena.get((int) (entry >>> ARENA_CHUNK_SHIFT));
+    long offset = entry & (ARENA_CHUNK_SIZE - 1);
+    int header = chunk.getShort(offset) & 0xFFFF;
+    int length = header & ~LATIN1_FLAG;
+    if (length != accountId.length()) {
+      return false;
+    }
+    boolean latin1 = (header & LATIN1_FLAG) != 0;
+    for (int i = 0; i < length; i++) {
+      char c = latin1 ? (char) (chunk.getByte(offset + 2 + i) & 0xFF) : chunk.getChar(offset + 2 + 2L * i);
+      if (c != accountId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Same value as String.hashCode of the interned ID, computed without materialising the String
+  private int hashOfInterned(long entry) {
+    OffHeapSlab chunk = arena.get((int) (entry >>> ARENA_CHUNK_SHIFT));
+    long offset = entry & (ARENA_CHUNK_SIZE - 1);
+    int header = chunk.getShort(offset) & 0xFFFF;
+    int length = header & ~LATIN1_FLAG;
+    boolean latin1 = (header & LATIN1_FLAG) != 0;
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      char c = latin1 ? (char) (chunk.getByte(offset + 2 + i) & 0xFF) : chunk.getChar(offset + 2 + 2L * i);
+      hash = 31 * hash + c;
+    }
+    return hash;
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,262 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.service.StripedAccountLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind cache over {@link AccountsRepositoryJdbc}. Accounts stay in a
+ * {@link ConcurrentHashMap} once read or written, so the locking engine mutates the same objects
+ * it would with the in-memory repository, and reads that miss load the row lazily. {@link #save}
+ * only marks the account dirty: a flusher thread coalesces dirty accounts and writes them in ID
+ * order as batched upserts every {@code accounts.jdbc.flush-interval-ms}, or as soon as
+ * {@code accounts.jdbc.flush-batch-size} are dirty, so an account saved many times between
+ * flushes is written once. Account creation goes to the database at once, so the table keeps
+ * enforcing unique IDs. A crash loses the balance changes of the last unflushed interval. The
+ * balances are read under the stripe locks of the locking engine, which is why this repository
+ * requires it.
+ */
+@Slf4j
+@Repository
+@Profile("jdbc")
+@ConditionalOnProperty(name = "accounts.jdbc.write-behind", havingValue = "true", matchIfMissing = true)
+public class AccountsRepositoryWriteBehind implements AccountsRepository {
+
+  private final AccountsRepositoryJdbc store;
+  private final int scale;
+  private final StripedAccountLocks accountLocks;
+  private final long flushIntervalNanos;
+  private final int flushBatchSize;
+
+  private final ConcurrentHashMap<String, Account> cache = new ConcurrentHashMap<>();
+  // Saved since their last flush. The flusher removes an account before reading its balance, so a
+  // save racing with a flush marks it again and the next flush writes it
+  private final ConcurrentHashMap<String, Account> dirty = new ConcurrentHashMap<>();
+  // When the oldest unflushed save happened, or 0 if none is waiting
+  private final AtomicLong oldestDirtyNanos = new AtomicLong();
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter failureCounter;
+  private final Timer flushLag;
+  private final DistributionSummary batchSize;
+
+  private volatile boolean running;
+  private Thread flusher;
+
+  @Autowired
+  public AccountsRepositoryWriteBehind(DataSource dataSource, MeterRegistry meterRegistry,
+    StripedAccountLocks accountLocks,
+    @Value("${accounts.balance-scale:2}") int scale,
+    @Value("${accounts.jdbc.flush-interval-ms:50}") long flushIntervalMillis,
+    @Value("${accounts.jdbc.flush-batch-size:1000}") int flushBatchSize) {
+    this.store = new AccountsRepositoryJdbc(dataSource, scale);
+    this.scale = scale;
+    this.accountLocks = accountLocks;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.flushBatchSize = flushBatchSize;
+
+    Gauge.builder("accounts.cache.size", cache, Map::size)
+      .description("Accounts held by the write-behind cache")
+      .register(meterRegistry);
+    Gauge.builder("accounts.write-behind.dirty", dirty, Map::size)
+      .description("Accounts saved but not yet written to the database")
+      .register(meterRegistry);
+    this.hitCounter = Counter.builder("accounts.cache.requests")
+      .description("Account reads by whether the cache held the account")
+      .tag("result", "hit")
+      .register(meterRegistry);
+    this.missCounter = Counter.builder("accounts.cache.requests")
+      .description("Account reads by whether the cache held the account")
+      .tag("result", "miss")
+      .register(meterRegistry);
+    this.failureCounter = meterRegistry.counter("accounts.write-behind.failures");
+    this.flushLag = Timer.builder("accounts.write-behind.flush.lag")
+      .description("Time from the oldest save in a flush until the flush committed")
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .register(meterRegistry);
+    this.batchSize = DistributionSummary.builder("accounts.write-behind.batch.size")
+      .description("Accounts written per flush")
+      .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    running = true;
+    flusher = new Thread(this::flushLoop, "accounts-write-behind");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (flusher == null) {
+      return;
+    }
+    LockSupport.unpark(flusher);
+    flusher.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Override
+  public boolean requiresLockingEngine() {
+    return true;
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    store.createAccount(account);
+    // A read may already have loaded the new row, and a transfer changed it; keep that copy
+    cache.putIfAbsent(account.getAccountId(), account);
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    Account account = cache.get(accountId);
+    if (account != null) {
+      hitCounter.increment();
+      return account;
+    }
+    missCounter.increment();
+    Account loaded = store.getAccount(accountId);
+    if (loaded == null) {
+      return null;
+    }
+    Account raced = cache.putIfAbsent(accountId, loaded);
+    return raced != null ? raced : loaded;
+  }
+
+  @Override
+  public void clearAccounts() {
+    dirty.clear();
+    cache.clear();
+    store.clearAccounts();
+  }
+
+  @Override
+  public void save(Account accountFrom) {
+    cache.put(accountFrom.getAccountId(), accountFrom);
+    if (dirty.put(accountFrom.getAccountId(), accountFrom) == null) {
+      oldestDirtyNanos.compareAndSet(0, System.nanoTime());
+      if (dirty.size() >= flushBatchSize) {
+        LockSupport.unpark(flusher);
+      }
+    }
+  }
+
+  /**
+   * Pages through the table, substituting the cached account for every row the cache holds, since
+   * that is the one carrying unflushed changes.
+   */
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    store.forEachAccount(row -> {
+      Account cached = cache.get(row.getAccountId());
+      action.accept(cached != null ? cached : row);
+    });
+  }
+
+  /**
+   * Writes every dirty account, in chunks of {@code accounts.jdbc.flush-batch-size}. Each balance
+   * is copied under its own stripe lock, which is all a per-account upsert needs, so a flush never
+   * stops transfers on other accounts; in exchange the table can hold one side of a transfer until
+   * the next flush writes the other. Credits still in the sub-balances of a hot account reach the
+   * table once they are folded in, which saves the account again. A chunk that fails is marked
+   * dirty again with the chunks after it, unless a newer save already did, and retried on the next
+   * flush. An account whose balance has more decimal places than {@code accounts.balance-scale} is
+   * left out of its chunk and kept dirty, so it cannot fail the writes of the others.
+   */
+  void flush() {
+    if (dirty.isEmpty()) {
+      return;
+    }
+    long oldest = oldestDirtyNanos.getAndSet(0);
+    // Sorted by ID, so rows are locked in the same order by every flush
+    TreeMap<String, Long> balances = new TreeMap<>();
+    Map<String, Account> accounts = new HashMap<>();
+    List<Account> unwritable = new ArrayList<>();
+    for (String accountId : dirty.keySet()) {
+      Account account = dirty.remove(accountId);
+      if (account == null) {
+        continue;
+      }
+      BigDecimal balance;
+      accountLocks.lock(accountId, accountId);
+      try {
+        balance = account.getBalance();
+      } finally {
+        accountLocks.unlock(accountId, accountId);
+      }
+      try {
+        balances.put(accountId, FixedPointAccount.toMinorUnits(balance, scale));
+        accounts.put(accountId, account);
+      } catch (IllegalArgumentException e) {
+        unwritable.add(account);
+      }
+    }
+    if (!unwritable.isEmpty()) {
+      failureCounter.increment();
+      log.error("Cannot write {} accounts with balances beyond scale {}, such as {} with {}", unwritable.size(),
+        scale, unwritable.get(0).getAccountId(), unwritable.get(0).getBalance());
+      for (Account account : unwritable) {
+        dirty.putIfAbsent(account.getAccountId(), account);
+      }
+    }
+    List<String> accountIds = new ArrayList<>(balances.keySet());
+    for (int from = 0; from < accountIds.size(); from += flushBatchSize) {
+      String first = accountIds.get(from);
+      String last = accountIds.get(Math.min(accountIds.size(), from + flushBatchSize) - 1);
+      SortedMap<String, Long> chunk = balances.subMap(first, true, last, true);
+      try {
+        store.saveAll(chunk);
+        batchSize.record(chunk.size());
+      } catch (RuntimeException e) {
+        failureCounter.increment();
+        log.warn("Failed to write {} accounts, retrying on the next flush", chunk.size(), e);
+        // This chunk and every one after it
+        for (String accountId : balances.tailMap(first).keySet()) {
+          dirty.putIfAbsent(accountId, accounts.get(accountId));
+        }
+        oldestDirtyNanos.compareAndSet(0, oldest);
+        return;
+      }
+    }
+    flushLag.record(System.nanoTime() - oldest, TimeUnit.NANOSECONDS);
+  }
+
+  private void flushLoop() {
+    while (running) {
+      LockSupport.parkNanos(this, flushIntervalNanos);
+      flush();
+    }
+    flush();
+  }
+}
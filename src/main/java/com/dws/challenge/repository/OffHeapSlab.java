@@ -0,0 +1,77 @@
+package com.dws.challenge.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size block of off-heap memory addressed with {@code long} offsets. It is split into direct
+ * buffers of at most 128 MiB so it can grow past the 2 GiB limit of a single {@link ByteBuffer}.
+ * Long values must be 8-byte aligned; their volatile accessors are atomic.
+ */
+class OffHeapSlab {
+
+  static final int SEGMENT_SHIFT = 27;
+  static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final ByteBuffer[] segments;
+  private final long size;
+
+  OffHeapSlab(long size) {
+    this.size = size;
+    int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+    this.segments = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      long remaining = size - ((long) i << SEGMENT_SHIFT);
+      segments[i] = ByteBuffer.allocateDirect((int) Math.min(SEGMENT_SIZE, remaining)).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  long size() {
+    return size;
+  }
+
+  long getLong(long offset) {
+    return (long) LONGS.get(segments[(int) (offset >>> SEGMENT_SHIFT)], (int) (offset & SEGMENT_MASK));
+  }
+
+  void putLong(long offset, long value) {
+    LONGS.set(segments[(int) (offset >>> SEGMENT_SHIFT)], (int) (offset & SEGMENT_MASK), value);
+  }
+
+  long getLongVolatile(long offset) {
+    return (long) LONGS.getVolatile(segments[(int) (offset >>> SEGMENT_SHIFT)], (int) (offset & SEGMENT_MASK));
+  }
+
+  void putLongVolatile(long offset, long value) {
+    LONGS.setVolatile(segments[(int) (offset >>> SEGMENT_SHIFT)], (int) (offset & SEGMENT_MASK), value);
+  }
+
+  byte getByte(long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+  }
+
+  void putByte(long offset, byte value) {
+    segments[(int) (offset >>> SEGMENT_SHIFT)].put((int) (offset & SEGMENT_MASK), value);
+  }
+
+  char getChar(long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].getChar((int) (offset & SEGMENT_MASK));
+  }
+
+  void putChar(long offset, char value) {
+    segments[(int) (offset >>> SEGMENT_SHIFT)].putChar((int) (offset & SEGMENT_MASK), value);
+  }
+
+  short getShort(long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].getShort((int) (offset & SEGMENT_MASK));
+  }
+
+  void putShort(long offset, short value) {
+    segments[(int) (offset >>> SEGMENT_SHIFT)].putShort((int) (offset & SEGMENT_MASK), value);
+  }
+}
@@ -0,0 +1,162 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.model.AccountContention;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The accounts the locking engine locks most often and waits longest for, over a sliding window of
+ * {@code accounts.contention.window-seconds}. Every lock acquisition counts once per account, so a
+ * netted window counts once per pair; its wait is charged to every account it locked, since the
+ * wait cannot be split between stripes. One in {@code accounts.contention.sample-rate} acquisitions
+ * is recorded into two {@link HeavyHitterSketch}es, transfers and wait nanoseconds, and estimates
+ * are scaled back up. Memory is fixed by {@code accounts.contention.sketch-width} whatever the
+ * number of accounts, and recording allocates nothing. Lock waits are only measured with
+ * {@code accounts.metrics.enabled}.
+ */
+@Component
+public class AccountContentionTracker {
+
+  private static final int BUCKETS = 10;
+
+  private final boolean enabled;
+  private final long windowMillis;
+  private final int sampleRate;
+  private final int topK;
+  private final HeavyHitterSketch transfers;
+  private final HeavyHitterSketch lockWaits;
+  private final long startedAt = System.nanoTime();
+  // When the current bucket started; the window so far is BUCKETS - 1 full buckets plus this one
+  private volatile long rotatedAt = startedAt;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public AccountContentionTracker(@Value("${accounts.contention.enabled:true}") boolean enabled,
+    @Value("${accounts.contention.window-seconds:60}") int windowSeconds,
+    @Value("${accounts.contention.sketch-width:2048}") int sketchWidth,
+    @Value("${accounts.contention.top-k:20}") int topK,
+    @Value("${accounts.contention.sample-rate:16}") int sampleRate) {
+    this.enabled = enabled;
+    this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+    this.sampleRate = Math.max(1, sampleRate);
+    this.topK = topK;
+    // Spare candidates so accounts just below the top K are tracked as they climb
+    this.transfers = new HeavyHitterSketch(enabled ? sketchWidth : 1, BUCKETS, 4 * topK);
+    this.lockWaits = new HeavyHitterSketch(enabled ? sketchWidth : 1, BUCKETS, 4 * topK);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!enabled) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "account-contention");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long bucketMillis = Math.max(1, windowMillis / BUCKETS);
+    scheduler.scheduleAtFixedRate(this::rotate, bucketMillis, bucketMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int sampleRate() {
+    return sampleRate;
+  }
+
+  public int topK() {
+    return topK;
+  }
+
+  public long windowSeconds() {
+    return TimeUnit.MILLISECONDS.toSeconds(windowMillis);
+  }
+
+  /**
+   * Records a lock acquisition of two accounts, or one when they are the same, requested and
+   * acquired at the {@link TransferMetrics#start()} and {@link TransferMetrics#recordLockWait(long)}
+   * timestamps, which are 0 when metrics are off.
+   */
+  public void record(String accountFromId, String accountToId, long requested, long acquired) {
+    if (!enabled || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+      return;
+    }
+    long wait = acquired - requested;
+    add(accountFromId, wait);
+    if (!accountToId.equals(accountFromId)) {
+      add(accountToId, wait);
+    }
+  }
+
+  private void add(String accountId, long wait) {
+    transfers.add(accountId, 1);
+    if (wait > 0) {
+      lockWaits.add(accountId, wait);
+    }
+  }
+
+  /**
+   * Up to {@code limit} accounts with the most transfers in the window, busiest first.
+   */
+  public List<AccountContention> mostTransferred(int limit) {
+    return report(transfers.top(limit));
+  }
+
+  /**
+   * Up to {@code limit} accounts with the most time spent waiting for their locks in the window.
+   */
+  public List<AccountContention> mostContended(int limit) {
+    return report(lockWaits.top(limit));
+  }
+
+  // Keeps the sketch's order, which the rates preserve since they share one window
+  private List<AccountContention> report(List<String> accountIds) {
+    double seconds = windowNanos() / 1e9;
+    List<AccountContention> report = new ArrayList<>();
+    for (String accountId : accountIds) {
+      long count = transfers.estimate(accountId) * sampleRate;
+      long waitNanos = lockWaits.estimate(accountId) * sampleRate;
+      report.add(new AccountContention(accountId, round(count / seconds), round(waitNanos / 1e6 / seconds),
+        count == 0 ? 0 : round(waitNanos / 1e3 / count)));
+    }
+    return report;
+  }
+
+  // How much time the sketches currently cover
+  private long windowNanos() {
+    long now = System.nanoTime();
+    long covered = TimeUnit.MILLISECONDS.toNanos(windowMillis) / BUCKETS * (BUCKETS - 1) + (now - rotatedAt);
+    return Math.max(1, Math.min(covered, now - startedAt));
+  }
+
+  void rotate() {
+    transfers.rotate();
+    lockWaits.rotate();
+    rotatedAt = System.nanoTime();
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+}
@@ -0,0 +1,111 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Point-in-time views of the book for long scans, kept without stopping transfers. A cut is opened
+ * with every stripe locked for an instant; from then on the locking engine passes each account to
+ * {@link #beforeWrite(Account)} before changing it, and the cut keeps the first balance it sees,
+ * which is the balance at the cut. Memory grows with the accounts changed while the cut is open,
+ * not with the size of the book.
+ */
+@Component
+public class AccountCuts {
+
+  // Marks accounts created after the cut; compared by identity
+  private static final AccountBalance CREATED_AFTER = new AccountBalance(null, null, 0);
+
+  private final StripedAccountLocks accountLocks;
+
+  private final HotAccounts hotAccounts;
+
+  private final List<Cut> open = new CopyOnWriteArrayList<>();
+
+  @Autowired
+  public AccountCuts(StripedAccountLocks accountLocks, HotAccounts hotAccounts) {
+    this.accountLocks = accountLocks;
+    this.hotAccounts = hotAccounts;
+  }
+
+  /**
+   * Opens a cut that reflects every transfer completed so far and none started later.
+   */
+  public Cut open() {
+    return open(() -> {
+    });
+  }
+
+  /**
+   * Opens a cut and runs {@code atCut} while every stripe is still locked, so whatever it reads,
+   * such as the position of a log appended under the stripe locks, matches the cut exactly.
+   */
+  public Cut open(Runnable atCut) {
+    int[] stripes = accountLocks.lockEveryStripe();
+    try {
+      // Credits to hot accounts bypass the payee's stripe, so they are folded in now and take the
+      // regular path while the cut is open
+      hotAccounts.consolidateAll();
+      Cut cut = new Cut();
+      open.add(cut);
+      atCut.run();
+      return cut;
+    } finally {
+      accountLocks.unlockAll(stripes);
+    }
+  }
+
+  public boolean isOpen() {
+    return !open.isEmpty();
+  }
+
+  /**
+   * Called under the account's stripe lock before its balance changes.
+   */
+  void beforeWrite(Account account) {
+    for (Cut cut : open) {
+      cut.kept.computeIfAbsent(account.getAccountId(), accountId -> account.readBalance());
+    }
+  }
+
+  /**
+   * Called under the account's stripe lock before a new account is added.
+   */
+  void beforeCreate(String accountId) {
+    for (Cut cut : open) {
+      cut.kept.putIfAbsent(accountId, CREATED_AFTER);
+    }
+  }
+
+  public final class Cut implements AutoCloseable {
+    private final ConcurrentHashMap<String, AccountBalance> kept = new ConcurrentHashMap<>();
+
+    private Cut() {
+    }
+
+    /**
+     * The account's balance at the cut, or null if it was created after it.
+     */
+    public AccountBalance balanceOf(Account account) {
+      // The live balance is read first: a writer records the old balance before changing it, so
+      // if nothing is recorded yet the live read predates any change
+      AccountBalance current = account.readBalance();
+      AccountBalance before = kept.get(account.getAccountId());
+      if (before == null) {
+        return current;
+      }
+      return before == CREATED_AFTER ? null : before;
+    }
+
+    @Override
+    public void close() {
+      open.remove(this);
+    }
+  }
+}
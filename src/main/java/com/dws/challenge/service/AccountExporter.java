@@ -0,0 +1,59 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Streams every account to a consumer without copying the book. With the locking engine the
+ * export is a point-in-time view taken through an {@link AccountCuts} cut; the other engines
+ * change balances without stripe locks, so there each account is read consistently but the
+ * accounts are read at different times.
+ */
+@Slf4j
+@Component
+public class AccountExporter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final TransferEngine transferEngine;
+
+  private final AccountCuts accountCuts;
+
+  @Autowired
+  public AccountExporter(AccountsRepository accountsRepository, TransferEngine transferEngine, AccountCuts accountCuts) {
+    this.accountsRepository = accountsRepository;
+    this.transferEngine = transferEngine;
+    this.accountCuts = accountCuts;
+  }
+
+  /**
+   * Hands every account to {@code action} on the calling thread and returns how many there were.
+   */
+  public long export(Consumer<AccountBalance> action) {
+    long started = System.nanoTime();
+    long[] exported = new long[1];
+    if (transferEngine instanceof LockingTransferEngine) {
+      try (AccountCuts.Cut cut = accountCuts.open()) {
+        accountsRepository.forEachAccount(account -> {
+          AccountBalance balance = cut.balanceOf(account);
+          if (balance != null) {
+            action.accept(balance);
+            exported[0]++;
+          }
+        });
+      }
+    } else {
+      accountsRepository.forEachAccount(account -> {
+        action.accept(account.readBalance());
+        exported[0]++;
+      });
+    }
+    log.info("Exported {} accounts in {} ms", exported[0], (System.nanoTime() - started) / 1_000_000);
+    return exported[0];
+  }
+}
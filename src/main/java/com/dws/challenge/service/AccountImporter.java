@@ -0,0 +1,232 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.model.AccountImportError;
+import com.dws.challenge.model.AccountImportResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bulk account import from NDJSON ({@code {"accountId":"Id-1","balance":10.00}} per line) or CSV
+ * ({@code accountId,balance} per line, with an optional header). The input is read line by line and
+ * cut into batches that a worker pool parses, validates and inserts in parallel; at most two
+ * batches per worker are in flight, so memory does not grow with the input. Errors are reported
+ * per line, in input order, as each batch completes. In cluster mode only the accounts this node
+ * owns are imported; every other line is reported as an error naming the owning node.
+ */
+@Slf4j
+@Component
+public class AccountImporter {
+
+  public enum Format { NDJSON, CSV }
+
+  private final AccountsService accountsService;
+  private final ClusterRouter clusterRouter;
+  private final ObjectReader accountReader;
+  private final int batchSize;
+  private final int parallelism;
+  private final int scale;
+  private final ExecutorService workers;
+
+  @Autowired
+  public AccountImporter(AccountsService accountsService, ObjectMapper objectMapper,
+    ClusterRouter clusterRouter,
+    @Value("${accounts.import.parallelism:0}") int parallelism,
+    @Value("${accounts.import.batch-size:1000}") int batchSize,
+    @Value("${accounts.balance-scale:2}") int scale) {
+    this.accountsService = accountsService;
+    this.clusterRouter = clusterRouter;
+    this.accountReader = objectMapper.readerFor(Account.class);
+    this.batchSize = batchSize;
+    this.scale = scale;
+    this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threads = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "account-import-" + threads.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  void stop() {
+    workers.shutdownNow();
+  }
+
+  /**
+   * Imports every account in {@code reader}, handing the errors of each batch to {@code errors}
+   * on the calling thread. Lines are numbered from 1; blank lines are skipped.
+   */
+  public AccountImportResult importAccounts(BufferedReader reader, Format format,
+    Consumer<List<AccountImportError>> errors) throws IOException {
+    long started = System.nanoTime();
+    Deque<Future<Batch>> inFlight = new ArrayDeque<>();
+    long imported = 0;
+    long failed = 0;
+    long lineNumber = 0;
+    List<String> lines = new ArrayList<>(batchSize);
+    long firstLine = 1;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (lineNumber == 1 && format == Format.CSV && isCsvHeader(line)) {
+        firstLine = 2;
+        continue;
+      }
+      lines.add(line);
+      if (lines.size() == batchSize) {
+        if (inFlight.size() == parallelism * 2) {
+          Batch batch = await(inFlight.poll());
+          imported += batch.imported;
+          failed += report(batch, errors);
+        }
+        inFlight.add(submit(new Batch(firstLine, lines, format)));
+        lines = new ArrayList<>(batchSize);
+        firstLine = lineNumber + 1;
+      }
+    }
+    if (!lines.isEmpty()) {
+      inFlight.add(submit(new Batch(firstLine, lines, format)));
+    }
+    while (!inFlight.isEmpty()) {
+      Batch batch = await(inFlight.poll());
+      imported += batch.imported;
+      failed += report(batch, errors);
+    }
+    log.info("Imported {} accounts, {} lines failed, in {} ms", imported, failed,
+      (System.nanoTime() - started) / 1_000_000);
+    return new AccountImportResult(imported, failed);
+  }
+
+  private Future<Batch> submit(Batch batch) {
+    return workers.submit(() -> {
+      batch.run();
+      return batch;
+    });
+  }
+
+  private static Batch await(Future<Batch> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while importing accounts", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Account import batch failed", e.getCause());
+    }
+  }
+
+  private static long report(Batch batch, Consumer<List<AccountImportError>> errors) {
+    if (!batch.errors.isEmpty()) {
+      errors.accept(batch.errors);
+    }
+    return batch.errors.size();
+  }
+
+  private static boolean isCsvHeader(String line) {
+    return line.regionMatches(true, 0, "accountId", 0, "accountId".length());
+  }
+
+  private Account parse(String line, Format format) throws JsonProcessingException {
+    if (format == Format.NDJSON) {
+      return accountReader.readValue(line);
+    }
+    int comma = line.indexOf(',');
+    if (comma < 0) {
+      return new Account(line.trim(), null);
+    }
+    String balance = line.substring(comma + 1).trim();
+    return new Account(line.substring(0, comma).trim(), balance.isEmpty() ? null : new BigDecimal(balance));
+  }
+
+  // The constraints declared on Account, the book's scale, and which node owns the account
+  private String validate(Account account) {
+    if (account == null) {
+      return "Malformed line";
+    }
+    if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+      return "accountId must not be empty";
+    }
+    if (account.getAccountId().length() > Account.MAX_ID_LENGTH) {
+      return "accountId must have at most " + Account.MAX_ID_LENGTH + " characters";
+    }
+    if (account.getBalance() == null) {
+      return "balance must not be null";
+    }
+    if (account.getBalance().signum() < 0) {
+      return "Initial balance must be positive.";
+    }
+    if (!FixedPointAccount.fitsScale(account.getBalance(), scale)) {
+      return "balance must have at most " + scale + " decimal places";
+    }
+    if (!clusterRouter.isLocal(account.getAccountId())) {
+      return "accountId belongs to cluster node " + clusterRouter.ownerOf(account.getAccountId());
+    }
+    return null;
+  }
+
+  private final class Batch {
+    private final long firstLine;
+    private final List<String> lines;
+    private final Format format;
+    private final List<AccountImportError> errors = new ArrayList<>();
+    private long imported;
+
+    private Batch(long firstLine, List<String> lines, Format format) {
+      this.firstLine = firstLine;
+      this.lines = lines;
+      this.format = format;
+    }
+
+    private void run() {
+      for (int i = 0; i < lines.size(); i++) {
+        String line = lines.get(i);
+        if (line.isBlank()) {
+          continue;
+        }
+        long lineNumber = firstLine + i;
+        try {
+          Account account = parse(line, format);
+          String invalid = validate(account);
+          if (invalid != null) {
+            errors.add(new AccountImportError(lineNumber, invalid));
+            continue;
+          }
+          accountsService.createAccount(account);
+          imported++;
+        } catch (DuplicateAccountIdException e) {
+          errors.add(new AccountImportError(lineNumber, e.getMessage()));
+        } catch (JsonProcessingException e) {
+          errors.add(new AccountImportError(lineNumber, "Malformed line: " + e.getOriginalMessage()));
+        } catch (NumberFormatException e) {
+          errors.add(new AccountImportError(lineNumber, "Malformed balance"));
+        } catch (IllegalArgumentException e) {
+          errors.add(new AccountImportError(lineNumber, e.getMessage()));
+        }
+      }
+    }
+  }
+}
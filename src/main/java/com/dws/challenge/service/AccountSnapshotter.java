@@ -0,0 +1,141 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.snapshot.AccountSnapshotStore;
+import com.dws.challenge.snapshot.AccountSnapshotWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Periodically writes the account book to a snapshot and discards the journal history it covers.
+ * Transfers keep running meanwhile: each account is read under its stripe lock together with the
+ * journal's last sequence, which is exactly the set of records its balance reflects, since the
+ * locking engine journals under the same locks, or for credits to a hot account under the
+ * sub-balance locks {@link HotAccounts#hold} takes.
+ */
+@Slf4j
+@Component
+public class AccountSnapshotter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final StripedAccountLocks accountLocks;
+
+  private final TransferJournal journal;
+
+  private final AccountSnapshotStore snapshotStore;
+
+  private final HotAccounts hotAccounts;
+
+  private final int scale;
+
+  private final long intervalSeconds;
+
+  private final ReentrantLock snapshotLock = new ReentrantLock();
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public AccountSnapshotter(AccountsRepository accountsRepository, StripedAccountLocks accountLocks,
+    TransferJournal journal, AccountSnapshotStore snapshotStore, HotAccounts hotAccounts,
+    @Value("${accounts.balance-scale:2}") int scale,
+    @Value("${journal.snapshot.interval-seconds:300}") long intervalSeconds) {
+    this.accountsRepository = accountsRepository;
+    this.accountLocks = accountLocks;
+    this.journal = journal;
+    this.snapshotStore = snapshotStore;
+    this.hotAccounts = hotAccounts;
+    this.scale = scale;
+    this.intervalSeconds = intervalSeconds;
+  }
+
+  /**
+   * Starts periodic snapshots; called once the book has been recovered.
+   */
+  void start() {
+    if (!journal.isEnabled() || intervalSeconds <= 0) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "account-snapshotter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public Path takeSnapshot() throws IOException {
+    snapshotLock.lock();
+    try {
+      long started = System.nanoTime();
+      long baseSequence = journal.lastSequence();
+      Path snapshot;
+      long count;
+      try (AccountSnapshotWriter writer = snapshotStore.newWriter(scale, baseSequence)) {
+        accountsRepository.forEachAccount(account -> write(writer, account.getAccountId()));
+        writer.finish();
+        count = writer.count();
+        snapshot = writer.path();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      snapshotStore.deleteOlderThan(snapshot);
+      journal.discardThrough(baseSequence);
+      log.info("Wrote snapshot {} of {} accounts in {} ms", snapshot.getFileName(), count,
+        (System.nanoTime() - started) / 1_000_000);
+      return snapshot;
+    } finally {
+      snapshotLock.unlock();
+    }
+  }
+
+  private void write(AccountSnapshotWriter writer, String accountId) {
+    long minorUnits;
+    long sequence;
+    accountLocks.lock(accountId, accountId);
+    try {
+      Account account = accountsRepository.getAccount(accountId);
+      // A hot account's credits are journaled under its sub-balance locks rather than its stripe
+      try (HotAccounts.Hold hold = hotAccounts.hold(account)) {
+        minorUnits = FixedPointAccount.toMinorUnits(account.getBalance(), scale);
+        sequence = journal.lastSequence();
+      }
+    } finally {
+      accountLocks.unlock(accountId, accountId);
+    }
+    try {
+      writer.add(accountId, minorUnits, sequence);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void snapshotQuietly() {
+    try {
+      takeSnapshot();
+    } catch (IOException | RuntimeException e) {
+      log.error("Snapshot failed, keeping the journal: {}", e.getMessage(), e);
+    }
+  }
+}
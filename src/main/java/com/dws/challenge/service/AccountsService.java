@@ -1,16 +1,21 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
-import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.model.LedgerPage;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
 import com.dws.challenge.repository.AccountsRepository;
 import jakarta.validation.Valid;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class AccountsService {
@@ -18,61 +23,113 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
-  private final ConcurrentHashMap<String, ReentrantLock> accountLocks = new ConcurrentHashMap<>();
+  private final TransferNotificationOutbox notificationOutbox;
+
+  private final TransferEngine transferEngine;
+
+  private final TransferMetrics metrics;
+
+  private final TransferLedger ledger;
 
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository, TransferNotificationOutbox notificationOutbox,
+    TransferEngine transferEngine, TransferMetrics metrics, TransferLedger ledger) {
     this.accountsRepository = accountsRepository;
+    this.notificationOutbox = notificationOutbox;
+    this.transferEngine = transferEngine;
+    this.metrics = metrics;
+    this.ledger = ledger;
   }
 
   public void createAccount(@Valid Account account) {
-    this.accountsRepository.createAccount(account);
+    this.transferEngine.createAccount(account);
   }
 
+  /**
+   * The stored account; a hot account's balance may lack credits not yet folded in, which
+   * {@link #getAccountBalance(String)} includes.
+   */
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
-  // Transfer Money
-  public void transferMoney(String accountFromId, String accountToId, double amount, NotificationService notificationService) {
-    ReentrantLock lockFrom = accountLocks.computeIfAbsent(accountFromId, id -> new ReentrantLock());
-    ReentrantLock lockTo = accountLocks.computeIfAbsent(accountToId, id -> new ReentrantLock());
-
-    // Lock accounts to ensure no other operation interferes
-    ReentrantLock firstLock = lockFrom;
-    ReentrantLock secondLock = lockTo;
 
-    if (accountFromId.compareTo(accountToId) > 0) { // Prevent deadlock by consistent ordering
-      firstLock = lockTo;
-      secondLock = lockFrom;
-    }
+  /**
+   * Consistent copy of the account's balance, read without taking its lock; null if it does not exist.
+   */
+  public AccountBalance getAccountBalance(String accountId) {
+    Account account = this.accountsRepository.getAccount(accountId);
+    return account == null ? null : this.transferEngine.readBalance(account);
+  }
 
+  public LedgerPage getTransferHistory(String accountId, Instant from, Instant to, Long cursor, int limit) {
+    return this.ledger.history(accountId, from, to, cursor, limit);
+  }
+  // Transfer Money
+  public void transferMoney(String accountFromId, String accountToId, double amount, NotificationService notificationService) {
+    long started = metrics.start();
     try {
-      firstLock.lock();
-      secondLock.lock();
-
-      Account accountFrom = getAccount(accountFromId);
-      Account accountTo = getAccount(accountToId);
+      this.transferEngine.transfer(accountFromId, accountToId, amount);
+    } catch (RuntimeException e) {
+      metrics.recordFailure(started, e);
+      throw e;
+    }
 
-      // Existing transfer logic with balance and notifications
-      if (accountFrom.getBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
-        throw new InsufficientFundsException("Insufficient funds for transfer");
-      }
+    ledger.record(accountFromId, accountToId, amount);
+    // Notify only after the transfer has completed so a slow notifier never holds up other transfers
+    notifyTransfer(accountFromId, accountToId, amount, notificationService);
+    metrics.recordCompleted(started);
+  }
 
-      if (amount < 0) {
-        throw new IllegalArgumentException("Transfer amount must be positive");
+  public CompletableFuture<Void> transferMoneyAsync(String accountFromId, String accountToId, double amount,
+    NotificationService notificationService) {
+    long started = metrics.start();
+    CompletableFuture<Void> transfer = this.transferEngine.transferAsync(accountFromId, accountToId, amount);
+    transfer.whenComplete((ignored, failure) -> {
+      if (failure != null) {
+        metrics.recordFailure(started, failure instanceof CompletionException ? failure.getCause() : failure);
       }
+    });
+    Runnable notify = () -> {
+      ledger.record(accountFromId, accountToId, amount);
+      notifyTransfer(accountFromId, accountToId, amount, notificationService);
+      metrics.recordCompleted(started);
+    };
+    if (transfer.isDone()) {
+      transfer.thenRun(notify);
+    } else {
+      // Keep the outbox off the engine's own threads
+      transfer.thenRunAsync(notify);
+    }
+    return transfer;
+  }
 
-      accountFrom.withdraw(BigDecimal.valueOf(amount));
-      accountTo.deposit(BigDecimal.valueOf(amount));
-
-      accountsRepository.save(accountFrom);
-      accountsRepository.save(accountTo);
+  public boolean supportsAtomicBatches() {
+    return this.transferEngine.supportsAtomicBatches();
+  }
 
-      notificationService.notifyAboutTransfer(accountFrom, String.valueOf(amount));
-      notificationService.notifyAboutTransfer(accountTo, String.valueOf(amount));
-    } finally {
-      firstLock.unlock();
-      secondLock.unlock();
+  // Batch Transfer
+  public List<TransferResult> transferMoneyBatch(List<TransferRequest> transfers, boolean atomic,
+    NotificationService notificationService) {
+    List<TransferResult> results = this.transferEngine.transferBatch(transfers, atomic);
+
+    for (TransferResult result : results) {
+      metrics.recordOutcome(0, result.getStatus());
+      if (result.isCompleted()) {
+        TransferRequest transfer = transfers.get(result.getIndex());
+        ledger.record(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+        notifyTransfer(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount(), notificationService);
+      }
     }
+    return results;
+  }
+
+  private void notifyTransfer(String accountFromId, String accountToId, double amount,
+    NotificationService notificationService) {
+    long started = metrics.start();
+    String description = String.valueOf(amount);
+    // Lock-free balance copies: nothing here may take a lock the transfers themselves need
+    notificationOutbox.enqueue(notificationService, getAccountBalance(accountFromId), description);
+    notificationOutbox.enqueue(notificationService, getAccountBalance(accountToId), description);
+    metrics.recordStage(TransferMetrics.Stage.NOTIFICATION, started);
   }
 }
@@ -0,0 +1,116 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+import com.dws.challenge.model.TransferStatus;
+import com.dws.challenge.repository.AccountsRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lock-free engine: accounts are stored as {@link FixedPointAccount}s and a transfer is a CAS debit
+ * followed by an atomic credit, with no per-transfer lock or allocation. Amounts must fit the
+ * configured scale. Atomic batches need a consistent view of several accounts at once and are
+ * only supported by the locking engine.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.engine", havingValue = "cas")
+public class CasTransferEngine implements TransferEngine {
+
+  private final AccountsRepository accountsRepository;
+
+  private final int scale;
+
+  @Autowired
+  public CasTransferEngine(AccountsRepository accountsRepository, @Value("${accounts.balance-scale:2}") int scale) {
+    this.accountsRepository = accountsRepository;
+    this.scale = scale;
+  }
+
+  @PostConstruct
+  void start() {
+    if (accountsRepository.requiresLockingEngine()) {
+      throw new IllegalStateException("The configured accounts repository requires the locking transfer engine");
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) {
+    accountsRepository.createAccount(prepareAccount(account));
+  }
+
+  public Account prepareAccount(Account account) {
+    if (account instanceof FixedPointAccount) {
+      return account;
+    }
+    return new FixedPointAccount(account.getAccountId(), account.getBalance(), scale);
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, double amount) {
+    FixedPointAccount accountFrom = getFixedPointAccount(accountFromId);
+    FixedPointAccount accountTo = getFixedPointAccount(accountToId);
+    if (accountFrom == null || accountTo == null) {
+      throw new IllegalStateException("Account " + (accountFrom == null ? accountFromId : accountToId) + " does not exist");
+    }
+    transfer(accountFrom, accountTo, FixedPointAccount.toMinorUnits(amount, scale));
+  }
+
+  @Override
+  public List<TransferResult> transferBatch(List<TransferRequest> transfers, boolean atomic) {
+    if (atomic) {
+      throw new IllegalArgumentException("Atomic batches require the locking transfer engine");
+    }
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferRequest transfer = transfers.get(i);
+      FixedPointAccount accountFrom = getFixedPointAccount(transfer.getAccountFromId());
+      FixedPointAccount accountTo = getFixedPointAccount(transfer.getAccountToId());
+      TransferStatus status = TransferStatus.COMPLETED;
+      if (accountFrom == null || accountTo == null) {
+        status = TransferStatus.ACCOUNT_NOT_FOUND;
+      } else {
+        try {
+          transfer(accountFrom, accountTo, FixedPointAccount.toMinorUnits(transfer.getAmount(), scale));
+        } catch (InsufficientFundsException e) {
+          status = TransferStatus.INSUFFICIENT_FUNDS;
+        } catch (IllegalArgumentException e) {
+          status = TransferStatus.INVALID_AMOUNT;
+        }
+      }
+      results.add(new TransferResult(i, status));
+    }
+    return results;
+  }
+
+  private void transfer(FixedPointAccount accountFrom, FixedPointAccount accountTo, long minorUnits) {
+    if (minorUnits < 0) {
+      throw new IllegalArgumentException("Transfer amount must be positive");
+    }
+    if (!accountFrom.tryDebit(minorUnits)) {
+      throw new InsufficientFundsException("Insufficient funds for transfer");
+    }
+    // The debit already reserved the funds, so the credit cannot fail
+    accountTo.credit(minorUnits);
+  }
+
+  private FixedPointAccount getFixedPointAccount(String accountId) {
+    if (accountId == null) {
+      return null;
+    }
+    Account account = accountsRepository.getAccount(accountId);
+    if (account == null || account instanceof FixedPointAccount) {
+      return (FixedPointAccount) account;
+    }
+    throw new IllegalStateException("Account " + accountId + " was not created through the CAS transfer engine");
+  }
+}
@@ -0,0 +1,72 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.FixedPointAccount;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer, single-consumer ring of pre-allocated credits, one for every pair of
+ * shards. The source shard hands the credit of a transfer it has debited to the destination shard
+ * through it, with no allocation, lock or compare-and-set: each side only publishes its own
+ * position.
+ */
+class CreditRing {
+
+  private final FixedPointAccount[] accountsTo;
+  private final long[] minorUnits;
+  private final CompletableFuture<?>[] futures;
+  private final int mask;
+  // Next slot the producer fills, and next slot the consumer applies; each written by one side
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  CreditRing(int capacity) {
+    int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.accountsTo = new FixedPointAccount[size];
+    this.minorUnits = new long[size];
+    this.futures = new CompletableFuture<?>[size];
+    this.mask = size - 1;
+  }
+
+  /**
+   * Producer only: whether {@link #put} has a free slot.
+   */
+  boolean hasRoom() {
+    return tail.get() - head.get() < accountsTo.length;
+  }
+
+  /**
+   * Producer only, after {@link #hasRoom()}.
+   */
+  void put(FixedPointAccount accountTo, long amount, CompletableFuture<Void> future) {
+    long position = tail.get();
+    int index = (int) position & mask;
+    accountsTo[index] = accountTo;
+    minorUnits[index] = amount;
+    futures[index] = future;
+    tail.lazySet(position + 1);
+  }
+
+  /**
+   * Consumer only: credits every published slot and completes its transfer; returns how many.
+   */
+  int applyAll() {
+    long position = head.get();
+    long end = tail.get();
+    if (position == end) {
+      return 0;
+    }
+    for (; position < end; position++) {
+      int index = (int) position & mask;
+      accountsTo[index].creditExclusive(minorUnits[index]);
+      CompletableFuture<?> future = futures[index];
+      accountsTo[index] = null;
+      futures[index] = null;
+      future.complete(null);
+    }
+    int applied = (int) (end - head.get());
+    head.lazySet(end);
+    return applied;
+  }
+}
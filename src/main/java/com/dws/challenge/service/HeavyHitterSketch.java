@@ -0,0 +1,190 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sliding-window Count-Min sketch that also tracks the keys with the largest totals. The window is
+ * a ring of buckets, each a {@value #DEPTH}-row counter table; a running table holds the sum of all
+ * buckets, so an estimate reads one counter per row. {@link #rotate()} expires the oldest bucket by
+ * subtracting it from the running table, so the window slides one bucket at a time.
+ * <p>
+ * The heaviest keys are kept in a small candidate table, Space-Saving style: a key whose estimate
+ * beats the lightest candidate replaces it. Candidate estimates are refreshed from the sketch on
+ * every rotation, so keys that cool down are displaced. {@link #add(String, long)} allocates
+ * nothing: it hashes the key with its cached {@link String#hashCode()}, increments counters in
+ * preallocated arrays, and only takes the candidate lock, without waiting, when the key is heavy
+ * enough to be a candidate. Estimates never undercount; they overcount by at most about
+ * {@code e / width} of the window's total with high probability.
+ */
+public final class HeavyHitterSketch {
+
+  private static final int DEPTH = 4;
+
+  private final int width;
+  private final int mask;
+  private final int buckets;
+  // Bucket b's row r, column c is at (b * DEPTH + r) * width + c
+  private final AtomicLongArray counts;
+  private final AtomicLongArray totals;
+  private volatile int current;
+
+  private final ReentrantLock candidatesLock = new ReentrantLock();
+  private final String[] candidates;
+  private final int[] candidateHashes;
+  private final long[] candidateEstimates;
+  private int candidateCount;
+  // Estimate a key must exceed to enter the candidate table; 0 while it has free slots
+  private volatile long admission;
+
+  public HeavyHitterSketch(int width, int buckets, int candidates) {
+    this.width = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+    this.mask = this.width - 1;
+    this.buckets = buckets;
+    this.counts = new AtomicLongArray(buckets * DEPTH * this.width);
+    this.totals = new AtomicLongArray(DEPTH * this.width);
+    this.candidates = new String[candidates];
+    this.candidateHashes = new int[candidates];
+    this.candidateEstimates = new long[candidates];
+  }
+
+  public void add(String key, long amount) {
+    int hash = key.hashCode();
+    int h1 = spread(hash);
+    int h2 = spread(h1 ^ 0x9E3779B9) | 1;
+    int base = current * DEPTH * width;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      int index = row * width + ((h1 + row * h2) & mask);
+      counts.getAndAdd(base + index, amount);
+      estimate = Math.min(estimate, totals.addAndGet(index, amount));
+    }
+    if (estimate > admission) {
+      offer(key, hash, estimate);
+    }
+  }
+
+  public long estimate(String key) {
+    int h1 = spread(key.hashCode());
+    int h2 = spread(h1 ^ 0x9E3779B9) | 1;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, totals.get(row * width + ((h1 + row * h2) & mask)));
+    }
+    return estimate;
+  }
+
+  /**
+   * Candidate keys, heaviest first, by their current estimates.
+   */
+  public List<String> top(int limit) {
+    candidatesLock.lock();
+    try {
+      refreshCandidates();
+      Integer[] order = new Integer[candidateCount];
+      for (int i = 0; i < candidateCount; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Long.compare(candidateEstimates[b], candidateEstimates[a]));
+      List<String> top = new ArrayList<>(Math.min(limit, candidateCount));
+      for (int i = 0; i < Math.min(limit, candidateCount); i++) {
+        top.add(candidates[order[i]]);
+      }
+      return top;
+    } finally {
+      candidatesLock.unlock();
+    }
+  }
+
+  /**
+   * Expires the oldest bucket and makes it the one new counts go to.
+   */
+  public void rotate() {
+    int next = current + 1 == buckets ? 0 : current + 1;
+    int base = next * DEPTH * width;
+    for (int index = 0; index < DEPTH * width; index++) {
+      // Taken and cleared in one step so a late increment is either expired with the bucket or kept in both
+      long expired = counts.getAndSet(base + index, 0);
+      if (expired != 0) {
+        totals.addAndGet(index, -expired);
+      }
+    }
+    current = next;
+    candidatesLock.lock();
+    try {
+      refreshCandidates();
+    } finally {
+      candidatesLock.unlock();
+    }
+  }
+
+  // Skipped when another thread holds the table; a heavy key is offered again soon enough
+  private void offer(String key, int hash, long estimate) {
+    if (!candidatesLock.tryLock()) {
+      return;
+    }
+    try {
+      int lightest = -1;
+      for (int i = 0; i < candidateCount; i++) {
+        if (candidateHashes[i] == hash && candidates[i].equals(key)) {
+          candidateEstimates[i] = estimate;
+          updateAdmission();
+          return;
+        }
+        if (lightest < 0 || candidateEstimates[i] < candidateEstimates[lightest]) {
+          lightest = i;
+        }
+      }
+      if (candidateCount < candidates.length) {
+        lightest = candidateCount++;
+      } else if (estimate <= candidateEstimates[lightest]) {
+        return;
+      }
+      candidates[lightest] = key;
+      candidateHashes[lightest] = hash;
+      candidateEstimates[lightest] = estimate;
+      updateAdmission();
+    } finally {
+      candidatesLock.unlock();
+    }
+  }
+
+  // Re-reads every candidate's estimate and drops those that left the window
+  private void refreshCandidates() {
+    int kept = 0;
+    for (int i = 0; i < candidateCount; i++) {
+      long estimate = estimate(candidates[i]);
+      if (estimate > 0) {
+        candidates[kept] = candidates[i];
+        candidateHashes[kept] = candidateHashes[i];
+        candidateEstimates[kept] = estimate;
+        kept++;
+      }
+    }
+    Arrays.fill(candidates, kept, candidateCount, null);
+    candidateCount = kept;
+    updateAdmission();
+  }
+
+  private void updateAdmission() {
+    if (candidateCount < candidates.length) {
+      admission = 0;
+      return;
+    }
+    long lightest = Long.MAX_VALUE;
+    for (int i = 0; i < candidateCount; i++) {
+      lightest = Math.min(lightest, candidateEstimates[i]);
+    }
+    admission = lightest;
+  }
+
+  private static int spread(int hash) {
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,312 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Accounts that receive too many transfers to serialize on one stripe lock. Credits to a hot
+ * account go into one of several sub-balances, each with its own lock, so the locking engine
+ * takes only the payer's stripe; the sub-balances are folded into the account's balance under its
+ * stripe lock periodically and before a debit the settled balance cannot cover. Reads add the
+ * sub-balances to the settled balance without taking any lock. Accounts are flagged with
+ * {@code accounts.hot.account-ids} or detected from a 1-in-{@value #SAMPLE_RATE} sample of credits
+ * once they receive more than {@code accounts.hot.detect-credits-per-second}; they stay hot until
+ * restart.
+ */
+@Slf4j
+@Component
+public class HotAccounts {
+
+  private static final int SAMPLE_RATE = 16;
+  private static final long DETECT_INTERVAL_MILLIS = 1000;
+
+  private static final Hold NOT_HOT = () -> { };
+
+  private final AccountsRepository accountsRepository;
+  private final StripedAccountLocks accountLocks;
+  private final ConcurrentHashMap<String, SubBalances> hot = new ConcurrentHashMap<>();
+  private final long detectCreditsPerSecond;
+  private final int subBalances;
+  private final long consolidateIntervalMillis;
+  private final int maxAccounts;
+
+  // Sampled credits per account in the current detection window
+  private volatile ConcurrentHashMap<String, LongAdder> sampled = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired
+  public HotAccounts(AccountsRepository accountsRepository, StripedAccountLocks accountLocks, MeterRegistry meterRegistry,
+    @Value("${accounts.hot.account-ids:}") List<String> accountIds,
+    @Value("${accounts.hot.detect-credits-per-second:10000}") long detectCreditsPerSecond,
+    @Value("${accounts.hot.sub-balances:0}") int subBalances,
+    @Value("${accounts.hot.consolidate-interval-ms:100}") long consolidateIntervalMillis,
+    @Value("${accounts.hot.max-accounts:64}") int maxAccounts) {
+    this.accountsRepository = accountsRepository;
+    this.accountLocks = accountLocks;
+    this.detectCreditsPerSecond = detectCreditsPerSecond;
+    this.subBalances = subBalances > 0 ? subBalances : 2 * Runtime.getRuntime().availableProcessors();
+    this.consolidateIntervalMillis = consolidateIntervalMillis;
+    this.maxAccounts = maxAccounts;
+    for (String accountId : accountIds) {
+      if (!accountId.isBlank()) {
+        hot.put(accountId.trim(), new SubBalances(this.subBalances));
+      }
+    }
+
+    Gauge.builder("transfers.hot.accounts", hot, Map::size)
+      .description("Accounts whose credits go to sub-balances")
+      .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "hot-accounts");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::consolidateAll, consolidateIntervalMillis, consolidateIntervalMillis,
+      TimeUnit.MILLISECONDS);
+    if (detectCreditsPerSecond > 0) {
+      scheduler.scheduleWithFixedDelay(this::detect, DETECT_INTERVAL_MILLIS, DETECT_INTERVAL_MILLIS,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public boolean isHot(String accountId) {
+    return hot.containsKey(accountId);
+  }
+
+  /**
+   * Flags an account as hot; returns false once {@code accounts.hot.max-accounts} are.
+   */
+  public boolean markHot(String accountId) {
+    if (hot.size() >= maxAccounts) {
+      return false;
+    }
+    if (hot.putIfAbsent(accountId, new SubBalances(subBalances)) == null) {
+      log.info("Account {} is hot, crediting it through {} sub-balances", accountId, subBalances);
+    }
+    return true;
+  }
+
+  /**
+   * Counts a credit to a non-hot account towards detection.
+   */
+  void recordCredit(String accountId) {
+    if (detectCreditsPerSecond <= 0 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+      return;
+    }
+    sampled.computeIfAbsent(accountId, id -> new LongAdder()).increment();
+  }
+
+  /**
+   * Runs {@code journal}, then adds {@code amount} to one of the hot account's sub-balances, both
+   * under the same sub-balance lock, returning the journal's result, so that {@link #hold} sees the
+   * credit and its journal record together or not at all. If {@code journal} throws, nothing is
+   * credited.
+   */
+  long credit(String accountId, BigDecimal amount, LongSupplier journal) {
+    SubBalance subBalance = hot.get(accountId).lockAny();
+    try {
+      long sequence = journal.getAsLong();
+      subBalance.amount = subBalance.amount.add(amount);
+      return sequence;
+    } finally {
+      subBalance.lock.unlock();
+    }
+  }
+
+  /**
+   * Folds the account's sub-balances into its balance and keeps new credits out until the
+   * returned hold is closed, so the balance and anything read meanwhile, such as the journal's last
+   * sequence, agree. Called under the account's stripe lock.
+   */
+  Hold hold(Account account) {
+    SubBalances subBalances = hot.get(account.getAccountId());
+    if (subBalances == null) {
+      return NOT_HOT;
+    }
+    subBalances.lockAll();
+    try {
+      // Readers summing the sub-balances retry while money moves from them into the balance
+      subBalances.folds++;
+      try {
+        BigDecimal pending = subBalances.drain();
+        if (pending.signum() != 0) {
+          account.setBalance(account.getBalance().add(pending));
+          accountsRepository.save(account);
+        }
+      } finally {
+        subBalances.folds++;
+      }
+    } catch (RuntimeException e) {
+      subBalances.unlockAll();
+      throw e;
+    }
+    return subBalances::unlockAll;
+  }
+
+  /**
+   * Consistent copy of the account's balance including credits not yet folded in, taken without
+   * its stripe lock or any sub-balance lock; null if it does not exist. It retries only if a fold
+   * overlapped the read.
+   */
+  AccountBalance readBalance(String accountId) {
+    SubBalances subBalances = hot.get(accountId);
+    while (true) {
+      long folds = subBalances == null ? 0 : subBalances.folds;
+      Account account = accountsRepository.getAccount(accountId);
+      if (account == null) {
+        return null;
+      }
+      AccountBalance settled = account.readBalance();
+      if (subBalances == null) {
+        return settled;
+      }
+      BigDecimal pending = subBalances.sum();
+      if ((folds & 1) == 0 && subBalances.folds == folds) {
+        return new AccountBalance(accountId, settled.getBalance().add(pending), settled.getVersion());
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Folds the account's sub-balances into its balance. Called under the account's stripe lock.
+   */
+  void consolidate(Account account) {
+    hold(account).close();
+  }
+
+  /**
+   * Folds every hot account, taking each one's stripe lock in turn. Under
+   * {@link StripedAccountLocks#lockEveryStripe()} no credit is in progress, so afterwards every
+   * balance is complete.
+   */
+  void consolidateAll() {
+    for (String accountId : hot.keySet()) {
+      accountLocks.lock(accountId, accountId);
+      try {
+        Account account = accountsRepository.getAccount(accountId);
+        if (account != null) {
+          consolidate(account);
+        }
+      } finally {
+        accountLocks.unlock(accountId, accountId);
+      }
+    }
+  }
+
+  void detect() {
+    ConcurrentHashMap<String, LongAdder> window = sampled;
+    sampled = new ConcurrentHashMap<>();
+    long threshold = detectCreditsPerSecond * DETECT_INTERVAL_MILLIS / 1000 / SAMPLE_RATE;
+    for (Map.Entry<String, LongAdder> entry : window.entrySet()) {
+      if (entry.getValue().sum() >= threshold && !markHot(entry.getKey())) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Releases the sub-balances {@link #hold} locked.
+   */
+  interface Hold extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final class SubBalances {
+    private final SubBalance[] subBalances;
+    // Odd while a fold moves the drained sub-balances into the balance; written with all locked
+    private volatile long folds;
+
+    private SubBalances(int count) {
+      subBalances = new SubBalance[count];
+      for (int i = 0; i < count; i++) {
+        subBalances[i] = new SubBalance();
+      }
+    }
+
+    // Starts at a random sub-balance and takes the first free one, so concurrent credits spread out
+    private SubBalance lockAny() {
+      int start = ThreadLocalRandom.current().nextInt(subBalances.length);
+      for (int i = 0; i < subBalances.length; i++) {
+        SubBalance subBalance = subBalances[(start + i) % subBalances.length];
+        if (subBalance.lock.tryLock()) {
+          return subBalance;
+        }
+      }
+      SubBalance subBalance = subBalances[start];
+      subBalance.lock.lock();
+      return subBalance;
+    }
+
+    private void lockAll() {
+      for (SubBalance subBalance : subBalances) {
+        subBalance.lock.lock();
+      }
+    }
+
+    private void unlockAll() {
+      for (int i = subBalances.length - 1; i >= 0; i--) {
+        subBalances[i].lock.unlock();
+      }
+    }
+
+    // Each credit is a single write, so the sum holds whole credits only
+    private BigDecimal sum() {
+      BigDecimal total = BigDecimal.ZERO;
+      for (SubBalance subBalance : subBalances) {
+        total = total.add(subBalance.amount);
+      }
+      return total;
+    }
+
+    // Called with every sub-balance locked
+    private BigDecimal drain() {
+      BigDecimal total = BigDecimal.ZERO;
+      for (SubBalance subBalance : subBalances) {
+        total = total.add(subBalance.amount);
+        subBalance.amount = BigDecimal.ZERO;
+      }
+      return total;
+    }
+  }
+
+  private static final class SubBalance {
+    private final ReentrantLock lock = new ReentrantLock();
+    // Written under lock, read without it by readBalance
+    private volatile BigDecimal amount = BigDecimal.ZERO;
+  }
+}
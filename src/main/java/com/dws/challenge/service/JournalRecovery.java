@@ -0,0 +1,157 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.journal.JournalRecordHandler;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.snapshot.AccountSnapshot;
+import com.dws.challenge.snapshot.AccountSnapshotStore;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rebuilds the account book at startup, before the application serves traffic: the latest
+ * snapshot is loaded and only the journal records after it are replayed.
+ */
+@Slf4j
+@Component
+public class JournalRecovery {
+
+  private final TransferJournal journal;
+
+  private final AccountsRepository accountsRepository;
+
+  private final TransferEngine transferEngine;
+
+  private final AccountSnapshotStore snapshotStore;
+
+  private final AccountSnapshotter snapshotter;
+
+  @Autowired
+  public JournalRecovery(TransferJournal journal, AccountsRepository accountsRepository, TransferEngine transferEngine,
+    AccountSnapshotStore snapshotStore, AccountSnapshotter snapshotter) {
+    this.journal = journal;
+    this.accountsRepository = accountsRepository;
+    this.transferEngine = transferEngine;
+    this.snapshotStore = snapshotStore;
+    this.snapshotter = snapshotter;
+  }
+
+  @PostConstruct
+  public void recover() throws IOException {
+    if (!journal.isEnabled()) {
+      return;
+    }
+    if (!(transferEngine instanceof LockingTransferEngine)) {
+      throw new IllegalStateException("The transfer journal requires the locking transfer engine");
+    }
+    long started = System.nanoTime();
+    long baseSequence = 0;
+    long loaded = 0;
+    Map<String, Long> accountSequences = new HashMap<>();
+    Optional<Path> latest = snapshotStore.latest();
+    if (latest.isPresent()) {
+      try (AccountSnapshot snapshot = AccountSnapshot.open(latest.get())) {
+        baseSequence = snapshot.getBaseSequence();
+        // Only accounts the journal tail touches need their snapshot sequence kept for replay
+        Set<String> touched = accountsTouchedAfter(baseSequence);
+        int scale = snapshot.getScale();
+        long snapshotBase = baseSequence;
+        snapshot.forEach((accountId, minorUnits, sequence) -> {
+          accountsRepository.createAccount(new Account(accountId, BigDecimal.valueOf(minorUnits, scale)));
+          if (sequence > snapshotBase && touched.contains(accountId)) {
+            accountSequences.put(accountId, sequence);
+          }
+        });
+        loaded = snapshot.getCount();
+      }
+    }
+    ReplayingHandler handler = new ReplayingHandler(baseSequence, accountSequences);
+    journal.replay(handler);
+    log.info("Recovered {} accounts from snapshot and {} journal records in {} ms", loaded, handler.records,
+      (System.nanoTime() - started) / 1_000_000);
+    snapshotter.start();
+  }
+
+  private Set<String> accountsTouchedAfter(long baseSequence) {
+    Set<String> touched = new HashSet<>();
+    journal.replay(new JournalRecordHandler() {
+      @Override
+      public void onCreate(long sequence, String accountId, BigDecimal balance) {
+        if (sequence > baseSequence) {
+          touched.add(accountId);
+        }
+      }
+
+      @Override
+      public void onTransfer(long sequence, String accountFromId, String accountToId, BigDecimal amount) {
+        if (sequence > baseSequence) {
+          touched.add(accountFromId);
+          touched.add(accountToId);
+        }
+      }
+    });
+    return touched;
+  }
+
+  private class ReplayingHandler implements JournalRecordHandler {
+    private final long baseSequence;
+    private final Map<String, Long> accountSequences;
+    private long records;
+
+    private ReplayingHandler(long baseSequence, Map<String, Long> accountSequences) {
+      this.baseSequence = baseSequence;
+      this.accountSequences = accountSequences;
+    }
+
+    @Override
+    public void onCreate(long sequence, String accountId, BigDecimal balance) {
+      if (sequence > baseSequence) {
+        records++;
+      }
+      if (!isNewer(sequence, accountId)) {
+        return;
+      }
+      try {
+        accountsRepository.createAccount(new Account(accountId, balance));
+      } catch (DuplicateAccountIdException e) {
+        log.warn("Skipping duplicate create of {} at journal sequence {}", accountId, sequence);
+      }
+    }
+
+    @Override
+    public void onTransfer(long sequence, String accountFromId, String accountToId, BigDecimal amount) {
+      if (sequence > baseSequence) {
+        records++;
+      }
+      // Only validated transfers are journaled, so they are re-applied without validation
+      if (isNewer(sequence, accountFromId)) {
+        Account accountFrom = accountsRepository.getAccount(accountFromId);
+        accountFrom.withdraw(amount);
+        accountsRepository.save(accountFrom);
+      }
+      if (isNewer(sequence, accountToId)) {
+        Account accountTo = accountsRepository.getAccount(accountToId);
+        accountTo.deposit(amount);
+        accountsRepository.save(accountTo);
+      }
+    }
+
+    // Whether the record is newer than what the snapshot already holds for the account
+    private boolean isNewer(long sequence, String accountId) {
+      return sequence > accountSequences.getOrDefault(accountId, baseSequence);
+    }
+  }
+}
@@ -0,0 +1,561 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+import com.dws.challenge.model.TransferStatus;
+import com.dws.challenge.replication.ReplicationLog;
+import com.dws.challenge.repository.AccountsRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Default engine: balances are {@link BigDecimal}s mutated under striped account locks. With
+ * {@link TransferNetting} enabled, transfers are applied in windows, one balance movement per
+ * account pair.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.engine", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine {
+
+  private final AccountsRepository accountsRepository;
+
+  private final StripedAccountLocks accountLocks;
+
+  private final TransferJournal journal;
+
+  private final TransferMetrics metrics;
+
+  private final AccountCuts accountCuts;
+
+  private final HotAccounts hotAccounts;
+
+  private final TransferNetting netting;
+
+  private final ReplicationLog replicationLog;
+
+  private final AccountContentionTracker contention;
+
+  @Autowired
+  public LockingTransferEngine(AccountsRepository accountsRepository, StripedAccountLocks accountLocks,
+    TransferJournal journal, TransferMetrics metrics, AccountCuts accountCuts, HotAccounts hotAccounts,
+    TransferNetting netting, ReplicationLog replicationLog, AccountContentionTracker contention) {
+    this.accountsRepository = accountsRepository;
+    this.accountLocks = accountLocks;
+    this.journal = journal;
+    this.metrics = metrics;
+    this.accountCuts = accountCuts;
+    this.hotAccounts = hotAccounts;
+    this.netting = netting;
+    this.replicationLog = replicationLog;
+    this.contention = contention;
+  }
+
+  @PostConstruct
+  void start() {
+    if (netting.isEnabled()) {
+      netting.start(this::applyNetted);
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) {
+    long sequence;
+    // Journaled under the account's lock so the record precedes every transfer on the account
+    accountLocks.lock(account.getAccountId(), account.getAccountId());
+    try {
+      // Refused before it is journaled, so the journal holds only creates that were applied
+      if (accountsRepository.getAccount(account.getAccountId()) != null) {
+        throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+      }
+      // Accounts created while a cut is open are not part of it
+      if (accountCuts.isOpen()) {
+        accountCuts.beforeCreate(account.getAccountId());
+      }
+      // A failed append leaves the book without the account
+      sequence = journal.appendCreate(account.getAccountId(), account.getBalance());
+      accountsRepository.createAccount(account);
+      replicationLog.appendCreate(account.getAccountId(), account.getBalance());
+    } finally {
+      accountLocks.unlock(account.getAccountId(), account.getAccountId());
+    }
+    journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, double amount) {
+    if (!netting.isEnabled()) {
+      transferNow(accountFromId, accountToId, amount);
+      return;
+    }
+    try {
+      netting.submit(accountFromId, accountToId, amount).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> transferAsync(String accountFromId, String accountToId, double amount) {
+    if (!netting.isEnabled()) {
+      return TransferEngine.super.transferAsync(accountFromId, accountToId, amount);
+    }
+    return netting.submit(accountFromId, accountToId, amount);
+  }
+
+  private void transferNow(String accountFromId, String accountToId, double amount) {
+    if (hotAccounts.isHot(accountToId)) {
+      if (transferToHotAccount(accountFromId, accountToId, amount)) {
+        return;
+      }
+    } else {
+      hotAccounts.recordCredit(accountToId);
+    }
+    long sequence;
+    long requested = metrics.start();
+    // Lock accounts to ensure no other operation interferes; stripes are taken in a consistent order
+    accountLocks.lock(accountFromId, accountToId);
+    long acquired = metrics.recordLockWait(requested);
+    contention.record(accountFromId, accountToId, requested, acquired);
+    try {
+      Account accountFrom = accountsRepository.getAccount(accountFromId);
+      // Repositories that return a fresh view per read would otherwise credit a second copy of the payer
+      Account accountTo = accountToId.equals(accountFromId) ? accountFrom : accountsRepository.getAccount(accountToId);
+
+      if (available(accountFrom, BigDecimal.valueOf(amount)).compareTo(BigDecimal.valueOf(amount)) < 0) {
+        throw new InsufficientFundsException("Insufficient funds for transfer");
+      }
+
+      if (amount < 0) {
+        throw new IllegalArgumentException("Transfer amount must be positive");
+      }
+
+      sequence = apply(accountFrom, accountTo, BigDecimal.valueOf(amount));
+      metrics.recordStage(TransferMetrics.Stage.REPOSITORY, acquired);
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlock(accountFromId, accountToId);
+    }
+    awaitDurable(sequence);
+  }
+
+  /**
+   * Takes only the payer's stripe and credits one of the hot payee's sub-balances, so transfers
+   * into the same hot account from different payers run in parallel. Returns false, having done
+   * nothing, if the transfer must take the regular path.
+   */
+  private boolean transferToHotAccount(String accountFromId, String accountToId, double amount) {
+    long sequence;
+    long requested = metrics.start();
+    accountLocks.lock(accountFromId, accountFromId);
+    long acquired = metrics.recordLockWait(requested);
+    contention.record(accountFromId, accountFromId, requested, acquired);
+    try {
+      // A cut needs every balance change made under the account's own stripe
+      if (accountFromId.equals(accountToId) || accountCuts.isOpen()
+        || accountsRepository.getAccount(accountToId) == null) {
+        return false;
+      }
+      Account accountFrom = accountsRepository.getAccount(accountFromId);
+      BigDecimal value = BigDecimal.valueOf(amount);
+
+      if (available(accountFrom, value).compareTo(value) < 0) {
+        throw new InsufficientFundsException("Insufficient funds for transfer");
+      }
+
+      if (amount < 0) {
+        throw new IllegalArgumentException("Transfer amount must be positive");
+      }
+
+      sequence = hotAccounts.credit(accountToId, value, () -> {
+        long appended = journal.appendTransfer(accountFromId, accountToId, value);
+        accountFrom.withdraw(value);
+        accountsRepository.save(accountFrom);
+        replicationLog.appendTransfer(accountFromId, accountToId, value);
+        return appended;
+      });
+      metrics.recordStage(TransferMetrics.Stage.REPOSITORY, acquired);
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlock(accountFromId, accountFromId);
+    }
+    awaitDurable(sequence);
+    return true;
+  }
+
+  /**
+   * Applies a window of transfers. Every transfer in the window was in flight at the same time, so
+   * any order is a valid one; each account pair's transfers are checked against running balances in
+   * arrival order, then the pair's net is written, saved and journaled once under one acquisition of
+   * its stripes. Futures complete after the whole window is durable. Self-transfers and transfers
+   * involving a missing account take the regular path, so they fail exactly as they otherwise would.
+   */
+  private void applyNetted(List<TransferNetting.Pending> transfers) {
+    Map<AccountPair, List<TransferNetting.Pending>> pairs = new LinkedHashMap<>();
+    List<TransferNetting.Pending> individual = new ArrayList<>();
+    for (TransferNetting.Pending transfer : transfers) {
+      if (transfer.accountFromId.equals(transfer.accountToId)) {
+        individual.add(transfer);
+      } else {
+        pairs.computeIfAbsent(new AccountPair(transfer.accountFromId, transfer.accountToId), pair -> new ArrayList<>())
+          .add(transfer);
+      }
+    }
+    netting.recordPairs(pairs.size());
+
+    long sequence = 0;
+    List<TransferNetting.Pending> netted = new ArrayList<>(transfers.size());
+    for (Map.Entry<AccountPair, List<TransferNetting.Pending>> pair : pairs.entrySet()) {
+      long pairSequence = applyPair(pair.getKey(), pair.getValue());
+      if (pairSequence < 0) {
+        individual.addAll(pair.getValue());
+      } else {
+        sequence = Math.max(sequence, pairSequence);
+        netted.addAll(pair.getValue());
+      }
+    }
+    awaitDurable(sequence);
+    for (TransferNetting.Pending transfer : netted) {
+      if (transfer.failure != null) {
+        transfer.future.completeExceptionally(transfer.failure);
+      } else {
+        transfer.future.complete(null);
+      }
+    }
+
+    for (TransferNetting.Pending transfer : individual) {
+      try {
+        transferNow(transfer.accountFromId, transfer.accountToId, transfer.amount);
+        transfer.future.complete(null);
+      } catch (RuntimeException e) {
+        transfer.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  // Returns the sequence of the pair's journal record, 0 if nothing moved, or -1 if an account is missing
+  private long applyPair(AccountPair pair, List<TransferNetting.Pending> transfers) {
+    long requested = metrics.start();
+    accountLocks.lock(pair.first, pair.second);
+    long acquired = metrics.recordLockWait(requested);
+    contention.record(pair.first, pair.second, requested, acquired);
+    try {
+      Account first = accountsRepository.getAccount(pair.first);
+      Account second = accountsRepository.getAccount(pair.second);
+      if (first == null || second == null) {
+        return -1;
+      }
+      hotAccounts.consolidate(first);
+      hotAccounts.consolidate(second);
+
+      BigDecimal firstBalance = first.getBalance();
+      BigDecimal secondBalance = second.getBalance();
+      for (TransferNetting.Pending transfer : transfers) {
+        BigDecimal amount = BigDecimal.valueOf(transfer.amount);
+        boolean forward = transfer.accountFromId.equals(pair.first);
+        if ((forward ? firstBalance : secondBalance).compareTo(amount) < 0) {
+          transfer.failure = new InsufficientFundsException("Insufficient funds for transfer");
+        } else if (amount.signum() < 0) {
+          transfer.failure = new IllegalArgumentException("Transfer amount must be positive");
+        } else if (forward) {
+          firstBalance = firstBalance.subtract(amount);
+          secondBalance = secondBalance.add(amount);
+        } else {
+          firstBalance = firstBalance.add(amount);
+          secondBalance = secondBalance.subtract(amount);
+        }
+      }
+
+      // Positive when money moved from first to second
+      BigDecimal net = first.getBalance().subtract(firstBalance);
+      if (net.signum() == 0) {
+        return 0;
+      }
+      long sequence = net.signum() > 0 ? journal.appendTransfer(pair.first, pair.second, net)
+        : journal.appendTransfer(pair.second, pair.first, net.negate());
+      if (accountCuts.isOpen()) {
+        accountCuts.beforeWrite(first);
+        accountCuts.beforeWrite(second);
+      }
+      first.setBalance(firstBalance);
+      second.setBalance(secondBalance);
+      accountsRepository.save(first);
+      accountsRepository.save(second);
+      metrics.recordStage(TransferMetrics.Stage.REPOSITORY, acquired);
+      if (net.signum() > 0) {
+        replicationLog.appendTransfer(pair.first, pair.second, net);
+      } else {
+        replicationLog.appendTransfer(pair.second, pair.first, net.negate());
+      }
+      return sequence;
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlock(pair.first, pair.second);
+    }
+  }
+
+  /**
+   * Takes {@code amount} out of the account as one half of a transfer whose other half is applied
+   * elsewhere, such as on another cluster node. Not journaled or replicated.
+   */
+  public void withdraw(String accountId, BigDecimal amount) {
+    long requested = metrics.start();
+    accountLocks.lock(accountId, accountId);
+    long acquired = metrics.recordLockWait(requested);
+    contention.record(accountId, accountId, requested, acquired);
+    try {
+      Account account = existing(accountId);
+      if (available(account, amount).compareTo(amount) < 0) {
+        throw new InsufficientFundsException("Insufficient funds for transfer");
+      }
+      if (amount.signum() < 0) {
+        throw new IllegalArgumentException("Transfer amount must be positive");
+      }
+      if (accountCuts.isOpen()) {
+        accountCuts.beforeWrite(account);
+      }
+      account.withdraw(amount);
+      accountsRepository.save(account);
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlock(accountId, accountId);
+    }
+  }
+
+  /**
+   * Adds {@code amount} to the account; the counterpart of {@link #withdraw(String, BigDecimal)}.
+   */
+  public void deposit(String accountId, BigDecimal amount) {
+    long requested = metrics.start();
+    accountLocks.lock(accountId, accountId);
+    long acquired = metrics.recordLockWait(requested);
+    contention.record(accountId, accountId, requested, acquired);
+    try {
+      Account account = existing(accountId);
+      if (accountCuts.isOpen()) {
+        accountCuts.beforeWrite(account);
+      }
+      account.deposit(amount);
+      accountsRepository.save(account);
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlock(accountId, accountId);
+    }
+  }
+
+  private Account existing(String accountId) {
+    Account account = accountsRepository.getAccount(accountId);
+    if (account == null) {
+      throw new IllegalStateException("Account " + accountId + " does not exist");
+    }
+    return account;
+  }
+
+  /**
+   * Adds a hot account's credits not yet folded into its balance, without taking its stripe lock.
+   */
+  @Override
+  public AccountBalance readBalance(Account account) {
+    return hotAccounts.isHot(account.getAccountId()) ? hotAccounts.readBalance(account.getAccountId())
+      : account.readBalance();
+  }
+
+  // A hot account's balance lacks its latest credits; they are folded in only when the debit needs them
+  private BigDecimal available(Account account, BigDecimal amount) {
+    if (account.getBalance().compareTo(amount) < 0) {
+      hotAccounts.consolidate(account);
+    }
+    return account.getBalance();
+  }
+
+  @Override
+  public boolean supportsAtomicBatches() {
+    return true;
+  }
+
+  @Override
+  public List<TransferResult> transferBatch(List<TransferRequest> transfers, boolean atomic) {
+    Set<String> accountIds = new HashSet<>();
+    for (TransferRequest transfer : transfers) {
+      if (transfer.getAccountFromId() != null && transfer.getAccountToId() != null) {
+        accountIds.add(transfer.getAccountFromId());
+        accountIds.add(transfer.getAccountToId());
+      }
+    }
+
+    List<TransferResult> results;
+    long sequence = 0;
+    long requested = metrics.start();
+    // Stripes are taken once, in the same ascending order single transfers use, so the two never deadlock
+    int[] stripes = accountLocks.lockAll(accountIds);
+    long acquired = metrics.recordLockWait(requested);
+    for (String accountId : accountIds) {
+      contention.record(accountId, accountId, requested, acquired);
+    }
+    try {
+      Map<String, Account> accounts = new HashMap<>();
+      for (String accountId : accountIds) {
+        Account account = accountsRepository.getAccount(accountId);
+        if (account != null) {
+          // Projected balances start from complete ones
+          hotAccounts.consolidate(account);
+        }
+        accounts.put(accountId, account);
+      }
+      results = atomic ? validateAllOrNothing(transfers, accounts) : validateEach(transfers, accounts);
+      for (TransferResult result : results) {
+        if (result.isCompleted()) {
+          TransferRequest transfer = transfers.get(result.getIndex());
+          sequence = apply(accounts.get(transfer.getAccountFromId()), accounts.get(transfer.getAccountToId()),
+            BigDecimal.valueOf(transfer.getAmount()));
+        }
+      }
+      metrics.recordStage(TransferMetrics.Stage.REPOSITORY, acquired);
+    } finally {
+      metrics.recordLockHold(acquired);
+      accountLocks.unlockAll(stripes);
+    }
+    awaitDurable(sequence);
+    return results;
+  }
+
+  // Waits outside the locks so an fsync never blocks other transfers on the same accounts
+  private void awaitDurable(long sequence) {
+    if (!journal.isEnabled()) {
+      return;
+    }
+    long started = metrics.start();
+    journal.awaitDurable(sequence);
+    metrics.recordStage(TransferMetrics.Stage.JOURNAL, started);
+  }
+
+  // Each item is checked against the balances the items before it leave behind
+  private List<TransferResult> validateEach(List<TransferRequest> transfers, Map<String, Account> accounts) {
+    Map<String, BigDecimal> projected = new HashMap<>();
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferRequest transfer = transfers.get(i);
+      Account accountFrom = accounts.get(transfer.getAccountFromId());
+      Account accountTo = accounts.get(transfer.getAccountToId());
+      BigDecimal amount = BigDecimal.valueOf(transfer.getAmount());
+
+      BigDecimal available = accountFrom == null ? null
+        : projected.getOrDefault(accountFrom.getAccountId(), accountFrom.getBalance());
+      TransferStatus status = validate(accountFrom, accountTo, amount, available);
+      if (status == TransferStatus.COMPLETED) {
+        projected.put(accountFrom.getAccountId(), available.subtract(amount));
+        projected.put(accountTo.getAccountId(),
+          projected.getOrDefault(accountTo.getAccountId(), accountTo.getBalance()).add(amount));
+      }
+      results.add(new TransferResult(i, status));
+    }
+    return results;
+  }
+
+  private List<TransferResult> validateAllOrNothing(List<TransferRequest> transfers, Map<String, Account> accounts) {
+    // Nothing is applied unless every item succeeds against the projected balances
+    Map<String, BigDecimal> projected = new HashMap<>();
+    TransferStatus[] statuses = new TransferStatus[transfers.size()];
+    boolean failed = false;
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferRequest transfer = transfers.get(i);
+      Account accountFrom = accounts.get(transfer.getAccountFromId());
+      Account accountTo = accounts.get(transfer.getAccountToId());
+      BigDecimal amount = BigDecimal.valueOf(transfer.getAmount());
+
+      BigDecimal available = accountFrom == null ? null
+        : projected.getOrDefault(accountFrom.getAccountId(), accountFrom.getBalance());
+      statuses[i] = validate(accountFrom, accountTo, amount, available);
+      if (statuses[i] == TransferStatus.COMPLETED) {
+        projected.put(accountFrom.getAccountId(), available.subtract(amount));
+        projected.put(accountTo.getAccountId(),
+          projected.getOrDefault(accountTo.getAccountId(), accountTo.getBalance()).add(amount));
+      } else {
+        failed = true;
+      }
+    }
+
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    for (int i = 0; i < transfers.size(); i++) {
+      results.add(new TransferResult(i,
+        failed && statuses[i] == TransferStatus.COMPLETED ? TransferStatus.ROLLED_BACK : statuses[i]));
+    }
+    return results;
+  }
+
+  private TransferStatus validate(Account accountFrom, Account accountTo, BigDecimal amount, BigDecimal available) {
+    if (accountFrom == null || accountTo == null) {
+      return TransferStatus.ACCOUNT_NOT_FOUND;
+    }
+    if (amount.signum() < 0) {
+      return TransferStatus.INVALID_AMOUNT;
+    }
+    if (available.compareTo(amount) < 0) {
+      return TransferStatus.INSUFFICIENT_FUNDS;
+    }
+    return TransferStatus.COMPLETED;
+  }
+
+  /**
+   * Journals a validated transfer and then moves the money, so a failed append leaves the balances
+   * untouched. Runs under both accounts' stripe locks, which keeps the records of an account in the
+   * order its balance changed; replicas are fed once the change is made. Returns the journal sequence.
+   */
+  private long apply(Account accountFrom, Account accountTo, BigDecimal amount) {
+    long sequence = journal.appendTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount);
+    if (accountCuts.isOpen()) {
+      accountCuts.beforeWrite(accountFrom);
+      accountCuts.beforeWrite(accountTo);
+    }
+    accountFrom.withdraw(amount);
+    accountTo.deposit(amount);
+
+    accountsRepository.save(accountFrom);
+    accountsRepository.save(accountTo);
+    replicationLog.appendTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount);
+    return sequence;
+  }
+
+  // Unordered, so transfers in both directions between two accounts net against each other
+  private static final class AccountPair {
+    private final String first;
+    private final String second;
+
+    private AccountPair(String accountId, String otherAccountId) {
+      boolean ordered = accountId.compareTo(otherAccountId) < 0;
+      this.first = ordered ? accountId : otherAccountId;
+      this.second = ordered ? otherAccountId : accountId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof AccountPair other && first.equals(other.first) && second.equals(other.second);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(first, second);
+    }
+  }
+}
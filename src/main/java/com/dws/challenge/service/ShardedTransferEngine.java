@@ -0,0 +1,256 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+import com.dws.challenge.model.TransferStatus;
+import com.dws.challenge.repository.AccountsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer engine: accounts are partitioned by ID hash across shards and each shard thread is
+ * the only one that mutates its accounts, consuming transfer commands from its own ring. A transfer
+ * is queued on the source account's shard, which debits; when the destination lives on another
+ * shard the credit is handed off through the {@link CreditRing} from that shard to the other, and
+ * the transfer completes once it is applied. Balances are {@link FixedPointAccount}s written by
+ * their one shard with plain release stores, so readers on other threads always see a whole value.
+ * Both rings are bounded and pre-allocated: a shard whose credit ring to another is full leaves
+ * its next transfer queued and keeps applying incoming credits, which never wait on anything, so
+ * the shards cannot deadlock.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine {
+
+  private static final int SPINS_BEFORE_PARK = 100;
+  private static final int MIN_CREDIT_RING_SIZE = 64;
+
+  private final AccountsRepository accountsRepository;
+  private final int scale;
+  private final long idleParkNanos;
+  private final Shard[] shards;
+
+  @Autowired
+  public ShardedTransferEngine(AccountsRepository accountsRepository,
+    @Value("${accounts.balance-scale:2}") int scale,
+    @Value("${accounts.sharded.shards:0}") int shardCount,
+    @Value("${accounts.sharded.ring-size:8192}") int ringSize,
+    @Value("${accounts.sharded.idle-park-micros:50}") long idleParkMicros) {
+    this.accountsRepository = accountsRepository;
+    this.scale = scale;
+    this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(idleParkMicros);
+    int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+    this.shards = new Shard[count];
+    for (int i = 0; i < count; i++) {
+      shards[i] = new Shard(i, ringSize, count, Math.max(MIN_CREDIT_RING_SIZE, ringSize / count));
+    }
+  }
+
+  @PostConstruct
+  void start() {
+    if (accountsRepository.requiresLockingEngine()) {
+      throw new IllegalStateException("The configured accounts repository requires the locking transfer engine");
+    }
+    for (Shard shard : shards) {
+      shard.start();
+    }
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    for (Shard shard : shards) {
+      shard.running = false;
+    }
+    for (Shard shard : shards) {
+      shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+  public int shardCount() {
+    return shards.length;
+  }
+
+  @Override
+  public void createAccount(Account account) {
+    accountsRepository.createAccount(prepareAccount(account));
+  }
+
+  public Account prepareAccount(Account account) {
+    if (account instanceof FixedPointAccount) {
+      return account;
+    }
+    return new FixedPointAccount(account.getAccountId(), account.getBalance(), scale);
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, double amount) {
+    try {
+      transferAsync(accountFromId, accountToId, amount).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> transferAsync(String accountFromId, String accountToId, double amount) {
+    FixedPointAccount accountFrom;
+    FixedPointAccount accountTo;
+    long minorUnits;
+    try {
+      accountFrom = getFixedPointAccount(accountFromId);
+      accountTo = getFixedPointAccount(accountToId);
+      minorUnits = FixedPointAccount.toMinorUnits(amount, scale);
+      if (minorUnits < 0) {
+        throw new IllegalArgumentException("Transfer amount must be positive");
+      }
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (!shards[shardOf(accountFromId)].ring.offer(accountFrom, accountTo, minorUnits, future)) {
+      future.completeExceptionally(new RejectedExecutionException("Transfer queue for " + accountFromId + " is full"));
+    }
+    return future;
+  }
+
+  @Override
+  public List<TransferResult> transferBatch(List<TransferRequest> transfers, boolean atomic) {
+    if (atomic) {
+      throw new IllegalArgumentException("Atomic batches require the locking transfer engine");
+    }
+    // Items are completed one at a time so a later item sees the credits of earlier ones
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferRequest transfer = transfers.get(i);
+      TransferStatus status = TransferStatus.COMPLETED;
+      try {
+        transfer(transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount());
+      } catch (InsufficientFundsException e) {
+        status = TransferStatus.INSUFFICIENT_FUNDS;
+      } catch (IllegalStateException e) {
+        status = TransferStatus.ACCOUNT_NOT_FOUND;
+      } catch (IllegalArgumentException e) {
+        status = TransferStatus.INVALID_AMOUNT;
+      }
+      results.add(new TransferResult(i, status));
+    }
+    return results;
+  }
+
+  private int shardOf(String accountId) {
+    int h = accountId.hashCode();
+    return Math.floorMod(h ^ (h >>> 16), shards.length);
+  }
+
+  private FixedPointAccount getFixedPointAccount(String accountId) {
+    Account account = accountId == null ? null : accountsRepository.getAccount(accountId);
+    if (account == null) {
+      throw new IllegalStateException("Account " + accountId + " does not exist");
+    }
+    if (!(account instanceof FixedPointAccount)) {
+      throw new IllegalStateException("Account " + accountId + " was not created through the sharded transfer engine");
+    }
+    return (FixedPointAccount) account;
+  }
+
+  private final class Shard implements Runnable {
+    private final int index;
+    private final TransferCommandRing ring;
+    // Credits from every other shard, indexed by the source shard
+    private final CreditRing[] credits;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private Shard(int index, int ringSize, int shardCount, int creditRingSize) {
+      this.index = index;
+      this.ring = new TransferCommandRing(ringSize);
+      this.credits = new CreditRing[shardCount];
+      for (int source = 0; source < shardCount; source++) {
+        if (source != index) {
+          credits[source] = new CreditRing(creditRingSize);
+        }
+      }
+      this.thread = new Thread(this, "transfer-shard-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    private void start() {
+      thread.start();
+    }
+
+    @Override
+    public void run() {
+      int idleSpins = 0;
+      while (running) {
+        int work = applyCredits() + applyTransfers();
+        if (work > 0) {
+          idleSpins = 0;
+        } else if (++idleSpins < SPINS_BEFORE_PARK) {
+          Thread.onSpinWait();
+        } else {
+          LockSupport.parkNanos(idleParkNanos);
+        }
+      }
+    }
+
+    private int applyCredits() {
+      int applied = 0;
+      for (CreditRing ring : credits) {
+        if (ring != null) {
+          applied += ring.applyAll();
+        }
+      }
+      return applied;
+    }
+
+    private int applyTransfers() {
+      int applied = 0;
+      TransferCommandRing.Slot slot;
+      while ((slot = ring.peek()) != null) {
+        FixedPointAccount accountFrom = slot.accountFrom;
+        FixedPointAccount accountTo = slot.accountTo;
+        int target = shardOf(accountTo.getAccountId());
+        CreditRing handOff = target == index ? null : shards[target].credits[index];
+        if (handOff != null && !handOff.hasRoom()) {
+          // Left queued until the destination catches up; meanwhile this shard applies its credits
+          break;
+        }
+        long minorUnits = slot.minorUnits;
+        CompletableFuture<Void> future = slot.future;
+        ring.release(slot);
+
+        if (!accountFrom.tryDebitExclusive(minorUnits)) {
+          future.completeExceptionally(new InsufficientFundsException("Insufficient funds for transfer"));
+        } else if (handOff == null) {
+          accountTo.creditExclusive(minorUnits);
+          future.complete(null);
+        } else {
+          handOff.put(accountTo, minorUnits, future);
+        }
+        applied++;
+      }
+      return applied;
+    }
+  }
+}
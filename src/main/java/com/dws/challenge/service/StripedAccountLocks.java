@@ -0,0 +1,102 @@
+package com.dws.challenge.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size table of account locks. Account IDs are hashed onto a power-of-two number of stripes,
+ * so memory stays flat however many accounts exist. Stripes are always acquired in ascending index
+ * order, which keeps single and multi-account locking deadlock-free; two accounts that share a
+ * stripe simply take the same lock once.
+ */
+@Component
+public class StripedAccountLocks {
+
+  private final ReentrantLock[] stripes;
+  private final int mask;
+
+  public StripedAccountLocks(@Value("${accounts.lock-stripes:1024}") int stripeCount) {
+    int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.mask = size - 1;
+  }
+
+  public int stripeCount() {
+    return stripes.length;
+  }
+
+  public int stripeOf(String accountId) {
+    int h = accountId.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  public void lock(String accountFromId, String accountToId) {
+    int first = stripeOf(accountFromId);
+    int second = stripeOf(accountToId);
+    if (first > second) {
+      int swap = first;
+      first = second;
+      second = swap;
+    }
+    stripes[first].lock();
+    if (second != first) {
+      stripes[second].lock();
+    }
+  }
+
+  public void unlock(String accountFromId, String accountToId) {
+    int first = stripeOf(accountFromId);
+    int second = stripeOf(accountToId);
+    if (second != first) {
+      stripes[second].unlock();
+    }
+    stripes[first].unlock();
+  }
+
+  /**
+   * Locks the stripes of all given accounts and returns them, in acquisition order, for
+   * {@link #unlockAll(int[])}.
+   */
+  public int[] lockAll(Collection<String> accountIds) {
+    int[] indexes = accountIds.stream().mapToInt(this::stripeOf).sorted().distinct().toArray();
+    int locked = 0;
+    try {
+      for (int index : indexes) {
+        stripes[index].lock();
+        locked++;
+      }
+      return indexes;
+    } catch (RuntimeException e) {
+      unlockAll(Arrays.copyOf(indexes, locked));
+      throw e;
+    }
+  }
+
+  /**
+   * Locks every stripe, in ascending order, stopping all locking-engine writes until
+   * {@link #unlockAll(int[])} is called with the result.
+   */
+  public int[] lockEveryStripe() {
+    int[] indexes = new int[stripes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = i;
+    }
+    for (int i = 0; i < indexes.length; i++) {
+      stripes[i].lock();
+    }
+    return indexes;
+  }
+
+  public void unlockAll(int[] indexes) {
+    for (int i = indexes.length - 1; i >= 0; i--) {
+      stripes[indexes[i]].unlock();
+    }
+  }
+}
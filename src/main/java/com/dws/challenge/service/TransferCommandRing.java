@@ -0,0 +1,83 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.FixedPointAccount;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded multi-producer, single-consumer ring of pre-allocated transfer command slots. Each slot
+ * carries a sequence number: producers claim a position with a CAS on the tail and publish by
+ * advancing the slot's sequence, and the owning shard thread consumes slots in order.
+ */
+class TransferCommandRing {
+
+  static final class Slot {
+    private volatile long sequence;
+    FixedPointAccount accountFrom;
+    FixedPointAccount accountTo;
+    long minorUnits;
+    CompletableFuture<Void> future;
+  }
+
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  TransferCommandRing(int capacity) {
+    int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new Slot[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Slot();
+      slots[i].sequence = i;
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns {@code false} without blocking when the ring is full.
+   */
+  boolean offer(FixedPointAccount accountFrom, FixedPointAccount accountTo, long minorUnits,
+    CompletableFuture<Void> future) {
+    Slot slot;
+    long position;
+    while (true) {
+      position = tail.get();
+      slot = slots[(int) position & mask];
+      long difference = slot.sequence - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+    slot.accountFrom = accountFrom;
+    slot.accountTo = accountTo;
+    slot.minorUnits = minorUnits;
+    slot.future = future;
+    slot.sequence = position + 1;
+    return true;
+  }
+
+  /**
+   * Consumer only: the next published slot, or {@code null} if none is ready.
+   */
+  Slot peek() {
+    Slot slot = slots[(int) head & mask];
+    return slot.sequence == head + 1 ? slot : null;
+  }
+
+  /**
+   * Consumer only: hands a processed slot back to producers.
+   */
+  void release(Slot slot) {
+    slot.accountFrom = null;
+    slot.accountTo = null;
+    slot.future = null;
+    slot.sequence = head + slots.length;
+    head++;
+  }
+}
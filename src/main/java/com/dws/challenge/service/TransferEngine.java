@@ -0,0 +1,60 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Strategy for moving money between accounts, selected with the {@code accounts.engine} property.
+ * Implementations throw {@link com.dws.challenge.exception.InsufficientFundsException} when the
+ * source account cannot cover the amount and {@link IllegalArgumentException} for negative amounts.
+ */
+public interface TransferEngine {
+
+  void transfer(String accountFromId, String accountToId, double amount);
+
+  /**
+   * Engines that hand transfers to other threads override this; the default runs the transfer on
+   * the calling thread and returns an already completed future.
+   */
+  default CompletableFuture<Void> transferAsync(String accountFromId, String accountToId, double amount) {
+    try {
+      transfer(accountFromId, accountToId, amount);
+      return CompletableFuture.completedFuture(null);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Applies the transfers in order and reports each one's outcome. {@code atomic} applies all or
+   * none of them, and is rejected with {@link IllegalArgumentException} unless
+   * {@link #supportsAtomicBatches()}.
+   */
+  List<TransferResult> transferBatch(List<TransferRequest> transfers, boolean atomic);
+
+  /**
+   * Whether {@link #transferBatch} can apply a batch all or nothing.
+   */
+  default boolean supportsAtomicBatches() {
+    return false;
+  }
+
+  /**
+   * Stores a new account in the representation this engine works with.
+   */
+  void createAccount(Account account);
+
+  /**
+   * Consistent copy of the account's balance, taken without blocking transfers. Only engines that
+   * keep part of a balance aside, like the locking engine for hot accounts, override this to add it
+   * in.
+   */
+  default AccountBalance readBalance(Account account) {
+    return account.readBalance();
+  }
+}
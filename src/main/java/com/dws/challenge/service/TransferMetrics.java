@@ -0,0 +1,146 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.model.TransferStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms and outcome counters for the transfer pipeline. Timers keep HdrHistogram-backed
+ * percentiles (p50, p90, p99, p99.9) and publish histogram buckets, so recording is a lock-free
+ * array increment. All meters are registered up front; with {@code accounts.metrics.enabled=false}
+ * every method returns without reading the clock.
+ */
+@Component
+public class TransferMetrics {
+
+  public enum Stage { REPOSITORY, JOURNAL, NOTIFICATION }
+
+  private final boolean enabled;
+  private final Timer lockWait;
+  private final Timer lockHold;
+  private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+  private final Timer completedLatency;
+  private final Timer failedLatency;
+  private final Map<TransferStatus, Counter> outcomes = new EnumMap<>(TransferStatus.class);
+  private final Counter rejected;
+  private final Counter errors;
+
+  @Autowired
+  public TransferMetrics(MeterRegistry meterRegistry, @Value("${accounts.metrics.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+    this.lockWait = histogram(Timer.builder("transfers.lock.wait")
+      .description("Time spent waiting to acquire account locks"), meterRegistry);
+    this.lockHold = histogram(Timer.builder("transfers.lock.hold")
+      .description("Time account locks are held"), meterRegistry);
+    for (Stage stage : Stage.values()) {
+      stages.put(stage, histogram(Timer.builder("transfers.stage.latency")
+        .description("Time spent in one stage of a transfer")
+        .tag("stage", stage.name().toLowerCase(Locale.ROOT)), meterRegistry));
+    }
+    this.completedLatency = histogram(Timer.builder("transfers.latency")
+      .description("End-to-end transfer latency, until notifications are queued")
+      .tag("result", "completed"), meterRegistry);
+    this.failedLatency = histogram(Timer.builder("transfers.latency")
+      .description("End-to-end transfer latency, until notifications are queued")
+      .tag("result", "failed"), meterRegistry);
+    for (TransferStatus status : TransferStatus.values()) {
+      outcomes.put(status, outcomeCounter(status.name().toLowerCase(Locale.ROOT), meterRegistry));
+    }
+    this.rejected = outcomeCounter("rejected", meterRegistry);
+    this.errors = outcomeCounter("error", meterRegistry);
+  }
+
+  /**
+   * Start timestamp for a later {@code record} call, or 0 when disabled.
+   */
+  public long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the wait for locks requested at {@code requested} and returns the time they were acquired.
+   */
+  public long recordLockWait(long requested) {
+    if (!enabled) {
+      return 0;
+    }
+    long acquired = System.nanoTime();
+    lockWait.record(acquired - requested, TimeUnit.NANOSECONDS);
+    return acquired;
+  }
+
+  public void recordLockHold(long acquired) {
+    if (enabled) {
+      lockHold.record(System.nanoTime() - acquired, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void recordStage(Stage stage, long started) {
+    if (enabled) {
+      stages.get(stage).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void recordCompleted(long started) {
+    recordOutcome(started, TransferStatus.COMPLETED);
+  }
+
+  /**
+   * Records a transfer, or a batch item, that ended with {@code status}; batch items pass 0 as
+   * {@code started} and are only counted.
+   */
+  public void recordOutcome(long started, TransferStatus status) {
+    if (!enabled) {
+      return;
+    }
+    outcomes.get(status).increment();
+    if (started != 0) {
+      (status == TransferStatus.COMPLETED ? completedLatency : failedLatency)
+        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void recordFailure(long started, Throwable failure) {
+    if (!enabled) {
+      return;
+    }
+    if (failure instanceof InsufficientFundsException) {
+      recordOutcome(started, TransferStatus.INSUFFICIENT_FUNDS);
+      return;
+    }
+    if (failure instanceof IllegalArgumentException) {
+      recordOutcome(started, TransferStatus.INVALID_AMOUNT);
+      return;
+    }
+    (failure instanceof RejectedExecutionException ? rejected : errors).increment();
+    failedLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+  }
+
+  private static Timer histogram(Timer.Builder builder, MeterRegistry meterRegistry) {
+    return builder
+      .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+      .publishPercentileHistogram()
+      .minimumExpectedValue(Duration.ofNanos(100))
+      .maximumExpectedValue(Duration.ofSeconds(10))
+      .register(meterRegistry);
+  }
+
+  private static Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+    return Counter.builder("transfers.outcome")
+      .description("Transfers and batch items by outcome")
+      .tag("outcome", outcome)
+      .register(meterRegistry);
+  }
+}
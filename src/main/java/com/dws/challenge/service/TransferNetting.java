@@ -0,0 +1,147 @@
+package com.dws.challenge.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Collects transfers for {@code accounts.transfer.netting.window-micros} and hands them to the
+ * locking engine as one batch, which applies each account pair's transfers as a single balance
+ * movement under a single lock acquisition. Callers wait on a future that completes with their own
+ * transfer's outcome once the batch is durable. At most {@code accounts.transfer.netting.capacity}
+ * transfers wait at a time; beyond that they are rejected, as by the sharded engine's rings.
+ */
+@Slf4j
+@Component
+public class TransferNetting {
+
+  private final boolean enabled;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final int capacity;
+
+  private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger depth = new AtomicInteger();
+
+  private final DistributionSummary batchSize;
+  private final Counter pairsCounter;
+
+  private volatile boolean running;
+  private Thread flusher;
+
+  @Autowired
+  public TransferNetting(MeterRegistry meterRegistry,
+    @Value("${accounts.transfer.netting.enabled:false}") boolean enabled,
+    @Value("${accounts.transfer.netting.window-micros:200}") long windowMicros,
+    @Value("${accounts.transfer.netting.max-batch-size:4096}") int maxBatchSize,
+    @Value("${accounts.transfer.netting.capacity:65536}") int capacity) {
+    this.enabled = enabled;
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    this.maxBatchSize = maxBatchSize;
+    this.capacity = capacity;
+
+    this.batchSize = DistributionSummary.builder("transfers.netting.batch.size")
+      .description("Transfers collected per netting window")
+      .register(meterRegistry);
+    this.pairsCounter = meterRegistry.counter("transfers.netting.pairs");
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts the flusher, which passes every window's transfers to {@code apply}. {@code apply} must
+   * complete every transfer's future.
+   */
+  void start(Consumer<List<Pending>> apply) {
+    running = true;
+    flusher = new Thread(() -> flushLoop(apply), "transfer-netting");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (flusher == null) {
+      return;
+    }
+    flusher.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  CompletableFuture<Void> submit(String accountFromId, String accountToId, double amount) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (depth.incrementAndGet() > capacity) {
+      depth.decrementAndGet();
+      future.completeExceptionally(new RejectedExecutionException("Transfer netting queue is full"));
+      return future;
+    }
+    queue.offer(new Pending(accountFromId, accountToId, amount, future));
+    return future;
+  }
+
+  void recordPairs(int pairs) {
+    pairsCounter.increment(pairs);
+  }
+
+  private void flushLoop(Consumer<List<Pending>> apply) {
+    List<Pending> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      LockSupport.parkNanos(windowNanos);
+      Pending pending;
+      while (batch.size() < maxBatchSize && (pending = queue.poll()) != null) {
+        batch.add(pending);
+      }
+      if (batch.isEmpty()) {
+        continue;
+      }
+      depth.addAndGet(-batch.size());
+      batchSize.record(batch.size());
+      try {
+        apply.accept(batch);
+      } catch (RuntimeException e) {
+        log.error("Failed to apply {} netted transfers", batch.size(), e);
+        for (Pending transfer : batch) {
+          transfer.future.completeExceptionally(e);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * A transfer waiting for its window to be applied.
+   */
+  static final class Pending {
+    final String accountFromId;
+    final String accountToId;
+    final double amount;
+    final CompletableFuture<Void> future;
+    // Set by the engine when the transfer fails; the future is completed only once the batch is durable
+    RuntimeException failure;
+
+    private Pending(String accountFromId, String accountToId, double amount, CompletableFuture<Void> future) {
+      this.accountFromId = accountFromId;
+      this.accountToId = accountToId;
+      this.amount = amount;
+      this.future = future;
+    }
+  }
+}
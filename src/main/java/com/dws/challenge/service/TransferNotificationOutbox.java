@@ -0,0 +1,179 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.model.TransferNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory outbox for transfer notifications. Transfers enqueue a copy of each account
+ * after releasing their account locks and a single dispatcher thread drains the queue in batches.
+ * A failed notification is set aside and retried once its backoff has passed, while the dispatcher
+ * carries on with the rest; at most {@code notifications.outbox.capacity} wait for a retry. When
+ * the queue is full, producers wait at most the offer timeout and then drop.
+ */
+@Slf4j
+@Component
+public class TransferNotificationOutbox {
+
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  private final BlockingQueue<TransferNotification> queue;
+  // Failed notifications in the order they become due, since the backoff is the same for all;
+  // only the dispatcher thread touches it
+  private final ArrayDeque<TransferNotification> retries = new ArrayDeque<>();
+  private final int capacity;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final long retryBackoffNanos;
+  private final long offerTimeoutMillis;
+
+  private final Timer dispatchLatency;
+  private final Counter dispatchedCounter;
+  private final Counter retriedCounter;
+  private final Counter droppedCounter;
+
+  private volatile boolean running;
+  private Thread dispatcher;
+
+  public TransferNotificationOutbox(MeterRegistry meterRegistry,
+    @Value("${notifications.outbox.capacity:10000}") int capacity,
+    @Value("${notifications.outbox.batch-size:256}") int batchSize,
+    @Value("${notifications.outbox.max-attempts:5}") int maxAttempts,
+    @Value("${notifications.outbox.retry-backoff-ms:50}") long retryBackoffMillis,
+    @Value("${notifications.outbox.offer-timeout-ms:5}") long offerTimeoutMillis) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.retryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+    this.offerTimeoutMillis = offerTimeoutMillis;
+
+    Gauge.builder("notifications.outbox.depth", queue, BlockingQueue::size)
+      .description("Notifications waiting to be dispatched")
+      .register(meterRegistry);
+    this.dispatchLatency = Timer.builder("notifications.outbox.dispatch.latency")
+      .description("Time from enqueue to successful delivery")
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .register(meterRegistry);
+    this.dispatchedCounter = meterRegistry.counter("notifications.outbox.dispatched");
+    this.retriedCounter = meterRegistry.counter("notifications.outbox.retried");
+    this.droppedCounter = meterRegistry.counter("notifications.outbox.dropped");
+  }
+
+  @PostConstruct
+  void start() {
+    running = true;
+    dispatcher = new Thread(this::dispatchLoop, "notification-outbox");
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    if (dispatcher == null) {
+      return;
+    }
+    dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  public boolean enqueue(NotificationService notificationService, AccountBalance account, String transferDescription) {
+    TransferNotification notification = new TransferNotification(notificationService, account, transferDescription);
+    try {
+      if (queue.offer(notification, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    droppedCounter.increment();
+    log.warn("Notification outbox full, dropping notification for {}", account.getAccountId());
+    return false;
+  }
+
+  public int getDepth() {
+    return queue.size();
+  }
+
+  private void dispatchLoop() {
+    List<TransferNotification> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        // Retries that are due go first, then new notifications fill the batch
+        long now = System.nanoTime();
+        while (batch.size() < batchSize && !retries.isEmpty() && retries.peekFirst().getRetryAtNanos() - now <= 0) {
+          batch.add(retries.pollFirst());
+        }
+        if (batch.isEmpty()) {
+          TransferNotification first = queue.poll(pollNanos(now), TimeUnit.NANOSECONDS);
+          if (first == null) {
+            continue;
+          }
+          batch.add(first);
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+        for (TransferNotification notification : batch) {
+          dispatch(notification);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+    if (!retries.isEmpty()) {
+      droppedCounter.increment(retries.size());
+      log.warn("Dropping {} notifications waiting for a retry at shutdown", retries.size());
+    }
+  }
+
+  // Waits for new notifications no longer than until the next retry is due
+  private long pollNanos(long now) {
+    long poll = TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS);
+    return retries.isEmpty() ? poll : Math.max(0, Math.min(poll, retries.peekFirst().getRetryAtNanos() - now));
+  }
+
+  private void dispatch(TransferNotification notification) {
+    int attempt = notification.incrementAttempts();
+    try {
+      notification.getNotificationService()
+        .notifyAboutTransfer(notification.toAccount(), notification.getTransferDescription());
+      dispatchedCounter.increment();
+      dispatchLatency.record(System.nanoTime() - notification.getEnqueuedAtNanos(), TimeUnit.NANOSECONDS);
+    } catch (RuntimeException e) {
+      if (attempt >= maxAttempts) {
+        droppedCounter.increment();
+        log.error("Giving up on notification for {} after {} attempts: {}",
+          notification.getAccountId(), attempt, e.getMessage());
+        return;
+      }
+      if (retries.size() >= capacity) {
+        droppedCounter.increment();
+        log.error("Too many notifications waiting for a retry, dropping notification for {}: {}",
+          notification.getAccountId(), e.getMessage());
+        return;
+      }
+      retriedCounter.increment();
+      log.warn("Notification for {} failed (attempt {}), retrying: {}",
+        notification.getAccountId(), attempt, e.getMessage());
+      notification.setRetryAtNanos(System.nanoTime() + retryBackoffNanos);
+      retries.addLast(notification);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.dws.challenge.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped, read-only view of a snapshot file. The layout is a fixed header followed by one
+ * column per field:
+ *
+ * <pre>
+ * header   magic, version, scale, reserved (ints); count, base sequence, last sequence, ID bytes (longs)
+ * long[]   journal sequence each account's balance reflects
+ * long[]   balance in minor units at the header's scale
+ * short[]  UTF-8 length of each ID
+ * byte[]   the IDs, concatenated
+ * </pre>
+ *
+ * The snapshot was taken while transfers kept running: every account was read at some sequence
+ * between the base and last sequences, so the journal is replayed from the base sequence and a
+ * record is applied to an account only if it is newer than that account's sequence.
+ */
+public class AccountSnapshot implements Closeable {
+
+  static final int MAGIC = 0x41434e54;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 48;
+  static final int MAX_ID_BYTES = Short.MAX_VALUE;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final int scale;
+  private final long count;
+  private final long baseSequence;
+  private final long lastSequence;
+  private final long idBytes;
+
+  private AccountSnapshot(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException(path + " is not a version " + VERSION + " account snapshot");
+      }
+      this.scale = header.getInt();
+      header.getInt();
+      this.count = header.getLong();
+      this.baseSequence = header.getLong();
+      this.lastSequence = header.getLong();
+      this.idBytes = header.getLong();
+      if (channel.size() != HEADER_BYTES + count * (Long.BYTES * 2 + Short.BYTES) + idBytes) {
+        throw new IOException("Account snapshot " + path + " is truncated");
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public static AccountSnapshot open(Path path) throws IOException {
+    return new AccountSnapshot(path);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getBaseSequence() {
+    return baseSequence;
+  }
+
+  public long getLastSequence() {
+    return lastSequence;
+  }
+
+  public void forEach(SnapshotRowHandler handler) throws IOException {
+    long position = HEADER_BYTES;
+    LongBuffer sequences = map(position, count * Long.BYTES).asLongBuffer();
+    position += count * Long.BYTES;
+    LongBuffer balances = map(position, count * Long.BYTES).asLongBuffer();
+    position += count * Long.BYTES;
+    ShortBuffer idLengths = map(position, count * Short.BYTES).asShortBuffer();
+    position += count * Short.BYTES;
+    MappedByteBuffer ids = map(position, idBytes);
+
+    byte[] id = new byte[MAX_ID_BYTES];
+    for (int row = 0; row < count; row++) {
+      int length = idLengths.get(row);
+      ids.get(id, 0, length);
+      handler.onAccount(new String(id, 0, length, StandardCharsets.UTF_8), balances.get(row), sequences.get(row));
+    }
+  }
+
+  private MappedByteBuffer map(long position, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Account snapshot " + path + " has a column larger than 2 GiB");
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
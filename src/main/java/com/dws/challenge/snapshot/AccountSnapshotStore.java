@@ -0,0 +1,80 @@
+package com.dws.challenge.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Directory of snapshot files named after their base sequence, so the newest sorts last.
+ */
+@Slf4j
+@Component
+public class AccountSnapshotStore {
+
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".snap";
+
+  private final Path directory;
+
+  @Autowired
+  public AccountSnapshotStore(@Value("${journal.snapshot.directory:data/snapshots}") String directory) {
+    this(Paths.get(directory));
+  }
+
+  public AccountSnapshotStore(Path directory) {
+    this.directory = directory;
+  }
+
+  public AccountSnapshotWriter newWriter(int scale, long baseSequence) throws IOException {
+    Files.createDirectories(directory);
+    return new AccountSnapshotWriter(directory.resolve(String.format("%s%020d%s", PREFIX, baseSequence, SUFFIX)),
+      scale, baseSequence);
+  }
+
+  public Optional<Path> latest() {
+    List<Path> snapshots = snapshotFiles();
+    return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+  }
+
+  /**
+   * Deletes every snapshot older than {@code snapshot}.
+   */
+  public void deleteOlderThan(Path snapshot) {
+    for (Path path : snapshotFiles()) {
+      if (path.getFileName().compareTo(snapshot.getFileName()) < 0) {
+        try {
+          Files.delete(path);
+        } catch (IOException e) {
+          log.warn("Cannot delete old snapshot {}: {}", path, e.getMessage());
+        }
+      }
+    }
+  }
+
+  private List<Path> snapshotFiles() {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> {
+          String name = path.getFileName().toString();
+          return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+        })
+        .sorted()
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot list snapshots in " + directory, e);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.dws.challenge.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams rows into one temporary file per column and assembles them into a snapshot file on
+ * {@link #finish()}, so memory use does not grow with the number of accounts. The snapshot only
+ * becomes visible under its final name once it is complete and forced to disk.
+ */
+public class AccountSnapshotWriter implements Closeable {
+
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  private final Path target;
+  private final int scale;
+  private final long baseSequence;
+  private final Path[] columnFiles = new Path[4];
+  private final DataOutputStream[] columns = new DataOutputStream[4];
+
+  private long count;
+  private long idBytes;
+  private long lastSequence;
+
+  AccountSnapshotWriter(Path target, int scale, long baseSequence) throws IOException {
+    this.target = target;
+    this.scale = scale;
+    this.baseSequence = baseSequence;
+    this.lastSequence = baseSequence;
+    for (int i = 0; i < columns.length; i++) {
+      columnFiles[i] = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".column" + i);
+      columns[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnFiles[i]), BUFFER_BYTES));
+    }
+  }
+
+  /**
+   * Adds an account whose balance reflects every journal record up to {@code sequence}.
+   */
+  public void add(String accountId, long minorUnits, long sequence) throws IOException {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > AccountSnapshot.MAX_ID_BYTES) {
+      throw new IllegalArgumentException("Account id " + accountId + " is too long");
+    }
+    columns[0].writeLong(sequence);
+    columns[1].writeLong(minorUnits);
+    columns[2].writeShort(id.length);
+    columns[3].write(id);
+    count++;
+    idBytes += id.length;
+    lastSequence = Math.max(lastSequence, sequence);
+  }
+
+  public Path path() {
+    return target;
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public void finish() throws IOException {
+    for (DataOutputStream column : columns) {
+      column.close();
+    }
+    Path partial = target.resolveSibling(target.getFileName() + ".partial");
+    try (FileChannel out = FileChannel.open(partial,
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(AccountSnapshot.HEADER_BYTES);
+      header.putInt(AccountSnapshot.MAGIC)
+        .putInt(AccountSnapshot.VERSION)
+        .putInt(scale)
+        .putInt(0)
+        .putLong(count)
+        .putLong(baseSequence)
+        .putLong(lastSequence)
+        .putLong(idBytes)
+        .flip();
+      while (header.hasRemaining()) {
+        out.write(header);
+      }
+      for (Path columnFile : columnFiles) {
+        try (FileChannel in = FileChannel.open(columnFile, StandardOpenOption.READ)) {
+          long size = in.size();
+          for (long copied = 0; copied < size; ) {
+            copied += in.transferTo(copied, size - copied, out);
+          }
+        }
+      }
+      out.force(true);
+    }
+    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].close();
+      Files.deleteIfExists(columnFiles[i]);
+    }
+  }
+}
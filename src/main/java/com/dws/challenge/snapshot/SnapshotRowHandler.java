@@ -0,0 +1,10 @@
+package com.dws.challenge.snapshot;
+
+/**
+ * Receives the rows of an {@link AccountSnapshot} in file order.
+ */
+@FunctionalInterface
+public interface SnapshotRowHandler {
+
+  void onAccount(String accountId, long minorUnits, long sequence);
+}
@@ -0,0 +1,417 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.model.TransferRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hand-written JSON reader for {@link TransferRequest} and {@link Account} request bodies and writer
+ * for account responses. It parses straight from the request bytes and writes straight into a
+ * reusable buffer, and reads amounts as exact decimals (an unscaled {@code long} and a scale)
+ * instead of parsing number text. Only the plain shapes clients send are handled: for anything
+ * else, such as escapes, exponents, unknown fields or more than {@value #MAX_DIGITS} digits, the
+ * read methods return null and {@link #writeAccount} returns -1, and the caller falls back to
+ * Jackson, so the result is always the one Jackson would give. Not thread-safe.
+ */
+public final class AccountJsonCodec {
+
+  private static final int MAX_DIGITS = 18;
+  private static final int INITIAL_BUFFER = 512;
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+  // Integers up to 2^53 and powers of ten up to 10^22 are exact doubles, so their quotient is
+  // correctly rounded, which is exactly what parsing the decimal text gives
+  private static final long MAX_EXACT_DOUBLE = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  private static final byte[] ACCOUNT_FROM_ID = ascii("accountFromId");
+  private static final byte[] ACCOUNT_TO_ID = ascii("accountToId");
+  private static final byte[] AMOUNT = ascii("amount");
+  private static final byte[] ACCOUNT_ID = ascii("accountId");
+  private static final byte[] BALANCE = ascii("balance");
+  private static final byte[] NULL = ascii("null");
+  private static final byte[] ACCOUNT_ID_PREFIX = ascii("{\"accountId\":");
+  private static final byte[] BALANCE_PREFIX = ascii(",\"balance\":");
+  private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+  private byte[] input = new byte[INITIAL_BUFFER];
+  private byte[] output = new byte[INITIAL_BUFFER];
+
+  // Input being parsed
+  private byte[] json;
+  private int position;
+  private int limit;
+
+  // Last key, string and number read
+  private int keyStart;
+  private int keyEnd;
+  private String string;
+  private boolean negative;
+  private long unscaled;
+  private int scale;
+
+  /**
+   * Reads the whole body into the reusable input buffer and returns its length.
+   */
+  public int readFrom(InputStream body) throws IOException {
+    int length = 0;
+    while (true) {
+      if (length == input.length) {
+        input = Arrays.copyOf(input, input.length * 2);
+      }
+      int read = body.read(input, length, input.length - length);
+      if (read < 0) {
+        return length;
+      }
+      length += read;
+    }
+  }
+
+  public byte[] input() {
+    return input;
+  }
+
+  public byte[] output() {
+    return output;
+  }
+
+  /**
+   * Drops buffers grown by an unusually large body, so one request does not pin them for good.
+   */
+  public void release() {
+    if (input.length > MAX_RETAINED_BUFFER) {
+      input = new byte[INITIAL_BUFFER];
+    }
+    if (output.length > MAX_RETAINED_BUFFER) {
+      output = new byte[INITIAL_BUFFER];
+    }
+  }
+
+  public TransferRequest readTransferRequest(byte[] json, int length) {
+    if (!startObject(json, length)) {
+      return null;
+    }
+    TransferRequest transferRequest = new TransferRequest();
+    if (!consume('}')) {
+      do {
+        if (!readKey()) {
+          return null;
+        }
+        if (isKey(ACCOUNT_FROM_ID) && readString()) {
+          transferRequest.setAccountFromId(string);
+        } else if (isKey(ACCOUNT_TO_ID) && readString()) {
+          transferRequest.setAccountToId(string);
+        } else if (isKey(AMOUNT) && readNumber() && isExactDouble()) {
+          transferRequest.setAmount(toDouble());
+        } else {
+          return null;
+        }
+      } while (nextMember());
+      if (!consume('}')) {
+        return null;
+      }
+    }
+    return atEnd() ? transferRequest : null;
+  }
+
+  public Account readAccount(byte[] json, int length) {
+    if (!startObject(json, length)) {
+      return null;
+    }
+    String accountId = null;
+    BigDecimal balance = null;
+    if (!consume('}')) {
+      do {
+        if (!readKey()) {
+          return null;
+        }
+        if (isKey(ACCOUNT_ID) && readString()) {
+          accountId = string;
+        } else if (isKey(BALANCE) && consumeLiteral(NULL)) {
+          balance = null;
+        } else if (isKey(BALANCE) && readNumber()) {
+          balance = BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+        } else {
+          return null;
+        }
+      } while (nextMember());
+      if (!consume('}')) {
+        return null;
+      }
+    }
+    return atEnd() ? new Account(accountId, balance) : null;
+  }
+
+  /**
+   * Writes {@code {"accountId":...,"balance":...}} to the output buffer and returns its length, or
+   * -1 if the ID holds characters left to Jackson.
+   */
+  public int writeAccount(String accountId, BigDecimal balance) {
+    int length = appendBytes(0, ACCOUNT_ID_PREFIX);
+    length = appendString(length, accountId);
+    if (length < 0) {
+      return -1;
+    }
+    length = appendBytes(length, BALANCE_PREFIX);
+    length = appendDecimal(length, balance);
+    ensureCapacity(length + 1);
+    output[length++] = '}';
+    return length;
+  }
+
+  private boolean startObject(byte[] json, int length) {
+    this.json = json;
+    this.position = 0;
+    this.limit = length;
+    return consume('{');
+  }
+
+  private void skipWhitespace() {
+    while (position < limit) {
+      byte b = json[position];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        return;
+      }
+      position++;
+    }
+  }
+
+  private boolean consume(char c) {
+    skipWhitespace();
+    if (position < limit && json[position] == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean consumeLiteral(byte[] literal) {
+    skipWhitespace();
+    if (limit - position < literal.length) {
+      return false;
+    }
+    for (int i = 0; i < literal.length; i++) {
+      if (json[position + i] != literal[i]) {
+        return false;
+      }
+    }
+    position += literal.length;
+    return true;
+  }
+
+  private boolean nextMember() {
+    return consume(',');
+  }
+
+  private boolean atEnd() {
+    skipWhitespace();
+    return position == limit;
+  }
+
+  private boolean readKey() {
+    if (!consume('"')) {
+      return false;
+    }
+    keyStart = position;
+    if (!skipPlainString()) {
+      return false;
+    }
+    keyEnd = position - 1;
+    return consume(':');
+  }
+
+  private boolean isKey(byte[] key) {
+    return Arrays.equals(json, keyStart, keyEnd, key, 0, key.length);
+  }
+
+  // A JSON null or a string of printable ASCII without escapes
+  private boolean readString() {
+    if (consumeLiteral(NULL)) {
+      string = null;
+      return true;
+    }
+    if (!consume('"')) {
+      return false;
+    }
+    int start = position;
+    if (!skipPlainString()) {
+      return false;
+    }
+    string = new String(json, start, position - 1 - start, StandardCharsets.ISO_8859_1);
+    return true;
+  }
+
+  // Advances past the closing quote
+  private boolean skipPlainString() {
+    while (position < limit) {
+      byte b = json[position++];
+      if (b == '"') {
+        return true;
+      }
+      if (b == '\\' || b < 0x20) {
+        // Escapes, control characters and non-ASCII bytes (negative) are left to Jackson
+        return false;
+      }
+    }
+    return false;
+  }
+
+  // A JSON number without an exponent and with at most MAX_DIGITS digits
+  private boolean readNumber() {
+    skipWhitespace();
+    negative = position < limit && json[position] == '-';
+    if (negative) {
+      position++;
+    }
+    int start = position;
+    unscaled = 0;
+    scale = 0;
+    int digits = readDigits();
+    if (digits == 0 || digits > 1 && json[start] == '0') {
+      return false;
+    }
+    if (position < limit && json[position] == '.') {
+      position++;
+      scale = readDigits();
+      if (scale == 0) {
+        return false;
+      }
+      digits += scale;
+    }
+    if (digits > MAX_DIGITS) {
+      return false;
+    }
+    return position == limit || json[position] != 'e' && json[position] != 'E';
+  }
+
+  private int readDigits() {
+    int count = 0;
+    while (position < limit && json[position] >= '0' && json[position] <= '9') {
+      if (count < MAX_DIGITS + 1) {
+        unscaled = unscaled * 10 + (json[position] - '0');
+      }
+      position++;
+      count++;
+    }
+    return count;
+  }
+
+  private boolean isExactDouble() {
+    return unscaled <= MAX_EXACT_DOUBLE && scale < POWERS_OF_TEN.length;
+  }
+
+  private double toDouble() {
+    double value = unscaled / POWERS_OF_TEN[scale];
+    // Jackson reads "-0" as the integer 0, but "-0.0" as negative zero
+    return negative && (scale > 0 || unscaled != 0) ? -value : value;
+  }
+
+  private int appendBytes(int length, byte[] bytes) {
+    ensureCapacity(length + bytes.length);
+    System.arraycopy(bytes, 0, output, length, bytes.length);
+    return length + bytes.length;
+  }
+
+  // Escapes the way Jackson does by default; returns -1 for surrogates, whose handling is left to it
+  private int appendString(int length, String value) {
+    if (value == null) {
+      return appendBytes(length, NULL);
+    }
+    ensureCapacity(length + value.length() * 6 + 2);
+    byte[] out = output;
+    out[length++] = '"';
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+        out[length++] = (byte) c;
+      } else if (c == '"' || c == '\\') {
+        out[length++] = '\\';
+        out[length++] = (byte) c;
+      } else if (c < 0x20) {
+        length = appendControl(length, c);
+      } else if (c < 0x800) {
+        out[length++] = (byte) (0xC0 | c >> 6);
+        out[length++] = (byte) (0x80 | c & 0x3F);
+      } else if (Character.isSurrogate(c)) {
+        return -1;
+      } else {
+        out[length++] = (byte) (0xE0 | c >> 12);
+        out[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+        out[length++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+    out[length++] = '"';
+    return length;
+  }
+
+  private int appendControl(int length, char c) {
+    byte[] out = output;
+    out[length++] = '\\';
+    switch (c) {
+      case '\b' -> out[length++] = 'b';
+      case '\t' -> out[length++] = 't';
+      case '\n' -> out[length++] = 'n';
+      case '\f' -> out[length++] = 'f';
+      case '\r' -> out[length++] = 'r';
+      default -> {
+        out[length++] = 'u';
+        out[length++] = '0';
+        out[length++] = '0';
+        out[length++] = HEX[c >> 4];
+        out[length++] = HEX[c & 0xF];
+      }
+    }
+    return length;
+  }
+
+  // Same text as BigDecimal.toString(), which is what Jackson writes, built from the digits
+  private int appendDecimal(int length, BigDecimal value) {
+    if (value == null) {
+      return appendBytes(length, NULL);
+    }
+    int precision = value.precision();
+    int valueScale = value.scale();
+    if (valueScale < 0 || precision > MAX_DIGITS || precision - 1 - valueScale < -6) {
+      // Scientific notation or a value outside a long; rare enough to go through the string
+      return appendBytes(length, ascii(value.toString()));
+    }
+    long digits = value.unscaledValue().longValue();
+    ensureCapacity(length + precision + valueScale + 3);
+    byte[] out = output;
+    if (digits < 0) {
+      out[length++] = '-';
+      digits = -digits;
+    }
+    // Leading zeros of a value below one, then the digits right to left with the point inserted
+    int width = Math.max(precision, valueScale + 1) + (valueScale > 0 ? 1 : 0);
+    int end = length + width;
+    for (int i = end - 1, written = 0; i >= length; i--) {
+      if (valueScale > 0 && written == valueScale) {
+        out[i] = '.';
+        written++;
+        continue;
+      }
+      out[i] = (byte) ('0' + digits % 10);
+      digits /= 10;
+      written++;
+    }
+    return end;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > output.length) {
+      output = Arrays.copyOf(output, Math.max(capacity, output.length * 2));
+    }
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,98 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.model.TransferRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reads {@link TransferRequest} and {@link Account} bodies and writes {@link Account} and
+ * {@link AccountBalance} responses with {@link AccountJsonCodec}, falling back to Spring's
+ * {@link ObjectMapper} for anything the codec leaves to Jackson. Spring Boot puts converter beans
+ * ahead of its defaults, so every other type still goes to Jackson. Codecs and their buffers are
+ * borrowed from a pool of two per processor rather than kept per thread, since with virtual
+ * threads every request runs on a new thread; a request that finds the pool empty uses a new codec,
+ * which is dropped again if the pool is full when it is returned.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.json.codec", havingValue = "fast", matchIfMissing = true)
+public class AccountJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+  private final ObjectMapper objectMapper;
+  private final ArrayBlockingQueue<AccountJsonCodec> codecs =
+    new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+  public AccountJsonHttpMessageConverter(ObjectMapper objectMapper) {
+    super(MediaType.APPLICATION_JSON);
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == TransferRequest.class || clazz == Account.class || clazz == AccountBalance.class;
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return (clazz == TransferRequest.class || clazz == Account.class) && canRead(mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+    return (clazz == Account.class || clazz == AccountBalance.class) && canWrite(mediaType);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    AccountJsonCodec codec = borrow();
+    try {
+      int length = codec.readFrom(inputMessage.getBody());
+      Object value = clazz == TransferRequest.class
+        ? codec.readTransferRequest(codec.input(), length)
+        : codec.readAccount(codec.input(), length);
+      return value != null ? value : objectMapper.readValue(codec.input(), 0, length, clazz);
+    } catch (JsonProcessingException e) {
+      throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+    } finally {
+      giveBack(codec);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+    AccountJsonCodec codec = borrow();
+    try {
+      int length = value instanceof AccountBalance balance
+        ? codec.writeAccount(balance.getAccountId(), balance.getBalance())
+        : codec.writeAccount(((Account) value).getAccountId(), ((Account) value).getBalance());
+      if (length < 0) {
+        outputMessage.getBody().write(objectMapper.writeValueAsBytes(value));
+      } else {
+        outputMessage.getBody().write(codec.output(), 0, length);
+      }
+    } finally {
+      giveBack(codec);
+    }
+  }
+
+  private AccountJsonCodec borrow() {
+    AccountJsonCodec codec = codecs.poll();
+    return codec != null ? codec : new AccountJsonCodec();
+  }
+
+  private void giveBack(AccountJsonCodec codec) {
+    codec.release();
+    codecs.offer(codec);
+  }
+}
@@ -1,44 +1,267 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransfers;
+import com.dws.challenge.domain.FixedPointAccount;
 import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+import com.dws.challenge.replication.ReplicationLog;
 import com.dws.challenge.service.AccountsService;
 import com.dws.challenge.service.NotificationService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountTransferController {
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final ResponseEntity<Object> TRANSFERRED = new ResponseEntity<>(HttpStatus.OK);
+    private static final ResponseEntity<Object> READ_ONLY =
+            new ResponseEntity<>("This node is a read-only replica; send writes to the primary", HttpStatus.FORBIDDEN);
+
     @Autowired
     AccountsService accountsService;
 
+    @Autowired
+    IdempotencyCache idempotencyCache;
+
+    @Autowired
+    TransferAdmissionLimiter admissionLimiter;
+
     @Autowired
     NotificationService notificationService;
+
+    @Autowired
+    ClusterRouter clusterRouter;
+
+    @Autowired
+    ClusterTransfers clusterTransfers;
+
+    @Autowired
+    ReplicationLog replicationLog;
+
+    @Value("${accounts.transfer.batch.max-size:10000}")
+    int maxBatchSize;
+
+    @Value("${accounts.balance-scale:2}")
+    int balanceScale;
+
     @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> transferMoney(@RequestBody @Valid TransferRequest transferRequest) {
+    public CompletableFuture<ResponseEntity<Object>> transferMoney(@RequestBody @Valid TransferRequest transferRequest,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestHeader(name = ClusterRouter.FORWARDED, required = false) String forwardedBy,
+            @RequestHeader(name = ClusterRouter.SECRET, required = false) String internalSecret) {
+        if (replicationLog.isReplica()) {
+            return CompletableFuture.completedFuture(READ_ONLY);
+        }
+        if (!fitsScale(transferRequest)) {
+            return CompletableFuture.completedFuture(tooManyDecimalPlaces("amount"));
+        }
+        boolean forwarded = clusterRouter.isForwarded(forwardedBy, internalSecret);
+        if (idempotencyKey == null) {
+            return transfer(transferRequest, forwarded, null);
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyCache.MAX_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(IDEMPOTENCY_KEY + " must be 1 to "
+                    + IdempotencyCache.MAX_KEY_LENGTH + " characters", HttpStatus.BAD_REQUEST));
+        }
+
+        CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+        IdempotencyCache.Entry earlier = idempotencyCache.putIfAbsent(idempotencyKey, transferRequest, response);
+        if (earlier != null) {
+            if (!earlier.isFor(transferRequest)) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(IDEMPOTENCY_KEY + " " + idempotencyKey
+                        + " was already used for a different transfer", HttpStatus.UNPROCESSABLE_ENTITY));
+            }
+            // A retry never reaches the engine: it gets the original response, once there is one
+            log.info("Replaying transfer response for {} {}", IDEMPOTENCY_KEY, idempotencyKey);
+            return earlier.getResponse();
+        }
+        transfer(transferRequest, forwarded, idempotencyKey).whenComplete((result, failure) -> {
+            // A rejected transfer was never attempted, so the key is released for the retry; a 504
+            // from a forward keeps it, as the owning node may have made the transfer. A failure here
+            // means the request never got a response, so it releases the key as well rather than
+            // leaving retries waiting on a response that will not come
+            if (failure != null || result.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                    || result.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                idempotencyCache.remove(idempotencyKey, response);
+            }
+            response.complete(failure == null ? result : toResponse(null, failure));
+        });
+        return response;
+    }
+
+    private CompletableFuture<ResponseEntity<Object>> transfer(TransferRequest transferRequest, boolean forwarded,
+            String idempotencyKey) {
+        // Shed load before it queues: a quick 429 beats a transfer that times out in the queue
+        if (!admissionLimiter.tryAcquire()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Integer.toString(admissionLimiter.getRetryAfterSeconds()))
+                    .body("Too many transfers in flight, retry later"));
+        }
+        long admitted = System.nanoTime();
         log.info("Initiating transfer from {} to {} for amount {}", transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId(), transferRequest.getAmount());
 
+        // In cluster mode: served here if this node owns both accounts, forwarded if another node
+        // does, and coordinated from here by two-phase commit if they are on different nodes
+        int owner = forwarded ? clusterRouter.nodeIndex() : owner(List.of(transferRequest));
+        if (owner >= 0 && owner != clusterRouter.nodeIndex()) {
+            // The owning node deduplicates retries by the same key, whichever node they arrive at
+            CompletableFuture<ResponseEntity<Object>> forward;
+            try {
+                forward = clusterRouter.forward(owner, "POST", "/v1/accounts/transfer", transferRequest,
+                        idempotencyKey == null ? Map.of() : Map.of(IDEMPOTENCY_KEY, idempotencyKey));
+            } catch (Exception e) {
+                forward = CompletableFuture.failedFuture(e);
+            }
+            return forward.whenComplete((response, failure) -> admissionLimiter.release(admitted, failure != null
+                    || response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                    || response.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT
+                    || response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS));
+        }
+        CompletableFuture<Void> transfer;
+        try {
+            transfer = owner >= 0
+                    ? this.accountsService.transferMoneyAsync(transferRequest.getAccountFromId(),
+                            transferRequest.getAccountToId(), transferRequest.getAmount(), notificationService)
+                    : this.clusterTransfers.transfer(transferRequest.getAccountFromId(),
+                            transferRequest.getAccountToId(), transferRequest.getAmount());
+        } catch (Exception e) {
+            transfer = CompletableFuture.failedFuture(e);
+        }
+        // The response completes when the engine finishes, without holding a request thread meanwhile
+        return transfer.handle((ignored, failure) -> {
+            admissionLimiter.release(admitted, isRejected(failure));
+            return toResponse(ignored, failure);
+        });
+    }
+
+    // Finer amounts than the book keeps would be rounded or fail later, depending on the engine
+    private boolean fitsScale(TransferRequest transferRequest) {
+        return FixedPointAccount.fitsScale(BigDecimal.valueOf(transferRequest.getAmount()), balanceScale);
+    }
+
+    private ResponseEntity<Object> tooManyDecimalPlaces(String field) {
+        return new ResponseEntity<>(field + " must have at most " + balanceScale + " decimal places",
+                HttpStatus.BAD_REQUEST);
+    }
+
+    // The node owning every account of the transfers, or -1 if they span nodes
+    private int owner(List<TransferRequest> transferRequests) {
+        if (!clusterRouter.isEnabled()) {
+            return clusterRouter.nodeIndex();
+        }
+        Set<Integer> owners = new HashSet<>();
+        for (TransferRequest transferRequest : transferRequests) {
+            owners.add(clusterRouter.ownerOf(transferRequest.getAccountFromId()));
+            owners.add(clusterRouter.ownerOf(transferRequest.getAccountToId()));
+        }
+        if (owners.size() > 1) {
+            return -1;
+        }
+        return owners.isEmpty() ? clusterRouter.nodeIndex() : owners.iterator().next();
+    }
+
+    private static boolean isRejected(Throwable failure) {
+        return failure instanceof RejectedExecutionException
+                || failure instanceof CompletionException && failure.getCause() instanceof RejectedExecutionException;
+    }
+
+    private ResponseEntity<Object> toResponse(Void ignored, Throwable failure) {
+        if (failure == null) {
+            // A primary hands out a token that makes a replica read serve this transfer's outcome
+            return replicationLog.isPrimary()
+                    ? ResponseEntity.ok().header(ReplicationLog.TOKEN, replicationLog.token()).build()
+                    : TRANSFERRED;
+        }
+        return toErrorResponse(failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure);
+    }
+
+    private ResponseEntity<Object> toErrorResponse(Throwable failure) {
+        if (failure instanceof InsufficientFundsException) {
+            log.error("Insufficient funds for transfer: {}", failure.getMessage());
+            return new ResponseEntity<>(failure.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (failure instanceof RejectedExecutionException) {
+            log.warn("Transfer rejected: {}", failure.getMessage());
+            return new ResponseEntity<>(failure.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        log.error("Error during transfer: {}", failure.getMessage());
+        return new ResponseEntity<>(failure.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @PostMapping(path = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> transferMoneyBatch(@RequestBody List<TransferRequest> transferRequests,
+                                                     @RequestParam(defaultValue = "false") boolean atomic,
+                                                     @RequestHeader(name = ClusterRouter.FORWARDED, required = false)
+                                                     String forwardedBy,
+                                                     @RequestHeader(name = ClusterRouter.SECRET, required = false)
+                                                     String internalSecret) {
+        log.info("Initiating batch of {} transfers (atomic={})", transferRequests.size(), atomic);
+
+        if (replicationLog.isReplica()) {
+            return READ_ONLY;
+        }
+        if (transferRequests.size() > maxBatchSize) {
+            return new ResponseEntity<>("Batch exceeds maximum size of " + maxBatchSize, HttpStatus.BAD_REQUEST);
+        }
+        for (int i = 0; i < transferRequests.size(); i++) {
+            if (!fitsScale(transferRequests.get(i))) {
+                return tooManyDecimalPlaces("transfers[" + i + "].amount");
+            }
+        }
+        if (atomic && !this.accountsService.supportsAtomicBatches()) {
+            return new ResponseEntity<>("Atomic batches require the locking transfer engine", HttpStatus.BAD_REQUEST);
+        }
+
+        int owner = clusterRouter.isForwarded(forwardedBy, internalSecret) ? clusterRouter.nodeIndex()
+                : owner(transferRequests);
+        if (owner < 0) {
+            return new ResponseEntity<>("Batch transfers must stay within the accounts of one cluster node",
+                    HttpStatus.BAD_REQUEST);
+        }
+        if (owner != clusterRouter.nodeIndex()) {
+            return clusterRouter.forward(owner, "POST", "/v1/accounts/transfers/batch?atomic=" + atomic,
+                    transferRequests, Map.of()).join();
+        }
+
         try {
-            this.accountsService.transferMoney(transferRequest.getAccountFromId(), transferRequest.getAccountToId(),
-                    transferRequest.getAmount(), notificationService);
-            return new ResponseEntity<>(HttpStatus.OK);
-        } catch (InsufficientFundsException e) {
-            log.error("Insufficient funds for transfer: {}", e.getMessage());
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            List<TransferResult> results = this.accountsService.transferMoneyBatch(transferRequests, atomic,
+                    notificationService);
+            boolean rolledBack = atomic && results.stream().anyMatch(result -> !result.isCompleted());
+            HttpHeaders headers = new HttpHeaders();
+            if (replicationLog.isPrimary()) {
+                headers.set(ReplicationLog.TOKEN, replicationLog.token());
+            }
+            return new ResponseEntity<>(results, headers, rolledBack ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
         } catch (Exception e) {
-            log.error("Error during transfer: {}", e.getMessage());
+            log.error("Error during batch transfer: {}", e.getMessage());
             return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
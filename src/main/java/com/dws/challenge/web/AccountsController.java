@@ -1,10 +1,28 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterRouter;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.domain.FixedPointAccount;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.model.AccountImportError;
+import com.dws.challenge.model.AccountImportResult;
+import com.dws.challenge.model.LedgerPage;
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationLog;
+import com.dws.challenge.service.AccountExporter;
+import com.dws.challenge.service.AccountImporter;
 import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,23 +30,75 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+  private static final int MAX_HISTORY_PAGE = 1000;
+  private static final String READ_ONLY = "This node is a read-only replica; send writes to the primary";
+
   private final AccountsService accountsService;
+  private final AccountImporter accountImporter;
+  private final AccountExporter accountExporter;
+  private final ObjectWriter jsonWriter;
+  private final ClusterRouter clusterRouter;
+  private final ReplicationLog replicationLog;
+  private final ReplicationFollower replicationFollower;
+  private final long replicaReadTimeoutMillis;
+  private final int balanceScale;
   @Autowired
-  public AccountsController(AccountsService accountsService) { this.accountsService = accountsService;
+  public AccountsController(AccountsService accountsService, AccountImporter accountImporter,
+    AccountExporter accountExporter, ObjectMapper objectMapper, ClusterRouter clusterRouter,
+    ReplicationLog replicationLog, ReplicationFollower replicationFollower,
+    @Value("${replication.read-timeout-ms:1000}") long replicaReadTimeoutMillis,
+    @Value("${accounts.balance-scale:2}") int balanceScale) {
+    this.accountsService = accountsService;
+    this.accountImporter = accountImporter;
+    this.accountExporter = accountExporter;
+    this.jsonWriter = objectMapper.writer();
+    this.clusterRouter = clusterRouter;
+    this.replicationLog = replicationLog;
+    this.replicationFollower = replicationFollower;
+    this.replicaReadTimeoutMillis = replicaReadTimeoutMillis;
+    this.balanceScale = balanceScale;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account, HttpServletRequest request) {
+    if (replicationLog.isReplica()) {
+      return new ResponseEntity<>(READ_ONLY, HttpStatus.FORBIDDEN);
+    }
+    if (!FixedPointAccount.fitsScale(account.getBalance(), balanceScale)) {
+      return new ResponseEntity<>("balance must have at most " + balanceScale + " decimal places",
+        HttpStatus.BAD_REQUEST);
+    }
+    if (account.getAccountId() != null && account.getAccountId().length() > Account.MAX_ID_LENGTH) {
+      return new ResponseEntity<>("accountId must have at most " + Account.MAX_ID_LENGTH + " characters",
+        HttpStatus.BAD_REQUEST);
+    }
+    if (isRemote(account.getAccountId(), request)) {
+      return forward(account.getAccountId(), request, account);
+    }
     log.info("Creating account {}", account);
 
     try {
@@ -37,13 +107,154 @@ public class AccountsController {
       return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    if (replicationLog.isPrimary()) {
+      return ResponseEntity.status(HttpStatus.CREATED).header(ReplicationLog.TOKEN, replicationLog.token()).build();
+    }
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Streams an NDJSON or CSV body of accounts into the repository. The response is NDJSON: one
+   * {@code {"line":..,"error":..}} object per rejected line, written as each batch finishes, then a
+   * {@code {"imported":..,"failed":..}} summary. In cluster mode a node imports only the accounts it
+   * owns and reports the others as rejected lines, so each node should be sent its own share.
+   */
+  @PostMapping(path = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+    produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> importAccounts(HttpServletRequest request) {
+    if (replicationLog.isReplica()) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+    MediaType contentType = MediaType.parseMediaType(request.getContentType());
+    AccountImporter.Format format = TEXT_CSV.isCompatibleWith(contentType)
+      ? AccountImporter.Format.CSV : AccountImporter.Format.NDJSON;
+    Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+    log.info("Importing {} accounts", format);
+
+    // The body is read while the response streams, so neither is held in memory
+    StreamingResponseBody body = output -> {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset), 1 << 16);
+      AccountImportResult result;
+      try {
+        result = accountImporter.importAccounts(reader, format, errors -> writeErrors(errors, output));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      writeLine(result, output);
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Streams every account as NDJSON, one {@code {"accountId":..,"balance":..}} object per line,
+   * straight from the repository to the socket. With the locking engine the export is a
+   * point-in-time view; transfers keep running while it is written. In cluster mode only this
+   * node's accounts are exported.
+   */
+  @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportAccounts() {
+    log.info("Exporting accounts");
+    // Flushed by the buffer, not per account
+    ObjectWriter accountWriter = jsonWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    StreamingResponseBody body = output -> {
+      try (JsonGenerator generator = accountWriter.createGenerator(new BufferedOutputStream(output, 1 << 16))) {
+        accountExporter.export(balance -> {
+          try {
+            accountWriter.writeValue(generator, balance);
+            generator.writeRaw('\n');
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  private void writeErrors(Iterable<AccountImportError> errors, OutputStream output) {
+    try {
+      for (AccountImportError error : errors) {
+        writeLine(error, output);
+      }
+      output.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeLine(Object value, OutputStream output) throws IOException {
+    output.write(jsonWriter.writeValueAsBytes(value));
+    output.write('\n');
+  }
+
+  /**
+   * Serves a consistent copy of the balance with an {@code ETag}; a matching {@code If-None-Match}
+   * gets {@code 304 Not Modified} and the body is never serialized. On a replica, a
+   * {@value ReplicationLog#TOKEN} from an earlier write holds the read until the replica has applied
+   * that write, for up to {@code replication.read-timeout-ms}.
+   */
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
-    log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+  public ResponseEntity<Object> getAccount(@PathVariable String accountId,
+    @RequestHeader(name = ReplicationLog.TOKEN, required = false) String replicationToken,
+    HttpServletRequest request) {
+    if (isRemote(accountId, request)) {
+      return forward(accountId, request, null);
+    }
+    if (replicationFollower.isLoading()) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+        .body("Replica is loading a snapshot of the primary");
+    }
+    if (replicationToken != null && replicationLog.isReplica()
+      && !replicationFollower.awaitToken(replicationToken, replicaReadTimeoutMillis)) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+        .body("Replica has not applied " + replicationToken + " yet");
+    }
+    // Debug only: dashboards poll this endpoint thousands of times a second
+    log.debug("Retrieving account for id {}", accountId);
+    AccountBalance balance = this.accountsService.getAccountBalance(accountId);
+    if (balance == null) {
+      return ResponseEntity.ok().build();
+    }
+    return ResponseEntity.ok().eTag(balance.getETag()).body(balance);
+  }
+
+  /**
+   * A page of the account's completed transfers, newest first, optionally limited to
+   * {@code [from, to]}. Pass the returned {@code nextCursor} as {@code cursor} for the next page.
+   */
+  @GetMapping(path = "/{accountId}/transfers")
+  public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+    @RequestParam(required = false) Long cursor,
+    @RequestParam(defaultValue = "100") int limit, HttpServletRequest request) {
+    if (isRemote(accountId, request)) {
+      return forward(accountId, request, null);
+    }
+    log.debug("Retrieving transfers for id {}", accountId);
+    if (limit < 1 || limit > MAX_HISTORY_PAGE) {
+      return new ResponseEntity<>("limit must be between 1 and " + MAX_HISTORY_PAGE, HttpStatus.BAD_REQUEST);
+    }
+    LedgerPage page = this.accountsService.getTransferHistory(accountId, from, to, cursor, limit);
+    return ResponseEntity.ok(page);
+  }
+
+  // A forwarded request is served here even if the rings disagree, so it never bounces between nodes
+  private boolean isRemote(String accountId, HttpServletRequest request) {
+    return !clusterRouter.isLocal(accountId) && !clusterRouter.isForwarded(request.getHeader(ClusterRouter.FORWARDED),
+      request.getHeader(ClusterRouter.SECRET));
+  }
+
+  private ResponseEntity<Object> forward(String accountId, HttpServletRequest request, Object body) {
+    log.debug("Forwarding {} {} to node {}", request.getMethod(), request.getRequestURI(),
+      clusterRouter.ownerOf(accountId));
+    String query = request.getQueryString();
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    return clusterRouter.forward(clusterRouter.ownerOf(accountId), request.getMethod(),
+      request.getRequestURI() + (query == null ? "" : "?" + query), body,
+      ifNoneMatch == null ? Map.of() : Map.of(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)).join();
   }
 
 }
@@ -0,0 +1,99 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransfers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+
+/**
+ * Node-to-node endpoints of the cross-partition transfer protocol. Bodies are a single plain-text
+ * word: a {@link com.dws.challenge.model.TransferStatus} for prepare and a
+ * {@link ClusterTransfers.Decision} for decision inquiries. Not found unless cluster mode is on.
+ * Callers are other nodes, holding {@code internal.secret} (see {@link InternalEndpointFilter});
+ * phase-one and phase-two messages are accepted only from the node that started the transfer, and
+ * inquiries only about transfers this node started.
+ */
+@RestController
+@RequestMapping(path = "/internal/cluster/transfers/{transferId}", produces = MediaType.TEXT_PLAIN_VALUE)
+public class ClusterController {
+
+  private static final ResponseEntity<String> NOT_CLUSTERED = new ResponseEntity<>(HttpStatus.NOT_FOUND);
+  private static final ResponseEntity<String> FOREIGN_TRANSFER =
+    new ResponseEntity<>("Transfer was not started by the calling node", HttpStatus.FORBIDDEN);
+
+  private final ClusterRouter router;
+  private final ClusterTransfers clusterTransfers;
+
+  @Autowired
+  public ClusterController(ClusterRouter router, ClusterTransfers clusterTransfers) {
+    this.router = router;
+    this.clusterTransfers = clusterTransfers;
+  }
+
+  @PostMapping("/prepare")
+  public ResponseEntity<String> prepare(@PathVariable String transferId, @RequestParam String accountId,
+    @RequestParam String counterpartyId, @RequestParam BigDecimal amount,
+    @RequestHeader(name = ClusterRouter.FORWARDED, required = false) String caller) {
+    if (!router.isEnabled()) {
+      return NOT_CLUSTERED;
+    }
+    if (!isCoordinator(transferId, caller)) {
+      return FOREIGN_TRANSFER;
+    }
+    return ResponseEntity.ok(clusterTransfers.prepare(transferId, accountId, counterpartyId, amount).name());
+  }
+
+  @PostMapping("/commit")
+  public ResponseEntity<String> commit(@PathVariable String transferId,
+    @RequestHeader(name = ClusterRouter.FORWARDED, required = false) String caller) {
+    if (!router.isEnabled()) {
+      return NOT_CLUSTERED;
+    }
+    if (!isCoordinator(transferId, caller)) {
+      return FOREIGN_TRANSFER;
+    }
+    clusterTransfers.complete(transferId, ClusterTransfers.Decision.COMMITTED);
+    return ResponseEntity.ok(ClusterTransfers.Decision.COMMITTED.name());
+  }
+
+  @PostMapping("/abort")
+  public ResponseEntity<String> abort(@PathVariable String transferId,
+    @RequestHeader(name = ClusterRouter.FORWARDED, required = false) String caller) {
+    if (!router.isEnabled()) {
+      return NOT_CLUSTERED;
+    }
+    if (!isCoordinator(transferId, caller)) {
+      return FOREIGN_TRANSFER;
+    }
+    clusterTransfers.complete(transferId, ClusterTransfers.Decision.ABORTED);
+    return ResponseEntity.ok(ClusterTransfers.Decision.ABORTED.name());
+  }
+
+  @GetMapping("/decision")
+  public ResponseEntity<String> decision(@PathVariable String transferId) {
+    if (!router.isEnabled()) {
+      return NOT_CLUSTERED;
+    }
+    if (clusterTransfers.coordinatorOf(transferId) != router.nodeIndex()) {
+      return FOREIGN_TRANSFER;
+    }
+    return ResponseEntity.ok(clusterTransfers.decision(transferId).name());
+  }
+
+  // The caller is the node whose index prefixes the transfer ID, and that node is in cluster.nodes
+  private boolean isCoordinator(String transferId, String caller) {
+    int coordinator = clusterTransfers.coordinatorOf(transferId);
+    return coordinator >= 0 && Integer.toString(coordinator).equals(caller);
+  }
+}
@@ -0,0 +1,48 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.service.AccountContentionTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operator endpoint listing the accounts behind lock contention: those with the most transfers and
+ * those with the most time spent waiting for their locks over the tracker's sliding window.
+ */
+@RestController
+@RequestMapping("/internal/contention")
+public class ContentionController {
+
+  private final AccountContentionTracker contention;
+
+  @Autowired
+  public ContentionController(AccountContentionTracker contention) {
+    this.contention = contention;
+  }
+
+  @GetMapping
+  public ResponseEntity<Object> report(@RequestParam(required = false) Integer limit) {
+    if (!contention.isEnabled()) {
+      return new ResponseEntity<>("Contention tracking is disabled", HttpStatus.NOT_FOUND);
+    }
+    int topK = contention.topK();
+    if (limit == null) {
+      limit = topK;
+    } else if (limit < 1 || limit > topK) {
+      return new ResponseEntity<>("limit must be between 1 and " + topK, HttpStatus.BAD_REQUEST);
+    }
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("windowSeconds", contention.windowSeconds());
+    report.put("sampleRate", contention.sampleRate());
+    report.put("mostTransferred", contention.mostTransferred(limit));
+    report.put("mostContended", contention.mostContended(limit));
+    return ResponseEntity.ok(report);
+  }
+}
@@ -0,0 +1,172 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.model.TransferRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recent {@code Idempotency-Key}s mapped to the response of the transfer that first used them.
+ * Lookups are a single {@link ConcurrentHashMap} read. Keys are also queued in insertion order, so
+ * the oldest key is evicted once {@code max-entries} is reached and a background sweep drops keys
+ * older than the TTL; a key is held from the moment its transfer starts, so a retry that arrives
+ * while the original is still running waits for the same response.
+ */
+@Component
+public class IdempotencyCache {
+
+  public static final int MAX_KEY_LENGTH = 255;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final long ttlNanos;
+  private final int maxEntries;
+
+  private final Counter replayedCounter;
+  private final Counter evictedCounter;
+
+  private ScheduledExecutorService sweeper;
+
+  public IdempotencyCache(MeterRegistry meterRegistry,
+    @Value("${accounts.transfer.idempotency.ttl-seconds:600}") long ttlSeconds,
+    @Value("${accounts.transfer.idempotency.max-entries:500000}") int maxEntries) {
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.maxEntries = maxEntries;
+
+    Gauge.builder("transfers.idempotency.size", size, AtomicInteger::get)
+      .description("Idempotency keys retained until evicted")
+      .register(meterRegistry);
+    this.replayedCounter = meterRegistry.counter("transfers.idempotency.replayed");
+    this.evictedCounter = meterRegistry.counter("transfers.idempotency.evicted");
+  }
+
+  @PostConstruct
+  void start() {
+    long sweepNanos = Math.max(TimeUnit.SECONDS.toNanos(1), ttlNanos / 10);
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "idempotency-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+    }
+  }
+
+  /**
+   * Holds {@code key} for {@code transfer}'s {@code response} and returns null, or returns the live
+   * entry an earlier request holds it with. The caller checks {@link Entry#isFor(TransferRequest)}
+   * to detect a key reused for a different transfer.
+   */
+  public Entry putIfAbsent(String key, TransferRequest transfer, CompletableFuture<ResponseEntity<Object>> response) {
+    Entry entry = new Entry(key, transfer.getAccountFromId(), transfer.getAccountToId(), transfer.getAmount(),
+      System.nanoTime(), response);
+    while (true) {
+      Entry earlier = entries.putIfAbsent(key, entry);
+      if (earlier == null) {
+        insertionOrder.offer(entry);
+        if (size.incrementAndGet() > maxEntries) {
+          evictOldest();
+        }
+        return null;
+      }
+      if (!isExpired(earlier, entry.createdNanos)) {
+        replayedCounter.increment();
+        return earlier;
+      }
+      // The sweep has not reached it yet; its queue node is dropped when the sweep does
+      entries.remove(key, earlier);
+    }
+  }
+
+  /**
+   * Releases {@code key} if it is still held for {@code response}, so the next request with it runs
+   * the transfer again.
+   */
+  public void remove(String key, CompletableFuture<ResponseEntity<Object>> response) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.response == response) {
+      entries.remove(key, entry);
+    }
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  void sweep() {
+    long now = System.nanoTime();
+    Entry oldest;
+    while ((oldest = insertionOrder.peek()) != null && isExpired(oldest, now)) {
+      evictOldest();
+    }
+  }
+
+  private void evictOldest() {
+    Entry oldest = insertionOrder.poll();
+    if (oldest != null) {
+      size.decrementAndGet();
+      if (entries.remove(oldest.key, oldest)) {
+        evictedCounter.increment();
+      }
+    }
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return now - entry.createdNanos >= ttlNanos;
+  }
+
+  public static final class Entry {
+    private final String key;
+    // Copied from the request, which is mutable
+    private final String accountFromId;
+    private final String accountToId;
+    private final double amount;
+    private final long createdNanos;
+    private final CompletableFuture<ResponseEntity<Object>> response;
+
+    private Entry(String key, String accountFromId, String accountToId, double amount, long createdNanos,
+      CompletableFuture<ResponseEntity<Object>> response) {
+      this.key = key;
+      this.accountFromId = accountFromId;
+      this.accountToId = accountToId;
+      this.amount = amount;
+      this.createdNanos = createdNanos;
+      this.response = response;
+    }
+
+    /**
+     * Whether {@code transfer} is the one this key was first used for.
+     */
+    public boolean isFor(TransferRequest transfer) {
+      return Objects.equals(accountFromId, transfer.getAccountFromId())
+        && Objects.equals(accountToId, transfer.getAccountToId())
+        && Double.compare(amount, transfer.getAmount()) == 0;
+    }
+
+    public CompletableFuture<ResponseEntity<Object>> getResponse() {
+      return response;
+    }
+  }
+}
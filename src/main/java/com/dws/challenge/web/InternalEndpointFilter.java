@@ -0,0 +1,55 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Keeps node-to-node endpoints and replica promotion away from clients: a request to one of them
+ * must carry the shared {@code internal.secret} in the {@value ClusterRouter#SECRET} header, or it
+ * is refused with {@code 403} before it reaches a controller. With no secret configured they are
+ * refused altogether. Paths are compared as handler mapping sees them, with {@code ;} parameters
+ * removed and segments decoded, so {@code /internal;x/%63luster/} is guarded too.
+ */
+@Component
+public class InternalEndpointFilter extends OncePerRequestFilter {
+
+  private static final List<String> GUARDED = List.of("/internal/cluster/", "/internal/replication/");
+
+  private final byte[] secret;
+
+  public InternalEndpointFilter(@Value("${internal.secret:}") String secret) {
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    return GUARDED.stream().noneMatch(path::startsWith);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+    throws ServletException, IOException {
+    String presented = request.getHeader(ClusterRouter.SECRET);
+    // Compared in constant time so the secret cannot be guessed byte by byte
+    if (secret.length == 0 || presented == null
+      || !MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8))) {
+      response.sendError(HttpStatus.FORBIDDEN.value(), "Internal endpoint");
+      return;
+    }
+    chain.doFilter(request, response);
+  }
+}
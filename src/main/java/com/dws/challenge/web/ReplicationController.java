@@ -0,0 +1,65 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operator endpoints for replication: this node's position in the feed, and failover. A replica
+ * is promoted by hand once its primary is known to be gone; nothing fences the old primary.
+ * Promotion goes through {@link InternalEndpointFilter}, so it takes the internal secret.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/internal/replication")
+public class ReplicationController {
+
+  private final ReplicationLog replicationLog;
+  private final ReplicationFollower replicationFollower;
+
+  @Autowired
+  public ReplicationController(ReplicationLog replicationLog, ReplicationFollower replicationFollower) {
+    this.replicationLog = replicationLog;
+    this.replicationFollower = replicationFollower;
+  }
+
+  /**
+   * The role, epoch and sequence of this node; a replica adds how far it is behind its primary.
+   */
+  @GetMapping
+  public Map<String, Object> status() {
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("role", replicationLog.role());
+    if (replicationLog.isReplica()) {
+      status.put("epoch", replicationFollower.epoch());
+      status.put("sequence", replicationFollower.appliedSequence());
+      status.put("lagSequences", replicationFollower.lagSequences());
+      status.put("lagMillis", replicationFollower.lagMillis());
+    } else {
+      status.put("epoch", replicationLog.epoch());
+      status.put("sequence", replicationLog.lastSequence());
+    }
+    return status;
+  }
+
+  @PostMapping("/promote")
+  public ResponseEntity<Object> promote() throws IOException, InterruptedException {
+    if (!replicationLog.isReplica()) {
+      return new ResponseEntity<>("Only a replica can be promoted", HttpStatus.CONFLICT);
+    }
+    log.warn("Promoting this replica to primary");
+    replicationFollower.promote();
+    return ResponseEntity.ok(status());
+  }
+}
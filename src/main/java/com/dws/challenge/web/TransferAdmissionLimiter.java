@@ -0,0 +1,123 @@
+package com.dws.challenge.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive cap on the transfers in flight, so excess requests are turned away at once instead of
+ * queueing on request threads and account locks. The cap follows AIMD on observed latency: every
+ * transfer that completes within the latency SLO while the cap is at least half used raises it by
+ * {@code 1/limit} (about one per round of transfers), and a transfer slower than the SLO, or
+ * rejected by the engine, cuts it by 10%. Only a transfer admitted after the last cut can cut it
+ * again, so one slow round lowers the cap once rather than once per transfer in it.
+ */
+@Component
+public class TransferAdmissionLimiter {
+
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final boolean enabled;
+  private final long sloNanos;
+  private final double minLimit;
+  private final double maxLimit;
+  private final int retryAfterSeconds;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  // Double bits, so the limit can move by fractions without a lock
+  private final AtomicLong limit;
+  private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+
+  private final Counter rejectedCounter;
+
+  public TransferAdmissionLimiter(MeterRegistry meterRegistry,
+    @Value("${accounts.transfer.admission.enabled:true}") boolean enabled,
+    @Value("${accounts.transfer.admission.latency-slo-ms:50}") long latencySloMillis,
+    @Value("${accounts.transfer.admission.initial-limit:256}") int initialLimit,
+    @Value("${accounts.transfer.admission.min-limit:8}") int minLimit,
+    @Value("${accounts.transfer.admission.max-limit:4096}") int maxLimit,
+    @Value("${accounts.transfer.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+    this.enabled = enabled;
+    this.sloNanos = TimeUnit.MILLISECONDS.toNanos(latencySloMillis);
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.limit = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+
+    Gauge.builder("transfers.admission.limit", this, TransferAdmissionLimiter::getLimit)
+      .description("Transfers allowed in flight before new ones are rejected")
+      .register(meterRegistry);
+    Gauge.builder("transfers.admission.in-flight", inFlight, AtomicInteger::get)
+      .description("Admitted transfers not yet completed")
+      .register(meterRegistry);
+    this.rejectedCounter = meterRegistry.counter("transfers.admission.rejected");
+  }
+
+  /**
+   * Admits a transfer if fewer than the limit are in flight. An admitted transfer must be
+   * {@linkplain #release released} once it completes, with the {@link System#nanoTime()} it was
+   * admitted at.
+   */
+  public boolean tryAcquire() {
+    if (!enabled) {
+      return true;
+    }
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= getLimit()) {
+        rejectedCounter.increment();
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /**
+   * Completes an admitted transfer and adjusts the limit by its latency; {@code overloaded} marks a
+   * transfer the engine rejected, which counts as slower than the SLO.
+   */
+  public void release(long admittedNanos, boolean overloaded) {
+    if (!enabled) {
+      return;
+    }
+    long now = System.nanoTime();
+    int inFlightBefore = inFlight.getAndDecrement();
+    if (overloaded || now - admittedNanos > sloNanos) {
+      long lastDecrease = lastDecreaseNanos.get();
+      if (admittedNanos - lastDecrease > 0 && lastDecreaseNanos.compareAndSet(lastDecrease, now)) {
+        updateLimit(BACKOFF_RATIO, 0);
+      }
+    } else if (inFlightBefore * 2 >= getLimit()) {
+      updateLimit(1, 1 / getLimit());
+    }
+  }
+
+  public double getLimit() {
+    return Double.longBitsToDouble(limit.get());
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  private void updateLimit(double ratio, double increment) {
+    long current;
+    double updated;
+    do {
+      current = limit.get();
+      updated = Double.longBitsToDouble(current) * ratio + increment;
+      updated = Math.max(minLimit, Math.min(maxLimit, updated));
+    } while (!limit.compareAndSet(current, Double.doubleToLongBits(updated)));
+  }
+}
@@ -0,0 +1,128 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.model.AccountContention;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountContentionTracker;
+import com.dws.challenge.service.HeavyHitterSketch;
+import com.dws.challenge.service.HotAccounts;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountContentionTrackerTest {
+
+  private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+  private final StripedAccountLocks accountLocks = new StripedAccountLocks(64);
+
+  @Test
+  void sketchFindsHeavyHittersAmongManyKeys() {
+    HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 10, 16);
+    for (int i = 0; i < 100_000; i++) {
+      sketch.add("Id-" + (i % 10_000), 1);
+      if (i % 10 == 0) {
+        sketch.add("Id-hot-1", 1);
+      }
+      if (i % 20 == 0) {
+        sketch.add("Id-hot-2", 1);
+      }
+    }
+
+    assertThat(sketch.top(2)).containsExactly("Id-hot-1", "Id-hot-2");
+    assertThat(sketch.estimate("Id-hot-1")).isGreaterThanOrEqualTo(10_000);
+    assertThat(sketch.estimate("Id-7")).isGreaterThanOrEqualTo(10);
+  }
+
+  @Test
+  void countsExpireAsTheWindowSlides() {
+    HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 10, 16);
+    sketch.add("Id-old", 100);
+    sketch.rotate();
+    sketch.add("Id-new", 50);
+
+    for (int i = 0; i < 9; i++) {
+      assertThat(sketch.top(2)).contains("Id-old");
+      sketch.rotate();
+    }
+
+    assertThat(sketch.estimate("Id-old")).isZero();
+    assertThat(sketch.estimate("Id-new")).isEqualTo(50);
+    assertThat(sketch.top(2)).containsExactly("Id-new");
+  }
+
+  @Test
+  void reportsAccountsWhoseLocksTransfersWaitFor() throws Exception {
+    AccountContentionTracker contention = new AccountContentionTracker(true, 60, 1024, 5, 1);
+    LockingTransferEngine transferEngine = engine(contention);
+    transferEngine.createAccount(new Account("Id-hot", new BigDecimal("1000")));
+    for (int i = 0; i < 100; i++) {
+      transferEngine.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+    for (int i = 0; i < 1_000; i++) {
+      transferEngine.transfer("Id-" + (i % 100), i % 2 == 0 ? "Id-hot" : "Id-" + ((i + 1) % 100), 0.01);
+    }
+
+    // Two payers queue behind a held lock, so the hot account is charged both waits
+    accountLocks.lock("Id-hot", "Id-hot");
+    Thread first = new Thread(() -> transferEngine.transfer("Id-1", "Id-hot", 1.0));
+    Thread second = new Thread(() -> transferEngine.transfer("Id-2", "Id-hot", 1.0));
+    first.start();
+    second.start();
+    Thread.sleep(50);
+    accountLocks.unlock("Id-hot", "Id-hot");
+    first.join();
+    second.join();
+
+    List<AccountContention> mostTransferred = contention.mostTransferred(5);
+    assertThat(mostTransferred.get(0).getAccountId()).isEqualTo("Id-hot");
+    assertThat(mostTransferred.get(0).getTransfersPerSecond()).isPositive();
+    List<AccountContention> mostContended = contention.mostContended(1);
+    assertThat(mostContended).extracting(AccountContention::getAccountId).containsExactly("Id-hot");
+    assertThat(mostContended.get(0).getMeanLockWaitMicros()).isPositive();
+
+    for (int i = 0; i < 10; i++) {
+      ReflectionTestUtils.invokeMethod(contention, "rotate");
+    }
+    assertThat(contention.mostTransferred(5)).isEmpty();
+  }
+
+  @Test
+  void recordingAllocatesNothing() {
+    AccountContentionTracker contention = new AccountContentionTracker(true, 60, 1024, 5, 1);
+    String[] accountIds = new String[1_000];
+    for (int i = 0; i < accountIds.length; i++) {
+      accountIds[i] = "Id-" + i;
+    }
+    for (int i = 0; i < 100_000; i++) {
+      contention.record(accountIds[i % 1_000], accountIds[(i * 7) % 1_000], 0, i % 100);
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < 100_000; i++) {
+      contention.record(accountIds[i % 1_000], accountIds[(i * 7) % 1_000], 0, i % 100);
+    }
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+    // Well under a byte per call, leaving room for the measurement itself
+    assertThat(allocated).isLessThan(10_000);
+  }
+
+  private LockingTransferEngine engine(AccountContentionTracker contention) {
+    return lockingEngine(accountsRepository, accountLocks)
+      .metrics(new TransferMetrics(new SimpleMeterRegistry(), true))
+      .hotAccounts(new HotAccounts(accountsRepository, accountLocks, new SimpleMeterRegistry(), List.of(), 0, 4, 100, 64))
+      .contention(contention)
+      .build();
+  }
+}
@@ -0,0 +1,75 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountCuts;
+import com.dws.challenge.service.AccountExporter;
+import com.dws.challenge.service.HotAccounts;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountExporterTest {
+
+  private static final int ACCOUNTS = 20_000;
+
+  @Test
+  void exportIsPointInTimeWhileTransfersRun() throws Exception {
+    AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+    StripedAccountLocks accountLocks = new StripedAccountLocks(64);
+    HotAccounts hotAccounts = new HotAccounts(accountsRepository, accountLocks, new SimpleMeterRegistry(), List.of(),
+      0, 0, 100, 64);
+    AccountCuts accountCuts = new AccountCuts(accountLocks, hotAccounts);
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, accountLocks)
+      .hotAccounts(hotAccounts)
+      .accountCuts(accountCuts)
+      .build();
+    AccountExporter exporter = new AccountExporter(accountsRepository, transferEngine, accountCuts);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      transferEngine.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    // Money only moves between accounts, and new accounts appear, while exports run
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int created = 0;
+      while (running.get()) {
+        transferEngine.transfer("Id-" + random.nextInt(ACCOUNTS), "Id-" + random.nextInt(ACCOUNTS), 1.0);
+        if (random.nextInt(100) == 0) {
+          transferEngine.createAccount(new Account("Id-new-" + created++, new BigDecimal("100")));
+        }
+      }
+    });
+    transfers.start();
+    try {
+      for (int export = 0; export < 5; export++) {
+        BigDecimal[] total = {BigDecimal.ZERO};
+        Set<String> accountIds = new HashSet<>();
+        long exported = exporter.export((AccountBalance balance) -> {
+          total[0] = total[0].add(balance.getBalance());
+          assertThat(accountIds.add(balance.getAccountId())).isTrue();
+        });
+
+        assertThat(exported).isEqualTo(accountIds.size()).isGreaterThanOrEqualTo(ACCOUNTS);
+        assertThat(total[0]).isEqualByComparingTo(BigDecimal.valueOf(100L * exported));
+        assertThat(accountCuts.isOpen()).isFalse();
+      }
+    } finally {
+      running.set(false);
+      transfers.join();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.web.AccountJsonCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountJsonCodecTest {
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+  private final AccountJsonCodec codec = new AccountJsonCodec();
+
+  @Test
+  void readsTransferRequestsAsJacksonDoes() throws Exception {
+    for (String json : List.of(
+      "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":1234.56}",
+      " {\n \"amount\" : 0.1 ,\t\"accountToId\" : \"Id-2\" , \"accountFromId\" : \"Id-1\" } ",
+      "{\"accountFromId\":null,\"amount\":-5}",
+      "{\"amount\":-0.0}",
+      "{\"amount\":123456.789012}",
+      "{}")) {
+      byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+      TransferRequest expected = objectMapper.readValue(bytes, TransferRequest.class);
+      TransferRequest actual = codec.readTransferRequest(bytes, bytes.length);
+
+      assertThat(actual).as(json).isNotNull();
+      assertThat(actual.getAccountFromId()).as(json).isEqualTo(expected.getAccountFromId());
+      assertThat(actual.getAccountToId()).as(json).isEqualTo(expected.getAccountToId());
+      assertThat(Double.doubleToLongBits(actual.getAmount())).as(json)
+        .isEqualTo(Double.doubleToLongBits(expected.getAmount()));
+    }
+  }
+
+  @Test
+  void readsAmountsToTheSameDoubleAsJackson() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      String amount = BigDecimal.valueOf(random.nextLong(1_000_000_000_000L), random.nextInt(8)).toPlainString();
+      byte[] bytes = ("{\"amount\":" + amount + "}").getBytes(StandardCharsets.UTF_8);
+
+      assertThat(codec.readTransferRequest(bytes, bytes.length).getAmount()).as(amount)
+        .isEqualTo(objectMapper.readValue(bytes, TransferRequest.class).getAmount());
+    }
+  }
+
+  @Test
+  void readsAccountsAsJacksonDoes() throws Exception {
+    for (String json : List.of(
+      "{\"accountId\":\"Id-123\",\"balance\":1000}",
+      "{\"balance\":98765.430,\"accountId\":\"Id-123\"}",
+      "{\"accountId\":\"Id-123\",\"balance\":null}",
+      "{\"accountId\":\"Id-123\"}",
+      "{\"accountId\":\"Id-123\",\"balance\":-0.00}")) {
+      byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+      Account expected = objectMapper.readValue(bytes, Account.class);
+      Account actual = codec.readAccount(bytes, bytes.length);
+
+      assertThat(actual).as(json).isNotNull();
+      assertThat(actual.getAccountId()).as(json).isEqualTo(expected.getAccountId());
+      // Scale included, so trailing zeros must survive as they do with Jackson
+      assertThat(actual.getBalance()).as(json).isEqualTo(expected.getBalance());
+    }
+  }
+
+  @Test
+  void leavesOtherShapesToJackson() {
+    for (String json : List.of(
+      "{\"amount\":1e3}",
+      "{\"amount\":01}",
+      "{\"amount\":\"12\"}",
+      "{\"amount\":1234567890.1234567890}",
+      "{\"accountFromId\":\"Id-\\u0031\"}",
+      "{\"accountFromId\":\"Id-\u00e9\"}",
+      "{\"unknown\":1}",
+      "{\"amount\":1}}",
+      "[]",
+      "")) {
+      byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+      assertThat(codec.readTransferRequest(bytes, bytes.length)).as(json).isNull();
+    }
+  }
+
+  @Test
+  void writesAccountsAsJacksonDoes() throws Exception {
+    for (String accountId : List.of("Id-123", "Id-\"quoted\"\\", "Id-\n\t\u0001\u007f", "Id-\u00e9\u20ac")) {
+      for (String balance : Arrays.asList("98765.43", "0", "0.00", "-12.5", "0.000001", "0.0000001", "1E+3",
+        "123456789012345678901234567890.5", null)) {
+        BigDecimal value = balance == null ? null : new BigDecimal(balance);
+        int length = codec.writeAccount(accountId, value);
+
+        assertThat(new String(codec.output(), 0, length, StandardCharsets.UTF_8)).as(accountId + " " + balance)
+          .isEqualTo(objectMapper.writeValueAsString(new AccountBalance(accountId, value, 0)))
+          .isEqualTo(objectMapper.writeValueAsString(new Account(accountId, value)));
+      }
+    }
+  }
+}
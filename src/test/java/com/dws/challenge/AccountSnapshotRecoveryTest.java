@@ -0,0 +1,123 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.MappedTransferJournal;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountSnapshotter;
+import com.dws.challenge.service.HotAccounts;
+import com.dws.challenge.service.JournalRecovery;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.snapshot.AccountSnapshot;
+import com.dws.challenge.snapshot.AccountSnapshotStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Book size defaults to 200k accounts, and recovery must finish within
+ * {@code snapshot.test.max-boot-ms}; run with {@code -Dsnapshot.test.accounts=20000000} (and a
+ * large enough heap) and a production boot-time budget to check boot time at production scale.
+ */
+class AccountSnapshotRecoveryTest {
+
+  private static final int ACCOUNTS = Integer.getInteger("snapshot.test.accounts", 200_000);
+  private static final long MAX_BOOT_MILLIS = Long.getLong("snapshot.test.max-boot-ms", 30_000);
+  private static final int SEGMENT_SIZE = 4 << 20;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void recoversFromSnapshotTakenDuringTransfersAndTruncatesJournal() throws Exception {
+    Path journalDirectory = directory.resolve("journal");
+    AccountSnapshotStore snapshotStore = new AccountSnapshotStore(directory.resolve("snapshots"));
+    AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+    StripedAccountLocks accountLocks = new StripedAccountLocks(1024);
+    TransferMetrics metrics = new TransferMetrics(new SimpleMeterRegistry(), false);
+    MappedTransferJournal journal = new MappedTransferJournal(journalDirectory, SEGMENT_SIZE, MappedTransferJournal.Mode.ASYNC, 0);
+    HotAccounts hotAccounts = new HotAccounts(accountsRepository, accountLocks, new SimpleMeterRegistry(), List.of(),
+      0, 0, 100, 64);
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, accountLocks)
+      .journal(journal)
+      .metrics(metrics)
+      .hotAccounts(hotAccounts)
+      .build();
+    AccountSnapshotter snapshotter = new AccountSnapshotter(accountsRepository, accountLocks, journal, snapshotStore,
+      hotAccounts, 2, 0);
+
+    for (int i = 0; i < ACCOUNTS; i++) {
+      transferEngine.createAccount(new Account("Id-" + i, new BigDecimal("1000.00")));
+    }
+
+    // Transfers keep running while the snapshot is written
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      while (running.get()) {
+        transfer(transferEngine);
+      }
+    });
+    transfers.start();
+    Path snapshot = snapshotter.takeSnapshot();
+    running.set(false);
+    transfers.join();
+    for (int i = 0; i < 1_000; i++) {
+      transfer(transferEngine);
+    }
+    transferEngine.createAccount(new Account("Id-late", new BigDecimal("5.00")));
+    journal.close();
+
+    try (AccountSnapshot accountSnapshot = AccountSnapshot.open(snapshot)) {
+      assertThat(accountSnapshot.getCount()).isEqualTo(ACCOUNTS);
+    }
+    try (Stream<Path> segments = Files.list(journalDirectory)) {
+      assertThat(segments.map(path -> path.getFileName().toString()))
+        .doesNotContain("segment-0000000000.log");
+    }
+
+    Map<String, BigDecimal> expected = new HashMap<>();
+    accountsRepository.forEachAccount(account -> expected.put(account.getAccountId(), account.getBalance()));
+
+    AccountsRepositoryInMemory recoveredRepository = new AccountsRepositoryInMemory();
+    MappedTransferJournal reopened = new MappedTransferJournal(journalDirectory, SEGMENT_SIZE, MappedTransferJournal.Mode.ASYNC, 0);
+    HotAccounts recoveredHotAccounts = new HotAccounts(recoveredRepository, accountLocks, new SimpleMeterRegistry(),
+      List.of(), 0, 0, 100, 64);
+    LockingTransferEngine recoveredEngine = lockingEngine(recoveredRepository, accountLocks)
+      .journal(reopened)
+      .metrics(metrics)
+      .hotAccounts(recoveredHotAccounts)
+      .build();
+    JournalRecovery recovery = new JournalRecovery(reopened, recoveredRepository, recoveredEngine, snapshotStore,
+      new AccountSnapshotter(recoveredRepository, accountLocks, reopened, snapshotStore, recoveredHotAccounts, 2, 0));
+
+    long started = System.nanoTime();
+    recovery.recover();
+    long bootMillis = (System.nanoTime() - started) / 1_000_000;
+    assertThat(bootMillis).as("recovery of %d accounts, in ms", ACCOUNTS).isLessThanOrEqualTo(MAX_BOOT_MILLIS);
+
+    Map<String, BigDecimal> recovered = new HashMap<>();
+    recoveredRepository.forEachAccount(account -> recovered.put(account.getAccountId(), account.getBalance()));
+    assertThat(recovered).hasSameSizeAs(expected);
+    expected.forEach((accountId, balance) -> assertThat(recovered.get(accountId)).as(accountId).isEqualByComparingTo(balance));
+    reopened.close();
+  }
+
+  private static void transfer(LockingTransferEngine transferEngine) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    transferEngine.transfer("Id-" + random.nextInt(ACCOUNTS), "Id-" + random.nextInt(ACCOUNTS), random.nextInt(1, 100) / 100.0);
+  }
+}
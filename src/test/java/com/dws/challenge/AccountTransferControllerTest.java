@@ -1,26 +1,65 @@
 package com.dws.challenge;
 
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransfers;
 import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.replication.ReplicationLog;
 import com.dws.challenge.service.AccountsService;
 import com.dws.challenge.service.NotificationService;
 import com.dws.challenge.web.AccountTransferController;
+import com.dws.challenge.web.IdempotencyCache;
+import com.dws.challenge.web.TransferAdmissionLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(AccountTransferController.class)
 class AccountTransferControllerTest {
 
+    @TestConfiguration
+    static class IdempotencyConfiguration {
+        @Bean
+        IdempotencyCache idempotencyCache() {
+            return new IdempotencyCache(new SimpleMeterRegistry(), 60, 1000);
+        }
+
+        @Bean
+        TransferAdmissionLimiter admissionLimiter() {
+            return new TransferAdmissionLimiter(new SimpleMeterRegistry(), true, 50, 1, 1, 1, 7);
+        }
+
+        @Bean
+        ClusterRouter clusterRouter() {
+            return new ClusterRouter(new ObjectMapper(), new SimpleMeterRegistry(), false, "", 0, 160, 2000, "");
+        }
+
+        @Bean
+        ReplicationLog replicationLog() {
+            return new ReplicationLog(new SimpleMeterRegistry(), "none", 1024);
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -30,6 +69,9 @@ class AccountTransferControllerTest {
     @MockitoBean
     private NotificationService notificationService;
 
+    @MockitoBean
+    private ClusterTransfers clusterTransfers;
+
     private TransferRequest transferRequest;
 
     @BeforeEach
@@ -43,19 +85,17 @@ class AccountTransferControllerTest {
     @Test
     void transferMoney_Success() throws Exception {
         // Test successful transfer
-        doNothing().when(accountsService).transferMoney(
+        when(accountsService.transferMoneyAsync(
                 transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId(),
                 transferRequest.getAmount(),
                 notificationService
-        );
+        )).thenReturn(CompletableFuture.completedFuture(null));
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 100.0 }"))
+        mockMvc.perform(asyncDispatch(performTransfer()))
                 .andExpect(status().isOk());
 
-        verify(accountsService, times(1)).transferMoney(
+        verify(accountsService, times(1)).transferMoneyAsync(
                 transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId(),
                 transferRequest.getAmount(),
@@ -66,21 +106,18 @@ class AccountTransferControllerTest {
     @Test
     void transferMoney_InsufficientFunds() throws Exception {
         // Test insufficient funds scenario
-        doThrow(new InsufficientFundsException("Insufficient funds"))
-                .when(accountsService).transferMoney(
-                        transferRequest.getAccountFromId(),
-                        transferRequest.getAccountToId(),
-                        transferRequest.getAmount(),
-                        notificationService
-                );
-
-        mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 100.0 }"))
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(CompletableFuture.failedFuture(new InsufficientFundsException("Insufficient funds")));
+
+        mockMvc.perform(asyncDispatch(performTransfer()))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Insufficient funds"));
 
-        verify(accountsService, times(1)).transferMoney(
+        verify(accountsService, times(1)).transferMoneyAsync(
                 transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId(),
                 transferRequest.getAmount(),
@@ -91,25 +128,153 @@ class AccountTransferControllerTest {
     @Test
     void transferMoney_InternalServerError() throws Exception {
         // Test unexpected error scenario
-        doThrow(new RuntimeException("Unexpected error"))
-                .when(accountsService).transferMoney(
-                        transferRequest.getAccountFromId(),
-                        transferRequest.getAccountToId(),
-                        transferRequest.getAmount(),
-                        notificationService
-                );
-
-        mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 100.0 }"))
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(CompletableFuture.failedFuture(new RuntimeException("Unexpected error")));
+
+        mockMvc.perform(asyncDispatch(performTransfer()))
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("Unexpected error"));
 
-        verify(accountsService, times(1)).transferMoney(
+        verify(accountsService, times(1)).transferMoneyAsync(
                 transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId(),
                 transferRequest.getAmount(),
                 notificationService
         );
     }
+
+    @Test
+    void transferMoney_RetryWithIdempotencyKeyIsNotReapplied() throws Exception {
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(CompletableFuture.completedFuture(null));
+
+        mockMvc.perform(asyncDispatch(performTransfer("retry-1", 100.0)))
+                .andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(performTransfer("retry-1", 100.0)))
+                .andExpect(status().isOk());
+
+        verify(accountsService, times(1)).transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        );
+    }
+
+    @Test
+    void transferMoney_IdempotencyKeyReusedForDifferentTransfer() throws Exception {
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(CompletableFuture.completedFuture(null));
+
+        mockMvc.perform(asyncDispatch(performTransfer("reused-1", 100.0)))
+                .andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(performTransfer("reused-1", 250.0)))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(accountsService, never()).transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                250.0,
+                notificationService
+        );
+    }
+
+    @Test
+    void transferMoney_RejectedTransferReleasesIdempotencyKey() throws Exception {
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("Transfer queue is full")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        mockMvc.perform(asyncDispatch(performTransfer("rejected-1", 100.0)))
+                .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(asyncDispatch(performTransfer("rejected-1", 100.0)))
+                .andExpect(status().isOk());
+
+        verify(accountsService, times(2)).transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        );
+    }
+
+    @Test
+    void transferMoney_RejectsTransfersBeyondAdmissionLimit() throws Exception {
+        CompletableFuture<Void> inFlight = new CompletableFuture<>();
+        when(accountsService.transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        )).thenReturn(inFlight);
+
+        MvcResult admitted = performTransfer();
+        mockMvc.perform(asyncDispatch(performTransfer()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "7"));
+        inFlight.complete(null);
+        mockMvc.perform(asyncDispatch(admitted))
+                .andExpect(status().isOk());
+
+        verify(accountsService, times(1)).transferMoneyAsync(
+                transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(),
+                transferRequest.getAmount(),
+                notificationService
+        );
+    }
+
+    @Test
+    void transferMoney_RejectsAmountsFinerThanTheBalanceScale() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 10.005 }"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("amount must have at most 2 decimal places"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 1.50 },"
+                                + " { \"accountFromId\": \"456\", \"accountToId\": \"123\", \"amount\": 0.001 }]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("transfers[1].amount must have at most 2 decimal places"));
+
+        verifyNoInteractions(accountsService);
+    }
+
+    private MvcResult performTransfer(String idempotencyKey, double amount) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": " + amount + " }"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private MvcResult performTransfer() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"accountFromId\": \"123\", \"accountToId\": \"456\", \"amount\": 100.0 }"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
 }
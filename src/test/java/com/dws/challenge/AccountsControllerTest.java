@@ -1,9 +1,13 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -22,6 +26,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
@@ -85,6 +90,27 @@ class AccountsControllerTest {
       .content("{\"accountId\":\"Id-123\",\"balance\":-1000}")).andExpect(status().isCreated());
   }
 
+  @Test
+  void createAccountBalanceFinerThanTheBalanceScale() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-123\",\"balance\":10.001}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("balance must have at most 2 decimal places"));
+
+    assertThat(accountsService.getAccount("Id-123")).isNull();
+  }
+
+  @Test
+  void createAccountIdLongerThanTheLimit() throws Exception {
+    String accountId = "I".repeat(Account.MAX_ID_LENGTH + 1);
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"" + accountId + "\",\"balance\":10}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("accountId must have at most " + Account.MAX_ID_LENGTH + " characters"));
+
+    assertThat(accountsService.getAccount(accountId)).isNull();
+  }
+
   @Test
   void createAccountEmptyAccountId() throws Exception {
     this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
@@ -101,4 +127,124 @@ class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  void getAccountNotModified() throws Exception {
+    String uniqueAccountId = "Id-" + System.currentTimeMillis();
+    this.accountsService.createAccount(new Account(uniqueAccountId, new BigDecimal("123.45")));
+    this.accountsService.createAccount(new Account(uniqueAccountId + "-other", new BigDecimal("10")));
+    String etag = this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(etag).isNotNull();
+
+    this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId).header("If-None-Match", etag))
+      .andExpect(status().isNotModified())
+      .andExpect(header().string("ETag", etag))
+      .andExpect(content().string(""));
+
+    this.accountsService.transferMoney(uniqueAccountId, uniqueAccountId + "-other", 0.45, notificationService);
+    String changed = this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId).header("If-None-Match", etag))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.00}"))
+      .andReturn().getResponse().getHeader("ETag");
+    assertThat(changed).isNotEqualTo(etag);
+  }
+
+  @Test
+  void importAccountsNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-existing", new BigDecimal("1")));
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/import").contentType(MediaType.APPLICATION_NDJSON)
+        .content("""
+          {"accountId":"Id-1","balance":10.50}
+          {"accountId":"Id-existing","balance":5}
+
+          {"accountId":"Id-2","balance":-1}
+          not json
+          {"accountId":"Id-3","balance":0}
+          """))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    String response = this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    assertThat(response.split("\n")).satisfiesExactly(
+      line -> assertThat(line).isEqualTo("{\"line\":2,\"error\":\"Account id Id-existing already exists!\"}"),
+      line -> assertThat(line).isEqualTo("{\"line\":4,\"error\":\"Initial balance must be positive.\"}"),
+      line -> assertThat(line).startsWith("{\"line\":5,\"error\":\"Malformed line: "),
+      line -> assertThat(line).isEqualTo("{\"imported\":2,\"failed\":3}"));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("10.50");
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void importAccountsCsv() throws Exception {
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+        .content("accountId,balance\nId-1,10.50\nId-1,3\nId-2,abc\nId-3,7\nId-4,0.125\n"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().string("""
+        {"line":3,"error":"Account id Id-1 already exists!"}
+        {"line":4,"error":"Malformed balance"}
+        {"line":6,"error":"balance must have at most 2 decimal places"}
+        {"imported":2,"failed":3}
+        """));
+
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("7");
+  }
+
+  @Test
+  void exportAccounts() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10.50")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("7")));
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/export"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    String response = this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+      .andReturn().getResponse().getContentAsString();
+    assertThat(response).endsWith("\n");
+    assertThat(response.split("\n")).containsExactlyInAnyOrder(
+      "{\"accountId\":\"Id-1\",\"balance\":10.50}",
+      "{\"accountId\":\"Id-2\",\"balance\":7}");
+  }
+
+  @Test
+  void getTransfers() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+    this.accountsService.transferMoney("Id-1", "Id-2", 10, notificationService);
+    this.accountsService.transferMoney("Id-1", "Id-2", 20, notificationService);
+    this.accountsService.transferMoney("Id-2", "Id-1", 5, notificationService);
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries.length()").value(2))
+      .andExpect(jsonPath("$.entries[0].direction").value("CREDIT"))
+      .andExpect(jsonPath("$.entries[0].counterpartyId").value("Id-2"))
+      .andExpect(jsonPath("$.entries[0].amount").value(5.0))
+      .andExpect(jsonPath("$.entries[1].direction").value("DEBIT"))
+      .andExpect(jsonPath("$.entries[1].amount").value(20.0))
+      .andExpect(jsonPath("$.nextCursor").value(1));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?limit=2&cursor=1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries.length()").value(1))
+      .andExpect(jsonPath("$.entries[0].amount").value(10.0))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?from=2999-01-01T00:00:00Z"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.entries.length()").value(0));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-1/transfers?limit=0"))
+      .andExpect(status().isBadRequest());
+  }
 }
@@ -0,0 +1,100 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountsRepositoryOffHeapTest {
+
+  private AccountsRepositoryOffHeap accountsRepository;
+
+  @BeforeEach
+  void setUp() {
+    accountsRepository = new AccountsRepositoryOffHeap(2);
+  }
+
+  @Test
+  void createAndGetAccount() {
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+
+    Account account = accountsRepository.getAccount("Id-123");
+    assertThat(account.getAccountId()).isEqualTo("Id-123");
+    assertThat(account.getBalance()).isEqualByComparingTo("123.45");
+    assertThat(accountsRepository.getAccount("Id-456")).isNull();
+  }
+
+  @Test
+  void createDuplicateAccount() {
+    accountsRepository.createAccount(new Account("Id-123"));
+
+    DuplicateAccountIdException exception = assertThrows(DuplicateAccountIdException.class,
+      () -> accountsRepository.createAccount(new Account("Id-123")));
+    assertThat(exception.getMessage()).isEqualTo("Account id Id-123 already exists!");
+  }
+
+  @Test
+  void saveWritesViewBack() {
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal("100")));
+
+    Account account = accountsRepository.getAccount("Id-123");
+    account.withdraw(new BigDecimal("40.50"));
+    assertThat(accountsRepository.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+
+    accountsRepository.save(account);
+    assertThat(accountsRepository.getAccount("Id-123").getBalance()).isEqualByComparingTo("59.50");
+  }
+
+  @Test
+  void selfTransferThroughLockingEngineLeavesBalanceUnchanged() {
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, new StripedAccountLocks(64)).build();
+    transferEngine.createAccount(new Account("Id-123", new BigDecimal("100")));
+
+    transferEngine.transfer("Id-123", "Id-123", 40.5);
+
+    assertThat(accountsRepository.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void growsPastInitialCapacity() {
+    for (int i = 0; i < 200_000; i++) {
+      accountsRepository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i, 2)));
+    }
+    accountsRepository.createAccount(new Account("Konto-\u00fc\u20ac", BigDecimal.ONE));
+
+    assertThat(accountsRepository.size()).isEqualTo(200_001);
+    for (int i = 0; i < 200_000; i += 997) {
+      assertThat(accountsRepository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i, 2));
+    }
+    assertThat(accountsRepository.getAccount("Konto-\u00fc\u20ac").getBalance()).isEqualByComparingTo("1");
+
+    accountsRepository.clearAccounts();
+    assertThat(accountsRepository.getAccount("Id-1")).isNull();
+  }
+
+  @Test
+  void forEachAccountVisitsEveryAccountOnce() {
+    for (int i = 0; i < 100_000; i++) {
+      accountsRepository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i, 2)));
+    }
+    accountsRepository.createAccount(new Account("Konto-\u00fc\u20ac", BigDecimal.ONE));
+
+    Map<String, BigDecimal> visited = new HashMap<>();
+    accountsRepository.forEachAccount(account -> visited.put(account.getAccountId(), account.getBalance()));
+
+    assertThat(visited).hasSize(100_001);
+    assertThat(visited.get("Id-99999")).isEqualByComparingTo("999.99");
+    assertThat(visited.get("Konto-\u00fc\u20ac")).isEqualByComparingTo("1");
+  }
+}
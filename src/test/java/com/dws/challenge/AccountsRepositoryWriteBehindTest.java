@@ -0,0 +1,191 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryJdbc;
+import com.dws.challenge.repository.AccountsRepositoryWriteBehind;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountsRepositoryWriteBehindTest {
+
+  private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+    .setType(EmbeddedDatabaseType.H2)
+    .generateUniqueName(true)
+    .build();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final StripedAccountLocks accountLocks = new StripedAccountLocks(64);
+  // Long enough that nothing is flushed unless a test asks for it
+  private final AccountsRepositoryWriteBehind accountsRepository =
+    new AccountsRepositoryWriteBehind(dataSource, meterRegistry, accountLocks, 2, 60_000, 1000);
+  private final AccountsRepositoryJdbc table = new AccountsRepositoryJdbc(dataSource, 2);
+
+  @AfterEach
+  void shutdownDatabase() {
+    dataSource.shutdown();
+  }
+
+  @Test
+  void coalescesSavesIntoOneWritePerAccount() {
+    accountsRepository.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+    accountsRepository.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+
+    Account account = accountsRepository.getAccount("Id-1");
+    for (int i = 0; i < 5; i++) {
+      account.withdraw(new BigDecimal("10.25"));
+      accountsRepository.save(account);
+    }
+    assertThat(table.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.00");
+
+    ReflectionTestUtils.invokeMethod(accountsRepository, "flush");
+
+    assertThat(table.getAccount("Id-1").getBalance()).isEqualByComparingTo("48.75");
+    assertThat(table.getAccount("Id-2").getBalance()).isEqualByComparingTo("100.00");
+    assertThat(meterRegistry.summary("accounts.write-behind.batch.size").count()).isEqualTo(1);
+    assertThat(meterRegistry.summary("accounts.write-behind.batch.size").totalAmount()).isEqualTo(1);
+    assertThat(meterRegistry.timer("accounts.write-behind.flush.lag").count()).isEqualTo(1);
+  }
+
+  @Test
+  void selfTransferOnTableLeavesBalanceUnchanged() {
+    // Without the cache every read maps a new row
+    LockingTransferEngine transferEngine = lockingEngine(table, accountLocks).build();
+    transferEngine.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+
+    transferEngine.transfer("Id-1", "Id-1", 40.5);
+
+    assertThat(table.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void balanceBeyondScaleDoesNotHoldBackOtherAccounts() {
+    accountsRepository.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+    accountsRepository.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+
+    Account unwritable = accountsRepository.getAccount("Id-1");
+    unwritable.withdraw(new BigDecimal("0.005"));
+    accountsRepository.save(unwritable);
+    Account account = accountsRepository.getAccount("Id-2");
+    account.deposit(new BigDecimal("0.25"));
+    accountsRepository.save(account);
+
+    ReflectionTestUtils.invokeMethod(accountsRepository, "flush");
+
+    assertThat(table.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.00");
+    assertThat(table.getAccount("Id-2").getBalance()).isEqualByComparingTo("100.25");
+    assertThat(meterRegistry.counter("accounts.write-behind.failures").count()).isEqualTo(1);
+    // Kept dirty, so it is written once its balance fits the scale again
+    assertThat(meterRegistry.get("accounts.write-behind.dirty").gauge().value()).isEqualTo(1);
+
+    unwritable.deposit(new BigDecimal("0.005"));
+    accountsRepository.save(unwritable);
+    ReflectionTestUtils.invokeMethod(accountsRepository, "flush");
+    assertThat(meterRegistry.get("accounts.write-behind.dirty").gauge().value()).isZero();
+  }
+
+  @Test
+  void flushesDuringTransfersConvergeOnTheBook() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      accountsRepository.createAccount(new Account("Id-" + i, new BigDecimal("100.00")));
+    }
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      while (running.get()) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = "Id-" + random.nextInt(100);
+        String to = "Id-" + random.nextInt(100);
+        accountLocks.lock(from, to);
+        try {
+          Account accountFrom = accountsRepository.getAccount(from);
+          Account accountTo = accountsRepository.getAccount(to);
+          if (accountFrom != accountTo && accountFrom.getBalance().signum() > 0) {
+            accountFrom.withdraw(new BigDecimal("0.01"));
+            accountsRepository.save(accountFrom);
+            accountTo.deposit(new BigDecimal("0.01"));
+            accountsRepository.save(accountTo);
+          }
+        } finally {
+          accountLocks.unlock(from, to);
+        }
+      }
+    });
+    transfers.start();
+    try {
+      for (int flush = 0; flush < 50; flush++) {
+        ReflectionTestUtils.invokeMethod(accountsRepository, "flush");
+      }
+    } finally {
+      running.set(false);
+      transfers.join();
+    }
+    // A flush may catch one side of a transfer, but the next one writes the other
+    ReflectionTestUtils.invokeMethod(accountsRepository, "flush");
+    BigDecimal[] total = {BigDecimal.ZERO};
+    table.forEachAccount(account -> {
+      assertThat(account.getBalance())
+        .isEqualByComparingTo(accountsRepository.getAccount(account.getAccountId()).getBalance());
+      total[0] = total[0].add(account.getBalance());
+    });
+    assertThat(total[0]).isEqualByComparingTo("10000.00");
+  }
+
+  @Test
+  void loadsAccountsOnFirstRead() {
+    table.createAccount(new Account("Id-1", new BigDecimal("12.34")));
+
+    Account account = accountsRepository.getAccount("Id-1");
+    assertThat(account.getBalance()).isEqualByComparingTo("12.34");
+    assertThat(accountsRepository.getAccount("Id-1")).isSameAs(account);
+    assertThat(accountsRepository.getAccount("Id-2")).isNull();
+
+    assertThat(meterRegistry.counter("accounts.cache.requests", "result", "hit").count()).isEqualTo(1);
+    assertThat(meterRegistry.counter("accounts.cache.requests", "result", "miss").count()).isEqualTo(2);
+  }
+
+  @Test
+  void createDuplicateAccount() {
+    accountsRepository.createAccount(new Account("Id-123"));
+
+    DuplicateAccountIdException exception = assertThrows(DuplicateAccountIdException.class,
+      () -> accountsRepository.createAccount(new Account("Id-123")));
+    assertThat(exception.getMessage()).isEqualTo("Account id Id-123 already exists!");
+  }
+
+  @Test
+  void flushesDirtyAccountsOnStopAndScansCachedBalances() throws Exception {
+    ReflectionTestUtils.invokeMethod(accountsRepository, "start");
+    for (int i = 0; i < 2500; i++) {
+      table.createAccount(new Account("Id-" + i, new BigDecimal("10.00")));
+    }
+    Account account = accountsRepository.getAccount("Id-7");
+    account.deposit(new BigDecimal("5.00"));
+    accountsRepository.save(account);
+
+    Map<String, BigDecimal> balances = new HashMap<>();
+    accountsRepository.forEachAccount(scanned -> balances.put(scanned.getAccountId(), scanned.getBalance()));
+    assertThat(balances).hasSize(2500);
+    assertThat(balances.get("Id-7")).isEqualByComparingTo("15.00");
+
+    ReflectionTestUtils.invokeMethod(accountsRepository, "stop");
+
+    assertThat(table.getAccount("Id-7").getBalance()).isEqualByComparingTo("15.00");
+    assertThat(meterRegistry.get("accounts.write-behind.dirty").gauge().value()).isZero();
+  }
+}
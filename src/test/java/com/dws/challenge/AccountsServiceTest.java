@@ -1,15 +1,26 @@
 package com.dws.challenge;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.journal.DisabledTransferJournal;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.model.TransferResult;
+import com.dws.challenge.model.TransferStatus;
 import com.dws.challenge.repository.AccountsRepository;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.HotAccounts;
 import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferNotificationOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,10 +28,21 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -30,7 +52,6 @@ class AccountsServiceTest {
   @Autowired
   private AccountsService accountsService;
 
-  @InjectMocks
   private AccountsService accountsService1;
   @MockitoBean
   private NotificationService notificationService;
@@ -38,11 +59,23 @@ class AccountsServiceTest {
   private AccountsRepository accountsRepository;
   @Mock
   private NotificationService notificationService1;
+  @Mock
+  private TransferNotificationOutbox notificationOutbox;
   private Account accountFrom;
   private Account accountTo;
+  private SimpleMeterRegistry meterRegistry;
+  private TransferMetrics metrics;
 
   @BeforeEach
   void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    metrics = new TransferMetrics(meterRegistry, true);
+    StripedAccountLocks accountLocks = new StripedAccountLocks(16);
+    HotAccounts hotAccounts = new HotAccounts(accountsRepository, accountLocks, meterRegistry, List.of(), 0, 0, 100, 64);
+    accountsService1 = new AccountsService(accountsRepository, notificationOutbox,
+      lockingEngine(accountsRepository, accountLocks).metrics(metrics).hotAccounts(hotAccounts).build(),
+      metrics, new TransferLedger(true, 24, 100));
+
     // Initializing accounts with initial balances
     accountFrom = new Account("123", BigDecimal.valueOf(200.0));
     accountTo = new Account("456", BigDecimal.valueOf(100.0));
@@ -84,6 +117,13 @@ class AccountsServiceTest {
     assert accountFrom.getBalance().compareTo(BigDecimal.valueOf(150.0)) == 0;
     assert accountTo.getBalance().compareTo(BigDecimal.valueOf(150.0)) == 0;
 
+    // Both parties are notified through the outbox, not inline
+    // Each gets a copy of the account's balance after the transfer
+    verify(notificationOutbox).enqueue(eq(notificationService1), argThat(balance -> balance.getAccountId().equals("123")
+      && balance.getBalance().compareTo(new BigDecimal("150")) == 0), eq(String.valueOf(amount)));
+    verify(notificationOutbox).enqueue(eq(notificationService1), argThat(balance -> balance.getAccountId().equals("456")
+      && balance.getBalance().compareTo(new BigDecimal("150")) == 0), eq(String.valueOf(amount)));
+    verifyNoInteractions(notificationService1);
   }
 
   @Test
@@ -130,4 +170,160 @@ class AccountsServiceTest {
 
     assertEquals("Transfer amount must be positive", exception.getMessage());
   }
+
+  @Test
+  void transferMoneyBatch_perItemResults() {
+    String suffix = String.valueOf(System.nanoTime());
+    Account first = new Account("A-" + suffix, new BigDecimal("100"));
+    Account second = new Account("B-" + suffix, BigDecimal.ZERO);
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+
+    List<TransferResult> results = this.accountsService.transferMoneyBatch(List.of(
+      transferRequest(first.getAccountId(), second.getAccountId(), 60.0),
+      transferRequest(first.getAccountId(), second.getAccountId(), 60.0),
+      transferRequest(second.getAccountId(), "missing-" + suffix, 10.0),
+      transferRequest(second.getAccountId(), first.getAccountId(), 10.0)), false, notificationService);
+
+    assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+      TransferStatus.COMPLETED, TransferStatus.INSUFFICIENT_FUNDS,
+      TransferStatus.ACCOUNT_NOT_FOUND, TransferStatus.COMPLETED);
+    assertThat(first.getBalance()).isEqualByComparingTo("50");
+    assertThat(second.getBalance()).isEqualByComparingTo("50");
+  }
+
+  @Test
+  void transferMoneyBatch_atomicRollsBackOnFailure() {
+    String suffix = String.valueOf(System.nanoTime());
+    Account first = new Account("A-" + suffix, new BigDecimal("100"));
+    Account second = new Account("B-" + suffix, BigDecimal.ZERO);
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+
+    List<TransferResult> results = this.accountsService.transferMoneyBatch(List.of(
+      transferRequest(first.getAccountId(), second.getAccountId(), 60.0),
+      transferRequest(first.getAccountId(), second.getAccountId(), 60.0)), true, notificationService);
+
+    assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+      TransferStatus.ROLLED_BACK, TransferStatus.INSUFFICIENT_FUNDS);
+    assertThat(first.getBalance()).isEqualByComparingTo("100");
+    assertThat(second.getBalance()).isEqualByComparingTo("0");
+  }
+
+  private static TransferRequest transferRequest(String accountFromId, String accountToId, double amount) {
+    TransferRequest transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId(accountFromId);
+    transferRequest.setAccountToId(accountToId);
+    transferRequest.setAmount(amount);
+    return transferRequest;
+  }
+
+  @Test
+  void stripedLocks_roundUpToPowerOfTwo() {
+    assertThat(new StripedAccountLocks(1000).stripeCount()).isEqualTo(1024);
+    assertThat(new StripedAccountLocks(1).stripeCount()).isEqualTo(1);
+  }
+
+  @Test
+  void transferMoney_sameStripeAccounts() {
+    // A single stripe forces both accounts onto the same lock
+    StripedAccountLocks accountLocks = new StripedAccountLocks(1);
+    HotAccounts hotAccounts = new HotAccounts(accountsRepository, accountLocks, meterRegistry, List.of(), 0, 0, 100, 64);
+    AccountsService singleStripe = new AccountsService(accountsRepository, notificationOutbox,
+      lockingEngine(accountsRepository, accountLocks).metrics(metrics).hotAccounts(hotAccounts).build(),
+      metrics, new TransferLedger(true, 24, 100));
+
+    singleStripe.transferMoney("123", "456", 50.0, notificationService1);
+
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("150");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("150");
+  }
+
+  @Test
+  void transferMoney_failedJournalAppendLeavesBalancesUntouched() {
+    StripedAccountLocks accountLocks = new StripedAccountLocks(16);
+    HotAccounts hotAccounts = new HotAccounts(accountsRepository, accountLocks, meterRegistry, List.of(), 0, 0, 100, 64);
+    TransferJournal fullDisk = new DisabledTransferJournal() {
+      @Override
+      public long appendTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+        throw new UncheckedIOException(new IOException("No space left on device"));
+      }
+    };
+    AccountsService failingJournal = new AccountsService(accountsRepository, notificationOutbox,
+      lockingEngine(accountsRepository, accountLocks).journal(fullDisk).metrics(metrics).hotAccounts(hotAccounts).build(),
+      metrics, new TransferLedger(true, 24, 100));
+
+    assertThrows(UncheckedIOException.class,
+      () -> failingJournal.transferMoney("123", "456", 50.0, notificationService1));
+
+    // Nothing moved that recovery would not replay
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("200");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void createAccount_failedJournalAppendLeavesNoAccount() {
+    StripedAccountLocks accountLocks = new StripedAccountLocks(16);
+    TransferJournal fullDisk = new DisabledTransferJournal() {
+      @Override
+      public long appendCreate(String accountId, BigDecimal balance) {
+        throw new UncheckedIOException(new IOException("No space left on device"));
+      }
+    };
+    AccountsService failingJournal = new AccountsService(accountsRepository, notificationOutbox,
+      lockingEngine(accountsRepository, accountLocks).journal(fullDisk).metrics(metrics).build(),
+      metrics, new TransferLedger(true, 24, 100));
+
+    assertThrows(UncheckedIOException.class,
+      () -> failingJournal.createAccount(new Account("Id-unjournaled", BigDecimal.TEN)));
+
+    // Recovery would not bring it back, so it must not exist now
+    verify(accountsRepository, never()).createAccount(any());
+  }
+
+  @Test
+  void transferMoney_recordsMetrics() {
+    accountsService1.transferMoney("123", "456", 50.0, notificationService1);
+    assertThrows(InsufficientFundsException.class,
+      () -> accountsService1.transferMoney("123", "456", 500.0, notificationService1));
+
+    assertThat(meterRegistry.get("transfers.outcome").tag("outcome", "completed").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("transfers.outcome").tag("outcome", "insufficient_funds").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("transfers.lock.wait").timer().count()).isEqualTo(2);
+    assertThat(meterRegistry.get("transfers.lock.hold").timer().count()).isEqualTo(2);
+    assertThat(meterRegistry.get("transfers.stage.latency").tag("stage", "repository").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("transfers.stage.latency").tag("stage", "notification").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("transfers.latency").tag("result", "completed").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("transfers.latency").tag("result", "failed").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void getAccountBalance_readsConsistentCopyDuringTransfers() throws Exception {
+    AccountBalance before = accountsService1.getAccountBalance("123");
+    assertThat(before.getBalance()).isEqualByComparingTo("200");
+
+    // Every transfer moves 1 and back, so a consistent read only ever sees 199 or 200
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      while (running.get()) {
+        accountsService1.transferMoney("123", "456", 1.0, notificationService1);
+        accountsService1.transferMoney("456", "123", 1.0, notificationService1);
+      }
+    });
+    transfers.start();
+    long lastVersion = before.getVersion();
+    for (int i = 0; i < 100_000; i++) {
+      AccountBalance balance = accountsService1.getAccountBalance("123");
+      assertThat(balance.getBalance().intValue()).isBetween(199, 200);
+      assertThat(balance.getVersion()).isGreaterThanOrEqualTo(lastVersion);
+      lastVersion = balance.getVersion();
+    }
+    running.set(false);
+    transfers.join();
+
+    AccountBalance after = accountsService1.getAccountBalance("123");
+    assertThat(after.getVersion()).isGreaterThan(before.getVersion());
+    assertThat(after.getETag()).isNotEqualTo(before.getETag());
+    assertThat(accountsService1.getAccountBalance("missing")).isNull();
+  }
 }
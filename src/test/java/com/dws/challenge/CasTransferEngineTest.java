@@ -0,0 +1,112 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.CasTransferEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CasTransferEngineTest {
+
+  private AccountsRepositoryInMemory accountsRepository;
+  private CasTransferEngine transferEngine;
+
+  @BeforeEach
+  void setUp() {
+    accountsRepository = new AccountsRepositoryInMemory();
+    transferEngine = new CasTransferEngine(accountsRepository, 2);
+  }
+
+  @Test
+  void transfer_movesFixedPointBalance() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+
+    transferEngine.transfer("123", "456", 50.25);
+
+    assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("149.75");
+    assertThat(accountsRepository.getAccount("456").getBalance()).isEqualByComparingTo("150.25");
+  }
+
+  @Test
+  void transfer_insufficientFundsLeavesBalances() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+
+    assertThrows(InsufficientFundsException.class, () -> transferEngine.transfer("123", "456", 250.0));
+    assertThrows(IllegalArgumentException.class, () -> transferEngine.transfer("123", "456", -1.0));
+    assertThrows(IllegalArgumentException.class, () -> transferEngine.transfer("123", "456", 0.001));
+
+    assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("200");
+    assertThat(accountsRepository.getAccount("456").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferBatch_rejectsAtomicBatches() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+    TransferRequest transfer = new TransferRequest();
+    transfer.setAccountFromId("123");
+    transfer.setAccountToId("456");
+    transfer.setAmount(50.0);
+
+    assertThat(transferEngine.supportsAtomicBatches()).isFalse();
+    assertThrows(IllegalArgumentException.class, () -> transferEngine.transferBatch(List.of(transfer), true));
+    assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  void concurrentTransfers_conserveMoneyAndNeverGoNegative() throws Exception {
+    int accounts = 8;
+    for (int i = 0; i < accounts; i++) {
+      createAccount("Id-" + i, "100.00");
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      futures.add(executor.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+          try {
+            transferEngine.transfer("Id-" + random.nextInt(accounts), "Id-" + random.nextInt(accounts),
+              random.nextInt(1, 5000) / 100.0);
+          } catch (InsufficientFundsException ignored) {
+            // expected under contention
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    long total = 0;
+    for (int i = 0; i < accounts; i++) {
+      FixedPointAccount account = (FixedPointAccount) accountsRepository.getAccount("Id-" + i);
+      assertThat(account.getMinorUnits()).isNotNegative();
+      total += account.getMinorUnits();
+    }
+    assertThat(total).isEqualTo(accounts * 10_000L);
+  }
+
+  private void createAccount(String accountId, String balance) {
+    Account account = transferEngine.prepareAccount(new Account(accountId, new BigDecimal(balance)));
+    accountsRepository.createAccount(account);
+  }
+}
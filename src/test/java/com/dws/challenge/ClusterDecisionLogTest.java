@@ -0,0 +1,56 @@
+package com.dws.challenge;
+
+import com.dws.challenge.cluster.ClusterDecisionLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterDecisionLogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void reopenedLogReturnsCommitsNotYetDone() throws Exception {
+    Path file = directory.resolve("decisions-0.log");
+    ClusterDecisionLog decisionLog = new ClusterDecisionLog(file);
+    assertThat(decisionLog.open()).isEmpty();
+    decisionLog.commit("0-1", 1, 2);
+    decisionLog.commit("0-2", 2, 0);
+    decisionLog.commit("0-3", 0, 1);
+    decisionLog.done("0-2");
+    decisionLog.close();
+
+    ClusterDecisionLog reopened = new ClusterDecisionLog(file);
+    Map<String, int[]> open = reopened.open();
+    assertThat(open).containsOnlyKeys("0-1", "0-3");
+    assertThat(open.get("0-1")).containsExactly(1, 2);
+    assertThat(open.get("0-3")).containsExactly(0, 1);
+    reopened.close();
+
+    // Compacted to the open commits
+    assertThat(Files.readAllLines(file)).containsExactly("COMMIT 0-1 1 2", "COMMIT 0-3 0 1");
+  }
+
+  @Test
+  void tornLastLineIsIgnored() throws Exception {
+    Path file = directory.resolve("decisions-0.log");
+    ClusterDecisionLog decisionLog = new ClusterDecisionLog(file);
+    decisionLog.open();
+    decisionLog.commit("0-10", 1, 2);
+    decisionLog.close();
+    // A crash while appending the acknowledgement of another transfer
+    Files.writeString(file, "DONE 0-1", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    ClusterDecisionLog reopened = new ClusterDecisionLog(file);
+    assertThat(reopened.open()).containsOnlyKeys("0-10");
+    reopened.close();
+  }
+}
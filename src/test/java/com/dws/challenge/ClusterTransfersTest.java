@@ -0,0 +1,346 @@
+package com.dws.challenge;
+
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransfers;
+import com.dws.challenge.repository.AccountsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Three nodes on localhost, each a full application with its own web server.
+ */
+class ClusterTransfersTest {
+
+  private static final int NODES = 3;
+  private static final int ACCOUNTS = 30;
+  private static final String SECRET = "cluster-test";
+
+  private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+  private final List<Integer> ports = new ArrayList<>();
+
+  @TempDir
+  Path decisionDirectory;
+
+  @BeforeEach
+  void startNodes() throws IOException {
+    for (int i = 0; i < NODES; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        ports.add(socket.getLocalPort());
+      }
+    }
+    List<String> urls = ports.stream().map(port -> "http://localhost:" + port).toList();
+    for (int i = 0; i < NODES; i++) {
+      nodes.add(new SpringApplicationBuilder(Challenge1Application.class)
+        .web(WebApplicationType.SERVLET)
+        .logStartupInfo(false)
+        .properties("logging.level.root=WARN",
+          "server.port=" + ports.get(i),
+          "cluster.enabled=true",
+          "cluster.nodes=" + String.join(",", urls),
+          "cluster.node-index=" + i,
+          "cluster.prepare-timeout-ms=200",
+          "internal.secret=" + SECRET,
+          "cluster.decision-directory=" + decisionDirectory,
+          "accounts.transfer.admission.enabled=false")
+        .run());
+    }
+  }
+
+  @AfterEach
+  void stopNodes() {
+    nodes.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  void accountsLiveOnOneNodeAndAreServedByEvery() throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(post(i % NODES, "/v1/accounts", "{\"accountId\":\"Id-" + i + "\",\"balance\":100}").statusCode())
+        .isEqualTo(201);
+    }
+    assertThat(post(1, "/v1/accounts", "{\"accountId\":\"Id-0\",\"balance\":100}").statusCode()).isEqualTo(400);
+
+    Set<Integer> owners = new HashSet<>();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      String accountId = "Id-" + i;
+      owners.add(ownerOf(accountId));
+      for (int node = 0; node < NODES; node++) {
+        assertThat(repository(node).getAccount(accountId) != null).isEqualTo(node == ownerOf(accountId));
+        HttpResponse<String> response = get(node, "/v1/accounts/" + accountId);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("{\"accountId\":\"" + accountId + "\",\"balance\":100}");
+      }
+    }
+    assertThat(owners).hasSize(NODES);
+  }
+
+  @Test
+  void concurrentTransfersAcrossNodesConserveMoney() throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      post(0, "/v1/accounts", "{\"accountId\":\"Id-" + i + "\",\"balance\":100}");
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> statuses = new ArrayList<>();
+    for (int i = 0; i < 800; i++) {
+      statuses.add(executor.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return post(random.nextInt(NODES), "/v1/accounts/transfer", "{\"accountFromId\":\"Id-" + from
+          + "\",\"accountToId\":\"Id-" + to + "\",\"amount\":" + (1 + random.nextInt(60)) + "}").statusCode();
+      }));
+    }
+    int completed = 0;
+    for (Future<Integer> status : statuses) {
+      // Transfers fail only for insufficient funds
+      assertThat(status.get()).isIn(200, 400);
+      completed += status.get() == 200 ? 1 : 0;
+    }
+    executor.shutdown();
+
+    assertThat(completed).isPositive();
+    assertThat(totalBalance()).isEqualByComparingTo(BigDecimal.valueOf(ACCOUNTS * 100L));
+  }
+
+  @Test
+  void failedCrossNodeTransfersChangeNothing() throws Exception {
+    String payer = accountOn(0, "Id-");
+    String payee = accountOn(1, "Id-");
+    post(2, "/v1/accounts", "{\"accountId\":\"" + payer + "\",\"balance\":100}");
+    post(2, "/v1/accounts", "{\"accountId\":\"" + payee + "\",\"balance\":100}");
+
+    assertThat(transfer(2, payer, payee, "150").statusCode()).isEqualTo(400);
+    // The payer's reservation is returned when the payee turns out not to exist
+    assertThat(transfer(2, payer, accountOn(1, "Missing-"), "10").statusCode()).isEqualTo(500);
+    assertThat(transfer(2, payer, payee, "-1").statusCode()).isEqualTo(500);
+    assertThat(transfer(2, payer, payee, "40").statusCode()).isEqualTo(200);
+
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("60");
+    assertThat(repository(1).getAccount(payee).getBalance()).isEqualByComparingTo("140");
+    assertThat(get(2, "/v1/accounts/" + payee + "/transfers").body()).contains(payer);
+  }
+
+  @Test
+  void forwardedRetriesAreDeduplicatedByTheOwningNode() throws Exception {
+    String payer = accountOn(0, "Id-");
+    String payee = accountOn(0, "Other-");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payer + "\",\"balance\":100}");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payee + "\",\"balance\":100}");
+    String body = "{\"accountFromId\":\"" + payer + "\",\"accountToId\":\"" + payee + "\",\"amount\":30}";
+
+    // A retry sent to another node still reaches the owner under the same key
+    assertThat(postWithKey(1, "/v1/accounts/transfer", body, "transfer-1").statusCode()).isEqualTo(200);
+    assertThat(postWithKey(2, "/v1/accounts/transfer", body, "transfer-1").statusCode()).isEqualTo(200);
+
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("70");
+    assertThat(repository(0).getAccount(payee).getBalance()).isEqualByComparingTo("130");
+  }
+
+  @Test
+  void reservationWithoutDecisionIsReturnedOnPresumedAbort() throws Exception {
+    String payer = accountOn(0, "Id-");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payer + "\",\"balance\":100}");
+
+    // A transfer coordinated by node 1 that never got past phase one there
+    nodes.get(0).getBean(ClusterTransfers.class).prepare("1-42", payer, "Id-elsewhere", new BigDecimal("-30"));
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("70");
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (repository(0).getAccount(payer).getBalance().compareTo(new BigDecimal("100")) != 0
+      && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void repeatedPrepareReservesOnce() throws Exception {
+    String payer = accountOn(0, "Id-");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payer + "\",\"balance\":100}");
+    ClusterTransfers clusterTransfers = nodes.get(0).getBean(ClusterTransfers.class);
+
+    clusterTransfers.prepare("1-43", payer, "Id-elsewhere", new BigDecimal("-30"));
+    clusterTransfers.prepare("1-43", payer, "Id-elsewhere", new BigDecimal("-30"));
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("70");
+
+    clusterTransfers.complete("1-43", ClusterTransfers.Decision.ABORTED);
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void internalEndpointsRefuseClientsAndForeignTransfers() throws Exception {
+    String payee = accountOn(0, "Id-");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payee + "\",\"balance\":100}");
+    String prepare = "/internal/cluster/transfers/1-42/prepare?accountId=" + payee
+      + "&counterpartyId=Id-elsewhere&amount=1000000";
+
+    assertThat(post(0, prepare, "").statusCode()).isEqualTo(403);
+    assertThat(internalPost(0, prepare, "wrong-secret", "1").statusCode()).isEqualTo(403);
+    // Node 2 holds the secret but did not start transfer 1-42, and no node 7 exists
+    assertThat(internalPost(0, prepare, SECRET, "2").statusCode()).isEqualTo(403);
+    assertThat(internalPost(0, "/internal/cluster/transfers/7-42/prepare?accountId=" + payee
+      + "&counterpartyId=Id-elsewhere&amount=1000000", SECRET, "7").statusCode()).isEqualTo(403);
+    assertThat(internalPost(0, "/internal/cluster/transfers/1-42/commit", SECRET, "2").statusCode()).isEqualTo(403);
+
+    assertThat(repository(0).getAccount(payee).getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void clientCannotClaimToBeForwarded() throws Exception {
+    String payer = accountOn(0, "Id-");
+    String payee = accountOn(0, "Other-");
+
+    // Without the secret the header is ignored, so the accounts still land on their owner
+    assertThat(postAsNode(1, "/v1/accounts", "{\"accountId\":\"" + payer + "\",\"balance\":100}").statusCode())
+      .isEqualTo(201);
+    assertThat(postAsNode(2, "/v1/accounts", "{\"accountId\":\"" + payee + "\",\"balance\":100}").statusCode())
+      .isEqualTo(201);
+    assertThat(repository(1).getAccount(payer)).isNull();
+    assertThat(repository(2).getAccount(payee)).isNull();
+
+    assertThat(postAsNode(1, "/v1/accounts/transfer", "{\"accountFromId\":\"" + payer + "\",\"accountToId\":\""
+      + payee + "\",\"amount\":30}").statusCode()).isEqualTo(200);
+    assertThat(repository(0).getAccount(payer).getBalance()).isEqualByComparingTo("70");
+    assertThat(repository(0).getAccount(payee).getBalance()).isEqualByComparingTo("130");
+  }
+
+  @Test
+  void promotionRequiresTheInternalSecret() throws Exception {
+    assertThat(post(0, "/internal/replication/promote", "").statusCode()).isEqualTo(403);
+    assertThat(internalPost(0, "/internal/replication/promote", "wrong-secret", "1").statusCode()).isEqualTo(403);
+    // Past the filter, the controller refuses because the node is not a replica
+    assertThat(internalPost(0, "/internal/replication/promote", SECRET, "1").statusCode()).isEqualTo(409);
+    assertThat(get(0, "/internal/replication").statusCode()).isEqualTo(200);
+  }
+
+  @Test
+  void internalEndpointsCannotBeReachedThroughPathVariants() throws Exception {
+    String payee = accountOn(0, "Id-");
+    post(0, "/v1/accounts", "{\"accountId\":\"" + payee + "\",\"balance\":100}");
+    String prepare = "/transfers/1-42/prepare?accountId=" + payee + "&counterpartyId=Id-elsewhere&amount=1000000";
+
+    assertThat(post(0, "/internal;x/cluster" + prepare, "").statusCode()).isEqualTo(403);
+    assertThat(post(0, "/internal/cluster;x" + prepare, "").statusCode()).isEqualTo(403);
+    assertThat(post(0, "/internal/%63luster" + prepare, "").statusCode()).isEqualTo(403);
+    assertThat(post(0, "/internal;x/replication/promote", "").statusCode()).isEqualTo(403);
+    assertThat(post(0, "/internal/%72eplication/promote", "").statusCode()).isEqualTo(403);
+
+    assertThat(repository(0).getAccount(payee).getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void importCreatesOnlyTheAccountsTheNodeOwns() throws Exception {
+    String own = accountOn(0, "Id-");
+    String foreign = accountOn(1, "Id-");
+    HttpResponse<String> response = client.send(
+      HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(0) + "/v1/accounts/import"))
+        .header("Content-Type", "application/x-ndjson")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"" + own + "\",\"balance\":10}\n"
+          + "{\"accountId\":\"" + foreign + "\",\"balance\":10}\n"))
+        .build(), HttpResponse.BodyHandlers.ofString());
+
+    assertThat(response.statusCode()).isEqualTo(200);
+    assertThat(response.body().split("\n")).containsExactly(
+      "{\"line\":2,\"error\":\"accountId belongs to cluster node 1\"}",
+      "{\"imported\":1,\"failed\":1}");
+    assertThat(repository(0).getAccount(own)).isNotNull();
+    assertThat(repository(0).getAccount(foreign)).isNull();
+    assertThat(repository(1).getAccount(foreign)).isNull();
+  }
+
+  private BigDecimal totalBalance() {
+    BigDecimal total = BigDecimal.ZERO;
+    for (int node = 0; node < NODES; node++) {
+      List<BigDecimal> balances = new ArrayList<>();
+      repository(node).forEachAccount(account -> balances.add(account.getBalance()));
+      for (BigDecimal balance : balances) {
+        total = total.add(balance);
+      }
+    }
+    return total;
+  }
+
+  private String accountOn(int node, String prefix) {
+    for (int i = 0; ; i++) {
+      if (ownerOf(prefix + i) == node) {
+        return prefix + i;
+      }
+    }
+  }
+
+  private int ownerOf(String accountId) {
+    return nodes.get(0).getBean(ClusterRouter.class).ownerOf(accountId);
+  }
+
+  private AccountsRepository repository(int node) {
+    return nodes.get(node).getBean(AccountsRepository.class);
+  }
+
+  private HttpResponse<String> transfer(int node, String from, String to, String amount) throws Exception {
+    return post(node, "/v1/accounts/transfer",
+      "{\"accountFromId\":\"" + from + "\",\"accountToId\":\"" + to + "\",\"amount\":" + amount + "}");
+  }
+
+  private HttpResponse<String> post(int node, String path, String body) throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(node) + path))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  // Names a node in the forwarding header, but without the secret a real node would send
+  private HttpResponse<String> postAsNode(int node, String path, String body) throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(node) + path))
+      .header("Content-Type", "application/json")
+      .header(ClusterRouter.FORWARDED, "0")
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> postWithKey(int node, String path, String body, String idempotencyKey)
+    throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(node) + path))
+      .header("Content-Type", "application/json")
+      .header("Idempotency-Key", idempotencyKey)
+      .POST(HttpRequest.BodyPublishers.ofString(body))
+      .build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> internalPost(int node, String path, String secret, String caller) throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(node) + path))
+      .header(ClusterRouter.SECRET, secret)
+      .header(ClusterRouter.FORWARDED, caller)
+      .POST(HttpRequest.BodyPublishers.noBody())
+      .build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private HttpResponse<String> get(int node, String path) throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + ports.get(node) + path)).GET().build(),
+      HttpResponse.BodyHandlers.ofString());
+  }
+}
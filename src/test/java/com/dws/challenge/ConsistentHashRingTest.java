@@ -0,0 +1,48 @@
+package com.dws.challenge;
+
+import com.dws.challenge.cluster.ConsistentHashRing;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+  private static final int ACCOUNTS = 100_000;
+
+  @Test
+  void spreadsAccountsEvenly() {
+    ConsistentHashRing ring = new ConsistentHashRing(4, 160);
+    int[] owned = new int[4];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      owned[ring.ownerOf("Id-" + i)]++;
+    }
+
+    for (int node = 0; node < 4; node++) {
+      assertThat(owned[node]).as("node " + node).isBetween(ACCOUNTS / 5, ACCOUNTS * 3 / 10);
+    }
+  }
+
+  @Test
+  void addingANodeOnlyMovesAccountsToIt() {
+    ConsistentHashRing four = new ConsistentHashRing(4, 160);
+    ConsistentHashRing five = new ConsistentHashRing(5, 160);
+    int moved = 0;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      String accountId = "Id-" + i;
+      if (four.ownerOf(accountId) != five.ownerOf(accountId)) {
+        assertThat(five.ownerOf(accountId)).isEqualTo(4);
+        moved++;
+      }
+    }
+
+    // About a fifth of the accounts, rather than the four fifths modulo hashing would move
+    assertThat(moved).isBetween(ACCOUNTS * 3 / 20, ACCOUNTS / 4);
+  }
+
+  @Test
+  void singleNodeOwnsEverything() {
+    ConsistentHashRing ring = new ConsistentHashRing(1, 16);
+    assertThat(ring.ownerOf("Id-1")).isZero();
+    assertThat(ring.ownerOf("")).isZero();
+  }
+}
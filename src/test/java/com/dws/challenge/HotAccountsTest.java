@@ -0,0 +1,185 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountCuts;
+import com.dws.challenge.service.AccountExporter;
+import com.dws.challenge.service.HotAccounts;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class HotAccountsTest {
+
+  private static final int PAYERS = 1_000;
+
+  private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+  private final StripedAccountLocks accountLocks = new StripedAccountLocks(64);
+
+  @Test
+  void concurrentCreditsAndDebitsOfHotAccountConserveMoney() throws Exception {
+    HotAccounts hotAccounts = hotAccounts(List.of("Id-hot"), 0);
+    LockingTransferEngine transferEngine = engine(hotAccounts);
+    createAccounts(transferEngine);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      boolean debits = t == 0;
+      threads.add(new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+          String payer = "Id-" + random.nextInt(PAYERS);
+          try {
+            if (debits) {
+              transferEngine.transfer("Id-hot", payer, 3.0);
+            } else {
+              transferEngine.transfer(payer, "Id-hot", 1.0);
+            }
+          } catch (InsufficientFundsException e) {
+            // The hot account can run dry while debits outpace credits
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    ReflectionTestUtils.invokeMethod(hotAccounts, "consolidateAll");
+    BigDecimal[] total = {BigDecimal.ZERO};
+    accountsRepository.forEachAccount(account -> {
+      assertThat(account.getBalance().signum()).isNotNegative();
+      total[0] = total[0].add(account.getBalance());
+    });
+    assertThat(total[0]).isEqualByComparingTo(BigDecimal.valueOf(PAYERS * 100L));
+  }
+
+  @Test
+  void debitCountsCreditsNotYetConsolidated() {
+    HotAccounts hotAccounts = hotAccounts(List.of("Id-hot"), 0);
+    LockingTransferEngine transferEngine = engine(hotAccounts);
+    createAccounts(transferEngine);
+
+    transferEngine.transfer("Id-1", "Id-hot", 60.0);
+    transferEngine.transfer("Id-2", "Id-hot", 40.0);
+    assertThat(accountsRepository.getAccount("Id-hot").getBalance()).isEqualByComparingTo("0");
+
+    transferEngine.transfer("Id-hot", "Id-3", 100.0);
+    assertThrows(InsufficientFundsException.class, () -> transferEngine.transfer("Id-hot", "Id-3", 0.01));
+    assertThat(accountsRepository.getAccount("Id-3").getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  void readIncludesCreditsNotYetConsolidatedWithoutTakingTheLock() throws Exception {
+    HotAccounts hotAccounts = hotAccounts(List.of("Id-hot"), 0);
+    LockingTransferEngine transferEngine = engine(hotAccounts);
+    createAccounts(transferEngine);
+    transferEngine.transfer("Id-1", "Id-hot", 60.0);
+
+    // Another thread holds the hot account's stripe, as a debit would
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch read = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      accountLocks.lock("Id-hot", "Id-hot");
+      try {
+        locked.countDown();
+        read.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        accountLocks.unlock("Id-hot", "Id-hot");
+      }
+    });
+    holder.start();
+    locked.await();
+    try {
+      AccountBalance balance = assertTimeoutPreemptively(Duration.ofSeconds(5),
+        () -> transferEngine.readBalance(accountsRepository.getAccount("Id-hot")));
+      assertThat(balance.getBalance()).isEqualByComparingTo("60");
+      assertThat(accountsRepository.getAccount("Id-hot").getBalance()).isEqualByComparingTo("0");
+    } finally {
+      read.countDown();
+      holder.join();
+    }
+  }
+
+  @Test
+  void exportIncludesCreditsNotYetConsolidated() throws Exception {
+    HotAccounts hotAccounts = hotAccounts(List.of("Id-hot"), 0);
+    AccountCuts accountCuts = new AccountCuts(accountLocks, hotAccounts);
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, accountLocks)
+      .hotAccounts(hotAccounts)
+      .accountCuts(accountCuts)
+      .build();
+    AccountExporter exporter = new AccountExporter(accountsRepository, transferEngine, accountCuts);
+    createAccounts(transferEngine);
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      while (running.get()) {
+        transferEngine.transfer("Id-" + ThreadLocalRandom.current().nextInt(PAYERS), "Id-hot", 0.01);
+      }
+    });
+    transfers.start();
+    try {
+      for (int export = 0; export < 5; export++) {
+        BigDecimal[] total = {BigDecimal.ZERO};
+        exporter.export((AccountBalance balance) -> total[0] = total[0].add(balance.getBalance()));
+        assertThat(total[0]).isEqualByComparingTo(BigDecimal.valueOf(PAYERS * 100L));
+      }
+    } finally {
+      running.set(false);
+      transfers.join();
+    }
+  }
+
+  @Test
+  void detectsAccountsReceivingManyCredits() {
+    HotAccounts hotAccounts = hotAccounts(List.of(), 1_000);
+    LockingTransferEngine transferEngine = engine(hotAccounts);
+    createAccounts(transferEngine);
+
+    for (int i = 0; i < 10_000; i++) {
+      transferEngine.transfer("Id-" + (i % PAYERS), "Id-hot", 0.01);
+      transferEngine.transfer("Id-" + (i % PAYERS), "Id-" + ((i + 1) % PAYERS), 0.01);
+    }
+    ReflectionTestUtils.invokeMethod(hotAccounts, "detect");
+
+    assertThat(hotAccounts.isHot("Id-hot")).isTrue();
+    assertThat(hotAccounts.isHot("Id-1")).isFalse();
+  }
+
+  private HotAccounts hotAccounts(List<String> accountIds, long detectCreditsPerSecond) {
+    return new HotAccounts(accountsRepository, accountLocks, new SimpleMeterRegistry(), accountIds,
+      detectCreditsPerSecond, 4, 100, 64);
+  }
+
+  private LockingTransferEngine engine(HotAccounts hotAccounts) {
+    return lockingEngine(accountsRepository, accountLocks).hotAccounts(hotAccounts).build();
+  }
+
+  private void createAccounts(LockingTransferEngine transferEngine) {
+    transferEngine.createAccount(new Account("Id-hot", BigDecimal.ZERO));
+    for (int i = 0; i < PAYERS; i++) {
+      transferEngine.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+  }
+}
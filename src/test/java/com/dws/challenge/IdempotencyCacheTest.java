@@ -0,0 +1,85 @@
+package com.dws.challenge;
+
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.web.IdempotencyCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyCacheTest {
+
+  @Test
+  void evictsOldestKeysBeyondMaxEntries() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    IdempotencyCache cache = new IdempotencyCache(meterRegistry, 600, 100);
+
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(cache.putIfAbsent("key-" + i, transfer(i), completed())).isNull();
+    }
+
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.putIfAbsent("key-0", transfer(0), completed())).isNull();
+    assertThat(cache.putIfAbsent("key-999", transfer(999), completed())).isNotNull();
+    assertThat(meterRegistry.counter("transfers.idempotency.evicted").count()).isEqualTo(901);
+  }
+
+  @Test
+  void expiredKeysAreSweptAndReusable() {
+    IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), 0, 100);
+    CompletableFuture<ResponseEntity<Object>> response = completed();
+    cache.putIfAbsent("key-1", transfer(1), response);
+
+    assertThat(cache.putIfAbsent("key-1", transfer(1), completed())).isNull();
+    ReflectionTestUtils.invokeMethod(cache, "sweep");
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void removeReleasesOnlyTheHoldingResponse() {
+    IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), 600, 100);
+    CompletableFuture<ResponseEntity<Object>> response = completed();
+    cache.putIfAbsent("key-1", transfer(1), response);
+
+    cache.remove("key-1", completed());
+    assertThat(cache.putIfAbsent("key-1", transfer(1), completed()).getResponse()).isSameAs(response);
+    cache.remove("key-1", response);
+    assertThat(cache.putIfAbsent("key-1", transfer(1), completed())).isNull();
+  }
+
+  @Test
+  void entryMatchesOnlyTheSameTransfer() {
+    IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), 600, 100);
+    cache.putIfAbsent("key-1", transfer("Id-1", "Id-2", 10.0), completed());
+
+    IdempotencyCache.Entry earlier = cache.putIfAbsent("key-1", transfer("Id-1", "Id-2", 10.0), completed());
+    assertThat(earlier.isFor(transfer("Id-1", "Id-2", 10.0))).isTrue();
+    assertThat(earlier.isFor(transfer("Id-1", "Id-2", 10.01))).isFalse();
+    assertThat(earlier.isFor(transfer("Id-2", "Id-1", 10.0))).isFalse();
+    // "Aa" and "BB" share a hash code, yet are told apart
+    cache.putIfAbsent("key-2", transfer("Aa", "Id-2", 10.0), completed());
+    assertThat(cache.putIfAbsent("key-2", transfer("BB", "Id-2", 10.0), completed())
+      .isFor(transfer("BB", "Id-2", 10.0))).isFalse();
+  }
+
+  private static TransferRequest transfer(int i) {
+    return transfer("Id-" + i, "Id-" + (i + 1), i);
+  }
+
+  private static TransferRequest transfer(String accountFromId, String accountToId, double amount) {
+    TransferRequest transfer = new TransferRequest();
+    transfer.setAccountFromId(accountFromId);
+    transfer.setAccountToId(accountToId);
+    transfer.setAmount(amount);
+    return transfer;
+  }
+
+  private static CompletableFuture<ResponseEntity<Object>> completed() {
+    return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+  }
+}
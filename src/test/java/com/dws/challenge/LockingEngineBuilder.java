@@ -0,0 +1,80 @@
+package com.dws.challenge;
+
+import com.dws.challenge.journal.DisabledTransferJournal;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.replication.ReplicationLog;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountContentionTracker;
+import com.dws.challenge.service.AccountCuts;
+import com.dws.challenge.service.HotAccounts;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferNetting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.List;
+
+/**
+ * Builds a {@link LockingTransferEngine} for tests with everything optional switched off: no
+ * journal, metrics, netting, replication, contention tracking or hot accounts. Tests set only the
+ * collaborators they exercise, so a new engine dependency is added here once.
+ */
+final class LockingEngineBuilder {
+
+  private final AccountsRepository accountsRepository;
+  private final StripedAccountLocks accountLocks;
+  private TransferJournal journal = new DisabledTransferJournal();
+  private TransferMetrics metrics = new TransferMetrics(new SimpleMeterRegistry(), false);
+  private HotAccounts hotAccounts;
+  private AccountCuts accountCuts;
+  private TransferNetting netting = new TransferNetting(new SimpleMeterRegistry(), false, 200, 4096, 65536);
+  private AccountContentionTracker contention = new AccountContentionTracker(false, 60, 2048, 20, 16);
+
+  private LockingEngineBuilder(AccountsRepository accountsRepository, StripedAccountLocks accountLocks) {
+    this.accountsRepository = accountsRepository;
+    this.accountLocks = accountLocks;
+  }
+
+  static LockingEngineBuilder lockingEngine(AccountsRepository accountsRepository, StripedAccountLocks accountLocks) {
+    return new LockingEngineBuilder(accountsRepository, accountLocks);
+  }
+
+  LockingEngineBuilder journal(TransferJournal journal) {
+    this.journal = journal;
+    return this;
+  }
+
+  LockingEngineBuilder metrics(TransferMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  LockingEngineBuilder hotAccounts(HotAccounts hotAccounts) {
+    this.hotAccounts = hotAccounts;
+    return this;
+  }
+
+  LockingEngineBuilder accountCuts(AccountCuts accountCuts) {
+    this.accountCuts = accountCuts;
+    return this;
+  }
+
+  LockingEngineBuilder netting(TransferNetting netting) {
+    this.netting = netting;
+    return this;
+  }
+
+  LockingEngineBuilder contention(AccountContentionTracker contention) {
+    this.contention = contention;
+    return this;
+  }
+
+  LockingTransferEngine build() {
+    HotAccounts hot = hotAccounts != null ? hotAccounts
+      : new HotAccounts(accountsRepository, accountLocks, new SimpleMeterRegistry(), List.of(), 0, 0, 100, 64);
+    AccountCuts cuts = accountCuts != null ? accountCuts : new AccountCuts(accountLocks, hot);
+    return new LockingTransferEngine(accountsRepository, accountLocks, journal, metrics, cuts, hot, netting,
+      new ReplicationLog(new SimpleMeterRegistry(), "none", 1024), contention);
+  }
+}
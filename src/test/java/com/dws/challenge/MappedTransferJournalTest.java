@@ -0,0 +1,146 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.JournalRecordHandler;
+import com.dws.challenge.journal.MappedTransferJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedTransferJournalTest {
+
+  private static final int SEGMENT_SIZE = 64 * 1024;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replaysRecordsAfterReopen() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.GROUP, 0);
+    journal.appendCreate("Id-123", new BigDecimal("100.25"));
+    journal.appendCreate("Id-456", null);
+    long last = journal.appendTransfer("Id-123", "Id-456", new BigDecimal("40.5"));
+    journal.awaitDurable(last);
+    assertThat(journal.getDurableSequence()).isGreaterThanOrEqualTo(last);
+    journal.close();
+
+    MappedTransferJournal reopened = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    List<String> records = replay(reopened);
+    assertThat(records).containsExactly("1 create Id-123 100.25", "2 create Id-456 0", "3 transfer Id-123 Id-456 40.5");
+
+    assertThat(reopened.appendTransfer("Id-456", "Id-123", BigDecimal.ONE)).isEqualTo(4);
+    reopened.close();
+  }
+
+  @Test
+  void discardsTornTail() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    journal.appendCreate("Id-123", BigDecimal.TEN);
+    long last = journal.appendTransfer("Id-123", "Id-123", BigDecimal.ONE);
+    journal.awaitDurable(last);
+    journal.close();
+
+    // Corrupt the last byte of the second record, as if the crash hit mid-write
+    Path segment = segmentFiles().get(0);
+    int end = endOfRecords(segment);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), end - 1);
+    }
+
+    MappedTransferJournal reopened = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    assertThat(replay(reopened)).containsExactly("1 create Id-123 10");
+    assertThat(reopened.appendTransfer("Id-123", "Id-123", new BigDecimal("2.00"))).isEqualTo(2);
+    assertThat(replay(reopened)).containsExactly("1 create Id-123 10", "2 transfer Id-123 Id-123 2.00");
+    reopened.close();
+  }
+
+  @Test
+  void rollsOverToNewSegments() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(directory, 4096, MappedTransferJournal.Mode.ASYNC, 0);
+    for (int i = 0; i < 1_000; i++) {
+      journal.appendTransfer("Id-" + i, "Id-" + (i + 1), BigDecimal.valueOf(i));
+    }
+    journal.close();
+
+    assertThat(segmentFiles()).hasSizeGreaterThan(1);
+    MappedTransferJournal reopened = new MappedTransferJournal(directory, 4096, MappedTransferJournal.Mode.FSYNC, 0);
+    List<String> records = replay(reopened);
+    assertThat(records).hasSize(1_000);
+    assertThat(records.get(999)).isEqualTo("1000 transfer Id-999 Id-1000 999");
+    reopened.close();
+  }
+
+  @Test
+  void replaysTransferAmountsExactly() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    // Neither amount survives a round trip through a double
+    journal.appendTransfer("Id-123", "Id-456", new BigDecimal("12345678901234567.89"));
+    long last = journal.appendTransfer("Id-456", "Id-123", new BigDecimal("0.10000000000000000001"));
+    journal.awaitDurable(last);
+    journal.close();
+
+    MappedTransferJournal reopened = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    assertThat(replay(reopened)).containsExactly("1 transfer Id-123 Id-456 12345678901234567.89",
+      "2 transfer Id-456 Id-123 0.10000000000000000001");
+    reopened.close();
+  }
+
+  @Test
+  void refusesAccountIdsTooLongForARecordAndKeepsAppending() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    // Each of these takes three bytes in UTF-8
+    String longId = "\u20ac".repeat(20_000);
+    assertThrows(IllegalArgumentException.class, () -> journal.appendCreate(longId, BigDecimal.ONE));
+    long last = journal.appendCreate("\u20ac".repeat(Account.MAX_ID_LENGTH), BigDecimal.ONE);
+    journal.awaitDurable(last);
+    journal.close();
+
+    MappedTransferJournal reopened = new MappedTransferJournal(directory, SEGMENT_SIZE, MappedTransferJournal.Mode.FSYNC, 0);
+    assertThat(replay(reopened)).containsExactly("1 create " + "\u20ac".repeat(Account.MAX_ID_LENGTH) + " 1");
+    reopened.close();
+  }
+
+  private static List<String> replay(MappedTransferJournal journal) {
+    List<String> records = new ArrayList<>();
+    journal.replay(new JournalRecordHandler() {
+      @Override
+      public void onCreate(long sequence, String accountId, BigDecimal balance) {
+        records.add(sequence + " create " + accountId + " " + balance.toPlainString());
+      }
+
+      @Override
+      public void onTransfer(long sequence, String accountFromId, String accountToId, BigDecimal amount) {
+        records.add(sequence + " transfer " + accountFromId + " " + accountToId + " " + amount.toPlainString());
+      }
+    });
+    return records;
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+
+  private static int endOfRecords(Path segment) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+    int position = 0;
+    while (buffer.getInt(position) != 0) {
+      position += 8 + buffer.getInt(position);
+    }
+    return position;
+  }
+}
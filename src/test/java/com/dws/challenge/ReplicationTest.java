@@ -0,0 +1,182 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationLog;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.NotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A primary and its replicas on localhost, each a full application in this JVM.
+ */
+class ReplicationTest {
+
+  private static final int ACCOUNTS = 40;
+
+  private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+  @AfterEach
+  void stopNodes() {
+    nodes.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  void replicasConvergeOnThePrimarysBook() throws Exception {
+    int primaryPort = freePort();
+    ConfigurableApplicationContext primary = start("primary", primaryPort, "");
+    ConfigurableApplicationContext replica = start("replica", freePort(), "localhost:" + primaryPort);
+    ConfigurableApplicationContext other = start("replica", freePort(), "localhost:" + primaryPort);
+
+    createAccounts(primary);
+    transferConcurrently(primary, 2000);
+
+    String token = primary.getBean(ReplicationLog.class).token();
+    for (ConfigurableApplicationContext node : List.of(replica, other)) {
+      assertThat(node.getBean(ReplicationFollower.class).awaitToken(token, 10_000)).isTrue();
+      assertSameBook(primary, node);
+    }
+    assertThat(replica.getBean(ReplicationFollower.class).lagSequences()).isZero();
+  }
+
+  @Test
+  void replicaWithoutTheSecretGetsNothing() throws Exception {
+    int primaryPort = freePort();
+    ConfigurableApplicationContext primary = start("primary", primaryPort, "");
+    ConfigurableApplicationContext intruder = start("replica", freePort(), "localhost:" + primaryPort,
+      "internal.secret=wrong-secret");
+    createAccounts(primary);
+
+    assertThat(intruder.getBean(ReplicationFollower.class).awaitToken(primary.getBean(ReplicationLog.class).token(),
+      1000)).isFalse();
+    assertThat(intruder.getBean(AccountsRepository.class).getAccount("Id-0")).isNull();
+  }
+
+  @Test
+  void lateReplicaLoadsSnapshotAndThenStreams() throws Exception {
+    int primaryPort = freePort();
+    ConfigurableApplicationContext primary = start("primary", primaryPort, "", "replication.backlog=64");
+    createAccounts(primary);
+    transferConcurrently(primary, 500);
+
+    ConfigurableApplicationContext replica = start("replica", freePort(), "localhost:" + primaryPort);
+    transferConcurrently(primary, 500);
+
+    ReplicationFollower follower = replica.getBean(ReplicationFollower.class);
+    assertThat(follower.awaitToken(primary.getBean(ReplicationLog.class).token(), 10_000)).isTrue();
+    assertSameBook(primary, replica);
+    assertThat(replica.getBean(MeterRegistry.class).counter("replication.snapshots.loaded").count())
+      .isGreaterThanOrEqualTo(1);
+    // A token from a write the replica cannot have seen
+    assertThat(follower.awaitToken(primary.getBean(ReplicationLog.class).epoch() + "-" + Long.MAX_VALUE, 50))
+      .isFalse();
+  }
+
+  @Test
+  void promotedReplicaTakesOverAndTheOtherReplicaFollowsIt() throws Exception {
+    int primaryPort = freePort();
+    int promotedPort = freePort();
+    ConfigurableApplicationContext primary = start("primary", primaryPort, "");
+    ConfigurableApplicationContext promoted = start("replica", promotedPort, "localhost:" + primaryPort);
+    ConfigurableApplicationContext other = start("replica", freePort(),
+      "localhost:" + primaryPort + ",localhost:" + promotedPort);
+
+    createAccounts(primary);
+    transferConcurrently(primary, 500);
+    String token = primary.getBean(ReplicationLog.class).token();
+    assertThat(promoted.getBean(ReplicationFollower.class).awaitToken(token, 10_000)).isTrue();
+    assertThat(other.getBean(ReplicationFollower.class).awaitToken(token, 10_000)).isTrue();
+
+    primary.close();
+    promoted.getBean(ReplicationFollower.class).promote();
+    ReplicationLog promotedLog = promoted.getBean(ReplicationLog.class);
+    assertThat(promotedLog.isPrimary()).isTrue();
+
+    transferConcurrently(promoted, 500);
+    assertThat(other.getBean(ReplicationFollower.class).awaitToken(promotedLog.token(), 10_000)).isTrue();
+    assertThat(other.getBean(ReplicationFollower.class).epoch()).isEqualTo(promotedLog.epoch());
+    assertSameBook(promoted, other);
+  }
+
+  private ConfigurableApplicationContext start(String role, int port, String primaries, String... properties) {
+    List<String> all = new ArrayList<>(List.of("logging.level.root=WARN",
+      "replication.role=" + role,
+      "replication.port=" + port,
+      "replication.primary=" + primaries,
+      "internal.secret=replication-test",
+      "accounts.transfer.admission.enabled=false"));
+    all.addAll(List.of(properties));
+    ConfigurableApplicationContext node = new SpringApplicationBuilder(Challenge1Application.class)
+      .web(WebApplicationType.NONE)
+      .logStartupInfo(false)
+      .properties(all.toArray(new String[0]))
+      .run();
+    nodes.add(node);
+    return node;
+  }
+
+  private static void createAccounts(ConfigurableApplicationContext primary) {
+    AccountsService accountsService = primary.getBean(AccountsService.class);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+  }
+
+  private static void transferConcurrently(ConfigurableApplicationContext primary, int transfers) throws Exception {
+    AccountsService accountsService = primary.getBean(AccountsService.class);
+    NotificationService notificationService = primary.getBean(NotificationService.class);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < transfers; i++) {
+      futures.add(executor.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        try {
+          accountsService.transferMoney("Id-" + from, "Id-" + to, 1 + random.nextInt(40), notificationService);
+        } catch (InsufficientFundsException e) {
+          // Part of the mix: nothing moved, nothing is replicated
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+  }
+
+  private static void assertSameBook(ConfigurableApplicationContext expected, ConfigurableApplicationContext actual) {
+    // Read through the service, which folds in credits a hot account holds aside
+    AccountsService expectedAccounts = expected.getBean(AccountsService.class);
+    AccountsRepository actualAccounts = actual.getBean(AccountsRepository.class);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(actualAccounts.getAccount("Id-" + i).getBalance())
+        .isEqualByComparingTo(expectedAccounts.getAccountBalance("Id-" + i).getBalance());
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
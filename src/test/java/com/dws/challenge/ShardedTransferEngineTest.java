@@ -0,0 +1,133 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.FixedPointAccount;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.model.TransferRequest;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.ShardedTransferEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedTransferEngineTest {
+
+  private AccountsRepositoryInMemory accountsRepository;
+  private ShardedTransferEngine transferEngine;
+
+  @BeforeEach
+  void setUp() {
+    accountsRepository = new AccountsRepositoryInMemory();
+    transferEngine = new ShardedTransferEngine(accountsRepository, 2, 4, 1024, 50);
+    ReflectionTestUtils.invokeMethod(transferEngine, "start");
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.invokeMethod(transferEngine, "stop");
+  }
+
+  @Test
+  void transfer_completesAcrossShards() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+
+    transferEngine.transferAsync("123", "456", 50.0).join();
+
+    assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("150");
+    assertThat(accountsRepository.getAccount("456").getBalance()).isEqualByComparingTo("150");
+  }
+
+  @Test
+  void transfer_insufficientFundsFailsTheFuture() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+
+    CompletionException exception = assertThrows(CompletionException.class,
+      () -> transferEngine.transferAsync("123", "456", 250.0).join());
+
+    assertThat(exception.getCause()).isInstanceOf(InsufficientFundsException.class);
+    assertThrows(InsufficientFundsException.class, () -> transferEngine.transfer("123", "456", 250.0));
+  }
+
+  @Test
+  void transferBatch_rejectsAtomicBatches() {
+    createAccount("123", "200.00");
+    createAccount("456", "100.00");
+    TransferRequest transfer = new TransferRequest();
+    transfer.setAccountFromId("123");
+    transfer.setAccountToId("456");
+    transfer.setAmount(50.0);
+
+    assertThat(transferEngine.supportsAtomicBatches()).isFalse();
+    assertThrows(IllegalArgumentException.class, () -> transferEngine.transferBatch(List.of(transfer), true));
+    assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  void concurrentTransfers_conserveMoney() {
+    int accounts = 32;
+    for (int i = 0; i < accounts; i++) {
+      createAccount("Id-" + i, "100.00");
+    }
+
+    List<CompletableFuture<Void>> transfers = new ArrayList<>();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < 50_000; i++) {
+      transfers.add(transferEngine.transferAsync("Id-" + random.nextInt(accounts), "Id-" + random.nextInt(accounts),
+        random.nextInt(1, 5000) / 100.0).exceptionally(failure -> null));
+    }
+    CompletableFuture.allOf(transfers.toArray(new CompletableFuture[0])).join();
+
+    long total = 0;
+    for (int i = 0; i < accounts; i++) {
+      FixedPointAccount account = (FixedPointAccount) accountsRepository.getAccount("Id-" + i);
+      assertThat(account.getMinorUnits()).isNotNegative();
+      total += account.getMinorUnits();
+    }
+    assertThat(total).isEqualTo(accounts * 10_000L);
+  }
+
+  @Test
+  void fullCreditRingsHoldTransfersBackWithoutDeadlock() {
+    ReflectionTestUtils.invokeMethod(transferEngine, "stop");
+    // Two shards, with credit rings between them far smaller than the load
+    transferEngine = new ShardedTransferEngine(accountsRepository, 2, 2, 8, 50);
+    ReflectionTestUtils.invokeMethod(transferEngine, "start");
+    int accounts = 16;
+    for (int i = 0; i < accounts; i++) {
+      createAccount("Id-" + i, "1000.00");
+    }
+
+    List<CompletableFuture<Void>> transfers = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      CompletableFuture<Void> transfer;
+      do {
+        transfer = transferEngine.transferAsync("Id-" + (i % accounts), "Id-" + ((i + 1) % accounts), 0.01);
+      } while (transfer.isCompletedExceptionally());
+      transfers.add(transfer);
+    }
+    CompletableFuture.allOf(transfers.toArray(new CompletableFuture[0])).join();
+
+    long total = 0;
+    for (int i = 0; i < accounts; i++) {
+      total += ((FixedPointAccount) accountsRepository.getAccount("Id-" + i)).getMinorUnits();
+    }
+    assertThat(total).isEqualTo(accounts * 100_000L);
+  }
+
+  private void createAccount(String accountId, String balance) {
+    accountsRepository.createAccount(transferEngine.prepareAccount(new Account(accountId, new BigDecimal(balance))));
+  }
+}
@@ -0,0 +1,168 @@
+package com.dws.challenge;
+
+import com.dws.challenge.web.TransferAdmissionLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferAdmissionLimiterTest {
+
+  private static final int WORKERS = 4;
+  private static final int CLIENTS = 256;
+  private static final long SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLO_MILLIS = 10;
+  private static final long WARMUP_MILLIS = 1000;
+  private static final long WINDOW_MILLIS = 250;
+  private static final int WINDOWS = 8;
+
+  @Test
+  void rejectsBeyondLimitAndAdmitsAfterRelease() {
+    TransferAdmissionLimiter limiter = new TransferAdmissionLimiter(new SimpleMeterRegistry(), true, 50, 2, 2, 2, 1);
+
+    assertThat(limiter.tryAcquire()).isTrue();
+    long admitted = System.nanoTime();
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isFalse();
+
+    limiter.release(admitted, false);
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.getInFlight()).isEqualTo(2);
+  }
+
+  @Test
+  void slowOrRejectedTransfersLowerTheLimitOncePerRound() {
+    TransferAdmissionLimiter limiter = new TransferAdmissionLimiter(new SimpleMeterRegistry(), true, 50, 100, 1, 1000, 1);
+    long admitted = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      limiter.tryAcquire();
+    }
+
+    for (int i = 0; i < 10; i++) {
+      limiter.release(admitted, true);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(90);
+
+    limiter.tryAcquire();
+    limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(60), false);
+    assertThat(limiter.getLimit()).isEqualTo(90);
+    limiter.tryAcquire();
+    limiter.release(System.nanoTime(), true);
+    assertThat(limiter.getLimit()).isEqualTo(81);
+  }
+
+  @Test
+  void fastTransfersRaiseTheLimitOnlyWhileItIsUsed() {
+    TransferAdmissionLimiter limiter = new TransferAdmissionLimiter(new SimpleMeterRegistry(), true, 50, 4, 1, 1000, 1);
+
+    limiter.tryAcquire();
+    limiter.release(System.nanoTime(), false);
+    assertThat(limiter.getLimit()).isEqualTo(4);
+
+    for (int i = 0; i < 4; i++) {
+      limiter.tryAcquire();
+    }
+    limiter.release(System.nanoTime(), false);
+    assertThat(limiter.getLimit()).isEqualTo(4.25);
+  }
+
+  /**
+   * Drives a server with {@value #WORKERS} workers and an unbounded queue, 1 ms per transfer, from
+   * {@value #CLIENTS} clients retrying as fast as they can. Unlimited, every transfer waits behind
+   * the whole queue; limited, admitted transfers stay near the SLO while throughput holds.
+   */
+  @Test
+  void boundsLatencyAndKeepsGoodputUnderOverload() throws Exception {
+    Load unlimited = drive(new TransferAdmissionLimiter(new SimpleMeterRegistry(), false, SLO_MILLIS, 0, 0, 0, 1));
+    Load limited = drive(new TransferAdmissionLimiter(new SimpleMeterRegistry(), true, SLO_MILLIS, 256, 1, 4096, 1));
+
+    assertThat(unlimited.p99Millis()).isGreaterThan(5 * SLO_MILLIS);
+    assertThat(limited.p99Millis()).isLessThanOrEqualTo(3 * SLO_MILLIS);
+    assertThat(limited.rejected).isPositive();
+    // Goodput holds in every window once the limit has settled, not just on average
+    for (long completed : limited.completedPerWindow) {
+      assertThat(completed).isGreaterThanOrEqualTo(unlimited.completedPerSecond() * WINDOW_MILLIS / 1000 / 2);
+    }
+  }
+
+  private static Load drive(TransferAdmissionLimiter limiter) throws Exception {
+    ExecutorService server = Executors.newFixedThreadPool(WORKERS);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    long started = System.nanoTime();
+    long measured = started + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+    long ends = measured + TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS * WINDOWS);
+    AtomicLongArray completedPerWindow = new AtomicLongArray(WINDOWS);
+    List<Future<long[]>> results = new ArrayList<>();
+    try {
+      for (int c = 0; c < CLIENTS; c++) {
+        results.add(clients.submit(() -> {
+          List<Long> latencies = new ArrayList<>();
+          long rejected = 0;
+          long now;
+          while ((now = System.nanoTime()) < ends) {
+            if (!limiter.tryAcquire()) {
+              rejected += now >= measured ? 1 : 0;
+              LockSupport.parkNanos(SERVICE_NANOS);
+              continue;
+            }
+            server.submit(() -> LockSupport.parkNanos(SERVICE_NANOS)).get();
+            long completed = System.nanoTime();
+            limiter.release(now, false);
+            if (now >= measured && completed < ends) {
+              latencies.add(completed - now);
+              completedPerWindow.incrementAndGet((int) ((completed - measured) / TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS)));
+            }
+          }
+          long[] result = new long[latencies.size() + 1];
+          result[0] = rejected;
+          for (int i = 0; i < latencies.size(); i++) {
+            result[i + 1] = latencies.get(i);
+          }
+          return result;
+        }));
+      }
+      Load load = new Load();
+      List<Long> latencies = new ArrayList<>();
+      for (Future<long[]> result : results) {
+        long[] values = result.get();
+        load.rejected += values[0];
+        for (int i = 1; i < values.length; i++) {
+          latencies.add(values[i]);
+        }
+      }
+      load.latencies = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+      load.completedPerWindow = new long[WINDOWS];
+      for (int w = 0; w < WINDOWS; w++) {
+        load.completedPerWindow[w] = completedPerWindow.get(w);
+      }
+      return load;
+    } finally {
+      clients.shutdownNow();
+      server.shutdownNow();
+    }
+  }
+
+  private static final class Load {
+    private long[] latencies;
+    private long[] completedPerWindow;
+    private long rejected;
+
+    private long p99Millis() {
+      return TimeUnit.NANOSECONDS.toMillis(latencies[(int) (latencies.length * 0.99)]);
+    }
+
+    private long completedPerSecond() {
+      return Arrays.stream(completedPerWindow).sum() * 1000 / (WINDOW_MILLIS * WINDOWS);
+    }
+  }
+}
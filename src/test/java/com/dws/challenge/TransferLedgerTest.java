@@ -0,0 +1,100 @@
+package com.dws.challenge;
+
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.model.LedgerEntry;
+import com.dws.challenge.model.LedgerPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferLedgerTest {
+
+  @Test
+  void recordsBothSidesNewestFirst() {
+    TransferLedger ledger = new TransferLedger(true, 24, 100);
+    ledger.record("Id-1", "Id-2", 10);
+    ledger.record("Id-2", "Id-1", 4);
+
+    LedgerPage page = ledger.history("Id-1", null, null, null, 10);
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(page.getEntries()).satisfiesExactly(
+      entry -> {
+        assertThat(entry.getDirection()).isEqualTo(LedgerEntry.Direction.CREDIT);
+        assertThat(entry.getCounterpartyId()).isEqualTo("Id-2");
+        assertThat(entry.getAmount()).isEqualTo(4);
+      },
+      entry -> {
+        assertThat(entry.getDirection()).isEqualTo(LedgerEntry.Direction.DEBIT);
+        assertThat(entry.getCounterpartyId()).isEqualTo("Id-2");
+        assertThat(entry.getAmount()).isEqualTo(10);
+      });
+    assertThat(ledger.history("Id-3", null, null, null, 10).getEntries()).isEmpty();
+  }
+
+  @Test
+  void cursorPagesThroughEveryEntryOnce() {
+    TransferLedger ledger = new TransferLedger(true, 24, 1000);
+    for (int i = 1; i <= 250; i++) {
+      ledger.record("Id-1", "Id-2", i);
+    }
+
+    double expected = 250;
+    Long cursor = null;
+    int pages = 0;
+    do {
+      LedgerPage page = ledger.history("Id-1", null, null, cursor, 100);
+      for (LedgerEntry entry : page.getEntries()) {
+        assertThat(entry.getAmount()).isEqualTo(expected--);
+      }
+      // Entries recorded while paging are newer than the cursor and do not shift later pages
+      ledger.record("Id-1", "Id-2", 1000);
+      cursor = page.getNextCursor();
+      pages++;
+    } while (cursor != null);
+
+    assertThat(expected).isZero();
+    assertThat(pages).isEqualTo(3);
+  }
+
+  @Test
+  void filtersByTimeRange() throws InterruptedException {
+    TransferLedger ledger = new TransferLedger(true, 24, 100);
+    ledger.record("Id-1", "Id-2", 1);
+    Thread.sleep(5);
+    Instant from = Instant.now();
+    ledger.record("Id-1", "Id-2", 2);
+    Instant to = Instant.now();
+    Thread.sleep(5);
+    ledger.record("Id-1", "Id-2", 3);
+
+    assertThat(ledger.history("Id-1", from, to, null, 10).getEntries())
+      .extracting(LedgerEntry::getAmount).containsExactly(2.0);
+    assertThat(ledger.history("Id-1", from, null, null, 10).getEntries())
+      .extracting(LedgerEntry::getAmount).containsExactly(3.0, 2.0);
+    assertThat(ledger.history("Id-1", null, to, null, 10).getEntries())
+      .extracting(LedgerEntry::getAmount).containsExactly(2.0, 1.0);
+  }
+
+  @Test
+  void keepsAtMostMaxEntriesPerAccount() {
+    TransferLedger ledger = new TransferLedger(true, 24, 10);
+    for (int i = 1; i <= 25; i++) {
+      ledger.record("Id-1", "Id-2", i);
+    }
+
+    LedgerPage page = ledger.history("Id-1", null, null, null, 100);
+    assertThat(page.getEntries()).extracting(LedgerEntry::getAmount)
+      .containsExactly(25.0, 24.0, 23.0, 22.0, 21.0, 20.0, 19.0, 18.0, 17.0, 16.0);
+    assertThat(page.getEntries().get(9).getPosition()).isEqualTo(15);
+  }
+
+  @Test
+  void disabledLedgerRecordsNothing() {
+    TransferLedger ledger = new TransferLedger(false, 24, 100);
+    ledger.record("Id-1", "Id-2", 10);
+
+    assertThat(ledger.history("Id-1", null, null, null, 10).getEntries()).isEmpty();
+  }
+}
@@ -0,0 +1,120 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferNetting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferNettingTest {
+
+  private static final int ACCOUNTS = 8;
+
+  private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+  private final StripedAccountLocks accountLocks = new StripedAccountLocks(64);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private TransferNetting netting;
+
+  @AfterEach
+  void stopNetting() {
+    ReflectionTestUtils.invokeMethod(netting, "stop");
+  }
+
+  @Test
+  void appliesEachPairOnceAndFailsTransfersInArrivalOrder() {
+    LockingTransferEngine transferEngine = engine(50_000);
+    transferEngine.createAccount(new Account("Id-1", new BigDecimal("100")));
+    transferEngine.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    long lockAcquisitions = meterRegistry.timer("transfers.lock.wait").count();
+
+    CompletableFuture<Void> first = transferEngine.transferAsync("Id-1", "Id-2", 100);
+    CompletableFuture<Void> second = transferEngine.transferAsync("Id-2", "Id-1", 50);
+    CompletableFuture<Void> third = transferEngine.transferAsync("Id-1", "Id-2", 60);
+    CompletableFuture<Void> fourth = transferEngine.transferAsync("Id-2", "Id-1", 10);
+    CompletableFuture<Void> fifth = transferEngine.transferAsync("Id-1", "Id-2", -1);
+    CompletableFuture.allOf(first, second, fourth).join();
+
+    CompletionException insufficient = assertThrows(CompletionException.class, third::join);
+    assertThat(insufficient.getCause()).isInstanceOf(InsufficientFundsException.class);
+    CompletionException negative = assertThrows(CompletionException.class, fifth::join);
+    assertThat(negative.getCause()).isInstanceOf(IllegalArgumentException.class);
+    assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("60");
+    assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("40");
+    assertThat(meterRegistry.timer("transfers.lock.wait").count() - lockAcquisitions).isEqualTo(1);
+  }
+
+  @Test
+  void synchronousTransfersReportTheirOwnOutcome() {
+    LockingTransferEngine transferEngine = engine(200);
+    transferEngine.createAccount(new Account("Id-1", new BigDecimal("10")));
+    transferEngine.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    transferEngine.transfer("Id-1", "Id-2", 10);
+    assertThrows(InsufficientFundsException.class, () -> transferEngine.transfer("Id-1", "Id-2", 0.01));
+    transferEngine.transfer("Id-2", "Id-2", 5);
+
+    assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void concurrentTransfersBetweenFewPairsConserveMoney() throws Exception {
+    LockingTransferEngine transferEngine = engine(200);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      transferEngine.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 16; t++) {
+      threads.add(new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 500; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          try {
+            transferEngine.transfer("Id-" + from, "Id-" + (from ^ 1), random.nextInt(1, 50));
+          } catch (InsufficientFundsException e) {
+            // Expected once an account runs dry
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    BigDecimal[] total = {BigDecimal.ZERO};
+    accountsRepository.forEachAccount(account -> {
+      assertThat(account.getBalance().signum()).isNotNegative();
+      total[0] = total[0].add(account.getBalance());
+    });
+    assertThat(total[0]).isEqualByComparingTo(BigDecimal.valueOf(ACCOUNTS * 100L));
+  }
+
+  private LockingTransferEngine engine(long windowMicros) {
+    netting = new TransferNetting(meterRegistry, true, windowMicros, 4096, 65536);
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, accountLocks)
+      .metrics(new TransferMetrics(meterRegistry, true))
+      .netting(netting)
+      .build();
+    ReflectionTestUtils.invokeMethod(transferEngine, "start");
+    return transferEngine;
+  }
+}
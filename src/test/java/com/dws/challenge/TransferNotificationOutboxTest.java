@@ -0,0 +1,125 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferNotificationOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferNotificationOutboxTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private TransferNotificationOutbox outbox;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    outbox = new TransferNotificationOutbox(meterRegistry, 2, 16, 3, 1, 0);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.invokeMethod(outbox, "stop");
+  }
+
+  @Test
+  void deliversQueuedNotifications() throws Exception {
+    CountDownLatch delivered = new CountDownLatch(2);
+    NotificationService notificationService = (account, description) -> delivered.countDown();
+    ReflectionTestUtils.invokeMethod(outbox, "start");
+
+    assertThat(outbox.enqueue(notificationService, account("Id-1"), "10")).isTrue();
+    assertThat(outbox.enqueue(notificationService, account("Id-2"), "10")).isTrue();
+
+    assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(meterRegistry.counter("notifications.outbox.dispatched").count()).isEqualTo(2);
+  }
+
+  @Test
+  void retriesFailedNotifications() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch delivered = new CountDownLatch(1);
+    NotificationService notificationService = (account, description) -> {
+      if (calls.incrementAndGet() < 3) {
+        throw new IllegalStateException("mail server unavailable");
+      }
+      delivered.countDown();
+    };
+    ReflectionTestUtils.invokeMethod(outbox, "start");
+
+    outbox.enqueue(notificationService, account("Id-1"), "10");
+
+    assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(meterRegistry.counter("notifications.outbox.retried").count()).isEqualTo(2);
+  }
+
+  @Test
+  void failingNotificationDoesNotHoldBackOthers() throws Exception {
+    // A backoff far longer than the test: delivery of the others must not wait for it
+    outbox = new TransferNotificationOutbox(meterRegistry, 16, 16, 3, 60_000, 0);
+    CountDownLatch delivered = new CountDownLatch(2);
+    NotificationService notificationService = (account, description) -> {
+      if (account.getAccountId().equals("Id-1")) {
+        throw new IllegalStateException("mailbox unavailable");
+      }
+      delivered.countDown();
+    };
+    ReflectionTestUtils.invokeMethod(outbox, "start");
+
+    outbox.enqueue(notificationService, account("Id-1"), "10");
+    outbox.enqueue(notificationService, account("Id-2"), "10");
+    outbox.enqueue(notificationService, account("Id-3"), "10");
+
+    assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(meterRegistry.counter("notifications.outbox.retried").count()).isEqualTo(1);
+  }
+
+  @Test
+  void deliversTheAccountAsQueued() throws Exception {
+    List<String> received = new CopyOnWriteArrayList<>();
+    CountDownLatch delivered = new CountDownLatch(2);
+    NotificationService notificationService = (account, description) -> {
+      received.add(account.getAccountId() + " " + account.getBalance().toPlainString());
+      // Whatever the notifier does to its copy stays with it
+      account.setBalance(BigDecimal.ZERO);
+      delivered.countDown();
+    };
+    ReflectionTestUtils.invokeMethod(outbox, "start");
+
+    AccountBalance balance = new AccountBalance("Id-1", new BigDecimal("42.50"), 3);
+    outbox.enqueue(notificationService, balance, "10");
+    outbox.enqueue(notificationService, balance, "10");
+
+    assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(received).containsExactly("Id-1 42.50", "Id-1 42.50");
+  }
+
+  @Test
+  void dropsWhenFull() {
+    // Dispatcher not started, so the queue only fills up
+    NotificationService notificationService = (account, description) -> { };
+
+    assertThat(outbox.enqueue(notificationService, account("Id-1"), "10")).isTrue();
+    assertThat(outbox.enqueue(notificationService, account("Id-2"), "10")).isTrue();
+    assertThat(outbox.enqueue(notificationService, account("Id-3"), "10")).isFalse();
+
+    assertThat(outbox.getDepth()).isEqualTo(2);
+    assertThat(meterRegistry.counter("notifications.outbox.dropped").count()).isEqualTo(1);
+  }
+
+  private static AccountBalance account(String accountId) {
+    return new AccountBalance(accountId, BigDecimal.TEN, 0);
+  }
+}
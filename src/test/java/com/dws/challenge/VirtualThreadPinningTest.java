@@ -0,0 +1,100 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.MappedTransferJournal;
+import com.dws.challenge.ledger.TransferLedger;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.StripedAccountLocks;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferNotificationOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.dws.challenge.LockingEngineBuilder.lockingEngine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs contended transfers on virtual threads, through the striped locks, the group-commit journal
+ * and the notification outbox, and checks with JFR that no virtual thread ever blocked while pinned
+ * to its carrier.
+ */
+class VirtualThreadPinningTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void transferPathNeverPinsCarrierThreads() throws Exception {
+    AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+    TransferMetrics metrics = new TransferMetrics(new SimpleMeterRegistry(), true);
+    MappedTransferJournal journal = new MappedTransferJournal(directory.resolve("journal"), 16 << 20,
+      MappedTransferJournal.Mode.GROUP, 100_000);
+    // A single stripe makes every transfer contend for the same lock
+    StripedAccountLocks accountLocks = new StripedAccountLocks(1);
+    LockingTransferEngine transferEngine = lockingEngine(accountsRepository, accountLocks)
+      .journal(journal)
+      .metrics(metrics)
+      .build();
+    TransferNotificationOutbox outbox = new TransferNotificationOutbox(new SimpleMeterRegistry(), 8192, 256, 1, 1, 5);
+    ReflectionTestUtils.invokeMethod(outbox, "start");
+    AccountsService accountsService = new AccountsService(accountsRepository, outbox, transferEngine, metrics,
+      new TransferLedger(true, 24, 1000));
+    NotificationService slowNotifier = (account, description) -> sleep(1);
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("1000000")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal("1000000")));
+
+    Path recordingFile = directory.resolve("pinning.jfr");
+    List<RecordedEvent> pinned;
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        List<Future<?>> transfers = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+          boolean forward = i % 2 == 0;
+          transfers.add(executor.submit(() -> accountsService.transferMoney(forward ? "Id-1" : "Id-2",
+            forward ? "Id-2" : "Id-1", 1.0, slowNotifier)));
+        }
+        for (Future<?> transfer : transfers) {
+          transfer.get();
+        }
+      }
+
+      recording.stop();
+      recording.dump(recordingFile);
+      pinned = RecordingFile.readAllEvents(recordingFile);
+    } finally {
+      ReflectionTestUtils.invokeMethod(outbox, "stop");
+      journal.close();
+    }
+
+    assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000000");
+    assertThat(pinned).as("virtual threads pinned while blocking").isEmpty();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}